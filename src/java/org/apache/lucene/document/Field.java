@@ -39,6 +39,8 @@ public final class Field implements java.io.Serializable {
   private boolean isIndexed = true;
   private boolean isTokenized = true;
 
+  private boolean omitNorms = false;
+
   private float boost = 1.0f;
 
   /** Sets the boost factor hits on this field.  This value will be
@@ -228,6 +230,20 @@ public final class Field implements java.io.Serializable {
    */
   public final boolean isTermVectorStored() { return storeTermVector; }
 
+  /** True iff no normalization factors are stored for this field, see
+   * {@link #setOmitNorms(boolean)}. */
+  public boolean getOmitNorms() { return omitNorms; }
+
+  /** Expert: If set, omit normalization factors associated with this
+   * indexed field.  This saves one byte per document and field in the index
+   * and in memory when searching.  Such fields score as if their boost and
+   * length normalization were 1.0.  Norms are only omitted for a field when
+   * no document of a segment stores norms for it.
+   *
+   * @see IndexReader#norms(String)
+   */
+  public void setOmitNorms(boolean omitNorms) { this.omitNorms = omitNorms; }
+
   /** Prints a Field for human consumption. */
   public final String toString() {
     if (isStored && isIndexed && !isTokenized)
@@ -0,0 +1,103 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A bounded pool of clones of a stream or an enumeration.  A clone is taken
+ * from the pool for the duration of one operation and then returned, so
+ * that concurrent operations each get their own clone without keeping one
+ * per thread.  At most <code>maxSize</code> idle clones are kept; clones
+ * returned to a full or closed pool are dropped.
+ */
+abstract class ClonePool {
+  private Object[] pool;
+  private int numPooled;
+  private boolean closed;
+
+  private int created;
+  private int reused;
+  private int dropped;
+
+  ClonePool(int maxSize) {
+    pool = new Object[maxSize];
+  }
+
+  /** Creates a new clone. */
+  protected abstract Object newClone();
+
+  /** Returns an idle clone, or a new one if there is none. */
+  final Object get() {
+    synchronized (this) {
+      if (numPooled > 0) {
+        reused++;
+        Object clone = pool[--numPooled];
+        pool[numPooled] = null;
+        return clone;
+      }
+      created++;
+    }
+    return newClone();                            // clone outside the lock
+  }
+
+  /** Returns a clone obtained from {@link #get()} to the pool. */
+  final synchronized void release(Object clone) {
+    if (closed || numPooled == pool.length) {
+      dropped++;
+      return;
+    }
+    pool[numPooled++] = clone;
+  }
+
+  /** Sets the maximum number of idle clones kept, dropping any excess. */
+  final synchronized void setMaxSize(int maxSize) {
+    if (maxSize < 0)
+      throw new IllegalArgumentException("maxSize must be >= 0: " + maxSize);
+    Object[] newPool = new Object[maxSize];
+    int n = Math.min(numPooled, maxSize);
+    System.arraycopy(pool, 0, newPool, 0, n);
+    dropped += numPooled - n;
+    pool = newPool;
+    numPooled = n;
+  }
+
+  final synchronized int getMaxSize() {
+    return pool.length;
+  }
+
+  /** Drops all idle clones; clones returned later are dropped too. */
+  final synchronized void close() {
+    for (int i = 0; i < numPooled; i++)
+      pool[i] = null;
+    numPooled = 0;
+    closed = true;
+  }
+
+  /** Returns the number of clones created because the pool was empty. */
+  final synchronized int getCreated() {
+    return created;
+  }
+
+  /** Returns the number of clones taken from the pool. */
+  final synchronized int getReused() {
+    return reused;
+  }
+
+  /** Returns the number of clones dropped because the pool was full. */
+  final synchronized int getDropped() {
+    return dropped;
+  }
+}
@@ -198,11 +198,20 @@ class CompoundFileReader extends Directory {
         CSInputStream(final InputStream base, final long fileOffset, final long length)
           throws IOException
         {
-            this.base = base;
+            this.base = (InputStream) base.clone();
             this.fileOffset = fileOffset;
             this.length = length;   // variable in the superclass
         }
 
+        /** Each clone reads through a clone of the base stream of its own,
+         *  so reads need no lock on the shared stream of the compound file.
+         */
+        public Object clone() {
+            CSInputStream clone = (CSInputStream) super.clone();
+            clone.base = (InputStream) base.clone();
+            return clone;
+        }
+
         /** Expert: implements buffer refill.  Reads bytes from the current
          *  position in the input.
          * @param b the array to read bytes into
@@ -212,13 +221,11 @@ class CompoundFileReader extends Directory {
         protected void readInternal(byte[] b, int offset, int len)
         throws IOException
         {
-            synchronized (base) {
-              long start = getFilePointer();
-              if(start + len > length)
-                throw new IOException("read past EOF");
-              base.seek(fileOffset + start);
-              base.readBytes(b, offset, len);
-            }
+            long start = getFilePointer();
+            if(start + len > length)
+              throw new IOException("read past EOF");
+            base.seek(fileOffset + start);
+            base.readBytes(b, offset, len);
         }
 
         /** Expert: implements seek.  Sets current position in this file, where
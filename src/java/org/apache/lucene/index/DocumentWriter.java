@@ -319,7 +319,7 @@ final class DocumentWriter {
   private final void writeNorms(Document doc, String segment) throws IOException { 
     for(int n = 0; n < fieldInfos.size(); n++){
       FieldInfo fi = fieldInfos.fieldInfo(n);
-      if(fi.isIndexed){
+      if(fi.hasNorms()){
         float norm = fieldBoosts[n] * similarity.lengthNorm(fi.name, fieldLengths[n]);
         OutputStream norms = directory.createFile(segment + ".f" + n);
         try {
@@ -0,0 +1,93 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * An acyclic finite state transducer mapping strings to non-negative longs,
+ * as built by {@link FSTBuilder}.  Strings sharing a prefix share the arcs
+ * of the prefix, and strings sharing a suffix share the nodes of the suffix,
+ * so a sorted term list is stored in much less space than its text.  The
+ * output of a string is the sum of the outputs of the arcs on its path plus
+ * the final output of its last node.
+ * <p>
+ * Nodes are stored in a byte array, children before their parents, and a
+ * node is addressed by its offset:
+ * <pre>
+ * Node        --&gt; Header, FinalOutput?, Arc<sup>NumArcs</sup>
+ * Header      --&gt; VInt, NumArcs &lt;&lt; 1 | IsFinal
+ * FinalOutput --&gt; VLong, present if IsFinal
+ * Arc         --&gt; Label, Output, Target
+ * Label       --&gt; VInt, a char; arcs are sorted by label
+ * Output      --&gt; VLong
+ * Target      --&gt; VInt, the address of the node the arc leads to
+ * </pre>
+ * One byte array may hold several transducers, each with its own root.
+ */
+final class FST {
+  private byte[] bytes;
+
+  FST(byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  /** Returns the number of bytes used by the nodes. */
+  int sizeInBytes() {
+    return bytes.length;
+  }
+
+  /** Returns the output of <code>input</code> in the transducer rooted at
+   * <code>root</code>, or -1 if it does not accept <code>input</code>. */
+  long get(int root, String input) {
+    int[] pos = new int[] {root};                 // read position
+    long output = 0;
+    int length = input.length();
+    for (int i = 0; ; i++) {
+      int header = (int)readVLong(pos);
+      long finalOutput = (header & 1) != 0 ? readVLong(pos) : 0;
+      if (i == length)                            // end of input
+        return (header & 1) != 0 ? output + finalOutput : -1;
+
+      char c = input.charAt(i);
+      int numArcs = header >>> 1;
+      int arc = 0;
+      for (; arc < numArcs; arc++) {
+        long label = readVLong(pos);
+        if (label > c)                            // arcs are sorted
+          return -1;
+        long arcOutput = readVLong(pos);
+        int target = (int)readVLong(pos);
+        if (label == c) {
+          output += arcOutput;
+          pos[0] = target;
+          break;
+        }
+      }
+      if (arc == numArcs)
+        return -1;
+    }
+  }
+
+  private long readVLong(int[] pos) {
+    byte b = bytes[pos[0]++];
+    long i = b & 0x7F;
+    for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+      b = bytes[pos[0]++];
+      i |= (b & 0x7FL) << shift;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,218 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Hashtable;
+
+import org.apache.lucene.store.OutputStream;
+
+/**
+ * Builds {@link FST}s from strings added in sorted order, each with an
+ * output that is a non-negative long.
+ * <p>
+ * The nodes of the last string added are kept uncompiled.  When a string is
+ * added, the nodes of the previous one beyond their common prefix can no
+ * longer change and are compiled, deepest first.  A compiled node identical
+ * to one compiled before is replaced by it, which shares common suffixes.
+ * Outputs are pushed towards the root: an arc carries the smallest output
+ * below it, and the nodes below carry the rest.
+ * <p>
+ * Several transducers may be built one after the other into the same bytes,
+ * sharing nodes; {@link #finish()} ends one and returns its root.
+ */
+final class FSTBuilder {
+  private byte[] bytes = new byte[1024];
+  private int size;
+  private Hashtable compiled = new Hashtable();   // node bytes -> address
+
+  private Node[] frontier = new Node[16];
+  private String lastInput = null;
+
+  private byte[] scratch = new byte[64];
+  private int scratchSize;
+
+  private static final class Node {
+    int numArcs;
+    char[] labels = new char[4];
+    long[] outputs = new long[4];
+    int[] targets = new int[4];
+    boolean isFinal;
+    long finalOutput;
+
+    void addArc(char label) {
+      if (numArcs == labels.length) {
+        char[] newLabels = new char[numArcs * 2];
+        System.arraycopy(labels, 0, newLabels, 0, numArcs);
+        labels = newLabels;
+        long[] newOutputs = new long[numArcs * 2];
+        System.arraycopy(outputs, 0, newOutputs, 0, numArcs);
+        outputs = newOutputs;
+        int[] newTargets = new int[numArcs * 2];
+        System.arraycopy(targets, 0, newTargets, 0, numArcs);
+        targets = newTargets;
+      }
+      labels[numArcs] = label;
+      outputs[numArcs] = 0;
+      targets[numArcs] = -1;
+      numArcs++;
+    }
+
+    void clear() {
+      numArcs = 0;
+      isFinal = false;
+      finalOutput = 0;
+    }
+  }
+
+  FSTBuilder() {
+    for (int i = 0; i < frontier.length; i++)
+      frontier[i] = new Node();
+  }
+
+  /** Adds a string and its output.  Strings must be added in increasing
+   * order of {@link String#compareTo(String)}. */
+  void add(String input, long output) {
+    if (output < 0)
+      throw new IllegalArgumentException("negative output: " + output);
+    int prefix = 0;
+    if (lastInput != null) {
+      if (input.compareTo(lastInput) <= 0)
+        throw new IllegalArgumentException("input out of order: " + input);
+      int max = Math.min(input.length(), lastInput.length());
+      while (prefix < max && input.charAt(prefix) == lastInput.charAt(prefix))
+        prefix++;
+      freeze(prefix);
+    }
+
+    if (frontier.length <= input.length()) {
+      Node[] newFrontier = new Node[Math.max(input.length() + 1, frontier.length * 2)];
+      System.arraycopy(frontier, 0, newFrontier, 0, frontier.length);
+      for (int i = frontier.length; i < newFrontier.length; i++)
+        newFrontier[i] = new Node();
+      frontier = newFrontier;
+    }
+
+    for (int i = prefix; i < input.length(); i++)  // add the new suffix
+      frontier[i].addArc(input.charAt(i));
+    frontier[input.length()].isFinal = true;
+
+    for (int i = 0; i < prefix; i++) {           // push outputs down
+      Node parent = frontier[i];
+      int last = parent.numArcs - 1;
+      long common = Math.min(parent.outputs[last], output);
+      long rest = parent.outputs[last] - common;
+      parent.outputs[last] = common;
+      if (rest != 0) {
+        Node node = frontier[i + 1];
+        for (int arc = 0; arc < node.numArcs; arc++)
+          node.outputs[arc] += rest;
+        if (node.isFinal)
+          node.finalOutput += rest;
+      }
+      output -= common;
+    }
+    if (prefix == input.length())                 // only the first input
+      frontier[prefix].finalOutput = output;
+    else
+      frontier[prefix].outputs[frontier[prefix].numArcs - 1] = output;
+
+    lastInput = input;
+  }
+
+  /** Compiles the nodes of the last input below depth <code>prefix</code>. */
+  private void freeze(int prefix) {
+    for (int i = lastInput.length(); i > prefix; i--) {
+      Node parent = frontier[i - 1];
+      parent.targets[parent.numArcs - 1] = compile(frontier[i]);
+      frontier[i].clear();
+    }
+  }
+
+  /** Ends the current transducer and returns the address of its root, or -1
+   * if no string was added since the last call. */
+  int finish() {
+    if (lastInput == null)
+      return -1;
+    freeze(0);
+    int root = compile(frontier[0]);
+    frontier[0].clear();
+    lastInput = null;
+    return root;
+  }
+
+  /** Returns the nodes compiled so far. */
+  FST getFST() {
+    byte[] result = new byte[size];
+    System.arraycopy(bytes, 0, result, 0, size);
+    return new FST(result);
+  }
+
+  /** Returns the number of bytes used by the nodes compiled so far. */
+  int sizeInBytes() {
+    return size;
+  }
+
+  /** Writes the nodes compiled so far to <code>out</code>. */
+  void writeTo(OutputStream out) throws IOException {
+    out.writeBytes(bytes, size);
+  }
+
+  private int compile(Node node) {
+    scratchSize = 0;
+    writeVLong((node.numArcs << 1) | (node.isFinal ? 1 : 0));
+    if (node.isFinal)
+      writeVLong(node.finalOutput);
+    for (int i = 0; i < node.numArcs; i++) {
+      writeVLong(node.labels[i]);
+      writeVLong(node.outputs[i]);
+      writeVLong(node.targets[i]);
+    }
+
+    char[] key = new char[scratchSize];
+    for (int i = 0; i < scratchSize; i++)
+      key[i] = (char)(scratch[i] & 0xFF);
+    String nodeKey = new String(key);
+    Integer address = (Integer)compiled.get(nodeKey);
+    if (address != null)                          // share an identical node
+      return address.intValue();
+
+    if (size + scratchSize > bytes.length) {
+      byte[] newBytes = new byte[Math.max(size + scratchSize, bytes.length * 2)];
+      System.arraycopy(bytes, 0, newBytes, 0, size);
+      bytes = newBytes;
+    }
+    System.arraycopy(scratch, 0, bytes, size, scratchSize);
+    int result = size;
+    size += scratchSize;
+    compiled.put(nodeKey, new Integer(result));
+    return result;
+  }
+
+  private void writeVLong(long i) {
+    if (scratchSize + 10 > scratch.length) {
+      byte[] newScratch = new byte[scratch.length * 2];
+      System.arraycopy(scratch, 0, newScratch, 0, scratchSize);
+      scratch = newScratch;
+    }
+    while ((i & ~0x7FL) != 0) {
+      scratch[scratchSize++] = (byte)((i & 0x7f) | 0x80);
+      i >>>= 7;
+    }
+    scratch[scratchSize++] = (byte)i;
+  }
+}
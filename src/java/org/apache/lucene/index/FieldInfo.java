@@ -24,10 +24,20 @@ final class FieldInfo {
   // true if term vector for this field should be stored
   boolean storeTermVector;
 
-  FieldInfo(String na, boolean tk, int nu, boolean storeTermVector) {
+  // true if no norms are stored for this field
+  boolean omitNorms;
+
+  FieldInfo(String na, boolean tk, int nu, boolean storeTermVector,
+            boolean omitNorms) {
     name = na;
     isIndexed = tk;
     number = nu;
     this.storeTermVector = storeTermVector;
+    this.omitNorms = omitNorms;
+  }
+
+  /** True iff a norms file is stored for this field. */
+  boolean hasNorms() {
+    return isIndexed && !omitNorms;
   }
 }
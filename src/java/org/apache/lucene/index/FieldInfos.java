@@ -63,7 +63,8 @@ final class FieldInfos {
     Enumeration fields = doc.fields();
     while (fields.hasMoreElements()) {
       Field field = (Field) fields.nextElement();
-      add(field.name(), field.isIndexed(), field.isTermVectorStored());
+      add(field.name(), field.isIndexed(), field.isTermVectorStored(),
+          field.getOmitNorms());
     }
   }
 
@@ -114,9 +115,23 @@ final class FieldInfos {
    * @param storeTermVector true if the term vector should be stored
    */
   public void add(String name, boolean isIndexed, boolean storeTermVector) {
+    add(name, isIndexed, storeTermVector, false);
+  }
+
+  /** If the field is not yet known, adds it.  If it is known, the flags are
+   *  merged as by {@link #add(String, boolean, boolean)}, and norms are
+   *  omitted only if they were omitted before and are omitted now.
+   *
+   * @param name The name of the field
+   * @param isIndexed true if the field is indexed
+   * @param storeTermVector true if the term vector should be stored
+   * @param omitNorms true if the norms of the field should not be stored
+   */
+  public void add(String name, boolean isIndexed, boolean storeTermVector,
+                  boolean omitNorms) {
     FieldInfo fi = fieldInfo(name);
     if (fi == null) {
-      addInternal(name, isIndexed, storeTermVector);
+      addInternal(name, isIndexed, storeTermVector, omitNorms);
     } else {
       if (fi.isIndexed != isIndexed) {
         fi.isIndexed = true;                      // once indexed, always index
@@ -124,13 +139,16 @@ final class FieldInfos {
       if (fi.storeTermVector != storeTermVector) {
         fi.storeTermVector = true;                // once vector, always vector
       }
+      if (fi.omitNorms != omitNorms) {
+        fi.omitNorms = false;                     // once norms, always norms
+      }
     }
   }
 
   private void addInternal(String name, boolean isIndexed,
-                           boolean storeTermVector) {
-    FieldInfo fi =
-      new FieldInfo(name, isIndexed, byNumber.size(), storeTermVector);
+                           boolean storeTermVector, boolean omitNorms) {
+    FieldInfo fi = new FieldInfo(name, isIndexed, byNumber.size(),
+                                 storeTermVector, omitNorms);
     byNumber.add(fi);
     byName.put(name, fi);
   }
@@ -184,6 +202,7 @@ final class FieldInfos {
       byte bits = 0x0;
       if (fi.isIndexed) bits |= 0x1;
       if (fi.storeTermVector) bits |= 0x2;
+      if (fi.omitNorms) bits |= 0x4;
       output.writeString(fi.name);
       //Was REMOVE
       //output.writeByte((byte)(fi.isIndexed ? 1 : 0));
@@ -198,7 +217,8 @@ final class FieldInfos {
       byte bits = input.readByte();
       boolean isIndexed = (bits & 0x1) != 0;
       boolean storeTermVector = (bits & 0x2) != 0;
-      addInternal(name, isIndexed, storeTermVector);
+      boolean omitNorms = (bits & 0x4) != 0;
+      addInternal(name, isIndexed, storeTermVector, omitNorms);
     }    
   }
 
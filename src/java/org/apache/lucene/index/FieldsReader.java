@@ -67,11 +67,13 @@ final class FieldsReader {
 
       byte bits = fieldsStream.readByte();
 
-      doc.add(new Field(fi.name,		  // name
+      Field field = new Field(fi.name,		  // name
 			fieldsStream.readString(), // read value
 			true,			  // stored
 			fi.isIndexed,		  // indexed
-			(bits & 1) != 0, fi.storeTermVector)); // vector
+			(bits & 1) != 0, fi.storeTermVector); // vector
+      field.setOmitNorms(fi.omitNorms);
+      doc.add(field);
     }
 
     return doc;
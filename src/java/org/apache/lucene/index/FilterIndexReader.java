@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.Collection;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.search.SortField;
 
 /**  A <code>FilterIndexReader</code> contains another IndexReader, which it
  * uses as its basic source of data, possibly transforming the data along the
@@ -106,10 +107,12 @@ public class FilterIndexReader extends IndexReader {
   public boolean hasDeletions() { return in.hasDeletions(); }
   protected void doUndeleteAll() throws IOException { in.undeleteAll(); }
 
+  public boolean hasNorms(String f) throws IOException { return in.hasNorms(f); }
   public byte[] norms(String f) throws IOException { return in.norms(f); }
   public void norms(String f, byte[] bytes, int offset) throws IOException {
     in.norms(f, bytes, offset);
   }
+  public byte maxNorm(String f) throws IOException { return in.maxNorm(f); }
   protected void doSetNorm(int d, String f, byte b) throws IOException {
     in.setNorm(d, f, b);
   }
@@ -118,6 +121,34 @@ public class FilterIndexReader extends IndexReader {
   public TermEnum terms(Term t) throws IOException { return in.terms(t); }
 
   public int docFreq(Term t) throws IOException { return in.docFreq(t); }
+  public int maxFreq(Term t) throws IOException { return in.maxFreq(t); }
+  public int maxFreq(Term t, TermDocs termDocs) throws IOException {
+    return in.maxFreq(t, termDocs);
+  }
+
+  public void setTermInfosIndexDivisor(int indexDivisor) {
+    in.setTermInfosIndexDivisor(indexDivisor);
+  }
+  public int getTermInfosIndexDivisor() {
+    return in.getTermInfosIndexDivisor();
+  }
+  public void setTermEnumPoolSize(int size) {
+    in.setTermEnumPoolSize(size);
+  }
+  public void setTermInfoCacheSize(int size) {
+    in.setTermInfoCacheSize(size);
+  }
+  public TermInfosStats getTermInfosStats() {
+    return in.getTermInfosStats();
+  }
+
+  public synchronized long getModificationCount() {
+    return super.getModificationCount() + in.getModificationCount();
+  }
+
+  public SortField getIndexSort() {
+    return in.getIndexSort();
+  }
 
   public TermDocs termDocs() throws IOException { return in.termDocs(); }
 
@@ -26,6 +26,7 @@ import org.apache.lucene.store.Lock;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;          // for javadoc
 import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.SortField;
 
 /** IndexReader is an abstract class, providing an interface for accessing an
  index.  Search of an index is done entirely through this abstract interface,
@@ -86,6 +87,7 @@ public abstract class IndexReader {
   private Lock writeLock;
   private boolean stale;
   private boolean hasChanges;
+  private long modificationCount;
   
   final private boolean closeDirectory;
 
@@ -107,6 +109,16 @@ public abstract class IndexReader {
   }
 
   private static IndexReader open(final Directory directory, final boolean closeDirectory) throws IOException {
+    return open(directory, closeDirectory, null);
+  }
+
+  /** Opens the index in <code>directory</code>.  Segments which are also
+   * segments of <code>previous</code>, if not null, share their field
+   * cache key with them. */
+  private static IndexReader open(final Directory directory,
+                                  final boolean closeDirectory,
+                                  final IndexReader previous)
+    throws IOException {
     synchronized (directory) {			  // in- & inter-process sync
       return (IndexReader)new Lock.With(
           directory.makeLock(IndexWriter.COMMIT_LOCK_NAME),
@@ -114,12 +126,18 @@ public abstract class IndexReader {
           public Object doBody() throws IOException {
             SegmentInfos infos = new SegmentInfos();
             infos.read(directory);
+            SegmentReader reader;
             if (infos.size() == 1) {		  // index is optimized
-              return new SegmentReader(infos, infos.info(0), closeDirectory);
+              reader = new SegmentReader(infos, infos.info(0), closeDirectory);
+              reader.shareFieldCacheKey(previous);
+              return reader;
             } else {
               IndexReader[] readers = new IndexReader[infos.size()];
-              for (int i = 0; i < infos.size(); i++)
-                readers[i] = new SegmentReader(infos.info(i));
+              for (int i = 0; i < infos.size(); i++) {
+                reader = new SegmentReader(infos.info(i));
+                reader.shareFieldCacheKey(previous);
+                readers[i] = reader;
+              }
               return new MultiReader(directory, infos, closeDirectory, readers);
             }
           }
@@ -127,6 +145,34 @@ public abstract class IndexReader {
     }
   }
 
+  /** Returns a new IndexReader of the index in the directory of this one,
+   * as it is now, like {@link #open(Directory)}.  Segments of the index
+   * which are unchanged since this reader was opened share their {@link
+   * #getFieldCacheKey() field cache key} with those of this reader, so that
+   * sorting with the new reader only loads the values of new segments.
+   * This reader is left open, and the new one does not close the
+   * directory.
+   * @throws UnsupportedOperationException if this reader was not opened
+   * with one of the open() methods
+   */
+  public IndexReader reopen() throws IOException {
+    if (!directoryOwner)
+      throw new UnsupportedOperationException("not opened on a directory");
+    return open(directory, false, this);
+  }
+
+  /** Expert: Returns the key under which {@link
+   * org.apache.lucene.search.FieldCache} caches the values of this reader.
+   * Readers of the same segment share a key when one is {@link #reopen()
+   * reopened} from the other.  The values of a document deleted when they
+   * are loaded may be missing.
+   *
+   * <p>This implementation returns this reader.
+   */
+  public Object getFieldCacheKey() {
+    return this;
+  }
+
   /** Returns the directory this index resides in. */
   public Directory directory() { return directory; }
 
@@ -288,8 +334,15 @@ public abstract class IndexReader {
   /** Returns true if any documents have been deleted */
   public abstract boolean hasDeletions();
   
+  /** Returns true if there are norms stored for this field. */
+  public boolean hasNorms(String field) throws IOException {
+    return norms(field) != null;
+  }
+
   /** Returns the byte-encoded normalization factor for the named field of
    * every document.  This is used by the search code to score documents.
+   * Fields which {@link Field#setOmitNorms(boolean) omit norms} have the
+   * norm of 1.0 for every document.
    *
    * @see Field#setBoost(float)
    */
@@ -303,6 +356,29 @@ public abstract class IndexReader {
   public abstract void norms(String field, byte[] bytes, int offset)
     throws IOException;
 
+  /** Expert: Returns the largest byte-encoded normalization factor of the
+   * named field, comparing bytes as unsigned values.  Since {@link
+   * Similarity#decodeNorm(byte)} is monotonic, this decodes to an upper
+   * bound of the normalization factors of the field.
+   *
+   * <p>This implementation scans {@link #norms(String)}.
+   */
+  public byte maxNorm(String field) throws IOException {
+    return maxNorm(norms(field));
+  }
+
+  static byte maxNorm(byte[] norms) {
+    int max = 0;
+    if (norms != null) {
+      for (int i = 0; i < norms.length; i++) {
+        int norm = norms[i] & 0xFF;
+        if (norm > max)
+          max = norm;
+      }
+    }
+    return (byte) max;
+  }
+
   /** Expert: Resets the normalization factor for the named field of the named
    * document.  The norm represents the product of the field's {@link
    * Field#setBoost(float) boost} and its {@link Similarity#lengthNorm(String,
@@ -318,6 +394,7 @@ public abstract class IndexReader {
       aquireWriteLock();
     doSetNorm(doc, field, value);
     hasChanges = true;
+    modificationCount++;
   }
           
   /** Implements setNorm in subclass.*/
@@ -348,11 +425,129 @@ public abstract class IndexReader {
    */
   public abstract TermEnum terms(Term t) throws IOException;
 
+  /** Expert: Sets the fraction of the indexed terms loaded into memory for
+   * term lookups.  Only every <code>indexDivisor</code>th term of a segment's
+   * term index is loaded, which divides the memory used for it, and the time
+   * to load it, by about <code>indexDivisor</code>, while a lookup scans up to
+   * <code>indexDivisor</code> times as many terms.  The term index is loaded
+   * by the first term lookup, so this must be called before any search.
+   *
+   * <p>This implementation throws UnsupportedOperationException.
+   *
+   * @throws IllegalStateException if the term index is already loaded
+   */
+  public void setTermInfosIndexDivisor(int indexDivisor) {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Expert: Returns the divisor set by {@link
+   * #setTermInfosIndexDivisor(int)}.
+   *
+   * <p>This implementation throws UnsupportedOperationException.
+   */
+  public int getTermInfosIndexDivisor() {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Expert: Sets the maximum number of idle term dictionary enumerations
+   * kept per segment for term lookups.  A lookup takes an enumeration from
+   * the pool, or clones one if the pool is empty, and returns it afterwards;
+   * enumerations returned to a full pool are dropped.  The pool is freed
+   * when the reader is closed.
+   *
+   * <p>This implementation throws UnsupportedOperationException.
+   *
+   * @see #getTermInfosStats()
+   */
+  public void setTermEnumPoolSize(int size) {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Expert: Sets the number of terms per segment whose dictionary entry is
+   * cached, or 0 to disable the cache, which is the default.  The cache
+   * keeps the most recently used terms, including terms which are not in the
+   * segment, so that repeated {@link #docFreq(Term)} and {@link
+   * #termDocs(Term)} calls for popular terms need not search the term
+   * dictionary.  Setting the size discards the cached entries.
+   *
+   * <p>This implementation throws UnsupportedOperationException.
+   *
+   * @see #getTermInfosStats()
+   */
+  public void setTermInfoCacheSize(int size) {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Expert: Returns counters of the term lookups of this reader, summed
+   * over its segments.
+   *
+   * <p>This implementation returns counters which are all zero.
+   */
+  public TermInfosStats getTermInfosStats() {
+    return new TermInfosStats();
+  }
+
+  /** Expert: Returns a number which changes whenever documents are deleted
+   * or undeleted, or norms are set, through this reader or any reader it is
+   * composed of, so that results computed from the reader can be told to
+   * be stale.
+   */
+  public synchronized long getModificationCount() {
+    return modificationCount;
+  }
+
+  /** Expert: Returns the readers this reader is composed of, in the order
+   * of their document numbers, or null if this reader has no sub-readers.
+   * The document numbers of a sub-reader start after the {@link #maxDoc()}s
+   * of the sub-readers before it.  Searching the sub-readers one by one
+   * avoids combining their norms and other per-document data into arrays
+   * for the whole index.
+   *
+   * <p>This implementation returns null.
+   */
+  public IndexReader[] getSubReaders() {
+    return null;
+  }
+
+  /** Expert: Returns the field by which the documents of this reader are
+   * sorted, so that their numbers follow that order, or null if they are
+   * not known to be sorted.  Searches sorted by this field may then stop
+   * collecting documents early.
+   *
+   * <p>This implementation returns null.
+   * @see IndexWriter#setIndexSort(SortField)
+   */
+  public SortField getIndexSort() {
+    return null;
+  }
+
   /** Returns the number of documents containing the term <code>t</code>. 
    * 返回该term出现在多少个doc中 
    **/
   public abstract int docFreq(Term t) throws IOException;
 
+  /** Expert: Returns an upper bound for the frequency of <code>t</code> in
+   * any document, or -1 if no bound is known.  This is used by the search
+   * code to skip documents which cannot score high enough.
+   *
+   * <p>This implementation returns -1.
+   */
+  public int maxFreq(Term t) throws IOException {
+    return -1;
+  }
+
+  /** Expert: Returns an upper bound for the frequency of <code>t</code> in
+   * any document, like {@link #maxFreq(Term)}, given
+   * <code>termDocs</code>, an enumeration of this reader positioned on
+   * <code>t</code>, from which the bound may be had without looking the
+   * term up again.
+   *
+   * <p>This implementation returns {@link #maxFreq(Term)}.
+   */
+  public int maxFreq(Term t, TermDocs termDocs) throws IOException {
+    return maxFreq(t);
+  }
+
   /** Returns an enumeration of all the documents which contain
    <code>term</code>. For each document, the document number, the frequency of
    the term in that document is also provided, for use in search scoring.
@@ -436,6 +631,7 @@ public abstract class IndexReader {
       aquireWriteLock();
     doDelete(docNum);
     hasChanges = true;
+    modificationCount++;
   }
 
   /** Implements deletion of the document numbered <code>docNum</code>.
@@ -470,6 +666,7 @@ public abstract class IndexReader {
       aquireWriteLock();
     doUndeleteAll();
     hasChanges = true;
+    modificationCount++;
   }
   
   /** Implements actual undeleteAll() in subclass. */
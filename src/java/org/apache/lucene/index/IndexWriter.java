@@ -28,6 +28,7 @@ import org.apache.lucene.store.Lock;
 import org.apache.lucene.store.InputStream;
 import org.apache.lucene.store.OutputStream;
 import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.analysis.Analyzer;
 
@@ -117,6 +118,15 @@ public class IndexWriter {
    * may also cause file handle problems.
    */
   private boolean useCompoundFile = true;
+
+  /** Use block postings setting. Defaults to false. */
+  private boolean useBlockPostings = false;
+
+  /** Use term FST setting. Defaults to false. */
+  private boolean useTermFST = false;
+
+  /** Order of the documents in new segments. Defaults to none. */
+  private SortField indexSort = null;
   
   private boolean closeDir;
 
@@ -136,6 +146,76 @@ public class IndexWriter {
     useCompoundFile = value;
   }
 
+  /** Setting to turn on block encoded postings.
+   * @see #setUseBlockPostings(boolean)
+   */
+  public boolean getUseBlockPostings() {
+    return useBlockPostings;
+  }
+
+  /** Setting to turn on block encoded postings. When on, segments created by
+   *  merging store the document numbers and frequencies of each term in
+   *  PFor bit-packed blocks of 128 documents, which are decoded a whole block
+   *  at a time.  This makes iterating long postings lists, as in large
+   *  disjunctions, considerably cheaper.  The segments record their encoding,
+   *  so indexes may mix segments written with and without this setting.
+   */
+  public void setUseBlockPostings(boolean value) {
+    useBlockPostings = value;
+  }
+
+  /** Setting to turn on term FSTs.
+   * @see #setUseTermFST(boolean)
+   */
+  public boolean getUseTermFST() {
+    return useTermFST;
+  }
+
+  /** Setting to turn on term FSTs. When on, segments created by merging
+   *  also store their term dictionary as a finite state transducer, which
+   *  maps each term to its TermInfo directly.  Looking up a term then needs
+   *  neither the in-memory term index nor a scan of the .tis file, which
+   *  speeds up queries with many terms.  The transducer of a segment is
+   *  kept in memory while the segment is open.  The segments record whether
+   *  they have one, so indexes may mix segments written with and without
+   *  this setting.
+   */
+  public void setUseTermFST(boolean value) {
+    useTermFST = value;
+  }
+
+  /** Returns the field by which the documents of new segments are sorted.
+   * @see #setIndexSort(SortField)
+   */
+  public SortField getIndexSort() {
+    return indexSort;
+  }
+
+  /** Sets the field by which the documents of new segments are sorted, or
+   *  null to keep them in the order they were added in.  The field must be
+   *  of type {@link SortField#INT}, {@link SortField#FLOAT} or {@link
+   *  SortField#STRING}, without a locale, and is read the way {@link
+   *  org.apache.lucene.search.FieldCache} reads it; documents without a
+   *  value, or whose value is not a number for a numeric field, sort as 0,
+   *  or before all strings.  Documents with equal values
+   *  keep their relative order.  Merges renumber the documents in this
+   *  order, and the segments record it, so that a search sorted by the same
+   *  field may stop collecting the documents of a segment once it has
+   *  enough; see {@link
+   *  org.apache.lucene.search.IndexSearcher#setEarlyTermination(boolean)}.
+   *  {@link #optimize()} sorts an index whose segments are in another
+   *  order.
+   */
+  public void setIndexSort(SortField sort) {
+    if (sort != null
+        && (sort.getField() == null || sort.getLocale() != null
+            || (sort.getType() != SortField.INT
+                && sort.getType() != SortField.FLOAT
+                && sort.getType() != SortField.STRING)))
+      throw new IllegalArgumentException("cannot sort segments by " + sort);
+    indexSort = sort;
+  }
+
 
     /** Expert: Set the Similarity implementation used by this IndexWriter.
    *
@@ -306,7 +386,8 @@ public class IndexWriter {
     String segmentName = newSegmentName();
     dw.addDocument(segmentName, doc);//我们可以看到每一个doc都在一个segment存在,即每一个doc自动产生全部索引文件
     synchronized (this) {
-      segmentInfos.addElement(new SegmentInfo(segmentName, 1, ramDirectory));
+      segmentInfos.addElement(new SegmentInfo(segmentName, 1, ramDirectory,
+                                              indexSort));
       maybeMergeSegments();//判断是否要进行merge索引
     }
   }
@@ -359,6 +440,8 @@ public class IndexWriter {
            (segmentInfos.size() == 1 &&
             (SegmentReader.hasDeletions(segmentInfos.info(0)) ||
              segmentInfos.info(0).dir != directory ||
+             (indexSort != null &&
+              !indexSort.equals(segmentInfos.info(0).indexSort)) ||
              (useCompoundFile &&
               (!SegmentReader.usesCompoundFile(segmentInfos.info(0)) ||
                 SegmentReader.hasSeparateNorms(segmentInfos.info(0))))))) {
@@ -400,6 +483,9 @@ public class IndexWriter {
 
     String mergedName = newSegmentName();
     SegmentMerger merger = new SegmentMerger(directory, mergedName, false);
+    merger.setUseBlockPostings(useBlockPostings);
+    merger.setUseTermFST(useTermFST);
+    merger.setIndexSort(indexSort);
 
     if (segmentInfos.size() == 1)                 // add existing index, if any
       merger.add(new SegmentReader(segmentInfos.info(0)));
@@ -410,7 +496,8 @@ public class IndexWriter {
     int docCount = merger.merge();                // merge 'em
 
     segmentInfos.setSize(0);                      // pop old infos & add new
-    segmentInfos.addElement(new SegmentInfo(mergedName, docCount, directory));
+    segmentInfos.addElement(new SegmentInfo(mergedName, docCount, directory,
+                                            indexSort));
 
     synchronized (directory) {			  // in- & inter-process sync
       new Lock.With(directory.makeLock("commit.lock"), COMMIT_LOCK_TIMEOUT) {
@@ -473,6 +560,9 @@ public class IndexWriter {
     if (infoStream != null) infoStream.print("merging segments");
     SegmentMerger merger =
         new SegmentMerger(directory, mergedName, useCompoundFile);//如何merge
+    merger.setUseBlockPostings(useBlockPostings);
+    merger.setUseTermFST(useTermFST);
+    merger.setIndexSort(indexSort);
 
     final Vector segmentsToDelete = new Vector();//最后因为merge了,原始的segment要被删除掉
     for (int i = minSegment; i < segmentInfos.size(); i++) {//从segmentInfos队列中获取最后minSegment个segment进行merge
@@ -494,7 +584,7 @@ public class IndexWriter {
 
     segmentInfos.setSize(minSegment);          // pop old infos & add new
     segmentInfos.addElement(new SegmentInfo(mergedName, mergedDocCount,
-                                            directory));
+                                            directory, indexSort));
 
     // close readers before we attempt to delete now-obsolete segments
     merger.closeReaders();
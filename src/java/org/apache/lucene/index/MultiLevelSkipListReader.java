@@ -0,0 +1,199 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.store.InputStream;
+
+/**
+ * Reads the skip lists written by {@link MultiLevelSkipListWriter}.
+ * <p>
+ * {@link #skipTo(int)} starts on the highest level that still has an entry
+ * before the target, and descends through the child pointers, so skipping
+ * far ahead costs O(log<sub>skipInterval</sub>(df)) entry reads instead of
+ * reading all level 0 entries in between.  The level streams are cloned
+ * lazily, the first time a term is actually skipped on.
+ * <p>
+ * Indexes written before multi-level skipping have exactly one level, which
+ * this reader handles with <code>maxSkipLevels == 1</code>.
+ */
+class MultiLevelSkipListReader {
+  private int maxNumberOfSkipLevels;
+  private int numberOfSkipLevels;             // of the current term
+
+  private int docCount;                       // df of the current term
+  private boolean haveSkipped;
+
+  private InputStream[] skipStream;           // one stream per level
+  private long[] skipPointer;                 // start of each level
+  private int[] skipInterval;                 // docs between entries per level
+  private int[] numSkipped;                   // docs skipped per level
+  private int[] skipDoc;                      // doc of the current entry per level
+  private long[] childPointer;                // child of the current entry per level
+  private long[] freqPointer;
+  private long[] proxPointer;
+
+  private int lastDoc;                        // values of the last entry
+  private long lastChildPointer;              // skipped over, on any level
+  private long lastFreqPointer;
+  private long lastProxPointer;
+
+  MultiLevelSkipListReader(InputStream skipStream, int maxSkipLevels,
+                           int skipInterval) {
+    this.maxNumberOfSkipLevels = maxSkipLevels;
+    this.skipStream = new InputStream[maxSkipLevels];
+    this.skipStream[0] = skipStream;
+    this.skipPointer = new long[maxSkipLevels];
+    this.skipInterval = new int[maxSkipLevels];
+    this.numSkipped = new int[maxSkipLevels];
+    this.skipDoc = new int[maxSkipLevels];
+    this.childPointer = new long[maxSkipLevels];
+    this.freqPointer = new long[maxSkipLevels];
+    this.proxPointer = new long[maxSkipLevels];
+
+    this.skipInterval[0] = skipInterval;
+    for (int i = 1; i < maxSkipLevels; i++)
+      this.skipInterval[i] = this.skipInterval[i - 1] * skipInterval;
+  }
+
+  /** Positions this on the skip data of a new term. */
+  void init(long skipPointer, long freqBasePointer, long proxBasePointer,
+            int df) {
+    this.skipPointer[0] = skipPointer;
+    this.docCount = df;
+    Arrays.fill(skipDoc, 0);
+    Arrays.fill(numSkipped, 0);
+    Arrays.fill(childPointer, 0);
+    Arrays.fill(freqPointer, freqBasePointer);
+    Arrays.fill(proxPointer, proxBasePointer);
+    lastDoc = 0;
+    lastChildPointer = 0;
+    lastFreqPointer = freqBasePointer;
+    lastProxPointer = proxBasePointer;
+    haveSkipped = false;
+  }
+
+  /** The document of the last skip entry before the last target. */
+  int getDoc() { return lastDoc; }
+
+  /** The .frq position of the document following {@link #getDoc()}. */
+  long getFreqPointer() { return lastFreqPointer; }
+
+  /** The .prx position of the document following {@link #getDoc()}. */
+  long getProxPointer() { return lastProxPointer; }
+
+  /** Skips entries to the last one whose document is smaller than
+   * <code>target</code>.  Returns the number of postings read up to and
+   * including {@link #getDoc()}, or a negative number if no entry was
+   * skipped. */
+  int skipTo(int target) throws IOException {
+    if (!haveSkipped) {
+      loadSkipLevels();
+      haveSkipped = true;
+    }
+
+    // walk up the levels until highest level is found that has a skip
+    // for this target
+    int level = 0;
+    while (level < numberOfSkipLevels - 1 && target > skipDoc[level + 1])
+      level++;
+
+    while (level >= 0) {
+      if (target > skipDoc[level]) {
+        if (!loadNextSkip(level))
+          continue;
+      } else {
+        // no more skips on this level, go down one level
+        if (level > 0 && lastChildPointer > skipStream[level - 1].getFilePointer())
+          seekChild(level - 1);
+        level--;
+      }
+    }
+
+    return numSkipped[0] - skipInterval[0] - 1;
+  }
+
+  private boolean loadNextSkip(int level) throws IOException {
+    // we have to skip, the target document is greater than the current
+    // skip list entry
+    lastDoc = skipDoc[level];
+    lastChildPointer = childPointer[level];
+    lastFreqPointer = freqPointer[level];
+    lastProxPointer = proxPointer[level];
+
+    numSkipped[level] += skipInterval[level];
+
+    if (numSkipped[level] > docCount) {
+      // this skip list is exhausted
+      skipDoc[level] = Integer.MAX_VALUE;
+      if (numberOfSkipLevels > level) numberOfSkipLevels = level;
+      return false;
+    }
+
+    // read next skip entry
+    InputStream stream = skipStream[level];
+    skipDoc[level] += stream.readVInt();
+    freqPointer[level] += stream.readVInt();
+    proxPointer[level] += stream.readVInt();
+
+    if (level != 0) {
+      // read the child pointer if we are not on the leaf level
+      childPointer[level] = stream.readVLong() + skipPointer[level - 1];
+    }
+
+    return true;
+  }
+
+  /** Seeks the skip entry on the given level to the child of the last
+   * entry skipped on the level above. */
+  private void seekChild(int level) throws IOException {
+    skipStream[level].seek(lastChildPointer);
+    numSkipped[level] = numSkipped[level + 1] - skipInterval[level + 1];
+    skipDoc[level] = lastDoc;
+    freqPointer[level] = lastFreqPointer;
+    proxPointer[level] = lastProxPointer;
+    if (level > 0)
+      childPointer[level] = skipStream[level].readVLong() + skipPointer[level - 1];
+  }
+
+  /** Reads the level lengths and positions one stream on each level. */
+  private void loadSkipLevels() throws IOException {
+    numberOfSkipLevels =
+      MultiLevelSkipListWriter.numberOfSkipLevels(docCount, skipInterval[0],
+                                                  maxNumberOfSkipLevels);
+
+    skipStream[0].seek(skipPointer[0]);
+    for (int i = numberOfSkipLevels - 1; i > 0; i--) {
+      long length = skipStream[0].readVLong();
+      skipPointer[i] = skipStream[0].getFilePointer();
+      if (skipStream[i] == null)
+        skipStream[i] = (InputStream) skipStream[0].clone();
+      skipStream[i].seek(skipPointer[i]);
+      skipStream[0].seek(skipPointer[i] + length);
+    }
+    skipPointer[0] = skipStream[0].getFilePointer();
+  }
+
+  void close() throws IOException {
+    for (int i = 0; i < skipStream.length; i++) {
+      if (skipStream[i] != null)
+        skipStream[i].close();
+    }
+  }
+}
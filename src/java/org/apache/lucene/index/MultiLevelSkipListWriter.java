@@ -0,0 +1,152 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.OutputStream;
+import org.apache.lucene.store.RAMOutputStream;
+
+/**
+ * Writes the skip data of a postings list as a multi-level skip list into
+ * the .frq file.
+ * <p>
+ * Level 0 holds an entry for every <code>skipInterval</code>-th document of
+ * the postings, exactly as the single-level skip data of earlier formats.
+ * Level <i>i</i> holds an entry for every <code>skipInterval^(i+1)</code>-th
+ * document, followed by a pointer to the corresponding entry on level
+ * <i>i-1</i>, so that a reader can descend from the highest level to the
+ * target instead of scanning all level 0 entries:
+ * <pre>
+ * SkipData       --&gt; &lt;&lt;SkipLevelLength, SkipLevel&gt;<sup>NumSkipLevels-1</sup>, SkipLevel&gt;
+ * SkipLevel      --&gt; &lt;SkipDatum&gt;<sup>DocFreq/(SkipInterval^(Level + 1))</sup>
+ * SkipDatum      --&gt; DocSkip, FreqSkip, ProxSkip, SkipChildLevelPointer?
+ * DocSkip,FreqSkip,ProxSkip --&gt; VInt
+ * SkipLevelLength,SkipChildLevelPointer --&gt; VLong
+ * </pre>
+ * Levels are written from the highest one down; only non-empty levels are
+ * written.  The number of levels of a postings list follows from its
+ * document frequency, see {@link #numberOfSkipLevels(int, int, int)}.
+ */
+class MultiLevelSkipListWriter {
+  private int skipInterval;
+  private int maxSkipLevels;
+
+  /** One buffer for each level, written to the .frq file in
+   * {@link #writeSkip(OutputStream)}. */
+  private RAMOutputStream[] skipBuffer;
+
+  private int[] lastSkipDoc;
+  private long[] lastSkipFreqPointer;
+  private long[] lastSkipProxPointer;
+
+  private OutputStream freqOutput;
+  private OutputStream proxOutput;
+
+  MultiLevelSkipListWriter(int skipInterval, int maxSkipLevels,
+                           OutputStream freqOutput, OutputStream proxOutput) {
+    this.skipInterval = skipInterval;
+    this.maxSkipLevels = maxSkipLevels;
+    this.freqOutput = freqOutput;
+    this.proxOutput = proxOutput;
+
+    skipBuffer = new RAMOutputStream[maxSkipLevels];
+    for (int i = 0; i < maxSkipLevels; i++)
+      skipBuffer[i] = new RAMOutputStream();
+
+    lastSkipDoc = new int[maxSkipLevels];
+    lastSkipFreqPointer = new long[maxSkipLevels];
+    lastSkipProxPointer = new long[maxSkipLevels];
+  }
+
+  /** Returns the number of skip levels that a postings list with
+   * <code>df</code> documents has.  Level <i>i</i> exists iff
+   * <code>df &gt;= skipInterval^(i+1)</code>.  Computed with integer
+   * arithmetic so that writer and reader always agree. */
+  static int numberOfSkipLevels(int df, int skipInterval, int maxSkipLevels) {
+    int levels = 0;
+    long docs = skipInterval;
+    while (levels < maxSkipLevels && docs <= df) {
+      levels++;
+      docs *= skipInterval;
+    }
+    return levels;
+  }
+
+  /** Prepares for the postings of a new term. */
+  void resetSkip() throws IOException {
+    long freqPointer = freqOutput.getFilePointer();
+    long proxPointer = proxOutput.getFilePointer();
+    for (int i = 0; i < maxSkipLevels; i++) {
+      skipBuffer[i].reset();
+      lastSkipDoc[i] = 0;
+      lastSkipFreqPointer[i] = freqPointer;
+      lastSkipProxPointer[i] = proxPointer;
+    }
+  }
+
+  /**
+   * Buffers a skip entry on each level that <code>df</code> is a multiple
+   * of.  Must be called before the posting of the <code>df</code>-th
+   * document is written, with <code>lastDoc</code> being the number of the
+   * document written before it.
+   *
+   * @param df the number of documents seen so far, a multiple of skipInterval
+   * @param lastDoc the last document written
+   */
+  void bufferSkip(int df, int lastDoc) throws IOException {
+    int numLevels;
+    for (numLevels = 0; (df % skipInterval) == 0 && numLevels < maxSkipLevels;
+         df /= skipInterval)
+      numLevels++;
+
+    long freqPointer = freqOutput.getFilePointer();
+    long proxPointer = proxOutput.getFilePointer();
+
+    long childPointer = 0;
+    for (int level = 0; level < numLevels; level++) {
+      RAMOutputStream buffer = skipBuffer[level];
+      buffer.writeVInt(lastDoc - lastSkipDoc[level]);
+      buffer.writeVInt((int) (freqPointer - lastSkipFreqPointer[level]));
+      buffer.writeVInt((int) (proxPointer - lastSkipProxPointer[level]));
+
+      lastSkipDoc[level] = lastDoc;
+      lastSkipFreqPointer[level] = freqPointer;
+      lastSkipProxPointer[level] = proxPointer;
+
+      long newChildPointer = buffer.getFilePointer();
+      if (level != 0)                             // point to the entry just
+        buffer.writeVLong(childPointer);          // written on level below
+      childPointer = newChildPointer;
+    }
+  }
+
+  /** Writes the buffered skip lists to <code>output</code> and returns the
+   * position where they start. */
+  long writeSkip(OutputStream output) throws IOException {
+    long skipPointer = output.getFilePointer();
+    for (int level = maxSkipLevels - 1; level > 0; level--) {
+      long length = skipBuffer[level].getFilePointer();
+      if (length > 0) {
+        output.writeVLong(length);
+        skipBuffer[level].writeTo(output);
+      }
+    }
+    skipBuffer[0].writeTo(output);
+    return skipPointer;
+  }
+}
@@ -149,6 +149,22 @@ public class MultiReader extends IndexReader {
     return hi;
   }
 
+  public boolean hasNorms(String field) throws IOException {
+    for (int i = 0; i < subReaders.length; i++) {
+      if (subReaders[i].hasNorms(field))
+        return true;
+    }
+    return false;
+  }
+
+  public IndexReader[] getSubReaders() {
+    return (IndexReader[]) subReaders.clone();
+  }
+
+  /** Returns the norms of all sub-readers in a single array, which is
+   * cached.  Use {@link #getSubReaders()} to access the norms of each
+   * sub-reader without this copy.
+   */
   public synchronized byte[] norms(String field) throws IOException {
     byte[] bytes = (byte[])normsCache.get(field);
     if (bytes != null)
@@ -164,13 +180,25 @@ public class MultiReader extends IndexReader {
   public synchronized void norms(String field, byte[] result, int offset)
     throws IOException {
     byte[] bytes = (byte[])normsCache.get(field);
-    if (bytes != null)                            // cache hit
+    if (bytes != null) {                          // cache hit
       System.arraycopy(bytes, 0, result, offset, maxDoc());
+      return;
+    }
 
     for (int i = 0; i < subReaders.length; i++)      // read from segments
       subReaders[i].norms(field, result, offset + starts[i]);
   }
 
+  public byte maxNorm(String field) throws IOException {
+    int max = 0;
+    for (int i = 0; i < subReaders.length; i++) {
+      int norm = subReaders[i].maxNorm(field) & 0xFF;
+      if (norm > max)
+        max = norm;
+    }
+    return (byte) max;
+  }
+
   protected void doSetNorm(int n, String field, byte value)
     throws IOException {
     normsCache.remove(field);                         // clear cache
@@ -193,6 +221,51 @@ public class MultiReader extends IndexReader {
     return total;
   }
 
+  public void setTermInfosIndexDivisor(int indexDivisor) {
+    for (int i = 0; i < subReaders.length; i++)
+      subReaders[i].setTermInfosIndexDivisor(indexDivisor);
+  }
+
+  public int getTermInfosIndexDivisor() {
+    return subReaders.length == 0 ? 1 : subReaders[0].getTermInfosIndexDivisor();
+  }
+
+  public void setTermEnumPoolSize(int size) {
+    for (int i = 0; i < subReaders.length; i++)
+      subReaders[i].setTermEnumPoolSize(size);
+  }
+
+  public void setTermInfoCacheSize(int size) {
+    for (int i = 0; i < subReaders.length; i++)
+      subReaders[i].setTermInfoCacheSize(size);
+  }
+
+  public synchronized long getModificationCount() {
+    long count = super.getModificationCount();
+    for (int i = 0; i < subReaders.length; i++)
+      count += subReaders[i].getModificationCount();
+    return count;
+  }
+
+  public TermInfosStats getTermInfosStats() {
+    TermInfosStats stats = new TermInfosStats();
+    for (int i = 0; i < subReaders.length; i++)
+      stats.add(subReaders[i].getTermInfosStats());
+    return stats;
+  }
+
+  public int maxFreq(Term t) throws IOException {
+    int max = 0;
+    for (int i = 0; i < subReaders.length; i++) {
+      int freq = subReaders[i].maxFreq(t);
+      if (freq < 0)
+        return -1;                                // unknown in a segment
+      if (freq > max)
+        max = freq;
+    }
+    return max;
+  }
+
   public TermDocs termDocs() throws IOException {
     return new MultiTermDocs(subReaders, starts);
   }
@@ -0,0 +1,156 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.InputStream;
+import org.apache.lucene.store.OutputStream;
+
+/**
+ * Encodes blocks of non-negative ints with patched frame-of-reference
+ * (PFor) bit packing.
+ * <p>
+ * A block is written as:
+ * <pre>
+ * Block      --&gt; NumBits, NumExceptions, PackedValues, &lt;ExceptionIndex, ExceptionHighBits&gt;<sup>NumExceptions</sup>
+ * NumBits, NumExceptions, ExceptionIndex --&gt; Byte
+ * PackedValues --&gt; the low NumBits bits of each value, little-endian, in ceil(BlockSize*NumBits/8) bytes
+ * ExceptionHighBits --&gt; VInt, the value shifted right by NumBits
+ * </pre>
+ * NumBits is chosen to minimize the encoded size, so that a few large values
+ * are stored as exceptions instead of widening every value of the block.
+ * Decoding reads the packed values with a single {@link
+ * InputStream#readBytes(byte[], int, int)} instead of one readVInt() per
+ * value.  Blocks may have at most 255 values.
+ */
+final class PForCodec {
+
+  private PForCodec() {}
+
+  /** Returns the size of the scratch buffer needed for blocks of
+   * <code>blockSize</code> values. */
+  static int scratchSize(int blockSize) {
+    return blockSize * 4;
+  }
+
+  /** Returns the number of bits needed to represent <code>value</code>. */
+  static int bitsRequired(int value) {
+    int bits = 0;
+    while (value != 0) {
+      value >>>= 1;
+      bits++;
+    }
+    return bits;
+  }
+
+  /** Writes the first <code>n</code> entries of <code>values</code> as one
+   * block. */
+  static void encode(int[] values, int n, OutputStream out, byte[] scratch)
+    throws IOException {
+    // histogram of the bit lengths of the values
+    int[] counts = new int[33];
+    for (int i = 0; i < n; i++)
+      counts[bitsRequired(values[i])]++;
+
+    // choose the number of bits that gives the smallest block
+    int numBits = 32;
+    int bestSize = Integer.MAX_VALUE;
+    for (int b = 0; b <= 32; b++) {
+      int size = (n * b + 7) >>> 3;
+      int exceptions = 0;
+      for (int len = b + 1; len <= 32; len++) {
+        exceptions += counts[len];
+        size += counts[len] * (1 + (len - b + 6) / 7);
+      }
+      if (exceptions <= 255 && size < bestSize) {
+        bestSize = size;
+        numBits = b;
+      }
+    }
+
+    int numExceptions = 0;
+    for (int len = numBits + 1; len <= 32; len++)
+      numExceptions += counts[len];
+
+    out.writeByte((byte) numBits);
+    out.writeByte((byte) numExceptions);
+
+    // pack the low bits of all values
+    int numBytes = (n * numBits + 7) >>> 3;
+    long mask = (1L << numBits) - 1;
+    long acc = 0;
+    int accBits = 0;
+    int p = 0;
+    for (int i = 0; i < n; i++) {
+      acc |= (values[i] & mask) << accBits;
+      accBits += numBits;
+      while (accBits >= 8) {
+        scratch[p++] = (byte) acc;
+        acc >>>= 8;
+        accBits -= 8;
+      }
+    }
+    if (accBits > 0)
+      scratch[p++] = (byte) acc;
+    out.writeBytes(scratch, numBytes);
+
+    // patch in the high bits of the exceptions
+    if (numExceptions > 0) {
+      for (int i = 0; i < n; i++) {
+        if (bitsRequired(values[i]) > numBits) {
+          out.writeByte((byte) i);
+          out.writeVInt(values[i] >>> numBits);
+        }
+      }
+    }
+  }
+
+  /** Reads one block of <code>n</code> values into <code>values</code>. */
+  static void decode(InputStream in, int[] values, int n, byte[] scratch)
+    throws IOException {
+    int numBits = in.readByte() & 0xFF;
+    int numExceptions = in.readByte() & 0xFF;
+
+    if (numBits == 0) {
+      for (int i = 0; i < n; i++)
+        values[i] = 0;
+    } else {
+      int numBytes = (n * numBits + 7) >>> 3;
+      in.readBytes(scratch, 0, numBytes);
+
+      long mask = (1L << numBits) - 1;
+      long acc = 0;
+      int accBits = 0;
+      int p = 0;
+      for (int i = 0; i < n; i++) {
+        while (accBits < numBits) {
+          acc |= ((long) (scratch[p++] & 0xFF)) << accBits;
+          accBits += 8;
+        }
+        values[i] = (int) (acc & mask);
+        acc >>>= numBits;
+        accBits -= numBits;
+      }
+    }
+
+    for (int i = 0; i < numExceptions; i++) {
+      int index = in.readByte() & 0xFF;
+      values[index] |= in.readVInt() << numBits;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/** Expert: Counts the bytes of postings, that is of document numbers,
+ * frequencies and positions, read through the {@link TermDocs} and {@link
+ * TermPositions} of segments that a thread opens while the counter is
+ * installed for it.  Bytes are counted when an enumeration is repositioned,
+ * closed or exhausted, and after each {@link TermDocs#read(int[],int[])};
+ * the bytes passed over by {@link TermDocs#skipTo(int)} are not counted.
+ * Enumerations opened while no counter is installed count nothing.
+ *
+ * <p>A counter is not synchronized, so the enumerations it counts should be
+ * used by one thread at a time.
+ */
+public final class PostingsCounter {
+  private static final ThreadLocal installed = new ThreadLocal();
+
+  private long bytesRead;
+
+  /** Counts the bytes read through the enumerations that the current thread
+   * opens from now on, until {@link #uninstall()}. */
+  public void install() {
+    installed.set(this);
+  }
+
+  /** Stops counting the enumerations that the current thread opens.  Those
+   * already opened go on being counted. */
+  public void uninstall() {
+    if (installed.get() == this)
+      installed.set(null);
+  }
+
+  /** Returns the bytes of postings counted so far. */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /** Returns the counter installed for the current thread, or null. */
+  static PostingsCounter current() {
+    return (PostingsCounter) installed.get();
+  }
+
+  void add(long bytes) {
+    bytesRead += bytes;
+  }
+}
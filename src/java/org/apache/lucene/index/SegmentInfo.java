@@ -17,16 +17,24 @@ package org.apache.lucene.index;
  */
 
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.search.SortField;
 
 //记录一个段落,里面有若干个doc文档集合的汇总
 final class SegmentInfo {
   public String name;				  // unique name in dir
   public int docCount;				  // number of docs in seg  有多少个文档在这个段里面
   public Directory dir;				  // where segment resides
+  public SortField indexSort;			  // order of docs, or null
 
   public SegmentInfo(String name, int docCount, Directory dir) {
+    this(name, docCount, dir, null);
+  }
+
+  public SegmentInfo(String name, int docCount, Directory dir,
+                     SortField indexSort) {
     this.name = name;
     this.docCount = docCount;
     this.dir = dir;
+    this.indexSort = indexSort;
   }
 }
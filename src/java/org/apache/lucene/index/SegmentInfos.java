@@ -21,13 +21,17 @@ import java.io.IOException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.InputStream;
 import org.apache.lucene.store.OutputStream;
+import org.apache.lucene.search.SortField;
 
 //描述一个索引中所有的segment集合---包括下一个segment的id序号、每一个segment的name和包含的doc个数
 final class SegmentInfos extends Vector {
   
   /** The file format version, a negative number. */
   /* Works since counter, the old 1st entry, is always >= 0 */
-  public static final int FORMAT = -1;
+  public static final int FORMAT = -2;
+
+  /** The format before segments recorded the order of their documents. */
+  private static final int UNSORTED_FORMAT = -1;
   
   public int counter = 0;    // used to name new segments 下一次segment的序号,其实完全可以使用size去确定,但是他记录了一个也还可以
   private long version = 0; //counts how often the index has been changed by adding or deleting docs
@@ -55,6 +59,11 @@ final class SegmentInfos extends Vector {
       for (int i = input.readInt(); i > 0; i--) { // read segmentInfos
         SegmentInfo si =
           new SegmentInfo(input.readString(), input.readInt(), directory);
+        if (format < UNSORTED_FORMAT && input.readByte() == 1) {
+          String field = input.readString();
+          int type = input.readInt();
+          si.indexSort = new SortField(field, type, input.readByte() == 1);
+        }
         addElement(si);
       }
       
@@ -81,6 +90,14 @@ final class SegmentInfos extends Vector {
         SegmentInfo si = info(i);
         output.writeString(si.name);//segment的name
         output.writeInt(si.docCount);//segment中有多少个文档
+        if (si.indexSort == null) {
+          output.writeByte((byte) 0);
+        } else {                                  // docs sorted by a field
+          output.writeByte((byte) 1);
+          output.writeString(si.indexSort.getField());
+          output.writeInt(si.indexSort.getType());
+          output.writeByte((byte) (si.indexSort.getReverse() ? 1 : 0));
+        }
       }         
     }
     finally {
@@ -18,12 +18,15 @@ package org.apache.lucene.index;
 
 import java.util.Vector;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.io.IOException;
 
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.OutputStream;
-import org.apache.lucene.store.RAMOutputStream;
+import org.apache.lucene.search.SortField;
 
 /**
  * The SegmentMerger class combines two or more Segments, represented by an IndexReader ({@link #add},
@@ -38,6 +41,9 @@ import org.apache.lucene.store.RAMOutputStream;
  */
 final class SegmentMerger {
   private boolean useCompoundFile;
+  private boolean useBlockPostings = false;
+  private boolean useTermFST = false;
+  private SortField indexSort = null;
   private Directory directory;
   private String segment;
 
@@ -64,6 +70,32 @@ final class SegmentMerger {
     useCompoundFile = compoundFile;
   }
 
+  /**
+   * Sets whether the postings of the new segment are written in PFor encoded
+   * blocks instead of one VInt per document and frequency.
+   * @see IndexWriter#setUseBlockPostings(boolean)
+   */
+  final void setUseBlockPostings(boolean value) {
+    useBlockPostings = value;
+  }
+
+  /**
+   * Sets whether the new segment gets a .fst file for term lookups.
+   * @see IndexWriter#setUseTermFST(boolean)
+   */
+  final void setUseTermFST(boolean value) {
+    useTermFST = value;
+  }
+
+  /**
+   * Sets the field by which the documents of the new segment are sorted, or
+   * null to keep them in the order of the readers.
+   * @see IndexWriter#setIndexSort(SortField)
+   */
+  final void setIndexSort(SortField sort) {
+    indexSort = sort;
+  }
+
   /**
    * Add an IndexReader to the collection of readers that are to be merged
    * @param reader
@@ -89,6 +121,8 @@ final class SegmentMerger {
   final int merge() throws IOException {
     int value;
     
+    if (indexSort != null)
+      sortDocs();
     value = mergeFields();
     mergeTerms();
     mergeNorms();
@@ -102,6 +136,136 @@ final class SegmentMerger {
     return value;
   }
   
+  // when sorting, the reader and number of each doc of the new segment, and
+  // the new number of each doc of each reader, or -1 if it is deleted
+  private int[] readerOf;
+  private int[] docOf;
+  private int[][] docMaps;
+
+  /**
+   * Orders the documents of all readers by {@link #indexSort}, keeping the
+   * order of the readers for equal values.
+   * @throws IOException
+   */
+  private final void sortDocs() throws IOException {
+    int numDocs = 0;
+    for (int i = 0; i < readers.size(); i++)
+      numDocs += segmentReader(i).numDocs();
+    readerOf = new int[numDocs];
+    docOf = new int[numDocs];
+
+    final String field = indexSort.getField().intern();
+    final int type = indexSort.getType();
+    final int[] ints = type == SortField.INT ? new int[numDocs] : null;
+    final float[] floats = type == SortField.FLOAT ? new float[numDocs] : null;
+    final String[] strings = type == SortField.STRING ? new String[numDocs] : null;
+    int base = 0;
+    for (int i = 0; i < readers.size(); i++) {
+      IndexReader reader = segmentReader(i);
+      int[] docMap = new int[reader.maxDoc()];    // to the merged space
+      for (int j = 0, n = 0; j < docMap.length; j++) {
+        if (reader.isDeleted(j)) {
+          docMap[j] = -1;
+        } else {
+          readerOf[base + n] = i;
+          docOf[base + n] = j;
+          docMap[j] = base + n++;
+        }
+      }
+      loadValues(reader, field, docMap, ints, floats, strings);
+      base += reader.numDocs();
+    }
+
+    Integer[] order = new Integer[numDocs];
+    for (int i = 0; i < numDocs; i++)
+      order[i] = new Integer(i);
+    final boolean reverse = indexSort.getReverse();
+    Arrays.sort(order, new Comparator() {         // stable
+        public int compare(Object a, Object b) {
+          int i = ((Integer) a).intValue();
+          int j = ((Integer) b).intValue();
+          int c;
+          if (ints != null) {
+            c = ints[i] < ints[j] ? -1 : (ints[i] > ints[j] ? 1 : 0);
+          } else if (floats != null) {
+            c = floats[i] < floats[j] ? -1 : (floats[i] > floats[j] ? 1 : 0);
+          } else if (strings[i] == null) {        // missing values sort first
+            c = strings[j] == null ? 0 : -1;
+          } else {
+            c = strings[j] == null ? 1 : strings[i].compareTo(strings[j]);
+          }
+          return reverse ? -c : c;
+        }
+      });
+
+    int[] oldReaderOf = readerOf;
+    int[] oldDocOf = docOf;
+    readerOf = new int[numDocs];
+    docOf = new int[numDocs];
+    docMaps = new int[readers.size()][];
+    for (int i = 0; i < docMaps.length; i++) {
+      docMaps[i] = new int[segmentReader(i).maxDoc()];
+      Arrays.fill(docMaps[i], -1);
+    }
+    for (int i = 0; i < numDocs; i++) {
+      int old = order[i].intValue();
+      readerOf[i] = oldReaderOf[old];
+      docOf[i] = oldDocOf[old];
+      docMaps[readerOf[i]][docOf[i]] = i;
+    }
+  }
+
+  /**
+   * Reads the values of <code>field</code> in <code>reader</code> into
+   * whichever of the arrays is not null, at the positions
+   * <code>docMap</code> gives, as {@link
+   * org.apache.lucene.search.FieldCache} would: where a document has
+   * several terms, the last one wins.  Terms which are not numbers are
+   * skipped when reading numbers, so that documents having them sort as if
+   * they had no value, rather than failing this merge and all those after
+   * it.
+   */
+  private static void loadValues(IndexReader reader, String field,
+                                 int[] docMap, int[] ints, float[] floats,
+                                 String[] strings)
+    throws IOException {
+    TermDocs termDocs = reader.termDocs();
+    TermEnum termEnum = reader.terms(new Term(field, ""));
+    try {
+      do {
+        Term term = termEnum.term();
+        if (term == null || term.field() != field)
+          break;
+        String text = term.text();
+        int intValue = 0;
+        float floatValue = 0.0f;
+        try {
+          if (ints != null)
+            intValue = Integer.parseInt(text);
+          else if (floats != null)
+            floatValue = Float.parseFloat(text);
+        } catch (NumberFormatException e) {
+          continue;                               // as if missing
+        }
+        termDocs.seek(termEnum);
+        while (termDocs.next()) {
+          int doc = docMap[termDocs.doc()];
+          if (doc < 0)
+            continue;
+          if (ints != null)
+            ints[doc] = intValue;
+          else if (floats != null)
+            floats[doc] = floatValue;
+          else
+            strings[doc] = text;
+        }
+      } while (termEnum.next());
+    } finally {
+      termDocs.close();
+      termEnum.close();
+    }
+  }
+
   /**
    * close all IndexReaders that have been added.
    * Should not be called before merge().
@@ -126,11 +290,13 @@ final class SegmentMerger {
     for (int i = 0; i < COMPOUND_EXTENSIONS.length; i++) {
       files.add(segment + "." + COMPOUND_EXTENSIONS[i]);
     }
+    if (useTermFST)
+      files.add(segment + ".fst");
 
     // Field norm files
     for (int i = 0; i < fieldInfos.size(); i++) {
       FieldInfo fi = fieldInfos.fieldInfo(i);
-      if (fi.isIndexed) {
+      if (fi.hasNorms()) {
         files.add(segment + ".f" + i);
       }
     }
@@ -168,8 +334,8 @@ final class SegmentMerger {
     int docCount = 0;
     for (int i = 0; i < readers.size(); i++) {
       IndexReader reader = (IndexReader) readers.elementAt(i);
-      fieldInfos.addIndexed(reader.getIndexedFieldNames(true), true);
-      fieldInfos.addIndexed(reader.getIndexedFieldNames(false), false);
+      addIndexed(reader, reader.getIndexedFieldNames(true), true);
+      addIndexed(reader, reader.getIndexedFieldNames(false), false);
       fieldInfos.add(reader.getFieldNames(false), false);
     }
     fieldInfos.write(directory, segment + ".fnm");
@@ -177,14 +343,20 @@ final class SegmentMerger {
     FieldsWriter fieldsWriter = // merge field values
             new FieldsWriter(directory, segment, fieldInfos);
     try {
-      for (int i = 0; i < readers.size(); i++) {
-        IndexReader reader = (IndexReader) readers.elementAt(i);
-        int maxDoc = reader.maxDoc();
-        for (int j = 0; j < maxDoc; j++)
-          if (!reader.isDeleted(j)) {               // skip deleted docs
-            fieldsWriter.addDocument(reader.document(j));
-            docCount++;
-          }
+      if (indexSort != null) {
+        for (; docCount < readerOf.length; docCount++)
+          fieldsWriter.addDocument
+            (segmentReader(readerOf[docCount]).document(docOf[docCount]));
+      } else {
+        for (int i = 0; i < readers.size(); i++) {
+          IndexReader reader = (IndexReader) readers.elementAt(i);
+          int maxDoc = reader.maxDoc();
+          for (int j = 0; j < maxDoc; j++)
+            if (!reader.isDeleted(j)) {             // skip deleted docs
+              fieldsWriter.addDocument(reader.document(j));
+              docCount++;
+            }
+        }
       }
     } finally {
       fieldsWriter.close();
@@ -192,6 +364,15 @@ final class SegmentMerger {
     return docCount;
   }
 
+  private void addIndexed(IndexReader reader, Collection names,
+                          boolean storeTermVectors) throws IOException {
+    Iterator i = names.iterator();
+    while (i.hasNext()) {
+      String field = (String) i.next();
+      fieldInfos.add(field, true, storeTermVectors, !reader.hasNorms(field));
+    }
+  }
+
   /**
    * Merge the TermVectors from each of the segments into the new one.
    * @throws IOException
@@ -201,33 +382,19 @@ final class SegmentMerger {
       new TermVectorsWriter(directory, segment, fieldInfos);
 
     try {
-      for (int r = 0; r < readers.size(); r++) {
-        IndexReader reader = (IndexReader) readers.elementAt(r);
-        int maxDoc = reader.maxDoc();
-        for (int docNum = 0; docNum < maxDoc; docNum++) {
-          // skip deleted docs
-          if (reader.isDeleted(docNum)) {
-            continue;
-          }
-          termVectorsWriter.openDocument();
-
-          // get all term vectors
-          TermFreqVector[] sourceTermVector =
-            reader.getTermFreqVectors(docNum);
-
-          if (sourceTermVector != null) {
-            for (int f = 0; f < sourceTermVector.length; f++) {
-              // translate field numbers
-              TermFreqVector termVector = sourceTermVector[f];
-              termVectorsWriter.openField(termVector.getField());
-              String [] terms = termVector.getTerms();
-              int [] freqs = termVector.getTermFrequencies();
-              
-              for (int t = 0; t < terms.length; t++) {
-                termVectorsWriter.addTerm(terms[t], freqs[t]);
-              }
+      if (indexSort != null) {
+        for (int i = 0; i < readerOf.length; i++)
+          mergeVectors(termVectorsWriter, segmentReader(readerOf[i]), docOf[i]);
+      } else {
+        for (int r = 0; r < readers.size(); r++) {
+          IndexReader reader = (IndexReader) readers.elementAt(r);
+          int maxDoc = reader.maxDoc();
+          for (int docNum = 0; docNum < maxDoc; docNum++) {
+            // skip deleted docs
+            if (reader.isDeleted(docNum)) {
+              continue;
             }
-            termVectorsWriter.closeDocument();
+            mergeVectors(termVectorsWriter, reader, docNum);
           }
         }
       }
@@ -236,10 +403,40 @@ final class SegmentMerger {
     }
   }
 
+  private final void mergeVectors(TermVectorsWriter termVectorsWriter,
+                                  IndexReader reader, int docNum)
+    throws IOException {
+    termVectorsWriter.openDocument();
+
+    // get all term vectors
+    TermFreqVector[] sourceTermVector =
+      reader.getTermFreqVectors(docNum);
+
+    if (sourceTermVector != null) {
+      for (int f = 0; f < sourceTermVector.length; f++) {
+        // translate field numbers
+        TermFreqVector termVector = sourceTermVector[f];
+        termVectorsWriter.openField(termVector.getField());
+        String [] terms = termVector.getTerms();
+        int [] freqs = termVector.getTermFrequencies();
+
+        for (int t = 0; t < terms.length; t++) {
+          termVectorsWriter.addTerm(terms[t], freqs[t]);
+        }
+      }
+      termVectorsWriter.closeDocument();
+    }
+  }
+
   private OutputStream freqOutput = null;
   private OutputStream proxOutput = null;
   private TermInfosWriter termInfosWriter = null;
   private int skipInterval;
+  private MultiLevelSkipListWriter skipListWriter = null;
+  private int blockSize;                          // 0 for VInt postings
+  private int[] docDeltaBuffer;                   // doc deltas of the current block
+  private int[] freqBuffer;                       // freq-1 of the current block
+  private byte[] blockScratch;
   private SegmentMergeQueue queue = null;
 
   private final void mergeTerms() throws IOException {
@@ -247,8 +444,19 @@ final class SegmentMerger {
       freqOutput = directory.createFile(segment + ".frq");
       proxOutput = directory.createFile(segment + ".prx");
       termInfosWriter =
-              new TermInfosWriter(directory, segment, fieldInfos);
+              new TermInfosWriter(directory, segment, fieldInfos,
+                                  useBlockPostings ? TermInfosWriter.POSTINGS_BLOCK_SIZE : 0,
+                                  useTermFST);
       skipInterval = termInfosWriter.skipInterval;
+      blockSize = termInfosWriter.postingsBlockSize;
+      if (blockSize > 0) {
+        docDeltaBuffer = new int[blockSize];
+        freqBuffer = new int[blockSize];
+        blockScratch = new byte[PForCodec.scratchSize(blockSize)];
+      }
+      skipListWriter = new MultiLevelSkipListWriter(skipInterval,
+                                                    termInfosWriter.maxSkipLevels,
+                                                    freqOutput, proxOutput);
       queue = new SegmentMergeQueue(readers.size());
 
       mergeTermInfos();
@@ -268,6 +476,10 @@ final class SegmentMerger {
       TermEnum termEnum = reader.terms();
       SegmentMergeInfo smi = new SegmentMergeInfo(base, termEnum, reader);
       base += reader.numDocs();
+      if (indexSort != null) {                    // map into the sorted order
+        smi.docMap = docMaps[i];
+        smi.base = 0;
+      }
       if (smi.next())
         queue.put(smi);				  // initialize queue
       else
@@ -300,6 +512,7 @@ final class SegmentMerger {
   }
 
   private final TermInfo termInfo = new TermInfo(); // minimize consing
+  private int maxFreq;                              // of the last appended term
 
   /** Merge one term found in one or more segments. The array <code>smis</code>
    *  contains segments that are positioned at the same term. <code>N</code>
@@ -315,11 +528,12 @@ final class SegmentMerger {
 
     int df = appendPostings(smis, n);		  // append posting data 表示追加了多少个doc,即该term存在于多少个doc中
 
-    long skipPointer = writeSkip();//返回跳跃表的内容的开始位置
+    long skipPointer = skipListWriter.writeSkip(freqOutput);//返回跳跃表的内容的开始位置
 
     if (df > 0) {
       // add an entry to the dictionary with pointers to prox and freq files
       termInfo.set(df, freqPointer, proxPointer, (int) (skipPointer - freqPointer));//将term的信息写入到输出流中
+      termInfo.maxFreq = maxFreq;
       termInfosWriter.add(smis[0].term, termInfo);//存储该term 以及该term对应的info信息
     }
   }
@@ -334,100 +548,184 @@ final class SegmentMerger {
    */
   private final int appendPostings(SegmentMergeInfo[] smis, int n)
           throws IOException {
-    int lastDoc = 0;
-    int df = 0;					  // number of docs w/ term  出现在多少个doc中
-    resetSkip();
-    for (int i = 0; i < n; i++) {
-      SegmentMergeInfo smi = smis[i];
-      TermPositions postings = smi.postings;//每一个term出现的位置
-      int base = smi.base;
-      int[] docMap = smi.docMap;
-      postings.seek(smi.termEnum);//定位到该term
-      while (postings.next()) {//返回该term出现在该doc中的位置
-        int doc = postings.doc();
-        if (docMap != null)
-          doc = docMap[doc];                      // map around deletions 返回该doc在该segment的序号
-        doc += base;                              // convert to merged space  返回merge后的序号
-
-        if (doc < lastDoc)
-          throw new IllegalStateException("docs out of order");
-
-        df++;//说明doc累加1
-
-        if ((df % skipInterval) == 0) {//设置一个跳跃位
-          bufferSkip(lastDoc);
+    lastDoc = 0;
+    df = 0;
+    maxFreq = 0;
+    skipListWriter.resetSkip();
+    if (indexSort != null) {
+      appendSortedPostings(smis, n);
+    } else {
+      for (int i = 0; i < n; i++) {
+        SegmentMergeInfo smi = smis[i];
+        TermPositions postings = smi.postings;//每一个term出现的位置
+        int base = smi.base;
+        int[] docMap = smi.docMap;
+        postings.seek(smi.termEnum);//定位到该term
+        while (postings.next()) {//返回该term出现在该doc中的位置
+          int doc = postings.doc();
+          if (docMap != null)
+            doc = docMap[doc];                    // map around deletions 返回该doc在该segment的序号
+          doc += base;                            // convert to merged space  返回merge后的序号
+
+          int freq = postings.freq();//词频
+          if (positions.length < freq)
+            positions = new int[Math.max(freq, positions.length * 2)];
+          for (int j = 0; j < freq; j++)
+            positions[j] = postings.nextPosition();
+          appendDoc(doc, freq, positions, 0);
         }
+      }
+    }
 
-        int docCode = (doc - lastDoc) << 1;	  // use low bit to flag freq=1  该docid
-        lastDoc = doc;
-
-        int freq = postings.freq();//词频
-        //记录每一个docid以及词频
+    if (blockSize > 0) {                          // the last partial block
+      int remaining = df % blockSize;             // is written as VInts
+      for (int i = 0; i < remaining; i++) {
+        int docCode = docDeltaBuffer[i] << 1;
+        int freq = freqBuffer[i] + 1;
         if (freq == 1) {
-          freqOutput.writeVInt(docCode | 1);	  // write doc & freq=1
+          freqOutput.writeVInt(docCode | 1);
         } else {
-          freqOutput.writeVInt(docCode);	  // write doc
-          freqOutput.writeVInt(freq);		  // write frequency in doc
-        }
-
-        //记录每一个term出现的位置
-        int lastPosition = 0;			  // write position deltas
-        for (int j = 0; j < freq; j++) {
-          int position = postings.nextPosition();
-          proxOutput.writeVInt(position - lastPosition);
-          lastPosition = position;
+          freqOutput.writeVInt(docCode);
+          freqOutput.writeVInt(freq);
         }
       }
     }
     return df;
   }
 
-  private RAMOutputStream skipBuffer = new RAMOutputStream();
-  private int lastSkipDoc;
-  private long lastSkipFreqPointer;
-  private long lastSkipProxPointer;
+  private int lastDoc;                            // of the current term
+  private int df;				  // number of docs w/ term  出现在多少个doc中
+  private int[] positions = new int[16];          // of the current doc
+
+  /** Appends a document of the current term, which must come after those
+   * appended before, with the <code>freq</code> positions from
+   * <code>offset</code> in <code>positions</code>. */
+  private final void appendDoc(int doc, int freq, int[] positions, int offset)
+          throws IOException {
+    if (doc < lastDoc)
+      throw new IllegalStateException("docs out of order");
+
+    df++;//说明doc累加1
+
+    if (freq > maxFreq)
+      maxFreq = freq;
+    if (blockSize > 0) {
+      // buffer the doc delta and freq, a full block is written below,
+      // after the positions of its last document
+      docDeltaBuffer[(df - 1) % blockSize] = doc - lastDoc;
+      freqBuffer[(df - 1) % blockSize] = freq - 1;
+      lastDoc = doc;
+    } else {
+      if ((df % skipInterval) == 0) {//设置一个跳跃位
+        skipListWriter.bufferSkip(df, lastDoc);
+      }
+
+      int docCode = (doc - lastDoc) << 1;	  // use low bit to flag freq=1  该docid
+      lastDoc = doc;
+
+      //记录每一个docid以及词频
+      if (freq == 1) {
+        freqOutput.writeVInt(docCode | 1);	  // write doc & freq=1
+      } else {
+        freqOutput.writeVInt(docCode);	  // write doc
+        freqOutput.writeVInt(freq);		  // write frequency in doc
+      }
+    }
+
+    //记录每一个term出现的位置
+    int lastPosition = 0;			  // write position deltas
+    for (int j = offset; j < offset + freq; j++) {
+      proxOutput.writeVInt(positions[j] - lastPosition);
+      lastPosition = positions[j];
+    }
 
-  private void resetSkip() throws IOException {
-    skipBuffer.reset();
-    lastSkipDoc = 0;
-    lastSkipFreqPointer = freqOutput.getFilePointer();
-    lastSkipProxPointer = proxOutput.getFilePointer();
+    if (blockSize > 0 && (df % blockSize) == 0) {
+      PForCodec.encode(docDeltaBuffer, blockSize, freqOutput, blockScratch);
+      PForCodec.encode(freqBuffer, blockSize, freqOutput, blockScratch);
+      skipListWriter.bufferSkip(df, lastDoc);  // skip to after this block
+    }
   }
 
-  //记录每一次跳跃表所在的内容---docid、词频文件位置、词频位置内容
-  private void bufferSkip(int doc) throws IOException {
-    long freqPointer = freqOutput.getFilePointer();//获取此时的词频以及docid内容
-    long proxPointer = proxOutput.getFilePointer();//获取词位置内容
+  private int[] sortedDocs = new int[16];         // postings of the current
+  private int[] sortedFreqs = new int[16];        // term, in the order of the
+  private int[] sortedStarts = new int[16];       // readers
+  private int[] sortedPositions = new int[64];
+  private long[] sortedOrder = new long[16];
 
-    skipBuffer.writeVInt(doc - lastSkipDoc);//存储docid
-    skipBuffer.writeVInt((int) (freqPointer - lastSkipFreqPointer));
-    skipBuffer.writeVInt((int) (proxPointer - lastSkipProxPointer));
+  /** Appends the postings of a term, whose document numbers are mapped
+   * into the sorted order, and so come out of order, by buffering them and
+   * sorting them by their new numbers. */
+  private final void appendSortedPostings(SegmentMergeInfo[] smis, int n)
+          throws IOException {
+    int count = 0;
+    int numPositions = 0;
+    for (int i = 0; i < n; i++) {
+      SegmentMergeInfo smi = smis[i];
+      TermPositions postings = smi.postings;
+      int[] docMap = smi.docMap;
+      postings.seek(smi.termEnum);
+      while (postings.next()) {
+        int doc = docMap[postings.doc()];
+        if (doc < 0)
+          continue;                               // deleted
+        int freq = postings.freq();
+        if (count == sortedDocs.length) {
+          sortedDocs = grow(sortedDocs, count + 1);
+          sortedFreqs = grow(sortedFreqs, count + 1);
+          sortedStarts = grow(sortedStarts, count + 1);
+        }
+        if (sortedPositions.length < numPositions + freq)
+          sortedPositions = grow(sortedPositions, numPositions + freq);
+        sortedDocs[count] = doc;
+        sortedFreqs[count] = freq;
+        sortedStarts[count] = numPositions;
+        for (int j = 0; j < freq; j++)
+          sortedPositions[numPositions++] = postings.nextPosition();
+        count++;
+      }
+    }
 
-    lastSkipDoc = doc;
-    lastSkipFreqPointer = freqPointer;
-    lastSkipProxPointer = proxPointer;
+    if (sortedOrder.length < count)
+      sortedOrder = new long[sortedDocs.length];
+    for (int i = 0; i < count; i++)               // new doc, then index
+      sortedOrder[i] = ((long) sortedDocs[i] << 32) | i;
+    Arrays.sort(sortedOrder, 0, count);
+    for (int i = 0; i < count; i++) {
+      int j = (int) sortedOrder[i];
+      appendDoc(sortedDocs[j], sortedFreqs[j], sortedPositions, sortedStarts[j]);
+    }
   }
 
-  private long writeSkip() throws IOException {
-    long skipPointer = freqOutput.getFilePointer();
-    skipBuffer.writeTo(freqOutput);//将跳跃表内容输出到词频文件中
-    return skipPointer;
+  private static int[] grow(int[] array, int minSize) {
+    int[] result = new int[Math.max(minSize, array.length * 2)];
+    System.arraycopy(array, 0, result, 0, array.length);
+    return result;
   }
 
   private void mergeNorms() throws IOException {
     for (int i = 0; i < fieldInfos.size(); i++) {
       FieldInfo fi = fieldInfos.fieldInfo(i);
-      if (fi.isIndexed) {
+      if (fi.hasNorms()) {
         OutputStream output = directory.createFile(segment + ".f" + i);
         try {
-          for (int j = 0; j < readers.size(); j++) {
-            IndexReader reader = (IndexReader) readers.elementAt(j);
-            byte[] input = reader.norms(fi.name);
-            int maxDoc = reader.maxDoc();
-            for (int k = 0; k < maxDoc; k++) {
-              byte norm = input != null ? input[k] : (byte) 0;
-              if (!reader.isDeleted(k)) {
-                output.writeByte(norm);
+          if (indexSort != null) {
+            byte[][] inputs = new byte[readers.size()][];
+            for (int j = 0; j < readers.size(); j++)
+              inputs[j] = segmentReader(j).norms(fi.name);
+            for (int k = 0; k < readerOf.length; k++) {
+              byte[] input = inputs[readerOf[k]];
+              output.writeByte(input != null ? input[docOf[k]] : (byte) 0);
+            }
+          } else {
+            for (int j = 0; j < readers.size(); j++) {
+              IndexReader reader = (IndexReader) readers.elementAt(j);
+              byte[] input = reader.norms(fi.name);
+              int maxDoc = reader.maxDoc();
+              for (int k = 0; k < maxDoc; k++) {
+                byte norm = input != null ? input[k] : (byte) 0;
+                if (!reader.isDeleted(k)) {
+                  output.writeByte(norm);
+                }
               }
             }
           }
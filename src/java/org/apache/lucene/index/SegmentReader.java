@@ -17,6 +17,7 @@ package org.apache.lucene.index;
  */
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -25,9 +26,12 @@ import java.util.Set;
 import java.util.Vector;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.store.InputStream;
 import org.apache.lucene.store.OutputStream;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.StatsDirectory;
 import org.apache.lucene.util.BitVector;
 
 /**
@@ -38,6 +42,7 @@ import org.apache.lucene.util.BitVector;
  */
 final class SegmentReader extends IndexReader {
   private String segment;
+  private SortField indexSort;
 
   FieldInfos fieldInfos;
   private FieldsReader fieldsReader;
@@ -49,6 +54,8 @@ final class SegmentReader extends IndexReader {
   private boolean deletedDocsDirty = false;
   private boolean normsDirty = false;
   private boolean undeleteAll = false;
+  private volatile Object fieldCacheKey = new Object(); // maybe shared
+  private long modified;                          // of the segment's files
 
   InputStream freqStream;
   InputStream proxStream;
@@ -65,10 +72,49 @@ final class SegmentReader extends IndexReader {
 
     private InputStream in;
     private byte[] bytes;
+    private int max = -1;                         // unsigned, -1 until computed
     private boolean dirty;
     private int number;
 
-    private void reWrite() throws IOException {
+    /** Returns the norms, which are read on first use and then shared. */
+    private synchronized byte[] bytes() throws IOException {
+      if (bytes == null) {                        // value not yet read
+        byte[] b = new byte[maxDoc()];
+        read(b, 0);
+        bytes = b;                                // cache it
+      }
+      return bytes;
+    }
+
+    private synchronized void read(byte[] b, int offset) throws IOException {
+      if (bytes != null) {                        // can copy from cache
+        System.arraycopy(bytes, 0, b, offset, maxDoc());
+        return;
+      }
+
+      InputStream normStream = (InputStream) in.clone();
+      try {                                       // read from disk
+        normStream.seek(0);
+        normStream.readBytes(b, offset, maxDoc());
+      } finally {
+        normStream.close();
+      }
+    }
+
+    private synchronized int max() throws IOException {
+      if (max < 0)
+        max = maxNorm(bytes()) & 0xFF;
+      return max;
+    }
+
+    private synchronized void set(int doc, byte value) throws IOException {
+      bytes()[doc] = value;                       // set the value
+      dirty = true;                               // mark it dirty
+      if (max >= 0 && (value & 0xFF) > max)
+        max = value & 0xFF;                       // keep the bound valid
+    }
+
+    private synchronized void reWrite() throws IOException {
       // NOTE: norms are re-written in regular directory, not cfs
       OutputStream out = directory().createFile(segment + ".tmp");
       try {
@@ -98,14 +144,25 @@ final class SegmentReader extends IndexReader {
    private void initialize(SegmentInfo si) throws IOException
    {
     segment = si.name;
+    indexSort = si.indexSort;
 
     // Use compound file directory for some files, if it exists
     Directory cfsDir = directory();
     if (directory().fileExists(segment + ".cfs")) {
-      cfsReader = new CompoundFileReader(directory(), segment + ".cfs");
-      cfsDir = cfsReader;
+      if (directory() instanceof StatsDirectory) {
+        // count the files inside by their own extensions, not as cfs
+        StatsDirectory stats = (StatsDirectory) directory();
+        cfsReader = new CompoundFileReader(stats.getDirectory(), segment + ".cfs");
+        cfsDir = stats.wrap(cfsReader);
+      } else {
+        cfsReader = new CompoundFileReader(directory(), segment + ".cfs");
+        cfsDir = cfsReader;
+      }
     }
 
+    modified = directory().fileModified
+      (segment + (cfsReader != null ? ".cfs" : ".fnm"));
+
     // No compound file exists - use the multi-file format
     fieldInfos = new FieldInfos(cfsDir, segment + ".fnm");
     fieldsReader = new FieldsReader(cfsDir, segment, fieldInfos);
@@ -201,6 +258,7 @@ final class SegmentReader extends IndexReader {
   }
 
   protected final void doUndeleteAll() throws IOException {
+      fieldCacheKey = new Object();               // values lack deleted docs
       deletedDocs = null;
       deletedDocsDirty = false;
       undeleteAll = true;
@@ -210,7 +268,7 @@ final class SegmentReader extends IndexReader {
   final Vector files() throws IOException {
     Vector files = new Vector(16);
     final String ext[] = new String[]{
-      "cfs", "fnm", "fdx", "fdt", "tii", "tis", "frq", "prx", "del",
+      "cfs", "fnm", "fdx", "fdt", "tii", "tis", "fst", "frq", "prx", "del",
       "tvx", "tvd", "tvf", "tvp" };
 
     for (int i = 0; i < ext.length; i++) {
@@ -221,7 +279,7 @@ final class SegmentReader extends IndexReader {
 
     for (int i = 0; i < fieldInfos.size(); i++) {//获取评分文件
       FieldInfo fi = fieldInfos.fieldInfo(i);
-      if (fi.isIndexed)
+      if (fi.hasNorms())
         files.addElement(segment + ".f" + i);
     }
     return files;
@@ -237,6 +295,28 @@ final class SegmentReader extends IndexReader {
     return tis.terms(t);
   }
 
+  public void setTermInfosIndexDivisor(int indexDivisor) {
+    tis.setIndexDivisor(indexDivisor);
+  }
+
+  public int getTermInfosIndexDivisor() {
+    return tis.getIndexDivisor();
+  }
+
+  public void setTermEnumPoolSize(int size) {
+    tis.setEnumPoolSize(size);
+  }
+
+  public void setTermInfoCacheSize(int size) {
+    tis.setCacheSize(size);
+  }
+
+  public TermInfosStats getTermInfosStats() {
+    TermInfosStats stats = new TermInfosStats();
+    tis.addStats(stats);
+    return stats;
+  }
+
   public final synchronized Document document(int n) throws IOException {
     if (isDeleted(n))
       throw new IllegalArgumentException
@@ -265,6 +345,34 @@ final class SegmentReader extends IndexReader {
       return 0;
   }
 
+  /** Returns the bound of the term on which <code>termDocs</code> was
+   * positioned, if it is one of this segment's, without looking the term
+   * up again. */
+  public final int maxFreq(Term t, TermDocs termDocs) throws IOException {
+    if (termDocs instanceof SegmentTermDocs
+        && ((SegmentTermDocs) termDocs).parent == this)
+      return ((SegmentTermDocs) termDocs).maxFreq();
+    return maxFreq(t);
+  }
+
+  public final int maxFreq(Term t) throws IOException {
+    TermInfo ti = tis.get(t);
+    if (ti == null)
+      return 0;
+    if (ti.maxFreq >= 0)
+      return ti.maxFreq;
+    if (ti.docFreq > SegmentTermDocs.MAX_FREQ_SCAN)
+      return -1;                                  // too costly, e.g. old format
+
+    SegmentTermDocs termDocs = new SegmentTermDocs(this);
+    try {
+      termDocs.seek(ti);
+      return termDocs.maxFreq();
+    } finally {
+      termDocs.close();
+    }
+  }
+
   public final int numDocs() {
     int n = maxDoc();
     if (deletedDocs != null)
@@ -272,10 +380,56 @@ final class SegmentReader extends IndexReader {
     return n;
   }
 
+  public Object getFieldCacheKey() {
+    return fieldCacheKey;
+  }
+
+  /** Shares the field cache key of the reader of this segment among
+   * <code>previous</code> and its sub-readers, if any, when its files are
+   * unchanged and it has no deletions which this reader does not have, so
+   * that values cached for it are valid for this reader. */
+  void shareFieldCacheKey(IndexReader previous) {
+    if (previous == null)
+      return;
+    IndexReader[] readers = previous.getSubReaders();
+    if (readers == null)
+      readers = new IndexReader[] { previous };
+    for (int i = 0; i < readers.length; i++) {
+      if (!(readers[i] instanceof SegmentReader))
+        continue;
+      SegmentReader other = (SegmentReader) readers[i];
+      if (other.segment.equals(segment) && other.directory() == directory()
+          && other.maxDoc() == maxDoc() && other.modified == modified) {
+        synchronized (other) {                    // deletes are synchronized
+          if (deletesAll(other.deletedDocs))
+            fieldCacheKey = other.fieldCacheKey;
+        }
+        return;
+      }
+    }
+  }
+
+  /** Returns true if all documents in <code>docs</code> are deleted. */
+  private boolean deletesAll(BitVector docs) {
+    if (docs == null)
+      return true;
+    if (deletedDocs == null)
+      return false;
+    for (int i = 0; i < docs.size(); i++) {
+      if (docs.get(i) && !deletedDocs.get(i))
+        return false;
+    }
+    return true;
+  }
+
   public final int maxDoc() {
     return fieldsReader.size();
   }
 
+  public SortField getIndexSort() {
+    return indexSort;
+  }
+
   /**
    * @see IndexReader#getFieldNames()
    */
@@ -322,16 +476,40 @@ final class SegmentReader extends IndexReader {
 
   }
 
-  public synchronized byte[] norms(String field) throws IOException {
+  /** The norm of fields which omit norms. */
+  private static final byte DEFAULT_NORM = Similarity.encodeNorm(1.0f);
+
+  private byte[] fakeNorms;                       // shared by omitted fields
+
+  private synchronized byte[] fakeNorms() {
+    if (fakeNorms == null) {
+      fakeNorms = new byte[maxDoc()];
+      Arrays.fill(fakeNorms, DEFAULT_NORM);
+    }
+    return fakeNorms;
+  }
+
+  private boolean omitsNorms(String field) {
+    FieldInfo fi = fieldInfos.fieldInfo(field);
+    return fi != null && fi.isIndexed && fi.omitNorms;
+  }
+
+  public boolean hasNorms(String field) {
+    return norms.containsKey(field);
+  }
+
+  public byte[] norms(String field) throws IOException {
     Norm norm = (Norm) norms.get(field);
     if (norm == null)                             // not an indexed field
-      return null;
-    if (norm.bytes == null) {                     // value not yet read
-      byte[] bytes = new byte[maxDoc()];
-      norms(field, bytes, 0);
-      norm.bytes = bytes;                         // cache it
-    }
-    return norm.bytes;
+      return omitsNorms(field) ? fakeNorms() : null;
+    return norm.bytes();
+  }
+
+  public byte maxNorm(String field) throws IOException {
+    Norm norm = (Norm) norms.get(field);
+    if (norm == null)                             // not an indexed field
+      return omitsNorms(field) ? DEFAULT_NORM : 0;
+    return (byte) norm.max();
   }
 
   protected final void doSetNorm(int doc, String field, byte value)
@@ -339,38 +517,27 @@ final class SegmentReader extends IndexReader {
     Norm norm = (Norm) norms.get(field);
     if (norm == null)                             // not an indexed field
       return;
-    norm.dirty = true;                            // mark it dirty
     normsDirty = true;
-
-    norms(field)[doc] = value;                    // set the value
+    norm.set(doc, value);
   }
 
   /** Read norms into a pre-allocated array. */
-  public synchronized void norms(String field, byte[] bytes, int offset)
+  public void norms(String field, byte[] bytes, int offset)
     throws IOException {
 
     Norm norm = (Norm) norms.get(field);
-    if (norm == null)
+    if (norm == null) {
+      if (omitsNorms(field))
+        Arrays.fill(bytes, offset, offset + maxDoc(), DEFAULT_NORM);
       return;					  // use zeros in array
-
-    if (norm.bytes != null) {                     // can copy from cache
-      System.arraycopy(norm.bytes, 0, bytes, offset, maxDoc());
-      return;
-    }
-
-    InputStream normStream = (InputStream) norm.in.clone();
-    try {                                         // read from disk
-      normStream.seek(0);
-      normStream.readBytes(bytes, offset, maxDoc());
-    } finally {
-      normStream.close();
     }
+    norm.read(bytes, offset);
   }
 
   private final void openNorms(Directory cfsDir) throws IOException {
     for (int i = 0; i < fieldInfos.size(); i++) {
       FieldInfo fi = fieldInfos.fieldInfo(i);
-      if (fi.isIndexed) {
+      if (fi.hasNorms()) {
         String fileName = segment + ".f" + fi.number;
         // look first for re-written file, then in compound format
         Directory d = directory().fileExists(fileName) ? directory() : cfsDir;
@@ -31,22 +31,43 @@ class SegmentTermDocs implements TermDocs {
   int freq;//该term在该document的field出现的词频
 
   private int skipInterval;
-  private int numSkips;//最多有多少层跳跃表
-  private int skipCount;
-  private InputStream skipStream;
-  private int skipDoc;
-  private long freqPointer;
-  private long proxPointer;
+  private int maxSkipLevels;
+  private MultiLevelSkipListReader skipListReader;
+
+  private long freqBasePointer;
+  private long proxBasePointer;
   private long skipPointer;//返回跳跃表开始的位置
   private boolean haveSkipped;
+  private int maxFreq = -1;                       // of the term, if known
+  private TermInfo termInfo;                      // of the term sought
+  final PostingsCounter counter;                  // null unless profiling
+  private long freqMark;                          // start of uncounted bytes
+
+  private int blockSize;                          // 0 for VInt postings
+  private int blockedCount;                       // postings of this term in blocks
+  private int[] docDeltaBuffer;                   // the decoded current block
+  private int[] freqBuffer;
+  private byte[] blockScratch;
+  private int blockUpto;                          // next entry in the block
+  private int blockEnd;                           // entries decoded in the block
 
   //传入索引的reader对象,可以读取索引的所有信息
   SegmentTermDocs(SegmentReader parent)
           throws IOException {
     this.parent = parent;
     this.freqStream = (InputStream) parent.freqStream.clone();
+    this.counter = PostingsCounter.current();
+    if (counter != null)
+      this.freqMark = freqStream.getFilePointer();
     this.deletedDocs = parent.deletedDocs;
     this.skipInterval = parent.tis.getSkipInterval();
+    this.maxSkipLevels = parent.tis.getMaxSkipLevels();
+    this.blockSize = parent.tis.getPostingsBlockSize();
+    if (blockSize > 0) {
+      docDeltaBuffer = new int[blockSize];
+      freqBuffer = new int[blockSize];
+      blockScratch = new byte[PForCodec.scratchSize(blockSize)];
+    }
   }
 
   public void seek(Term term) throws IOException {
@@ -68,48 +89,105 @@ class SegmentTermDocs implements TermDocs {
 
   //重新检索该term
   void seek(TermInfo ti) throws IOException {
+    if (counter != null)
+      countBytesRead();
+    termInfo = ti;
     count = 0;//重新设置一个term,因此出现的文档数量为0
     if (ti == null) {
       df = 0;
+      maxFreq = 0;
     } else {
+      maxFreq = ti.maxFreq;
       df = ti.docFreq;//term出现在多少个文档中
       doc = 0;
-      skipDoc = 0;
-      skipCount = 0;
-      numSkips = df / skipInterval;//最多有多少层跳跃表
-      freqPointer = ti.freqPointer;
-      proxPointer = ti.proxPointer;
-      skipPointer = freqPointer + ti.skipOffset;//返回跳跃表开始的位置
-      freqStream.seek(freqPointer);//设置该文档对应的词频位置
+      freqBasePointer = ti.freqPointer;
+      proxBasePointer = ti.proxPointer;
+      skipPointer = freqBasePointer + ti.skipOffset;//返回跳跃表开始的位置
+      freqStream.seek(freqBasePointer);//设置该文档对应的词频位置
+      if (counter != null)
+        freqMark = freqBasePointer;
       haveSkipped = false;
+      blockedCount = blockSize > 0 ? df - (df % blockSize) : 0;
+      blockUpto = blockEnd = 0;
     }
   }
 
   public void close() throws IOException {
+    if (counter != null)
+      countBytesRead();
     freqStream.close();
-    if (skipStream != null)
-      skipStream.close();
+    if (skipListReader != null)
+      skipListReader.close();
+  }
+
+  /** Adds the bytes read since the last call to the counter, which is not
+   * null. */
+  private final void countBytesRead() {
+    counter.add(bytesRead());
+  }
+
+  /** Returns the bytes read since the last call.  Overridden by
+   * SegmentTermPositions to add those of the prox stream. */
+  protected long bytesRead() {
+    long pointer = freqStream.getFilePointer();
+    long bytes = pointer - freqMark;
+    freqMark = pointer;
+    return bytes;
   }
 
   //此时处理的文档id以及词频
   public final int doc() { return doc; }
   public final int freq() { return freq; }
 
+  /** Terms without a stored maximum frequency and with at most this many
+   * documents have their postings scanned by {@link #maxFreq()}. */
+  static final int MAX_FREQ_SCAN = 128;
+
+  /** Returns the largest frequency of the term sought in any document, or
+   * -1 if unknown.  Terms without a stored bound, which are those without
+   * skip data, have their postings scanned if there are few of them and
+   * none has been read yet, and are then sought again.
+   */
+  final int maxFreq() throws IOException {
+    if (maxFreq < 0 && termInfo != null && df <= MAX_FREQ_SCAN
+        && count == 0 && !haveSkipped) {
+      int max = 0;
+      while (next()) {
+        if (freq > max)
+          max = freq;
+      }
+      seek(termInfo);                             // back to the first doc
+      maxFreq = max;
+    }
+    return maxFreq;
+  }
+
   protected void skippingDoc() throws IOException {
   }
 
   //找到该term的下一个文档的词频、docid等信息
   public boolean next() throws IOException {
     while (true) {
-      if (count == df)
+      if (count == df) {
+        if (counter != null)
+          countBytesRead();
         return false;
+      }
 
-      int docCode = freqStream.readVInt();
-      doc += docCode >>> 1;			  // shift off low bit 文档号码
-      if ((docCode & 1) != 0)			  // if low bit is set 该文档词频
-        freq = 1;				  // freq is one
-      else
-        freq = freqStream.readVInt();		  // else read freq 该文档词频
+      if (count < blockedCount) {                 // in a PFor block
+        if (blockUpto == blockEnd)
+          readBlock();
+        doc += docDeltaBuffer[blockUpto];
+        freq = freqBuffer[blockUpto];
+        blockUpto++;
+      } else {
+        int docCode = freqStream.readVInt();
+        doc += docCode >>> 1;			  // shift off low bit 文档号码
+        if ((docCode & 1) != 0)			  // if low bit is set 该文档词频
+          freq = 1;				  // freq is one
+        else
+          freq = freqStream.readVInt();		  // else read freq 该文档词频
+      }
 
       count++;//该term出现的文档次数累加1
 
@@ -130,6 +208,30 @@ class SegmentTermDocs implements TermDocs {
     int i = 0;
     while (i < length && count < df) {//只要没有超过总doc文档数,就一直循环
 
+      if (count < blockedCount) {                 // copy from decoded block
+        if (blockUpto == blockEnd)
+          readBlock();
+        final int[] deltas = docDeltaBuffer;
+        final int[] blockFreqs = freqBuffer;
+        int upto = blockUpto;
+        final int end = blockEnd;
+        int d = doc;
+        while (upto < end && i < length) {
+          d += deltas[upto];
+          if (deletedDocs == null || !deletedDocs.get(d)) {
+            docs[i] = d;
+            freqs[i] = blockFreqs[upto];
+            ++i;
+          }
+          upto++;
+        }
+        count += upto - blockUpto;
+        freq = blockFreqs[upto - 1];
+        doc = d;
+        blockUpto = upto;
+        continue;
+      }
+
       // manually inlined call to next() for speed
       final int docCode = freqStream.readVInt();//获取词频 以及文档id
       doc += docCode >>> 1;			  // shift off low bit
@@ -145,9 +247,21 @@ class SegmentTermDocs implements TermDocs {
         ++i;
       }
     }
+    if (counter != null)
+      countBytesRead();
     return i;
   }
 
+  /** Decodes the next block of doc deltas and freqs. */
+  private final void readBlock() throws IOException {
+    PForCodec.decode(freqStream, docDeltaBuffer, blockSize, blockScratch);
+    PForCodec.decode(freqStream, freqBuffer, blockSize, blockScratch);
+    for (int i = 0; i < blockSize; i++)
+      freqBuffer[i]++;                            // freqs are stored minus one
+    blockUpto = 0;
+    blockEnd = blockSize;
+  }
+
   /** Overridden by SegmentTermPositions to skip in prox stream. 
    * 跳跃到位置文件的制定位置
    **/
@@ -156,51 +270,30 @@ class SegmentTermDocs implements TermDocs {
   /** Optimized implementation. */
   public boolean skipTo(int target) throws IOException {
     if (df >= skipInterval) {                      // optimized case
+      if (skipListReader == null)
+        skipListReader = new MultiLevelSkipListReader((InputStream) freqStream.clone(),
+                                                      maxSkipLevels, skipInterval); // lazily clone
 
-      if (skipStream == null)
-        skipStream = (InputStream) freqStream.clone(); // lazily clone
-
-      if (!haveSkipped) {                          // lazily seek skip stream
-        skipStream.seek(skipPointer);//设置到跳跃表位置
+      if (!haveSkipped) {                          // lazily initialize skip stream
+        skipListReader.init(skipPointer, freqBasePointer, proxBasePointer, df);
         haveSkipped = true;
       }
 
-      // scan skip data
-      int lastSkipDoc = skipDoc;
-      long lastFreqPointer = freqStream.getFilePointer();
-      long lastProxPointer = -1;
-      int numSkipped = -1 - (count % skipInterval);
-
-      while (target > skipDoc) {
-    	  //更新last等信息,说明跳跃表有作用了
-        lastSkipDoc = skipDoc;
-        lastFreqPointer = freqPointer;
-        lastProxPointer = proxPointer;
-        
-        if (skipDoc != 0 && skipDoc >= doc)
-          numSkipped += skipInterval;
-        
-        if(skipCount >= numSkips) //说明已经到跳跃表最后了
-          break;
-
-        //本次的位置 是为了lastFreqPointer等服务的
-        skipDoc += skipStream.readVInt();//跳跃表的docid
-        freqPointer += skipStream.readVInt();//docid所在的词频文件位置
-        proxPointer += skipStream.readVInt();//docid所在的位置文件位置
-
-        skipCount++;//跳跃表的数量
-      }
-      //获取最后一个last位置,从该位置开始往后面依次读取数据
-      
-      // if we found something to skip, then skip it
-      if (lastFreqPointer > freqStream.getFilePointer()) {
-        freqStream.seek(lastFreqPointer);//跳跃到词频文件的制定位置
-        skipProx(lastProxPointer);//跳跃到位置文件的指定位置
+      int newCount = skipListReader.skipTo(target);
+      if (blockSize > 0)                           // block skip entries are
+        newCount++;                                // written after their doc
+      if (newCount > count) {                      // if we found something to skip, then skip it
+        if (counter != null)
+          countBytesRead();
+        freqStream.seek(skipListReader.getFreqPointer());//跳跃到词频文件的制定位置
+        if (counter != null)
+          freqMark = skipListReader.getFreqPointer();
+        skipProx(skipListReader.getProxPointer());//跳跃到位置文件的指定位置
 
-        doc = lastSkipDoc;
-        count += numSkipped;
+        doc = skipListReader.getDoc();
+        count = newCount;
+        blockUpto = blockEnd = 0;                  // at a block boundary
       }
-
     }
 
     // done skipping, now just scan
@@ -35,6 +35,9 @@ final class SegmentTermEnum extends TermEnum implements Cloneable {
   long indexPointer = 0;//索引tii文件要获取tis的文件位置
   int indexInterval;//索引文件间隔
   int skipInterval;
+  int maxSkipLevels;
+  int postingsBlockSize;                         // 0 for VInt postings
+  boolean hasTermFST;                            // whether a .fst file exists
   
   private int formatM1SkipInterval;
   
@@ -58,6 +61,7 @@ final class SegmentTermEnum extends TermEnum implements Cloneable {
       // back-compatible settings
       indexInterval = 128;
       skipInterval = Integer.MAX_VALUE; // switch off skipTo optimization
+      maxSkipLevels = 1;
 
     } else {
       // we have a format version number
@@ -77,10 +81,21 @@ final class SegmentTermEnum extends TermEnum implements Cloneable {
         // switch off skipTo optimization for file format prior to 1.4rc2 in order to avoid a bug in 
         // skipTo implementation of these versions
         skipInterval = Integer.MAX_VALUE;
+        maxSkipLevels = 1;
       }
       else{
         indexInterval = input.readInt();
         skipInterval = input.readInt();
+        if (format <= -3) {
+          maxSkipLevels = input.readInt();
+          if (format <= -4)
+            postingsBlockSize = input.readInt();
+          if (format <= -6)
+            hasTermFST = input.readInt() != 0;
+        } else {
+          // single-level skip data, readable as the lowest level of a multi-level skip list
+          maxSkipLevels = 1;
+        }
       }
     }
 
@@ -136,8 +151,12 @@ final class SegmentTermEnum extends TermEnum implements Cloneable {
       }
     }
     else{
-      if (termInfo.docFreq >= skipInterval) //说明有跳跃
+      if (termInfo.docFreq >= skipInterval) { //说明有跳跃
         termInfo.skipOffset = input.readVInt();//该值暂时没看到实际用的地方,因此暂时不了解
+        termInfo.maxFreq = format <= -5 ? input.readVInt() : -1;
+      } else {
+        termInfo.maxFreq = -1;
+      }
     }
     
     if (isIndex)
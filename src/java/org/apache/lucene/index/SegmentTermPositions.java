@@ -25,16 +25,22 @@ extends SegmentTermDocs implements TermPositions {
   private InputStream proxStream;//位置文件对象
   private int proxCount;//为一个document中的词频
   private int position;//记录每一个term在该document中的词位置
+  private long proxMark;                          // start of uncounted bytes
   
   SegmentTermPositions(SegmentReader p) throws IOException {
     super(p);
     this.proxStream = (InputStream)parent.proxStream.clone();
+    if (counter != null)
+      this.proxMark = proxStream.getFilePointer();
   }
 
   final void seek(TermInfo ti) throws IOException {
     super.seek(ti);
-    if (ti != null)
+    if (ti != null) {
       proxStream.seek(ti.proxPointer);//定位到该term对应的位置
+      if (counter != null)
+        proxMark = ti.proxPointer;
+    }
     proxCount = 0;
   }
 
@@ -43,6 +49,13 @@ extends SegmentTermDocs implements TermPositions {
     proxStream.close();
   }
 
+  protected final long bytesRead() {
+    long pointer = proxStream.getFilePointer();
+    long bytes = pointer - proxMark;
+    proxMark = pointer;
+    return super.bytesRead() + bytes;
+  }
+
   public final int nextPosition() throws IOException {
     proxCount--;//减少一个词
     return position += proxStream.readVInt();//获取该term出现的位置
@@ -76,6 +89,8 @@ extends SegmentTermDocs implements TermPositions {
   /** Called by super.skipTo(). 跳跃到某一个新的term上*/
   protected void skipProx(long proxPointer) throws IOException {
     proxStream.seek(proxPointer);
+    if (counter != null)
+      proxMark = proxPointer;
     proxCount = 0;
   }
 
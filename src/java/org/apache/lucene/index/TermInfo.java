@@ -26,6 +26,10 @@ final class TermInfo {
   long proxPointer = 0;
   int skipOffset;//跳跃表开始位置的偏移量,可以得到跳跃表内容
 
+  /** The largest within-document frequency of the term, or -1 if unknown.
+   * Only stored for terms which have skip data. */
+  int maxFreq = -1;
+
   TermInfo() {}
 
   TermInfo(int df, long fp, long pp) {
@@ -39,6 +43,7 @@ final class TermInfo {
     freqPointer = ti.freqPointer;
     proxPointer = ti.proxPointer;
     skipOffset = ti.skipOffset;
+    maxFreq = ti.maxFreq;
   }
 
   final void set(int docFreq,
@@ -47,6 +52,7 @@ final class TermInfo {
     this.freqPointer = freqPointer;
     this.proxPointer = proxPointer;
     this.skipOffset = skipOffset;
+    this.maxFreq = -1;
   }
 
   final void set(TermInfo ti) {
@@ -54,5 +60,6 @@ final class TermInfo {
     freqPointer = ti.freqPointer;
     proxPointer = ti.proxPointer;
     skipOffset = ti.skipOffset;
+    maxFreq = ti.maxFreq;
   }
 }
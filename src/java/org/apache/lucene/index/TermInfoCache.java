@@ -0,0 +1,96 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the TermInfos of recently looked up terms, including
+ * terms which were not found.  Entries are spread over shards by the hash
+ * code of their term, each shard a synchronized map in least recently used
+ * order, so that concurrent lookups rarely wait for each other.
+ */
+final class TermInfoCache {
+  /** Cached for terms which are not in the dictionary. */
+  static final TermInfo NOT_FOUND = new TermInfo();
+
+  private static final int NUM_SHARDS = 16;
+
+  private Shard[] shards = new Shard[NUM_SHARDS];
+
+  private static final class Shard extends LinkedHashMap {
+    private int maxSize;
+    long hits;
+    long misses;
+
+    Shard(int maxSize) {
+      super(16, 0.75f, true);                     // in access order
+      this.maxSize = maxSize;
+    }
+
+    protected boolean removeEldestEntry(Map.Entry eldest) {
+      return size() > maxSize;
+    }
+  }
+
+  /** Creates a cache holding about <code>size</code> terms. */
+  TermInfoCache(int size) {
+    int shardSize = Math.max(1, (size + NUM_SHARDS - 1) / NUM_SHARDS);
+    for (int i = 0; i < NUM_SHARDS; i++)
+      shards[i] = new Shard(shardSize);
+  }
+
+  private Shard shard(Term term) {
+    int h = term.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);                 // spread the high bits
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return shards[h & (NUM_SHARDS - 1)];
+  }
+
+  /** Returns the cached TermInfo of term, {@link #NOT_FOUND} if the term is
+   * cached as not being in the dictionary, or null if it is not cached. */
+  TermInfo get(Term term) {
+    Shard shard = shard(term);
+    synchronized (shard) {
+      TermInfo ti = (TermInfo)shard.get(term);
+      if (ti == null)
+        shard.misses++;
+      else
+        shard.hits++;
+      return ti;
+    }
+  }
+
+  /** Caches the TermInfo of term, or null if the term was not found. */
+  void put(Term term, TermInfo ti) {
+    Shard shard = shard(term);
+    synchronized (shard) {
+      shard.put(term, ti == null ? NOT_FOUND : ti);
+    }
+  }
+
+  /** Adds the counters of this cache to stats. */
+  void addStats(TermInfosStats stats) {
+    for (int i = 0; i < NUM_SHARDS; i++) {
+      synchronized (shards[i]) {
+        stats.cacheHits += shards[i].hits;
+        stats.cacheMisses += shards[i].misses;
+      }
+    }
+  }
+}
@@ -0,0 +1,252 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * The in-memory index of a term dictionary: every indexed term of the .tii
+ * file, or every <i>divisor</i>th of them, with its TermInfo and its pointer
+ * into the .tis file.
+ *
+ * <p>Rather than a Term, a TermInfo and a pointer object per entry, term text
+ * is kept in one char array and the remaining values in one byte array, each
+ * with an array of per-entry offsets.  Since terms are sorted by field, field
+ * names are kept once per run of entries of the same field.  Looking up a
+ * term allocates nothing.
+ */
+final class TermInfosIndex {
+  private int size;
+
+  private String[] fields;                        // field of each run
+  private int[] fieldStarts;                      // first entry of each run
+
+  private char[] text;
+  private int[] textStarts;                       // size + 1 offsets into text
+
+  private byte[] infos;                           // VInt/VLong encoded
+  private int[] infoStarts;
+
+  /** Reads the entries of <code>indexEnum</code>, keeping every
+   * <code>divisor</code>th of them. */
+  TermInfosIndex(SegmentTermEnum indexEnum, int divisor) throws IOException {
+    int indexSize = (int)indexEnum.size;
+    int n = (indexSize + divisor - 1) / divisor;
+
+    fields = new String[8];
+    fieldStarts = new int[9];
+    int numFields = 0;
+    text = new char[n * 8];
+    textStarts = new int[n + 1];
+    infos = new byte[n * 12];
+    infoStarts = new int[n];
+
+    int textUpto = 0;
+    int infoUpto = 0;
+    TermInfo ti = new TermInfo();
+    for (int i = 0; indexEnum.next(); i++) {
+      if (i % divisor != 0)
+        continue;
+
+      Term term = indexEnum.term();
+      if (numFields == 0 || term.field != fields[numFields - 1]) {
+        if (numFields == fields.length) {
+          String[] newFields = new String[numFields * 2];
+          System.arraycopy(fields, 0, newFields, 0, numFields);
+          fields = newFields;
+          int[] newStarts = new int[numFields * 2 + 1];
+          System.arraycopy(fieldStarts, 0, newStarts, 0, numFields);
+          fieldStarts = newStarts;
+        }
+        fields[numFields] = term.field;
+        fieldStarts[numFields++] = size;
+      }
+
+      int length = term.text.length();
+      if (textUpto + length > text.length)
+        text = grow(text, textUpto + length);
+      term.text.getChars(0, length, text, textUpto);
+      textStarts[size] = textUpto;
+      textUpto += length;
+
+      indexEnum.termInfo(ti);
+      if (infoUpto + 40 > infos.length)           // room for the longest entry
+        infos = grow(infos, infoUpto + 40);
+      infoStarts[size] = infoUpto;
+      infoUpto = writeVLong(ti.docFreq, infoUpto);
+      infoUpto = writeVLong(ti.freqPointer, infoUpto);
+      infoUpto = writeVLong(ti.proxPointer, infoUpto);
+      infoUpto = writeVLong(ti.skipOffset, infoUpto);
+      infoUpto = writeVLong(ti.maxFreq + 1, infoUpto);
+      infoUpto = writeVLong(indexEnum.indexPointer, infoUpto);
+      size++;
+    }
+    textStarts[size] = textUpto;
+    fieldStarts[numFields] = size;
+
+    // trim to size
+    String[] newFields = new String[numFields];
+    System.arraycopy(fields, 0, newFields, 0, numFields);
+    fields = newFields;
+    int[] newStarts = new int[numFields + 1];
+    System.arraycopy(fieldStarts, 0, newStarts, 0, numFields + 1);
+    fieldStarts = newStarts;
+    char[] newText = new char[textUpto];
+    System.arraycopy(text, 0, newText, 0, textUpto);
+    text = newText;
+    byte[] newInfos = new byte[infoUpto];
+    System.arraycopy(infos, 0, newInfos, 0, infoUpto);
+    infos = newInfos;
+  }
+
+  private static char[] grow(char[] array, int minSize) {
+    char[] newArray = new char[Math.max(minSize, array.length * 2)];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    return newArray;
+  }
+
+  private static byte[] grow(byte[] array, int minSize) {
+    byte[] newArray = new byte[Math.max(minSize, array.length * 2)];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    return newArray;
+  }
+
+  private int writeVLong(long i, int upto) {
+    while ((i & ~0x7F) != 0) {
+      infos[upto++] = (byte)((i & 0x7f) | 0x80);
+      i >>>= 7;
+    }
+    infos[upto++] = (byte)i;
+    return upto;
+  }
+
+  /** Returns the number of entries. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the offset of the greatest entry which is less than or equal to
+   * term, or -1 if all entries are greater. */
+  int getIndexOffset(Term term) {
+    int lo = 0;                                   // binary search fields[]
+    int hi = fields.length - 1;
+    while (hi >= lo) {
+      int mid = (lo + hi) >> 1;
+      int delta = compareField(term.field, mid);
+      if (delta < 0)
+        hi = mid - 1;
+      else if (delta > 0)
+        lo = mid + 1;
+      else {
+        hi = mid;
+        break;
+      }
+    }
+    if (hi < 0)
+      return -1;
+    if (compareField(term.field, hi) > 0)         // after all of that field
+      return fieldStarts[hi + 1] - 1;
+
+    int end = fieldStarts[hi + 1] - 1;            // binary search its run
+    lo = fieldStarts[hi];
+    hi = end;
+    while (hi >= lo) {
+      int mid = (lo + hi) >> 1;
+      int delta = compareText(term.text, mid);
+      if (delta < 0)
+        hi = mid - 1;
+      else if (delta > 0)
+        lo = mid + 1;
+      else
+        return mid;
+    }
+    return hi;
+  }
+
+  /** Compares term to the entry at offset, as {@link Term#compareTo(Term)}
+   * would compare it to the entry's term. */
+  int compareTo(Term term, int offset) {
+    int run = fieldOf(offset);
+    int delta = compareField(term.field, run);
+    return delta != 0 ? delta : compareText(term.text, offset);
+  }
+
+  private int compareField(String field, int run) {
+    if (field == fields[run])                     // fields are interned
+      return 0;
+    return field.compareTo(fields[run]);
+  }
+
+  private int compareText(String s, int offset) {
+    int start = textStarts[offset];
+    int length = textStarts[offset + 1] - start;
+    int n = Math.min(s.length(), length);
+    for (int i = 0; i < n; i++) {
+      int delta = s.charAt(i) - text[start + i];
+      if (delta != 0)
+        return delta;
+    }
+    return s.length() - length;
+  }
+
+  private int fieldOf(int offset) {
+    int lo = 0;
+    int hi = fields.length - 1;
+    while (hi >= lo) {
+      int mid = (lo + hi) >> 1;
+      if (fieldStarts[mid] > offset)
+        hi = mid - 1;
+      else if (fieldStarts[mid + 1] <= offset)
+        lo = mid + 1;
+      else
+        return mid;
+    }
+    throw new IllegalArgumentException("No entry " + offset);
+  }
+
+  /** Returns the term of the entry at offset. */
+  Term term(int offset) {
+    int start = textStarts[offset];
+    return new Term(fields[fieldOf(offset)],
+                    new String(text, start, textStarts[offset + 1] - start),
+                    false);
+  }
+
+  /** Sets ti to the TermInfo of the entry at offset and returns the entry's
+   * pointer into the .tis file. */
+  long termInfo(int offset, TermInfo ti) {
+    int upto = infoStarts[offset];
+    long pointer = 0;
+    for (int v = 0; v < 6; v++) {
+      byte b = infos[upto++];
+      long value = b & 0x7F;
+      for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+        b = infos[upto++];
+        value |= (b & 0x7FL) << shift;
+      }
+      switch (v) {
+      case 0: ti.docFreq = (int)value; break;
+      case 1: ti.freqPointer = value; break;
+      case 2: ti.proxPointer = value; break;
+      case 3: ti.skipOffset = (int)value; break;
+      case 4: ti.maxFreq = (int)value - 1; break;
+      default: pointer = value;
+      }
+    }
+    return pointer;
+  }
+}
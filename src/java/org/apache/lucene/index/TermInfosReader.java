@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 import java.io.IOException;
 
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.InputStream;
 
 /** This stores a monotonically increasing set of <Term, TermInfo> pairs in a
  * Directory.  Pairs are accessed either by Term or by ordinal position the
@@ -33,7 +34,14 @@ final class TermInfosReader {
   private String segment;
   private FieldInfos fieldInfos;
 
-  private ThreadLocal enumerators = new ThreadLocal();
+  /** The default maximum number of idle enums kept per segment. */
+  static final int DEFAULT_ENUM_POOL_SIZE = 8;
+
+  private ClonePool enumerators = new ClonePool(DEFAULT_ENUM_POOL_SIZE) {
+      protected Object newClone() {
+        return terms();
+      }
+    };
   private SegmentTermEnum origEnum;//原始tis的term内容的迭代器
   private long size;//tis文件中总term数量
 
@@ -47,16 +55,126 @@ final class TermInfosReader {
     origEnum = new SegmentTermEnum(directory.openFile(segment + ".tis"),
                                    fieldInfos, false);
     size = origEnum.size;
-    readIndex();
+    if (origEnum.hasTermFST)
+      readFST();
+  }
+
+  private FST fst = null;                         // null if there is no .fst
+  private int[] fstRoots;                         // root by field number
+  private InputStream fstInput;
+  private ClonePool fstInputs = new ClonePool(DEFAULT_ENUM_POOL_SIZE) {
+      protected Object newClone() {
+        return fstInput.clone();
+      }
+    };
+
+  private void readFST() throws IOException {
+    fstInput = directory.openFile(segment + ".fst");
+    int format = fstInput.readInt();
+    if (format < TermInfosWriter.FST_FORMAT)
+      throw new IOException("Unknown .fst format version:" + format);
+    fstInput.seek(fstInput.readLong());
+
+    fstRoots = new int[fieldInfos.size()];
+    for (int i = 0; i < fstRoots.length; i++)
+      fstRoots[i] = -1;
+    int numFields = fstInput.readVInt();
+    for (int i = 0; i < numFields; i++) {
+      int field = fstInput.readVInt();
+      fstRoots[field] = fstInput.readVInt();
+    }
+    byte[] bytes = new byte[fstInput.readVInt()];
+    fstInput.readBytes(bytes, 0, bytes.length);
+    fst = new FST(bytes);
+  }
+
+  /** Looks up a TermInfo through the .fst file, without a scan. */
+  private TermInfo getFromFST(Term term) throws IOException {
+    int field = fieldInfos.fieldNumber(term.field);
+    if (field < 0 || fstRoots[field] < 0)
+      return null;
+    long pointer = fst.get(fstRoots[field], term.text);
+    if (pointer < 0)
+      return null;
+
+    InputStream input = (InputStream)fstInputs.get();
+    try {
+      input.seek(pointer);
+      TermInfo ti = new TermInfo();
+      ti.docFreq = input.readVInt();
+      ti.freqPointer = input.readVLong();
+      ti.proxPointer = input.readVLong();
+      ti.skipOffset = input.readVInt();
+      ti.maxFreq = input.readVInt() - 1;
+      return ti;
+    } finally {
+      fstInputs.release(input);
+    }
+  }
+
+  /** Sets the fraction of the terms of the .tii file that are loaded into
+   * memory: only every <code>indexDivisor</code>th of them is kept.  This
+   * saves memory and time to open, at the price of scanning up to
+   * <code>indexDivisor</code> times as many terms per lookup.  Must be called
+   * before the first lookup.
+   *
+   * @throws IllegalStateException if the index was already loaded
+   */
+  synchronized void setIndexDivisor(int indexDivisor) {
+    if (indexDivisor < 1)
+      throw new IllegalArgumentException("indexDivisor must be > 0: got "
+                                         + indexDivisor);
+    if (index != null)
+      throw new IllegalStateException("index terms are already loaded");
+    this.indexDivisor = indexDivisor;
+  }
+
+  int getIndexDivisor() {
+    return indexDivisor;
   }
 
   public int getSkipInterval() {
     return origEnum.skipInterval;
   }
 
+  public int getMaxSkipLevels() {
+    return origEnum.maxSkipLevels;
+  }
+
+  /** Returns the number of postings per PFor block in the .frq file, or 0
+   * if the postings are written as VInts. */
+  public int getPostingsBlockSize() {
+    return origEnum.postingsBlockSize;
+  }
+
+  /** Sets the maximum number of idle enums kept for lookups.  An enum is
+   * taken from the pool for each lookup, or cloned if the pool is empty. */
+  void setEnumPoolSize(int size) {
+    enumerators.setMaxSize(size);
+    fstInputs.setMaxSize(size);
+  }
+
+  int getEnumPoolSize() {
+    return enumerators.getMaxSize();
+  }
+
+  /** Adds the counters of this reader to stats. */
+  void addStats(TermInfosStats stats) {
+    stats.enumsCreated += enumerators.getCreated();
+    stats.enumsReused += enumerators.getReused();
+    stats.enumsDropped += enumerators.getDropped();
+    TermInfoCache cache = this.cache;
+    if (cache != null)
+      cache.addStats(stats);
+  }
+
   final void close() throws IOException {
+    enumerators.close();
+    fstInputs.close();
     if (origEnum != null)
       origEnum.close();
+    if (fstInput != null)
+      fstInput.close();
   }
 
   /** Returns the number of term/value pairs in the set. */
@@ -65,94 +183,108 @@ final class TermInfosReader {
   }
 
   private SegmentTermEnum getEnum() {
-    SegmentTermEnum termEnum = (SegmentTermEnum)enumerators.get();
-    if (termEnum == null) {
-      termEnum = terms();
-      enumerators.set(termEnum);
-    }
-    return termEnum;
+    return (SegmentTermEnum)enumerators.get();
+  }
+
+  private void releaseEnum(SegmentTermEnum termEnum) {
+    enumerators.release(termEnum);
   }
 
-  Term[] indexTerms = null;//索引中所有的term
-  TermInfo[] indexInfos;//每一个索引中term的info对象
-  long[] indexPointers;//每一个索引对一个tis的文件位置
+  private TermInfosIndex index = null;//索引中所有的term
+  private int indexDivisor = 1;
+  private int loadedInterval;                     // terms between entries
 
   //初始化索引tii文件内容
-  private final void readIndex() throws IOException {
+  private synchronized TermInfosIndex ensureIndexIsRead() throws IOException {
+    if (index != null)
+      return index;
     SegmentTermEnum indexEnum =
       new SegmentTermEnum(directory.openFile(segment + ".tii"),
 			  fieldInfos, true);
     try {
-      int indexSize = (int)indexEnum.size;
-
-      indexTerms = new Term[indexSize];
-      indexInfos = new TermInfo[indexSize];
-      indexPointers = new long[indexSize];
-
-      for (int i = 0; indexEnum.next(); i++) {
-	indexTerms[i] = indexEnum.term();
-	indexInfos[i] = indexEnum.termInfo();
-	indexPointers[i] = indexEnum.indexPointer;
-      }
+      loadedInterval = origEnum.indexInterval * indexDivisor;
+      index = new TermInfosIndex(indexEnum, indexDivisor);
     } finally {
       indexEnum.close();
     }
+    return index;
   }
 
-  /** Returns the offset of the greatest index entry which is less than or equal to term.
-   找到距离该term最近的索引term
-   */
-  private final int getIndexOffset(Term term) throws IOException {
-    int lo = 0;					  // binary search indexTerms[]
-    int hi = indexTerms.length - 1;
-
-    while (hi >= lo) {
-      int mid = (lo + hi) >> 1;
-      int delta = term.compareTo(indexTerms[mid]);
-      if (delta < 0)
-	hi = mid - 1;
-      else if (delta > 0)
-	lo = mid + 1;
-      else
-	return mid;
-    }
-    return hi;
+  //通过索引文件定位原始文件
+  private final void seekEnum(SegmentTermEnum enumerator,
+                              TermInfosIndex index, int indexOffset)
+    throws IOException {
+    TermInfo ti = new TermInfo();
+    long pointer = index.termInfo(indexOffset, ti);
+    enumerator.seek(pointer,//原始文件位置
+	      (indexOffset * loadedInterval) - 1,//该索引是原始文件中第几个term
+	      index.term(indexOffset), ti);//原始文件的term和terminfo内容
   }
 
-  //通过索引文件定位原始文件
-  private final void seekEnum(int indexOffset) throws IOException {
-    getEnum().seek(indexPointers[indexOffset],//原始文件位置
-	      (indexOffset * getEnum().indexInterval) - 1,//该索引是原始文件中第几个term
-	      indexTerms[indexOffset], indexInfos[indexOffset]);//原始文件的term和terminfo内容
+  private TermInfoCache cache = null;            // null if disabled
+
+  /** Sets the number of terms whose TermInfo is cached, or 0 to disable
+   * the cache.  Discards the current cache. */
+  void setCacheSize(int size) {
+    cache = size > 0 ? new TermInfoCache(size) : null;
   }
 
   /** Returns the TermInfo for a Term in the set, or null. */
   TermInfo get(Term term) throws IOException {
     if (size == 0) return null;
 
+    TermInfoCache cache = this.cache;
+    if (cache == null)
+      return lookup(term);
+    TermInfo ti = cache.get(term);
+    if (ti == null) {
+      ti = lookup(term);
+      cache.put(term, ti);
+    } else if (ti == TermInfoCache.NOT_FOUND) {
+      ti = null;
+    }
+    return ti;
+  }
+
+  private TermInfo lookup(Term term) throws IOException {
+    if (fst != null)
+      return getFromFST(term);
+    SegmentTermEnum enumerator = getEnum();
+    try {
+      return seekAndScan(enumerator, term);
+    } finally {
+      releaseEnum(enumerator);
+    }
+  }
+
+  /** Positions the enum at the first term greater than or equal to term and
+   * returns the term's TermInfo, or null if it is not in the set. */
+  private TermInfo seekAndScan(SegmentTermEnum enumerator, Term term)
+    throws IOException {
+    TermInfosIndex index = ensureIndexIsRead();
+
     // optimize sequential access: first try scanning cached enum w/o seeking
     //一种优化
-    SegmentTermEnum enumerator = getEnum();
     if (enumerator.term() != null                 // term is at or past current
 	&& ((enumerator.prev != null && term.compareTo(enumerator.prev) > 0) //说明该term比前一个term要大
 	    || term.compareTo(enumerator.term()) >= 0)) { //该term比后一个term要大
-      int enumOffset = (int)(enumerator.position/enumerator.indexInterval)+1;
-      if (indexTerms.length == enumOffset	  // but before end of block
-	  || term.compareTo(indexTerms[enumOffset]) < 0)
-	return scanEnum(term);			  // no need to seek
+      int enumOffset = (int)(enumerator.position/loadedInterval)+1;
+      if (index.size() == enumOffset	  // but before end of block
+	  || index.compareTo(term, enumOffset) < 0)
+	return scanEnum(enumerator, term);	  // no need to seek
     }
 
     // random-access: must seek
-    seekEnum(getIndexOffset(term));//通过索引文件找到该term最近的原始文件
-    return scanEnum(term);//然后在顺序扫描
+    seekEnum(enumerator, index, index.getIndexOffset(term));//通过索引文件找到该term最近的原始文件
+    return scanEnum(enumerator, term);//然后在顺序扫描
   }
 
   /** Scans within block for matching term. 
    查询tis文件,没有走索引,所以很慢
    找到一个term对应的info内容
   */
-  private final TermInfo scanEnum(Term term) throws IOException {
-    SegmentTermEnum enumerator = getEnum();
+  private final TermInfo scanEnum(SegmentTermEnum enumerator, Term term)
+    throws IOException {
     while (term.compareTo(enumerator.term()) > 0 && enumerator.next()) {} //只要term参数比字典中term大,都一个个pass过掉
     if (enumerator.term() != null && term.compareTo(enumerator.term()) == 0) //说明找到该term了
       return enumerator.termInfo();//返回该term的info对象
@@ -164,19 +296,24 @@ final class TermInfosReader {
   final Term get(int position) throws IOException {
     if (size == 0) return null;
 
+    TermInfosIndex index = ensureIndexIsRead();
     SegmentTermEnum enumerator = getEnum();
-    if (enumerator != null && enumerator.term() != null &&
-        position >= enumerator.position &&
-	position < (enumerator.position + enumerator.indexInterval)) //说明在一个小范围内,可以一个个迭代查找
-      return scanEnum(position);		  // can avoid seek
+    try {
+      if (enumerator.term() != null &&
+          position >= enumerator.position &&
+          position < (enumerator.position + loadedInterval)) //说明在一个小范围内,可以一个个迭代查找
+        return scanEnum(enumerator, position);    // can avoid seek
 
-    seekEnum(position / enumerator.indexInterval); // must seek
-    return scanEnum(position);
+      seekEnum(enumerator, index, position / loadedInterval); // must seek
+      return scanEnum(enumerator, position);
+    } finally {
+      releaseEnum(enumerator);
+    }
   }
 
   //从指定为止开始一个个查找term
-  private final Term scanEnum(int position) throws IOException {
-    SegmentTermEnum enumerator = getEnum();
+  private final Term scanEnum(SegmentTermEnum enumerator, int position)
+    throws IOException {
     while(enumerator.position < position)//不断的一个个查找term,指导找到为止
       if (!enumerator.next())
 	return null;
@@ -190,16 +327,21 @@ final class TermInfosReader {
   final long getPosition(Term term) throws IOException {
     if (size == 0) return -1;
 
-    int indexOffset = getIndexOffset(term);//获取该term最近的在索引文件中的序号
-    seekEnum(indexOffset);//通过索引文件定位原始文件
-
+    TermInfosIndex index = ensureIndexIsRead();
+    int indexOffset = index.getIndexOffset(term);//获取该term最近的在索引文件中的序号
     SegmentTermEnum enumerator = getEnum();
-    while(term.compareTo(enumerator.term()) > 0 && enumerator.next()) {} //范围已经缩小了,因此可以直接一个个查找
+    try {
+      seekEnum(enumerator, index, indexOffset);//通过索引文件定位原始文件
 
-    if (term.compareTo(enumerator.term()) == 0)
-      return enumerator.position;
-    else
-      return -1;
+      while(term.compareTo(enumerator.term()) > 0 && enumerator.next()) {} //范围已经缩小了,因此可以直接一个个查找
+
+      if (enumerator.term() != null && term.compareTo(enumerator.term()) == 0)
+        return enumerator.position;
+      else
+        return -1;
+    } finally {
+      releaseEnum(enumerator);
+    }
   }
 
   /** Returns an enumeration of all the Terms and TermInfos in the set. */
@@ -209,7 +351,9 @@ final class TermInfosReader {
 
   /** Returns an enumeration of terms starting at or after the named term. */
   public SegmentTermEnum terms(Term term) throws IOException {
-    get(term);
-    return (SegmentTermEnum)getEnum().clone();
+    SegmentTermEnum enumerator = getEnum();      // handed to the caller
+    if (size > 0)
+      seekAndScan(enumerator, term);
+    return enumerator;
   }
 }
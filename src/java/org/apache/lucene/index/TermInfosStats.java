@@ -0,0 +1,86 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Expert: Counters of the term dictionary lookups of an {@link IndexReader},
+ * summed over its segments.
+ *
+ * <p>Each lookup borrows an enumeration of the segment's term dictionary
+ * from a bounded pool, or clones a new one if the pool is empty.  A high
+ * number of clones created compared to clones reused means that more
+ * threads search a segment concurrently than the pool holds, see {@link
+ * IndexReader#setTermEnumPoolSize(int)}.  If a term cache is enabled with
+ * {@link IndexReader#setTermInfoCacheSize(int)}, its hits and misses are
+ * counted too.
+ *
+ * @see IndexReader#getTermInfosStats()
+ */
+public final class TermInfosStats {
+  int enumsCreated;
+  int enumsReused;
+  int enumsDropped;
+  long cacheHits;
+  long cacheMisses;
+
+  /** Returns the number of enumerations cloned because the pool was empty. */
+  public int getEnumsCreated() {
+    return enumsCreated;
+  }
+
+  /** Returns the number of enumerations taken from the pool. */
+  public int getEnumsReused() {
+    return enumsReused;
+  }
+
+  /** Returns the number of enumerations dropped because the pool was full
+   * when they were returned. */
+  public int getEnumsDropped() {
+    return enumsDropped;
+  }
+
+  /** Returns the number of lookups answered by the term cache. */
+  public long getCacheHits() {
+    return cacheHits;
+  }
+
+  /** Returns the number of lookups not answered by the term cache. */
+  public long getCacheMisses() {
+    return cacheMisses;
+  }
+
+  /** Returns the fraction of lookups answered by the term cache, or 0 if
+   * there were none. */
+  public float getCacheHitRate() {
+    long lookups = cacheHits + cacheMisses;
+    return lookups == 0 ? 0.0f : (float)cacheHits / lookups;
+  }
+
+  void add(TermInfosStats other) {
+    enumsCreated += other.enumsCreated;
+    enumsReused += other.enumsReused;
+    enumsDropped += other.enumsDropped;
+    cacheHits += other.cacheHits;
+    cacheMisses += other.cacheMisses;
+  }
+
+  public String toString() {
+    return "enums created=" + enumsCreated + " reused=" + enumsReused
+      + " dropped=" + enumsDropped + ", cache hits=" + cacheHits
+      + " misses=" + cacheMisses;
+  }
+}
@@ -18,6 +18,8 @@ package org.apache.lucene.index;
 
 
 import java.io.IOException;
+import java.util.Vector;
+
 import org.apache.lucene.store.OutputStream;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.StringHelper;
@@ -26,8 +28,30 @@ import org.apache.lucene.util.StringHelper;
   Directory.  A TermInfos can be written once, in order.  */
 
 final class TermInfosWriter {
-  /** The file format version, a negative number. */
-  public static final int FORMAT = -2;
+  /** The file format version, a negative number.  Format -3 adds the
+   * maximum number of skip levels, see {@link MultiLevelSkipListWriter}.
+   * Format -4 adds the postings block size, see {@link PForCodec}.
+   * Format -5 adds the maximum within-document frequency of terms which
+   * have skip data.  Format -6 adds whether the segment has a .fst file. */
+  public static final int FORMAT = -6;
+
+  /** The format of .fst files.  A .fst file holds the TermInfo of every
+   * term, followed by an {@link FST} per field that maps the text of each
+   * term of the field to the file pointer of its TermInfo:
+   * <pre>
+   * FSTFile     --&gt; Format, FSTPointer, TermInfo<sup>TermCount</sup>, NumFields, &lt;FieldNum, Root&gt;<sup>NumFields</sup>, NumBytes, Byte<sup>NumBytes</sup>
+   * Format      --&gt; Int
+   * FSTPointer  --&gt; Long, the file pointer of NumFields
+   * TermInfo    --&gt; DocFreq, FreqPointer, ProxPointer, SkipOffset, MaxFreq + 1
+   * DocFreq, SkipOffset, MaxFreq + 1, NumFields, FieldNum, Root, NumBytes --&gt; VInt
+   * FreqPointer, ProxPointer --&gt; VLong
+   * </pre>
+   */
+  static final int FST_FORMAT = -1;
+
+  /** The number of postings per block when block encoded postings are
+   * written. */
+  static final int POSTINGS_BLOCK_SIZE = 128;
 
   private FieldInfos fieldInfos;
   private OutputStream output;
@@ -56,25 +80,63 @@ final class TermInfosWriter {
    * accelerable cases. More detailed experiments would be useful here. */
   int skipInterval = 16;
 
+  /** Expert: The maximum number of skip levels of a postings list.  Level
+   * <i>i</i> has an entry every <code>skipInterval^(i+1)</code> documents,
+   * so 10 levels cover any realistic document frequency. */
+  int maxSkipLevels = 10;
+
+  /** The number of postings per PFor encoded block in the .frq file, or 0
+   * when all postings are written as VInts.  With blocks, skip entries are
+   * only written at block boundaries, so skipInterval equals the block
+   * size. */
+  int postingsBlockSize = 0;
+
   private long lastIndexPointer = 0;
   private boolean isIndex = false;
 
   private TermInfosWriter other = null;
 
+  private OutputStream fstOutput = null;          // null if no .fst file
+  private FSTBuilder fstBuilder;
+  private String fstField;                        // field of the current FST
+  private Vector fstRoots;                        // field number, root pairs
+
   TermInfosWriter(Directory directory, String segment, FieldInfos fis)
        throws IOException {
-    initialize(directory, segment, fis, false);
-    other = new TermInfosWriter(directory, segment, fis, true);
+    this(directory, segment, fis, 0, false);
+  }
+
+  /** Creates a writer for a segment whose postings are written in blocks of
+   * <code>postingsBlockSize</code>, or as VInts if that is 0.  If
+   * <code>termFST</code> is true, a .fst file is written as well. */
+  TermInfosWriter(Directory directory, String segment, FieldInfos fis,
+                  int postingsBlockSize, boolean termFST)
+       throws IOException {
+    initialize(directory, segment, fis, false, postingsBlockSize, termFST);
+    other = new TermInfosWriter(directory, segment, fis, true,
+                                postingsBlockSize, termFST);
     other.other = this;
+    if (termFST) {
+      fstOutput = directory.createFile(segment + ".fst");
+      fstOutput.writeInt(FST_FORMAT);
+      fstOutput.writeLong(0);                     // leave space for FSTPointer
+      fstBuilder = new FSTBuilder();
+      fstRoots = new Vector();
+    }
   }
 
   private TermInfosWriter(Directory directory, String segment, FieldInfos fis,
-        boolean isIndex) throws IOException {
-    initialize(directory, segment, fis, isIndex);
+        boolean isIndex, int postingsBlockSize, boolean termFST)
+    throws IOException {
+    initialize(directory, segment, fis, isIndex, postingsBlockSize, termFST);
   }
 
   private void initialize(Directory directory, String segment, FieldInfos fis,
-         boolean isi) throws IOException {
+         boolean isi, int blockSize, boolean termFST) throws IOException {
+    if (blockSize > 0) {
+      postingsBlockSize = blockSize;
+      skipInterval = blockSize;                   // skip at block boundaries
+    }
     fieldInfos = fis;
     isIndex = isi;
     output = directory.createFile(segment + (isIndex ? ".tii" : ".tis"));
@@ -82,6 +144,9 @@ final class TermInfosWriter {
     output.writeLong(0);                          // leave space for size
     output.writeInt(indexInterval);             // write indexInterval
     output.writeInt(skipInterval);              // write skipInterval
+    output.writeInt(maxSkipLevels);             // write maxSkipLevels
+    output.writeInt(postingsBlockSize);         // write postingsBlockSize
+    output.writeInt(termFST ? 1 : 0);           // write whether .fst exists
   }
 
   /** Adds a new <Term, TermInfo> pair to the set.
@@ -106,6 +171,7 @@ final class TermInfosWriter {
 
     if (ti.docFreq >= skipInterval) {
       output.writeVInt(ti.skipOffset);
+      output.writeVInt(ti.maxFreq);
     }
 
     if (isIndex) {
@@ -113,6 +179,9 @@ final class TermInfosWriter {
       lastIndexPointer = other.output.getFilePointer(); // write pointer
     }
 
+    if (fstOutput != null)
+      addToFST(term, ti);
+
     lastTi.set(ti);
     size++;
   }
@@ -133,6 +202,27 @@ final class TermInfosWriter {
 
 
 
+  private void addToFST(Term term, TermInfo ti) throws IOException {
+    if (term.field != fstField) {                 // fields are interned
+      finishField();
+      fstField = term.field;
+    }
+    fstBuilder.add(term.text, fstOutput.getFilePointer());
+    fstOutput.writeVInt(ti.docFreq);
+    fstOutput.writeVLong(ti.freqPointer);
+    fstOutput.writeVLong(ti.proxPointer);
+    fstOutput.writeVInt(ti.skipOffset);
+    fstOutput.writeVInt(ti.maxFreq + 1);
+  }
+
+  private void finishField() {
+    int root = fstBuilder.finish();
+    if (root >= 0) {
+      fstRoots.addElement(new Integer(fieldInfos.fieldNumber(fstField)));
+      fstRoots.addElement(new Integer(root));
+    }
+  }
+
   /** Called to complete TermInfos creation. */
   final void close() throws IOException {
     output.seek(4);          // write size after format
@@ -141,6 +231,19 @@ final class TermInfosWriter {
 
     if (!isIndex)
       other.close();
+
+    if (fstOutput != null) {
+      finishField();
+      long fstPointer = fstOutput.getFilePointer();
+      fstOutput.writeVInt(fstRoots.size() / 2);
+      for (int i = 0; i < fstRoots.size(); i++)
+        fstOutput.writeVInt(((Integer)fstRoots.elementAt(i)).intValue());
+      fstOutput.writeVInt(fstBuilder.sizeInBytes());
+      fstBuilder.writeTo(fstOutput);
+      fstOutput.seek(4);                          // write FSTPointer
+      fstOutput.writeLong(fstPointer);
+      fstOutput.close();
+    }
   }
 
 }
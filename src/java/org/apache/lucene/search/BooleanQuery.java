@@ -47,6 +47,25 @@ public class BooleanQuery extends Query {
     BooleanQuery.maxClauseCount = maxClauseCount;
   }
 
+  private static boolean useScorer14 = false;
+
+  /** Indicates whether the 1.4 {@link BooleanScorer}, which collects hits
+   * in a bucket table and does not support {@link Scorer#skipTo(int)}, should
+   * be used instead of the default skipTo() based scorer.  The default
+   * scorer has no limit on the number of required or prohibited clauses
+   * and returns documents in increasing document number order.
+   */
+  public static void setUseScorer14(boolean use14) {
+    useScorer14 = use14;
+  }
+
+  /** Whether the 1.4 {@link BooleanScorer} is used.
+   * @see #setUseScorer14(boolean)
+   */
+  public static boolean getUseScorer14() {
+    return useScorer14;
+  }
+
   private Vector clauses = new Vector();
 
   /** Constructs an empty boolean query. */
@@ -103,7 +122,7 @@ public class BooleanQuery extends Query {
       this.searcher = searcher;
       for (int i = 0 ; i < clauses.size(); i++) {
         BooleanClause c = (BooleanClause)clauses.elementAt(i);
-        weights.add(c.query.createWeight(searcher));
+        weights.add(searcher.createWeight(c.query));
       }
     }
 
@@ -136,6 +155,38 @@ public class BooleanQuery extends Query {
     }
 
     public Scorer scorer(IndexReader reader) throws IOException {
+      if (!useScorer14) {
+        // BooleanScorer2 leapfrogs the required clauses with skipTo() and
+        // only advances the optional and prohibited clauses up to the
+        // documents the required clauses produce.
+        BooleanScorer2 result = new BooleanScorer2(getSimilarity(searcher));
+        // optional clauses only, all with a score bound, can be pruned
+        boolean pruning = MaxScoreScorer.isEnabled(searcher);
+        Vector optionalScorers = new Vector();
+
+        for (int i = 0 ; i < weights.size(); i++) {
+          BooleanClause c = (BooleanClause)clauses.elementAt(i);
+          Weight w = (Weight)weights.elementAt(i);
+          Scorer subScorer = w.scorer(reader);
+          if (subScorer != null) {
+            result.add(subScorer, c.required, c.prohibited);
+            if (c.required || c.prohibited
+                || subScorer.maxScore() == Float.POSITIVE_INFINITY)
+              pruning = false;
+            else
+              optionalScorers.add(subScorer);
+          } else if (c.required)
+            return null;
+        }
+
+        if (pruning && optionalScorers.size() > 1) {
+          Scorer[] scorers = new Scorer[optionalScorers.size()];
+          optionalScorers.copyInto(scorers);
+          return new MaxScoreScorer(getSimilarity(searcher), scorers);
+        }
+        return result;
+      }
+
       // First see if the (faster) ConjunctionScorer will work.  This can be
       // used when all clauses are required.  Also, at this point a
       // BooleanScorer cannot be embedded in a ConjunctionScorer, as the hits
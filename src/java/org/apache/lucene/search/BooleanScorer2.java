@@ -0,0 +1,380 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Iterator;
+
+/** An alternative to BooleanScorer.
+ * <br>Uses ConjunctionScorer, DisjunctionScorer, ReqOptScorer and ReqExclScorer.
+ * <br>Implements skipTo(), and has no limitations on the numbers of added scorers.
+ * <p>Required scorers are leapfrogged with skipTo() in a conjunction, and the
+ * optional and prohibited scorers are only advanced up to the documents that
+ * the required part produces, so that a rare required term combined with a
+ * common optional term does not walk the whole postings of the common term.
+ */
+class BooleanScorer2 extends Scorer {
+  private ArrayList requiredScorers = new ArrayList();
+  private ArrayList optionalScorers = new ArrayList();
+  private ArrayList prohibitedScorers = new ArrayList();
+
+
+  private class Coordinator {
+    int maxCoord = 0; // to be increased for each non prohibited scorer
+    
+    private float[] coordFactors = null;
+    
+    void init() { // use after all scorers have been added.
+      coordFactors = new float[maxCoord + 1];
+      Similarity sim = getSimilarity();
+      for (int i = 0; i <= maxCoord; i++) {
+        coordFactors[i] = sim.coord(i, maxCoord);
+      }
+    }
+    
+    int nrMatchers; // to be increased by score() of match counting scorers.
+
+    void initDoc() {
+      nrMatchers = 0;
+    }
+    
+    float coordFactor() {
+      return coordFactors[nrMatchers];
+    }
+  }
+
+  private final Coordinator coordinator;
+
+  /** The scorer to which all scoring will be delegated,
+   * except for computing and using the coordination factor.
+   */
+  private Scorer countingSumScorer = null;
+
+  public BooleanScorer2(Similarity similarity) {
+    super(similarity);
+    coordinator = new Coordinator();
+  }
+
+  public void add(final Scorer scorer, boolean required, boolean prohibited) {
+    if (!prohibited) {
+      coordinator.maxCoord++;
+    }
+
+    if (required) {
+      if (prohibited) {
+        throw new IllegalArgumentException("scorer cannot be required and prohibited");
+      }
+      requiredScorers.add(scorer);
+    } else if (prohibited) {
+      prohibitedScorers.add(scorer);
+    } else {
+      optionalScorers.add(scorer);
+    }
+  }
+
+  /** Initialize the match counting scorer that sums all the
+   * scores. <p>
+   * When "counting" is used in a name it means counting the number
+   * of matching scorers.<br>
+   * When "sum" is used in a name it means score value summing
+   * over the matching scorers
+   */
+  private void initCountingSumScorer() {
+    coordinator.init();
+    countingSumScorer = makeCountingSumScorer();
+  }
+
+  /** Count a scorer as a single match. */
+  private class SingleMatchScorer extends Scorer {
+    private Scorer scorer;
+    private int lastScoredDoc = -1;
+
+    SingleMatchScorer(Scorer scorer) {
+      super(scorer.getSimilarity());
+      this.scorer = scorer;
+    }
+    public float score() throws IOException {
+      if (doc() > lastScoredDoc) {
+        lastScoredDoc = doc();
+        coordinator.nrMatchers++;
+      }
+      return scorer.score();
+    }
+    public int doc() {
+      return scorer.doc();
+    }
+    public boolean next() throws IOException {
+      return scorer.next();
+    }
+    public boolean skipTo(int docNr) throws IOException {
+      return scorer.skipTo(docNr);
+    }
+    public Explanation explain(int docNr) throws IOException {
+      return scorer.explain(docNr);
+    }
+  }
+
+  private Scorer countingDisjunctionSumScorer(List scorers)
+  // each scorer from the list counted as a single matcher
+  {
+    return new DisjunctionSumScorer(scorers) {
+      private int lastScoredDoc = -1;
+      public float score() throws IOException {
+        if (doc() > lastScoredDoc) {
+          lastScoredDoc = doc();
+          coordinator.nrMatchers += super.nrMatchers;
+        }
+        return super.score();
+      }
+    };
+  }
+
+  private static Similarity defaultSimilarity = new DefaultSimilarity();
+
+  private Scorer countingConjunctionSumScorer(List requiredScorers)
+  // each scorer from the list counted as a single matcher
+  {
+    final int requiredNrMatchers = requiredScorers.size();
+    ConjunctionScorer cs = new ConjunctionScorer(defaultSimilarity) {
+      private int lastScoredDoc = -1;
+
+      public float score() throws IOException {
+        if (doc() > lastScoredDoc) {
+          lastScoredDoc = doc();
+          coordinator.nrMatchers += requiredNrMatchers;
+        }
+        // All scorers match, so defaultSimilarity super.score() always has 1 as
+        // the coordination factor.
+        // Therefore the sum of the scores of the requiredScorers
+        // is used as score.
+        return super.score();
+      }
+    };
+    Iterator rsi = requiredScorers.iterator();
+    while (rsi.hasNext()) {
+      try {
+        cs.add((Scorer) rsi.next());
+      } catch (IOException e) { // ConjunctionScorer.add() does not really throw
+        throw new RuntimeException(e.toString());
+      }
+    }
+    return cs;
+  }
+
+  /** Returns the scorer to be used for match counting and score summing.
+   * Uses requiredScorers, optionalScorers and prohibitedScorers.
+   */
+  private Scorer makeCountingSumScorer()
+  // each scorer counted as a single matcher
+  {
+    if (requiredScorers.size() == 0) {
+      if (optionalScorers.size() == 0) {
+        return new NonMatchingScorer(); // only prohibited scorers
+      } else if (optionalScorers.size() == 1) {
+        return makeCountingSumScorer2( // the only optional scorer is required
+                  new SingleMatchScorer((Scorer) optionalScorers.get(0)),
+                  new ArrayList()); // no optional scorers left
+      } else { // more than 1 optionalScorers, no required scorers
+        return makeCountingSumScorer2( // at least one optional scorer is required
+                  countingDisjunctionSumScorer(optionalScorers), 
+                  new ArrayList()); // no optional scorers left
+      }
+    } else if (requiredScorers.size() == 1) { // 1 required
+      return makeCountingSumScorer2(
+                  new SingleMatchScorer((Scorer) requiredScorers.get(0)),
+                  optionalScorers);
+    } else { // more required scorers
+      return makeCountingSumScorer2(
+                  countingConjunctionSumScorer(requiredScorers),
+                  optionalScorers);
+    }
+  }
+
+  /** Returns the scorer to be used for match counting and score summing.
+   * Uses the arguments and prohibitedScorers.
+   * @param requiredCountingSumScorer A required scorer already built.
+   * @param optionalScorers A list of optional scorers, possibly empty.
+   */
+  private Scorer makeCountingSumScorer2(
+      Scorer requiredCountingSumScorer,
+      List optionalScorers) // not match counting
+  {
+    if (optionalScorers.size() == 0) { // no optional
+      if (prohibitedScorers.size() == 0) { // no prohibited
+        return requiredCountingSumScorer;
+      } else if (prohibitedScorers.size() == 1) { // no optional, 1 prohibited
+        return new ReqExclScorer(
+                      requiredCountingSumScorer,
+                      (Scorer) prohibitedScorers.get(0)); // not match counting
+      } else { // no optional, more prohibited
+        return new ReqExclScorer(
+                      requiredCountingSumScorer,
+                      new DisjunctionSumScorer(prohibitedScorers)); // score unused. not match counting
+      }
+    } else if (optionalScorers.size() == 1) { // 1 optional
+      return makeCountingSumScorer3(
+                      requiredCountingSumScorer,
+                      new SingleMatchScorer((Scorer) optionalScorers.get(0)));
+   } else { // more optional
+      return makeCountingSumScorer3(
+                      requiredCountingSumScorer,
+                      countingDisjunctionSumScorer(optionalScorers));
+    }
+  }
+
+  /** Returns the scorer to be used for match counting and score summing.
+   * Uses the arguments and prohibitedScorers.
+   * @param requiredCountingSumScorer A required scorer already built.
+   * @param optionalCountingSumScorer An optional scorer already built.
+   */
+  private Scorer makeCountingSumScorer3(
+      Scorer requiredCountingSumScorer,
+      Scorer optionalCountingSumScorer)
+  {
+    if (prohibitedScorers.size() == 0) { // no prohibited
+      return new ReqOptSumScorer(requiredCountingSumScorer,
+                                 optionalCountingSumScorer);
+    } else if (prohibitedScorers.size() == 1) { // 1 prohibited
+      return new ReqOptSumScorer(
+                    new ReqExclScorer(requiredCountingSumScorer,
+                                      (Scorer) prohibitedScorers.get(0)),  // not match counting
+                    optionalCountingSumScorer);
+    } else { // more prohibited
+      return new ReqOptSumScorer(
+                    new ReqExclScorer(
+                          requiredCountingSumScorer,
+                          new DisjunctionSumScorer(prohibitedScorers)), // score unused. not match counting
+                    optionalCountingSumScorer);
+    }
+  }
+
+  /** Scores and collects all matching documents.
+   * @param hc The collector to which all matching documents are passed through
+   * {@link HitCollector#collect(int, float)}.
+   * <br>When this method is used the {@link #explain(int)} method should not be used.
+   */
+  public void score(HitCollector hc) throws IOException {
+    if (countingSumScorer == null) {
+      initCountingSumScorer();
+    }
+    while (countingSumScorer.next()) {
+      hc.collect(countingSumScorer.doc(), score());
+    }
+  }
+
+  public int doc() { return countingSumScorer.doc(); }
+
+  public boolean next() throws IOException {
+    if (countingSumScorer == null) {
+      initCountingSumScorer();
+    }
+    return countingSumScorer.next();
+  }
+
+  public float score() throws IOException {
+    coordinator.initDoc();
+    float sum = countingSumScorer.score();
+    return sum * coordinator.coordFactor();
+  }
+
+  /** Skips to the first match beyond the current whose document number is
+   * greater than or equal to a given target.
+   * 
+   * <p>When this method is used the {@link #explain(int)} method should not be used.
+   * 
+   * @param target The target document number.
+   * @return true iff there is such a match.
+   */
+  public boolean skipTo(int target) throws IOException {
+    if (countingSumScorer == null) {
+      initCountingSumScorer();
+    }
+    return countingSumScorer.skipTo(target);
+  }
+
+  /** Explains the score of a document as the sum of the explanations of
+   * the required and optional scorers matching it, times the coordination
+   * factor, as the weight of a {@link BooleanQuery} does.
+   * @param doc The document number for the explanation.
+   */
+  public Explanation explain(int doc) throws IOException {
+    Iterator si = prohibitedScorers.iterator();
+    while (si.hasNext()) {
+      if (((Scorer) si.next()).explain(doc).getValue() > 0.0f)
+        return new Explanation(0.0f, "match prohibited");
+    }
+
+    Explanation sumExpl = new Explanation();
+    sumExpl.setDescription("sum of:");
+    int coord = 0;
+    float sum = 0.0f;
+    si = requiredScorers.iterator();
+    while (si.hasNext()) {
+      Explanation e = ((Scorer) si.next()).explain(doc);
+      if (e.getValue() <= 0.0f)
+        return new Explanation(0.0f, "match required");
+      sumExpl.addDetail(e);
+      sum += e.getValue();
+      coord++;
+    }
+    si = optionalScorers.iterator();
+    while (si.hasNext()) {
+      Explanation e = ((Scorer) si.next()).explain(doc);
+      if (e.getValue() > 0.0f) {
+        sumExpl.addDetail(e);
+        sum += e.getValue();
+        coord++;
+      }
+    }
+    sumExpl.setValue(sum);
+
+    int maxCoord = coordinator.maxCoord;
+    float coordFactor = getSimilarity().coord(coord, maxCoord);
+    Explanation result = new Explanation(sum * coordFactor, "product of:");
+    result.addDetail(sumExpl);
+    result.addDetail(new Explanation(coordFactor,
+                                     "coord(" + coord + "/" + maxCoord + ")"));
+    return result;
+  }
+
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("boolean2(");
+    Iterator i = requiredScorers.iterator();
+    while (i.hasNext()) {
+      buffer.append("+");
+      buffer.append(i.next().toString());
+      buffer.append(" ");
+    }
+    i = optionalScorers.iterator();
+    while (i.hasNext()) {
+      buffer.append(i.next().toString());
+      buffer.append(" ");
+    }
+    i = prohibitedScorers.iterator();
+    while (i.hasNext()) {
+      buffer.append("-");
+      buffer.append(i.next().toString());
+      buffer.append(" ");
+    }
+    buffer.append(")");
+    return buffer.toString();
+  }
+}
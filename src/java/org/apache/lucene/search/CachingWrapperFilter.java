@@ -38,6 +38,8 @@ public class CachingWrapperFilter extends Filter {
    */
   private transient Map cache;//key是索引的reader,value是缓存在该索引下 filter过滤的集合
 
+  private transient FilterCache filterCache;
+
   /**
    * @param filter Filter to cache results of
    */
@@ -45,28 +47,63 @@ public class CachingWrapperFilter extends Filter {
     this.filter = filter;
   }
 
+  /**
+   * Caches the results in a shared, bounded cache instead of one of this
+   * filter's own.  The results are then cached per segment, so
+   * <code>filter</code> must compute them from the reader it is given
+   * alone.
+   * @param filter Filter to cache results of
+   * @param filterCache Cache to keep them in
+   */
+  public CachingWrapperFilter(Filter filter, FilterCache filterCache) {
+    this.filter = filter;
+    this.filterCache = filterCache;
+  }
+
   public BitSet bits(IndexReader reader) throws IOException {
+    return DocIdBitSet.bitsOf(getDocIdSet(reader));
+  }
+
+  /** Returns the documents of the wrapped filter, which are cached in
+   * whichever form takes the least memory.
+   * @see DocIdSet#compact(DocIdSet)
+   */
+  public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+    if (filterCache != null) {
+      return filterCache.getDocIdSet(filter, reader);
+    }
+
     if (cache == null) {
       cache = new WeakHashMap();
     }
 
     synchronized (cache) {  // check cache
-      BitSet cached = (BitSet) cache.get(reader);
+      DocIdSet cached = (DocIdSet) cache.get(reader);
       if (cached != null) {
         return cached;
       }
     }
 
-    final BitSet bits = filter.bits(reader);
+    final DocIdSet docs = DocIdSet.compact(filter.getDocIdSet(reader));
 
     synchronized (cache) {  // update cache
-      cache.put(reader, bits);
+      cache.put(reader, docs);
     }
 
-    return bits;
+    return docs;
   }
 
   public String toString() {
     return "CachingWrapperFilter("+filter+")";
   }
+
+  /** Returns true iff <code>o</code> wraps an equal filter. */
+  public boolean equals(Object o) {
+    if (!(o instanceof CachingWrapperFilter)) return false;
+    return filter.equals(((CachingWrapperFilter)o).filter);
+  }
+
+  public int hashCode() {
+    return filter.hashCode() ^ 0x1117BF25;
+  }
 }
@@ -23,7 +23,7 @@ import java.util.*;
  *  scorers集合满足的query必须都要符合匹配要求
  *  一种优化方式,适用于所有的查询条件都是require的
  **/
-final class ConjunctionScorer extends Scorer {
+class ConjunctionScorer extends Scorer {
   private LinkedList scorers = new LinkedList();
   private boolean firstTime = true;//true表示尚未初始化
   private boolean more = true;
@@ -62,6 +62,11 @@ final class ConjunctionScorer extends Scorer {
   }
 
   public boolean skipTo(int target) throws IOException {
+    if (firstTime) {                              // skipTo() may be called
+      computeCoord();                             // before next(), e.g. from
+      more = scorers.size() > 0;                  // BooleanScorer2
+      firstTime = false;
+    }
     Iterator i = scorers.iterator();
     while (more && i.hasNext()) {
       more = ((Scorer)i.next()).skipTo(target);
@@ -85,7 +90,7 @@ final class ConjunctionScorer extends Scorer {
     more = scorers.size() > 0;
 
     // compute coord factor
-    coord = getSimilarity().coord(scorers.size(), scorers.size());//总共有多少个query,因为所有query都是require的,因此两个参数相同
+    computeCoord();
 
     // move each scorer to its first entry
     Iterator i = scorers.iterator();//循环每一个query查询子条件
@@ -98,6 +103,10 @@ final class ConjunctionScorer extends Scorer {
     firstTime = false;//初始化结束
   }
 
+  private void computeCoord() {
+    coord = getSimilarity().coord(scorers.size(), scorers.size());//总共有多少个query,因为所有query都是require的,因此两个参数相同
+  }
+
   private void sortScorers() throws IOException {
     // move scorers to an array
     Scorer[] array = (Scorer[])scorers.toArray(new Scorer[scorers.size()]);
@@ -143,4 +143,17 @@ public class DateFilter extends Filter {
     buffer.append(DateField.stringToDate(end).toString());
     return buffer.toString();
   }
+
+  /** Returns true iff <code>o</code> is a DateFilter of the same field and
+   * range. */
+  public boolean equals(Object o) {
+    if (!(o instanceof DateFilter)) return false;
+    DateFilter other = (DateFilter)o;
+    return field.equals(other.field) && start.equals(other.start)
+      && end.equals(other.end);
+  }
+
+  public int hashCode() {
+    return field.hashCode() ^ start.hashCode() ^ (end.hashCode() * 31);
+  }
 }
@@ -0,0 +1,70 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/** A {@link DocIdSet} of the bits set in a {@link BitSet}. */
+public class DocIdBitSet extends DocIdSet {
+  private final BitSet bits;
+
+  /** Constructs a set of the documents whose bits are set. */
+  public DocIdBitSet(BitSet bits) {
+    this.bits = bits;
+  }
+
+  /** Returns the underlying BitSet. */
+  public BitSet getBitSet() {
+    return bits;
+  }
+
+  public long sizeInBytes() {
+    return bits.size() >>> 3;
+  }
+
+  /** Returns the documents of a set as a BitSet. */
+  static BitSet bitsOf(DocIdSet set) throws IOException {
+    if (set instanceof DocIdBitSet)
+      return ((DocIdBitSet) set).getBitSet();
+    BitSet bits = new BitSet();
+    DocIdSetIterator iterator = set.iterator();
+    while (iterator.next())
+      bits.set(iterator.doc());
+    return bits;
+  }
+
+  public DocIdSetIterator iterator() {
+    return new DocIdSetIterator() {
+        private int doc = -1;
+
+        public int doc() {
+          return doc;
+        }
+
+        public boolean next() {
+          doc = bits.nextSetBit(doc + 1);
+          return doc != -1;
+        }
+
+        public boolean skipTo(int target) {
+          doc = bits.nextSetBit(Math.max(target, doc + 1));
+          return doc != -1;
+        }
+      };
+  }
+}
@@ -0,0 +1,106 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/** A set of document numbers, as returned by {@link
+ * Filter#getDocIdSet(org.apache.lucene.index.IndexReader)}. */
+public abstract class DocIdSet {
+
+  /** Returns a new iterator over the documents of this set.  Each call
+   * returns an independent iterator. */
+  public abstract DocIdSetIterator iterator();
+
+  /** Returns the number of bytes of memory taken by this set, or -1 if it
+   * is not known. */
+  public long sizeInBytes() {
+    return -1;
+  }
+
+  /** Returns the documents of <code>set</code> in whichever of {@link
+   * SortedVIntDocIdSet}, {@link RunLengthDocIdSet}, {@link RoaringDocIdSet}
+   * and {@link DocIdBitSet} takes the least memory.  Sparse sets are
+   * smallest as sorted VInts, sets of long ranges as runs, and dense ones as
+   * bits, whether of the whole index or of its densest parts.  The sizes
+   * are computed in a single pass before the set is copied, and a
+   * DocIdBitSet is returned as is if it is already the smallest.
+   */
+  public static DocIdSet compact(DocIdSet set) throws IOException {
+    long vInts = 0;
+    long runs = 0;
+    long chunks = 0;
+    int last = 0;                                 // previous doc
+    int runStart = -1, runEnd = 0, prevEnd = 0;   // current run [start, end)
+    int key = -1, chunkCount = 0;                 // current chunk of 65536
+    DocIdSetIterator docs = set.iterator();
+    while (docs.next()) {
+      int doc = docs.doc();
+      vInts += vIntSize(doc - last);
+      last = doc;
+
+      if (doc == runEnd && runStart != -1) {
+        runEnd++;
+      } else {
+        if (runStart != -1) {
+          runs += vIntSize(runStart - prevEnd) + vIntSize(runEnd - runStart - 1);
+          prevEnd = runEnd;
+        }
+        runStart = doc;
+        runEnd = doc + 1;
+      }
+
+      if ((doc >>> 16) != key) {
+        if (key != -1)
+          chunks += RoaringDocIdSet.chunkSize(chunkCount);
+        key = doc >>> 16;
+        chunkCount = 0;
+      }
+      chunkCount++;
+    }
+    if (runStart != -1)
+      runs += vIntSize(runStart - prevEnd) + vIntSize(runEnd - runStart - 1);
+    if (key != -1)
+      chunks += RoaringDocIdSet.chunkSize(chunkCount);
+    long bits = set instanceof DocIdBitSet
+      ? set.sizeInBytes()
+      : runStart == -1 ? 0 : ((last >>> 6) + 1) << 3;
+
+    if (bits < vInts && bits < runs && bits < chunks) {
+      if (set instanceof DocIdBitSet)
+        return set;
+      return new DocIdBitSet(DocIdBitSet.bitsOf(set));
+    } else if (vInts <= runs && vInts <= chunks) {
+      return new SortedVIntDocIdSet(set.iterator());
+    } else if (runs <= chunks) {
+      return new RunLengthDocIdSet(set.iterator());
+    } else {
+      return new RoaringDocIdSet(set.iterator());
+    }
+  }
+
+  /** Returns the number of bytes taken by a VInt. */
+  static int vIntSize(int i) {
+    int size = 1;
+    while ((i & ~0x7F) != 0) {
+      i >>>= 7;
+      size++;
+    }
+    return size;
+  }
+}
@@ -0,0 +1,38 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** Iterates over the document numbers of a {@link DocIdSet} in increasing
+ * order.  The methods are those of {@link Scorer}, so that the two can be
+ * advanced in step.
+ */
+public abstract class DocIdSetIterator {
+
+  /** Returns the current document number.  Initially invalid, until {@link
+   * #next()} or {@link #skipTo(int)} is called the first time. */
+  public abstract int doc();
+
+  /** Advances to the next document of the set.  Returns true iff there is
+   * one. */
+  public abstract boolean next() throws IOException;
+
+  /** Skips to the first document beyond the current whose number is greater
+   * than or equal to <i>target</i>.  Returns true iff there is one. */
+  public abstract boolean skipTo(int target) throws IOException;
+}
@@ -17,11 +17,18 @@ package org.apache.lucene.search;
  */
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.PackedInts;
 import java.io.IOException;
 
 /**
  * Expert: Maintains caches of term values.
  *
+ * <p>The values of a reader with {@link IndexReader#getSubReaders()
+ * sub-readers} are loaded for each sub-reader and combined, and both are
+ * kept, which takes twice the memory of the combined values alone.  In
+ * return, a reader {@link IndexReader#reopen() reopened} from another only
+ * loads the values of its new segments.
+ *
  * <p>Created: May 19, 2004 11:13:14 AM
  *
  * @author  Tim Jones (Nacimiento Software)
@@ -35,6 +42,9 @@ public interface FieldCache {
   // the same as any of those in SortField!!
   public static final int STRING_INDEX = -1;
 
+  /** Indicator for PackedStringIndex values in the cache. */
+  public static final int PACKED_STRING_INDEX = -2;
+
 
   /** Expert: Stores term text values and document ordering data. */
   public static class StringIndex {
@@ -53,6 +63,51 @@ public interface FieldCache {
   }
 
 
+  /** Expert: Stores term text values and document ordering data compactly.
+   * Each document's index into the terms takes only as many bits as the
+   * number of terms needs, and the text of all terms is kept in a single
+   * char array.  Index 0 stands for documents without a term. */
+  public static class PackedStringIndex {
+
+    private final PackedInts order;
+    private final char[] chars;
+    private final PackedInts offsets;
+
+    /** Creates one of these objects.  Term <code>i</code> is
+     * <code>chars</code> from <code>offsets.get(i)</code> up to
+     * <code>offsets.get(i+1)</code>. */
+    public PackedStringIndex (PackedInts order, char[] chars, PackedInts offsets) {
+      this.order = order;
+      this.chars = chars;
+      this.offsets = offsets;
+    }
+
+    /** Returns the index of the term of a document, the same as
+     * <code>StringIndex.order[doc]</code>. */
+    public final int getOrd (int doc) {
+      return order.get (doc);
+    }
+
+    /** Returns the text of a term, or null for index 0, the same as
+     * <code>StringIndex.lookup[ord]</code>. */
+    public final String lookup (int ord) {
+      if (ord == 0) return null;
+      int start = offsets.get (ord);
+      return new String (chars, start, offsets.get (ord + 1) - start);
+    }
+
+    /** Returns the number of term indexes, including index 0. */
+    public final int numOrds() {
+      return offsets.size() - 1;
+    }
+
+    /** Returns the number of bytes of memory taken by the values. */
+    public long sizeInBytes() {
+      return order.sizeInBytes() + ((long) chars.length << 1) + offsets.sizeInBytes();
+    }
+  }
+
+
   /** Expert: The cache used internally by sorting and range query classes. */
   public static FieldCache DEFAULT = new FieldCacheImpl();
 
@@ -105,6 +160,18 @@ public interface FieldCache {
   public StringIndex getStringIndex (IndexReader reader, String field)
   throws IOException;
 
+  /** Checks the internal cache for an appropriate entry, and if none
+   * is found reads the term values in <code>field</code> the same as
+   * {@link #getStringIndex(IndexReader,String)}, but keeps them in far
+   * less memory.
+   * @param reader  Used to get field values.
+   * @param field   Which field contains the strings.
+   * @return Terms and index into them for each document.
+   * @throws IOException  If any error occurs.
+   */
+  public PackedStringIndex getPackedStringIndex (IndexReader reader, String field)
+  throws IOException;
+
   /** Checks the internal cache for an appropriate entry, and if
    * none is found reads <code>field</code> to see if it contains integers, floats
    * or strings, and then calls one of the other methods in this class to get the
@@ -20,6 +20,7 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.util.PackedInts;
 
 import java.io.IOException;
 import java.util.Map;
@@ -30,6 +31,13 @@ import java.util.HashMap;
  * Expert: The default cache implementation, storing all values in memory.
  * A WeakHashMap is used for storage.
  *
+ * <p>Values of a reader with {@link IndexReader#getSubReaders() sub-readers}
+ * are built from the values of each sub-reader, which are cached too, so
+ * that a new reader sharing segments with an old one only loads the values
+ * of its new segments.  A value is loaded once even if several threads ask
+ * for it at the same time: the first one loads it while the others wait for
+ * it, and loads of different values proceed concurrently.
+ *
  * <p>Created: May 19, 2004 4:40:36 PM
  *
  * @author  Tim Jones (Nacimiento Software)
@@ -81,222 +89,501 @@ implements FieldCache {
   }
 
 
-  /** The internal cache. Maps Entry to array of interpreted term values. 
-   * key是Reader索引,value是map,map的key是Entry,value是具体的值 
-   ***/
-  final Map cache = new WeakHashMap();
+  /** Stands in the cache for a value while it is being loaded. */
+  static final class CreationPlaceholder {
+    Object value;
+  }
 
-  /** See if an object is in the cache. */
-  Object lookup (IndexReader reader, String field, int type) {
-    Entry entry = new Entry (field, type);
-    synchronized (this) {
-      HashMap readerCache = (HashMap)cache.get(reader);//先找到reader对应的map
-      if (readerCache == null) return null;
-      return readerCache.get (entry);//在map中查找对应的缓存值
+  /** Thrown while loading the values of a reader which has no terms at or
+   * after the field at all. */
+  static final class NoTermsException extends RuntimeException {
+    NoTermsException (String message) {
+      super (message);
     }
   }
 
-  /** See if a custom object is in the cache. 定义该field需要一个自定义比较器*/
-  Object lookup (IndexReader reader, String field, Object comparer) {
-    Entry entry = new Entry (field, comparer);
-    synchronized (this) {
-      HashMap readerCache = (HashMap)cache.get(reader);
-      if (readerCache == null) return null;
-      return readerCache.get (entry);
+  /** Expert: Internal cache of one kind of values. */
+  abstract static class Cache {
+    /** The internal cache.  Maps the {@link
+     * IndexReader#getFieldCacheKey() key} of each reader to a map from
+     * Entry to the values, or to the placeholder of values being loaded.
+     * key是Reader索引,value是map,map的key是Entry,value是具体的值 */
+    final Map readerCache = new WeakHashMap();
+
+    /** Loads the values of a reader without sub-readers. */
+    protected abstract Object createValue (IndexReader reader, Entry key)
+      throws IOException;
+
+    /** Returns the cached values, loading them first if needed. */
+    Object get (IndexReader reader, Entry key) throws IOException {
+      Map innerCache;
+      Object value;
+      Object readerKey = reader.getFieldCacheKey();
+      synchronized (readerCache) {
+        innerCache = (Map) readerCache.get (readerKey);
+        if (innerCache == null) {
+          innerCache = new HashMap();
+          readerCache.put (readerKey, innerCache);
+        }
+        value = innerCache.get (key);
+        if (value == null) {
+          value = new CreationPlaceholder();
+          innerCache.put (key, value);
+        }
+      }
+      if (value instanceof CreationPlaceholder) {
+        synchronized (value) {                    // others wait for the loader
+          CreationPlaceholder progress = (CreationPlaceholder) value;
+          if (progress.value == null) {
+            progress.value = load (reader, key);
+            synchronized (readerCache) {
+              innerCache.put (key, progress.value);
+            }
+          }
+          return progress.value;
+        }
+      }
+      return value;
+    }
+
+    /** Loads the values of a reader.  This implementation creates them for
+     * the reader as a whole. */
+    Object load (IndexReader reader, Entry key) throws IOException {
+      return createValue (reader, key);
     }
   }
 
-  /** Put an object into the cache. 存储数据*/
-  Object store (IndexReader reader, String field, int type, Object value) {
-    Entry entry = new Entry (field, type);
-    synchronized (this) {
-      HashMap readerCache = (HashMap)cache.get(reader);
-      if (readerCache == null) {
-        readerCache = new HashMap();
-        cache.put(reader,readerCache);
+  /** Expert: Internal cache of values which are loaded per sub-reader, so
+   * that those of unchanged segments are shared by a reader and those
+   * {@link IndexReader#reopen() reopened} from it.  The values of a reader
+   * with sub-readers are thus held twice: once in the arrays of its
+   * sub-readers, and once combined for the whole reader. */
+  abstract static class CombiningCache extends Cache {
+    /** Builds the values of a reader from those of its sub-readers, some
+     * of which may be null if the sub-reader has no terms at all. */
+    protected abstract Object combine (IndexReader reader, Entry key,
+                                       IndexReader[] subReaders,
+                                       Object[] subValues)
+      throws IOException;
+
+    /** Loads the values of a reader, from its sub-readers if it has any. */
+    Object load (IndexReader reader, Entry key) throws IOException {
+      IndexReader[] subReaders = reader.getSubReaders();
+      if (subReaders == null || subReaders.length == 0)
+        return createValue (reader, key);
+
+      Object[] subValues = new Object[subReaders.length];
+      NoTermsException noTerms = null;
+      for (int i = 0; i < subReaders.length; i++) {
+        try {
+          subValues[i] = get (subReaders[i], key);
+        } catch (NoTermsException e) {          // as if no doc had a term
+          noTerms = e;
+        }
       }
-      return readerCache.put (entry, value);
+      if (noTerms != null && allNull (subValues))
+        throw noTerms;
+      return combine (reader, key, subReaders, subValues);
+    }
+
+    private static boolean allNull (Object[] values) {
+      for (int i = 0; i < values.length; i++)
+        if (values[i] != null)
+          return false;
+      return true;
     }
   }
 
-  /** Put a custom object into the cache. */
-  Object store (IndexReader reader, String field, Object comparer, Object value) {
-    Entry entry = new Entry (field, comparer);
-    synchronized (this) {
-      HashMap readerCache = (HashMap)cache.get(reader);
-      if (readerCache == null) {
-        readerCache = new HashMap();
-        cache.put(reader, readerCache);
-      }
-      return readerCache.put (entry, value);
+  /** Copies the values of each sub-reader into one array at the sub-reader's
+   * doc base; the values of sub-readers without terms stay at their
+   * default. */
+  static void combineArrays (Object result, IndexReader[] subReaders,
+                             Object[] subValues) {
+    int base = 0;
+    for (int i = 0; i < subReaders.length; i++) {
+      int maxDoc = subReaders[i].maxDoc();
+      if (subValues[i] != null)
+        System.arraycopy (subValues[i], 0, result, base, maxDoc);
+      base += maxDoc;
+    }
+  }
+
+  /** Positions a TermEnum at the first term of field, or throws if the
+   * reader has no terms at or after it. */
+  static TermEnum terms (IndexReader reader, String field) throws IOException {
+    TermEnum termEnum = reader.terms (new Term (field, ""));
+    if (termEnum.term() == null) {
+      termEnum.close();
+      throw new NoTermsException ("no terms in field " + field);
     }
+    return termEnum;
   }
 
+  final Cache intsCache = new CombiningCache() {
+      protected Object createValue (IndexReader reader, Entry entry)
+        throws IOException {
+        String field = entry.field;
+        final int[] retArray = new int[reader.maxDoc()];
+        if (retArray.length > 0) {
+          TermDocs termDocs = reader.termDocs();
+          TermEnum termEnum = terms (reader, field);
+          try {
+            do {
+              Term term = termEnum.term();
+              if (term.field() != field) break;
+              int termval = Integer.parseInt (term.text());
+              termDocs.seek (termEnum);
+              while (termDocs.next()) {
+                retArray[termDocs.doc()] = termval;
+              }
+            } while (termEnum.next());
+          } finally {
+            termDocs.close();
+            termEnum.close();
+          }
+        }
+        return retArray;
+      }
+
+      protected Object combine (IndexReader reader, Entry entry,
+                                IndexReader[] subReaders, Object[] subValues) {
+        int[] retArray = new int[reader.maxDoc()];
+        combineArrays (retArray, subReaders, subValues);
+        return retArray;
+      }
+    };
+
   // inherit javadocs
   public int[] getInts (IndexReader reader, String field)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, SortField.INT);
-    if (ret == null) {
-      final int[] retArray = new int[reader.maxDoc()];
-      if (retArray.length > 0) {
-        TermDocs termDocs = reader.termDocs();
-        TermEnum termEnum = reader.terms (new Term (field, ""));
-        try {
-          if (termEnum.term() == null) {
-            throw new RuntimeException ("no terms in field " + field);
+    return (int[]) intsCache.get (reader, new Entry (field, SortField.INT));
+  }
+
+  final Cache floatsCache = new CombiningCache() {
+      protected Object createValue (IndexReader reader, Entry entry)
+        throws IOException {
+        String field = entry.field;
+        final float[] retArray = new float[reader.maxDoc()];
+        if (retArray.length > 0) {
+          TermDocs termDocs = reader.termDocs();
+          TermEnum termEnum = terms (reader, field);
+          try {
+            do {
+              Term term = termEnum.term();
+              if (term.field() != field) break;
+              float termval = Float.parseFloat (term.text());
+              termDocs.seek (termEnum);
+              while (termDocs.next()) {
+                retArray[termDocs.doc()] = termval;
+              }
+            } while (termEnum.next());
+          } finally {
+            termDocs.close();
+            termEnum.close();
           }
-          do {
-            Term term = termEnum.term();
-            if (term.field() != field) break;
-            int termval = Integer.parseInt (term.text());
-            termDocs.seek (termEnum);
-            while (termDocs.next()) {
-              retArray[termDocs.doc()] = termval;
-            }
-          } while (termEnum.next());
-        } finally {
-          termDocs.close();
-          termEnum.close();
         }
+        return retArray;
       }
-      store (reader, field, SortField.INT, retArray);
-      return retArray;
-    }
-    return (int[]) ret;
-  }
+
+      protected Object combine (IndexReader reader, Entry entry,
+                                IndexReader[] subReaders, Object[] subValues) {
+        float[] retArray = new float[reader.maxDoc()];
+        combineArrays (retArray, subReaders, subValues);
+        return retArray;
+      }
+    };
 
   // inherit javadocs
   public float[] getFloats (IndexReader reader, String field)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, SortField.FLOAT);
-    if (ret == null) {
-      final float[] retArray = new float[reader.maxDoc()];
-      if (retArray.length > 0) {
-        TermDocs termDocs = reader.termDocs();
-        TermEnum termEnum = reader.terms (new Term (field, ""));
-        try {
-          if (termEnum.term() == null) {
-            throw new RuntimeException ("no terms in field " + field);
+    return (float[]) floatsCache.get (reader, new Entry (field, SortField.FLOAT));
+  }
+
+  final Cache stringsCache = new CombiningCache() {
+      // 因为每一个doc文档的field上是字符串,而相同字符串内容的又以doc集合形式连接在一起
+      //因此先获取字符串内容---然后获取相同字符串的docid,将docid的位置在数组中添加内容，然后获取下一个字符串以此类推
+      //数组返回值每一个元素表示doc的具体的值
+      protected Object createValue (IndexReader reader, Entry entry)
+        throws IOException {
+        String field = entry.field;
+        final String[] retArray = new String[reader.maxDoc()];//每一个文档占用一个数组位置
+        if (retArray.length > 0) {
+          TermDocs termDocs = reader.termDocs();
+          TermEnum termEnum = terms (reader, field);//定位到该field第一个字符
+          try {
+            do {
+              Term term = termEnum.term();//该field内的第一个term
+              if (term.field() != field) break;
+              String termval = term.text();//具体的term值
+              termDocs.seek (termEnum);
+              while (termDocs.next()) {//获取该term所在的下一个doc,即相同doc中内容相同的field value
+                retArray[termDocs.doc()] = termval;//每一个doc的内容
+              }
+            } while (termEnum.next());
+          } finally {
+            termDocs.close();
+            termEnum.close();
           }
-          do {
-            Term term = termEnum.term();
-            if (term.field() != field) break;
-            float termval = Float.parseFloat (term.text());
-            termDocs.seek (termEnum);
-            while (termDocs.next()) {
-              retArray[termDocs.doc()] = termval;
-            }
-          } while (termEnum.next());
-        } finally {
-          termDocs.close();
-          termEnum.close();
         }
+        return retArray;
       }
-      store (reader, field, SortField.FLOAT, retArray);
-      return retArray;
-    }
-    return (float[]) ret;
-  }
 
-  // inherit javadocs  因为每一个doc文档的field上是字符串,而相同字符串内容的又以doc集合形式连接在一起
-  //因此先获取字符串内容---然后获取相同字符串的docid,将docid的位置在数组中添加内容，然后获取下一个字符串以此类推
-  //数组返回值每一个元素表示doc的具体的值
+      protected Object combine (IndexReader reader, Entry entry,
+                                IndexReader[] subReaders, Object[] subValues) {
+        String[] retArray = new String[reader.maxDoc()];
+        combineArrays (retArray, subReaders, subValues);
+        return retArray;
+      }
+    };
+
+  // inherit javadocs
   public String[] getStrings (IndexReader reader, String field)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, SortField.STRING);
-    if (ret == null) {
-      final String[] retArray = new String[reader.maxDoc()];//每一个文档占用一个数组位置
-      if (retArray.length > 0) {
-        TermDocs termDocs = reader.termDocs();
-        TermEnum termEnum = reader.terms (new Term (field, ""));//定位到该field第一个字符
-        try {
-          if (termEnum.term() == null) {
-            throw new RuntimeException ("no terms in field " + field);
+    return (String[]) stringsCache.get (reader, new Entry (field, SortField.STRING));
+  }
+
+  final Cache stringIndexCache = new CombiningCache() {
+      // 比上面的方法省空间，因为相同的词出现n次,不应该被存储多次，而存储一次即可,两个数组互相作用即可
+      protected Object createValue (IndexReader reader, Entry entry)
+        throws IOException {
+        String field = entry.field;
+        final int[] retArray = new int[reader.maxDoc()];//存储每一个doc文档值所在term的序号
+        String[] mterms = new String[reader.maxDoc()+1];//通过term是第几个词,可以在该数字内查找到具体的内容
+        if (retArray.length > 0) {
+          TermDocs termDocs = reader.termDocs();
+          TermEnum termEnum = terms (reader, field);
+          int t = 0;  // current term number
+
+          // an entry for documents that have no terms in this field
+          // should a document with no terms be at top or bottom?
+          // this puts them at the top - if it is changed, FieldDocSortedHitQueue
+          // needs to change as well.
+          mterms[t++] = null;
+
+          try {
+            do {
+              Term term = termEnum.term();
+              if (term.field() != field) break;
+
+              // store term text
+              // we expect that there is at most one term per document
+              if (t >= mterms.length) throw new RuntimeException ("there are more terms than documents in field \"" + field + "\"");
+              mterms[t] = term.text();//存储具体的内容
+
+              termDocs.seek (termEnum);
+              while (termDocs.next()) {//因为所有doc都持有相同的term值
+                retArray[termDocs.doc()] = t;//相同的term都有相同的序号--即term的排序
+              }
+
+              t++;
+            } while (termEnum.next());//获取下一个term
+          } finally {
+            termDocs.close();
+            termEnum.close();
+          }
+
+          if (t == 0) {
+            // if there are no terms, make the term array
+            // have a single null entry
+            mterms = new String[1];
+          } else if (t < mterms.length) {
+            // if there are less terms than documents,
+            // trim off the dead array space
+            String[] terms = new String[t];
+            System.arraycopy (mterms, 0, terms, 0, t);
+            mterms = terms;
           }
-          do {
-            Term term = termEnum.term();//该field内的第一个term
-            if (term.field() != field) break;
-            String termval = term.text();//具体的term值
-            termDocs.seek (termEnum);
-            while (termDocs.next()) {//获取该term所在的下一个doc,即相同doc中内容相同的field value
-              retArray[termDocs.doc()] = termval;//每一个doc的内容
+        }
+        return new StringIndex (retArray, mterms);
+      }
+
+      /** Merges the sorted term values of the sub-readers and maps the
+       * order of each sub-reader's documents to the merged values. */
+      protected Object combine (IndexReader reader, Entry entry,
+                                IndexReader[] subReaders, Object[] subValues) {
+        int n = subReaders.length;
+        String[][] lookups = new String[n][];
+        int[][] maps = new int[n][];              // sub-reader ord -> ord
+        int[] upto = new int[n];
+        int total = 1;
+        for (int i = 0; i < n; i++) {
+          lookups[i] = subValues[i] == null
+            ? new String[1] : ((StringIndex) subValues[i]).lookup;
+          maps[i] = new int[lookups[i].length];   // maps[i][0] == 0: no term
+          upto[i] = 1;
+          total += lookups[i].length - 1;
+        }
+
+        String[] mterms = new String[total];
+        int t = 1;
+        while (true) {
+          String min = null;                      // smallest value left
+          for (int i = 0; i < n; i++) {
+            if (upto[i] < lookups[i].length) {
+              String value = lookups[i][upto[i]];
+              if (min == null || value.compareTo (min) < 0)
+                min = value;
             }
-          } while (termEnum.next());
-        } finally {
-          termDocs.close();
-          termEnum.close();
+          }
+          if (min == null)
+            break;
+          for (int i = 0; i < n; i++) {
+            if (upto[i] < lookups[i].length && lookups[i][upto[i]].equals (min))
+              maps[i][upto[i]++] = t;
+          }
+          mterms[t++] = min;
         }
+        if (t < mterms.length) {
+          String[] terms = new String[t];
+          System.arraycopy (mterms, 0, terms, 0, t);
+          mterms = terms;
+        }
+
+        int[] retArray = new int[reader.maxDoc()];
+        int base = 0;
+        for (int i = 0; i < n; i++) {
+          if (subValues[i] != null) {
+            int[] order = ((StringIndex) subValues[i]).order;
+            int[] map = maps[i];
+            for (int doc = 0; doc < order.length; doc++)
+              retArray[base + doc] = map[order[doc]];
+          }
+          base += subReaders[i].maxDoc();
+        }
+        return new StringIndex (retArray, mterms);
       }
-      store (reader, field, SortField.STRING, retArray);
-      return retArray;
-    }
-    return (String[]) ret;
-  }
+    };
 
-  // inherit javadocs  比上面的方法省空间，因为相同的词出现n次,不应该被存储多次，而存储一次即可,两个数组互相作用即可
+  // inherit javadocs
   public StringIndex getStringIndex (IndexReader reader, String field)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, STRING_INDEX);
-    if (ret == null) {
-      final int[] retArray = new int[reader.maxDoc()];//存储每一个doc文档值所在term的序号
-      String[] mterms = new String[reader.maxDoc()+1];//通过term是第几个词,可以在该数字内查找到具体的内容
-      if (retArray.length > 0) {
-        TermDocs termDocs = reader.termDocs();
-        TermEnum termEnum = reader.terms (new Term (field, ""));
-        int t = 0;  // current term number
-
-        // an entry for documents that have no terms in this field
-        // should a document with no terms be at top or bottom?
-        // this puts them at the top - if it is changed, FieldDocSortedHitQueue
-        // needs to change as well.
-        mterms[t++] = null;
+    return (StringIndex) stringIndexCache.get (reader, new Entry (field, STRING_INDEX));
+  }
 
-        try {
-          if (termEnum.term() == null) {
-            throw new RuntimeException ("no terms in field " + field);
+  final Cache packedStringIndexCache = new CombiningCache() {
+      /** Reads the terms twice: first to size the arrays, then to fill
+       * them. */
+      protected Object createValue (IndexReader reader, Entry entry)
+        throws IOException {
+        String field = entry.field;
+        int maxDoc = reader.maxDoc();
+        int numTerms = 0;
+        int numChars = 0;
+        if (maxDoc > 0) {
+          TermEnum termEnum = terms (reader, field);
+          try {
+            do {
+              Term term = termEnum.term();
+              if (term.field() != field) break;
+              numTerms++;
+              numChars += term.text().length();
+            } while (termEnum.next());
+          } finally {
+            termEnum.close();
           }
-          do {
-            Term term = termEnum.term();
-            if (term.field() != field) break;
-
-            // store term text
-            // we expect that there is at most one term per document
-            if (t >= mterms.length) throw new RuntimeException ("there are more terms than documents in field \"" + field + "\"");
-            mterms[t] = term.text();//存储具体的内容
-
-            termDocs.seek (termEnum);
-            while (termDocs.next()) {//因为所有doc都持有相同的term值
-              retArray[termDocs.doc()] = t;//相同的term都有相同的序号--即term的排序
-            }
+          // we expect that there is at most one term per document
+          if (numTerms > maxDoc) throw new RuntimeException ("there are more terms than documents in field \"" + field + "\"");
+        }
 
-            t++;
-          } while (termEnum.next());//获取下一个term
-        } finally {
-          termDocs.close();
-          termEnum.close();
+        PackedInts order = new PackedInts (maxDoc, PackedInts.bitsRequired (numTerms));
+        char[] chars = new char[numChars];
+        PackedInts offsets = new PackedInts (numTerms + 2, PackedInts.bitsRequired (numChars));
+        if (numTerms > 0) {
+          TermDocs termDocs = reader.termDocs();
+          TermEnum termEnum = terms (reader, field);
+          int t = 1;                              // 0 is for docs without a term
+          int upto = 0;
+          try {
+            do {
+              Term term = termEnum.term();
+              if (term.field() != field || t > numTerms) break;
+              String text = term.text();
+              text.getChars (0, text.length(), chars, upto);
+              upto += text.length();
+              offsets.set (t + 1, upto);
+
+              termDocs.seek (termEnum);
+              while (termDocs.next()) {
+                order.set (termDocs.doc(), t);
+              }
+
+              t++;
+            } while (termEnum.next());
+          } finally {
+            termDocs.close();
+            termEnum.close();
+          }
         }
+        return new PackedStringIndex (order, chars, offsets);
+      }
 
-        if (t == 0) {
-          // if there are no terms, make the term array
-          // have a single null entry
-          mterms = new String[1];
-        } else if (t < mterms.length) {
-          // if there are less terms than documents,
-          // trim off the dead array space
-          String[] terms = new String[t];
-          System.arraycopy (mterms, 0, terms, 0, t);
-          mterms = terms;
+      /** Merges the sorted term values of the sub-readers, the same as for
+       * a StringIndex. */
+      protected Object combine (IndexReader reader, Entry entry,
+                                IndexReader[] subReaders, Object[] subValues) {
+        int n = subReaders.length;
+        PackedStringIndex[] subs = new PackedStringIndex[n];
+        String[] current = new String[n];         // next term of each sub-reader
+        int[][] maps = new int[n][];              // sub-reader ord -> ord
+        int[] upto = new int[n];
+        int total = 1;
+        for (int i = 0; i < n; i++) {
+          subs[i] = (PackedStringIndex) subValues[i];
+          int numOrds = subs[i] == null ? 1 : subs[i].numOrds();
+          maps[i] = new int[numOrds];
+          upto[i] = 1;
+          if (numOrds > 1)
+            current[i] = subs[i].lookup (1);
+          total += numOrds - 1;
+        }
+
+        StringBuffer buffer = new StringBuffer();
+        int[] starts = new int[total + 1];
+        int t = 1;
+        while (true) {
+          String min = null;                      // smallest value left
+          for (int i = 0; i < n; i++) {
+            if (current[i] != null && (min == null || current[i].compareTo (min) < 0))
+              min = current[i];
+          }
+          if (min == null)
+            break;
+          for (int i = 0; i < n; i++) {
+            if (current[i] != null && current[i].equals (min)) {
+              maps[i][upto[i]++] = t;
+              current[i] = upto[i] < maps[i].length ? subs[i].lookup (upto[i]) : null;
+            }
+          }
+          starts[t++] = buffer.length();
+          buffer.append (min);
+        }
+        starts[t] = buffer.length();
+
+        char[] chars = new char[buffer.length()];
+        buffer.getChars (0, chars.length, chars, 0);
+        PackedInts offsets = new PackedInts (t + 1, PackedInts.bitsRequired (chars.length));
+        for (int i = 2; i <= t; i++)
+          offsets.set (i, starts[i]);
+
+        PackedInts order = new PackedInts (reader.maxDoc(), PackedInts.bitsRequired (t - 1));
+        int base = 0;
+        for (int i = 0; i < n; i++) {
+          int maxDoc = subReaders[i].maxDoc();
+          if (subs[i] != null) {
+            int[] map = maps[i];
+            for (int doc = 0; doc < maxDoc; doc++)
+              order.set (base + doc, map[subs[i].getOrd (doc)]);
+          }
+          base += maxDoc;
         }
+        return new PackedStringIndex (order, chars, offsets);
       }
-      StringIndex value = new StringIndex (retArray, mterms);
-      store (reader, field, STRING_INDEX, value);
-      return value;
-    }
-    return (StringIndex) ret;
+    };
+
+  // inherit javadocs
+  public PackedStringIndex getPackedStringIndex (IndexReader reader, String field)
+  throws IOException {
+    return (PackedStringIndex) packedStringIndexCache.get (reader, new Entry (field, PACKED_STRING_INDEX));
   }
 
   /** The pattern used to detect integer values in a field */
@@ -310,90 +597,113 @@ implements FieldCache {
    * protected static final Object pFloats = Pattern.compile ("[0-9+\\-\\.eEfFdD]+");
    */
 
-  // inherit javadocs
-  public Object getAuto (IndexReader reader, String field)
-  throws IOException {
+  /** Decides the type of a field from its first term in the reader as a
+   * whole: {@link SortField#INT}, {@link SortField#FLOAT} or {@link
+   * SortField#STRING}. */
+  static int autoType (IndexReader reader, String field) throws IOException {
     field = field.intern();
-    Object ret = lookup (reader, field, SortField.AUTO);
-    if (ret == null) {
-      TermEnum enumerator = reader.terms (new Term (field, ""));
-      try {
-        Term term = enumerator.term();//获取该term的第一个词
-        if (term == null) {
-          throw new RuntimeException ("no terms in field " + field + " - cannot determine sort type");
-        }
-        if (term.field() == field) {
-          String termtext = term.text().trim();//判断第一个词的类型是什么值
+    TermEnum enumerator = reader.terms (new Term (field, ""));
+    try {
+      Term term = enumerator.term();//获取该term的第一个词
+      if (term == null) {
+        throw new RuntimeException ("no terms in field " + field + " - cannot determine sort type");
+      }
+      if (term.field() == field) {
+        String termtext = term.text().trim();//判断第一个词的类型是什么值
 
-          /**
-           * Java 1.4 level code:
+        /**
+         * Java 1.4 level code:
 
-           if (pIntegers.matcher(termtext).matches())
-           return IntegerSortedHitQueue.comparator (reader, enumerator, field);
+         if (pIntegers.matcher(termtext).matches())
+         return IntegerSortedHitQueue.comparator (reader, enumerator, field);
 
-           else if (pFloats.matcher(termtext).matches())
-           return FloatSortedHitQueue.comparator (reader, enumerator, field);
-           */
+         else if (pFloats.matcher(termtext).matches())
+         return FloatSortedHitQueue.comparator (reader, enumerator, field);
+         */
 
-          // Java 1.3 level code:
+        // Java 1.3 level code:
+        try {
+          Integer.parseInt (termtext);
+          return SortField.INT;
+        } catch (NumberFormatException nfe1) {
           try {
-            Integer.parseInt (termtext);
-            ret = getInts (reader, field);
-          } catch (NumberFormatException nfe1) {
-            try {
-              Float.parseFloat (termtext);
-              ret = getFloats (reader, field);
-            } catch (NumberFormatException nfe2) {
-              ret = getStringIndex (reader, field);
-            }
-          }
-          if (ret != null) {
-            store (reader, field, SortField.AUTO, ret);//存储自动的索引为具体的比较类型
+            Float.parseFloat (termtext);
+            return SortField.FLOAT;
+          } catch (NumberFormatException nfe2) {
+            return SortField.STRING;
           }
-        } else {
-          throw new RuntimeException ("field \"" + field + "\" does not appear to be indexed");
         }
-      } finally {
-        enumerator.close();
+      } else {
+        throw new RuntimeException ("field \"" + field + "\" does not appear to be indexed");
       }
-
+    } finally {
+      enumerator.close();
     }
-    return ret;
   }
 
-  // inherit javadocs  自定义一个比较工厂
-  public Comparable[] getCustom (IndexReader reader, String field, SortComparator comparator)
+  /** Decides the type of a field from the reader as a whole, then returns
+   * the values of that type, which are loaded per sub-reader. */
+  final Cache autoCache = new Cache() {
+      protected Object createValue (IndexReader reader, Entry entry)
+        throws IOException {
+        String field = entry.field;
+        switch (autoType (reader, field)) {
+        case SortField.INT:
+          return getInts (reader, field);
+        case SortField.FLOAT:
+          return getFloats (reader, field);
+        default:
+          return getStringIndex (reader, field);
+        }
+      }
+    };
+
+  // inherit javadocs
+  public Object getAuto (IndexReader reader, String field)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, comparator);
-    if (ret == null) {//创建一个比较工厂
-      final Comparable[] retArray = new Comparable[reader.maxDoc()];//每一个doc的比较工厂是不相同的
-      if (retArray.length > 0) {
-        TermDocs termDocs = reader.termDocs();
-        TermEnum termEnum = reader.terms (new Term (field, ""));//先定位到该field的第一个term词
-        try {
-          if (termEnum.term() == null) {
-            throw new RuntimeException ("no terms in field " + field);
+    return autoCache.get (reader, new Entry (field, SortField.AUTO));
+  }
+
+  final Cache customCache = new CombiningCache() {
+      // 自定义一个比较工厂
+      protected Object createValue (IndexReader reader, Entry entry)
+        throws IOException {
+        String field = entry.field;
+        SortComparator comparator = (SortComparator) entry.custom;
+        final Comparable[] retArray = new Comparable[reader.maxDoc()];//每一个doc的比较工厂是不相同的
+        if (retArray.length > 0) {
+          TermDocs termDocs = reader.termDocs();
+          TermEnum termEnum = terms (reader, field);//先定位到该field的第一个term词
+          try {
+            do {
+              Term term = termEnum.term();
+              if (term.field() != field) break;//找到该field最后一个term后退出
+              Comparable termval = comparator.getComparable (term.text());//找到该值对应的比较器
+              termDocs.seek (termEnum);
+              while (termDocs.next()) {//找到该term的下一个文档的词频、docid等信息
+                retArray[termDocs.doc()] = termval;//存储每一个值对应的比较器
+              }
+            } while (termEnum.next());//不断迭代该field中的term
+          } finally {
+            termDocs.close();
+            termEnum.close();
           }
-          do {
-            Term term = termEnum.term();
-            if (term.field() != field) break;//找到该field最后一个term后退出
-            Comparable termval = comparator.getComparable (term.text());//找到该值对应的比较器
-            termDocs.seek (termEnum);
-            while (termDocs.next()) {//找到该term的下一个文档的词频、docid等信息
-              retArray[termDocs.doc()] = termval;//存储每一个值对应的比较器
-            }
-          } while (termEnum.next());//不断迭代该field中的term
-        } finally {
-          termDocs.close();
-          termEnum.close();
         }
+        return retArray;
       }
-      store (reader, field, SortField.CUSTOM, retArray);
-      return retArray;
-    }
-    return (Comparable[]) ret;
+
+      protected Object combine (IndexReader reader, Entry entry,
+                                IndexReader[] subReaders, Object[] subValues) {
+        Comparable[] retArray = new Comparable[reader.maxDoc()];
+        combineArrays (retArray, subReaders, subValues);
+        return retArray;
+      }
+    };
+
+  // inherit javadocs
+  public Comparable[] getCustom (IndexReader reader, String field, SortComparator comparator)
+  throws IOException {
+    return (Comparable[]) customCache.get (reader, new Entry (field, comparator));
   }
 
 }
-
@@ -20,10 +20,13 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.util.PriorityQueue;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.WeakHashMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Locale;
+import java.text.CollationKey;
 import java.text.Collator;
 
 /**
@@ -266,12 +269,12 @@ extends PriorityQueue {
   static ScoreDocComparator comparatorString (final IndexReader reader, final String fieldname)
   throws IOException {
     final String field = fieldname.intern();
-    final FieldCache.StringIndex index = FieldCache.DEFAULT.getStringIndex (reader, field);//获取每一个具体的值如何排序
+    final FieldCache.PackedStringIndex index = FieldCache.DEFAULT.getPackedStringIndex (reader, field);//获取每一个具体的值如何排序
     return new ScoreDocComparator () {
 
       public final int compare (final ScoreDoc i, final ScoreDoc j) {
-        final int fi = index.order[i.doc];//i.doc表示该文档对应的term所在序号,从order中获取该term排名
-        final int fj = index.order[j.doc];
+        final int fi = index.getOrd (i.doc);//i.doc表示该文档对应的term所在序号,从order中获取该term排名
+        final int fj = index.getOrd (j.doc);
         if (fi < fj) return -1;
         if (fi > fj) return 1;
         return 0;
@@ -279,7 +282,7 @@ extends PriorityQueue {
 
       //返回具体的term内容
       public Comparable sortValue (final ScoreDoc i) {
-        return index.lookup[index.order[i.doc]];
+        return index.lookup (index.getOrd (i.doc));
       }
 
       public int sortType() {
@@ -299,15 +302,40 @@ extends PriorityQueue {
   throws IOException {
     final Collator collator = Collator.getInstance (locale);
     final String field = fieldname.intern();
-    final String[] index = FieldCache.DEFAULT.getStrings (reader, field);
+    final FieldCache.PackedStringIndex index = FieldCache.DEFAULT.getPackedStringIndex (reader, field);
+
+    // rank the terms by the collator once, so hits need only compare ranks
+    final CollationKey[] keys = new CollationKey[index.numOrds()];
+    Integer[] ords = new Integer[keys.length - 1];
+    for (int ord = 1; ord < keys.length; ord++) {
+      keys[ord] = collator.getCollationKey (index.lookup (ord));
+      ords[ord - 1] = new Integer (ord);
+    }
+    Arrays.sort (ords, new Comparator() {
+      public int compare (Object a, Object b) {
+        return keys[((Integer) a).intValue()].compareTo (keys[((Integer) b).intValue()]);
+      }
+    });
+    final int[] ranks = new int[keys.length];   // docs without a term rank first
+    for (int k = 0, rank = 0; k < ords.length; k++) {
+      int ord = ords[k].intValue();
+      if (k == 0 || keys[ord].compareTo (keys[ords[k - 1].intValue()]) != 0)
+        rank++;
+      ranks[ord] = rank;
+    }
+
     return new ScoreDocComparator() {
 
       public final int compare (final ScoreDoc i, final ScoreDoc j) {
-        return collator.compare (index[i.doc], index[j.doc]);
+        final int fi = ranks[index.getOrd (i.doc)];
+        final int fj = ranks[index.getOrd (j.doc)];
+        if (fi < fj) return -1;
+        if (fi > fj) return 1;
+        return 0;
       }
 
       public Comparable sortValue (final ScoreDoc i) {
-        return index[i.doc];
+        return index.lookup (index.getOrd (i.doc));
       }
 
       public int sortType() {
@@ -329,17 +357,14 @@ extends PriorityQueue {
   static ScoreDocComparator comparatorAuto (final IndexReader reader, final String fieldname)
   throws IOException {
     final String field = fieldname.intern();
-    Object lookupArray = FieldCache.DEFAULT.getAuto (reader, field);
-    if (lookupArray instanceof FieldCache.StringIndex) {
-      return comparatorString (reader, field);
-    } else if (lookupArray instanceof int[]) {
+    // the type only, since getAuto() would load a StringIndex for strings
+    switch (FieldCacheImpl.autoType (reader, field)) {
+    case SortField.INT:
       return comparatorInt (reader, field);
-    } else if (lookupArray instanceof float[]) {
+    case SortField.FLOAT:
       return comparatorFloat (reader, field);
-    } else if (lookupArray instanceof String[]) {
-      return comparatorString (reader, field);
-    } else {
-      throw new RuntimeException ("unknown data type in field '"+field+"'");
+    default:
+      return comparatorString (reader, field);      // a PackedStringIndex
     }
   }
 }
@@ -28,4 +28,13 @@ public abstract class Filter implements java.io.Serializable {
     返回的BitSet存储满足条件的docId
     */
   public abstract BitSet bits(IndexReader reader) throws IOException;
+
+  /** Returns the documents which should be permitted in search results.
+   * Searches iterate over these in step with the query's {@link Scorer},
+   * so that documents not permitted are skipped rather than scored.  The
+   * default implementation returns the documents of {@link
+   * #bits(IndexReader)}. */
+  public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+    return new DocIdBitSet(bits(reader));
+  }
 }
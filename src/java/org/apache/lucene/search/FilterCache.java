@@ -0,0 +1,211 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+
+/** A cache of the documents of filters, bounded by the memory they take,
+ * which may be shared by any number of filters and searchers.  See {@link
+ * CachingWrapperFilter#CachingWrapperFilter(Filter,FilterCache)} and {@link
+ * QueryFilter#QueryFilter(Query,FilterCache)}.
+ *
+ * <p>Entries are kept per segment: the documents of a reader with {@link
+ * IndexReader#getSubReaders() sub-readers} are those of each sub-reader,
+ * so a new reader sharing segments with an old one reuses their entries.
+ * A cached filter must therefore compute its documents from the reader it
+ * is given alone.  Filters are matched with <code>equals()</code>, so equal
+ * filters created for different searches share their entries.
+ *
+ * <p>The documents are kept as {@link DocIdSet#compact(DocIdSet) compact}
+ * sets.  When they take more than the maximum number of bytes, the least
+ * recently used entries are dropped.  Entries of readers which are no
+ * longer referenced are dropped too.
+ */
+public class FilterCache {
+
+  /** A filter and a reader, which is only weakly referenced. */
+  private static final class Key extends WeakReference {
+    final Filter filter;
+    final int hash;
+
+    Key(Filter filter, IndexReader reader, ReferenceQueue queue) {
+      super(reader, queue);
+      this.filter = filter;
+      this.hash = System.identityHashCode(reader) * 31 + filter.hashCode();
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+
+    public boolean equals(Object o) {
+      if (o == this)                              // also once cleared
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      Object reader = get();
+      return reader != null && reader == other.get()
+        && filter.equals(other.filter);
+    }
+  }
+
+  private final Map entries = new LinkedHashMap(16, 0.75f, true);
+  private final ReferenceQueue queue = new ReferenceQueue();
+  private long maxBytes;
+  private long bytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /** Constructs a cache of documents taking at most <code>maxBytes</code>
+   * bytes. */
+  public FilterCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /** Returns the documents of <code>filter</code> in <code>reader</code>,
+   * from the cache if possible. */
+  public DocIdSet getDocIdSet(Filter filter, IndexReader reader)
+    throws IOException {
+    IndexReader[] subReaders = reader.getSubReaders();
+    if (subReaders != null && subReaders.length > 0) {
+      DocIdSet[] sets = new DocIdSet[subReaders.length];
+      int[] starts = new int[subReaders.length];
+      int maxDoc = 0;
+      for (int i = 0; i < subReaders.length; i++) {
+        sets[i] = getDocIdSet(filter, subReaders[i]);
+        starts[i] = maxDoc;
+        maxDoc += subReaders[i].maxDoc();
+      }
+      return new MultiDocIdSet(sets, starts);
+    }
+
+    synchronized (this) {
+      purge();
+      DocIdSet cached = (DocIdSet) entries.get(new Key(filter, reader, null));
+      if (cached != null) {
+        hits++;
+        return cached;
+      }
+      misses++;
+    }
+
+    DocIdSet docs = DocIdSet.compact(filter.getDocIdSet(reader));
+
+    synchronized (this) {
+      DocIdSet old = (DocIdSet) entries.put(new Key(filter, reader, queue), docs);
+      if (old != null)                            // loaded concurrently
+        bytes -= old.sizeInBytes();
+      bytes += docs.sizeInBytes();
+      evict();
+    }
+    return docs;
+  }
+
+  /** Drops the entries of readers which are no longer referenced. */
+  private void purge() {
+    Key key;
+    while ((key = (Key) queue.poll()) != null) {
+      DocIdSet docs = (DocIdSet) entries.remove(key);
+      if (docs != null)
+        bytes -= docs.sizeInBytes();
+    }
+  }
+
+  /** Drops the least recently used entries while there are too many
+   * bytes. */
+  private void evict() {
+    Iterator i = entries.values().iterator();
+    while (bytes > maxBytes && i.hasNext()) {
+      DocIdSet docs = (DocIdSet) i.next();
+      bytes -= docs.sizeInBytes();
+      i.remove();
+      evictions++;
+    }
+  }
+
+  /** Sets the maximum number of bytes the cached documents may take,
+   * dropping entries if they take more. */
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  /** Returns the maximum number of bytes the cached documents may take.
+   * @see #setMaxBytes(long)
+   */
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Returns the number of bytes taken by the cached documents. */
+  public synchronized long sizeInBytes() {
+    purge();
+    return bytes;
+  }
+
+  /** Returns the number of cached entries, one per filter and segment. */
+  public synchronized int size() {
+    purge();
+    return entries.size();
+  }
+
+  /** Returns the number of requests for a segment's documents which were
+   * found in the cache. */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /** Returns the number of requests for a segment's documents which were
+   * not found in the cache. */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /** Returns the fraction of requests found in the cache, or 0 if there
+   * were none. */
+  public synchronized float getHitRate() {
+    long requests = hits + misses;
+    return requests == 0 ? 0.0f : (float)hits / requests;
+  }
+
+  /** Returns the number of entries dropped to stay within the maximum
+   * number of bytes. */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /** Drops all entries. */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  public synchronized String toString() {
+    return "FilterCache(entries=" + entries.size() + " bytes=" + bytes
+      + " maxBytes=" + maxBytes + " hitRate=" + getHitRate()
+      + " evictions=" + evictions + ")";
+  }
+}
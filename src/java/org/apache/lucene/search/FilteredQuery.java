@@ -18,15 +18,17 @@ package org.apache.lucene.search;
 
 import org.apache.lucene.index.IndexReader;
 import java.io.IOException;
-import java.util.BitSet;
 
 
 /**
  * A query that applies a filter to the results of another query.
  * 一个查询query,配合一个filter过滤器,对query的结果进行过滤
- * <p>Note: the bits are retrieved from the filter each time this
+ * Only the documents the filter permits are scored; the query's hits and
+ * the filter's documents are advanced in step with <code>skipTo()</code>.
+ *
+ * <p>Note: the documents are retrieved from the filter each time this
  * query is used in a search - use a CachingWrapperFilter to avoid
- * regenerating the bits every time.
+ * regenerating them every time.
  *
  * <p>Created: Apr 20, 2004 8:58:29 AM
  *
@@ -43,7 +45,7 @@ extends Query {
 
   /**
    * Constructs a new query which applies a filter to the results of the original query.
-   * Filter.bits() will be called every time this query is used in a search.
+   * Filter.getDocIdSet() will be called every time this query is used in a search.
    * @param query  Query to be filtered, cannot be <code>null</code>.
    * @param filter Filter to apply to query results, cannot be <code>null</code>.
    */
@@ -57,7 +59,7 @@ extends Query {
    * This is accomplished by overriding the Scorer returned by the Weight.
    */
   protected Weight createWeight (final Searcher searcher) {
-    final Weight weight = query.createWeight (searcher);
+    final Weight weight = searcher.createWeight (query);
     return new Weight() {
 
       // pass these methods through to enclosed query's weight
@@ -69,27 +71,20 @@ extends Query {
       // return this query
       public Query getQuery() { return FilteredQuery.this; }
 
-      // return a scorer that overrides the enclosed query's score if
-      // the given hit has been filtered out.
+      // return a scorer of the enclosed query's hits which the filter
+      // permits, iterating over both in step
       public Scorer scorer (IndexReader indexReader) throws IOException {
         final Scorer scorer = weight.scorer (indexReader);
-        final BitSet bitset = filter.bits (indexReader);//创建过滤器内容
-        return new Scorer (query.getSimilarity (searcher)) {
-
-          // pass these methods through to the enclosed scorer 通过query获取下一个匹配的文档
-          public boolean next() throws IOException { return scorer.next(); }
-          public int doc() { return scorer.doc(); }
-          public boolean skipTo (int i) throws IOException { return scorer.skipTo(i); }
-
-          // if the document has been filtered out, set score to 0.0 如果该文档属于filter需要的,则返回该文档得分,不属于filter的,则配置为0分
-          public float score() throws IOException {
-            return (bitset.get(scorer.doc())) ? scorer.score() : 0.0f;
-          }
+        if (scorer == null)
+          return null;
+        final DocIdSet docs = filter.getDocIdSet (indexReader);//创建过滤器内容
+        return new FilteredScorer (scorer, docs, 0) {
 
           // add an explanation about whether the document was filtered
           public Explanation explain (int i) throws IOException {
             Explanation exp = scorer.explain (i);
-            if (bitset.get(i)) //表示该doc是允许通过的
+            DocIdSetIterator iterator = docs.iterator();
+            if (iterator.skipTo (i) && iterator.doc() == i) //表示该doc是允许通过的
               exp.setDescription ("allowed by filter: "+exp.getDescription());
             else
               exp.setDescription ("removed by filter: "+exp.getDescription());
@@ -0,0 +1,97 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/** A Scorer of the documents of another Scorer that are also in a {@link
+ * DocIdSet}.  The two are advanced in turn with <code>skipTo()</code>, each
+ * to the current document of the other, so only documents in the set are
+ * scored, and a sparse set skips most of those the other Scorer matches.
+ * <p>
+ * The set may be that of a whole index of which the Scorer's reader is a
+ * segment, whose documents are numbered from <code>base</code> in the set.
+ */
+class FilteredScorer extends Scorer {
+  private final Scorer scorer;
+  private final int base;
+  private DocIdSetIterator docs;
+  private int setDoc = -1;                        // current doc of docs
+  private BitSet bits;                            // for unordered scorers
+
+  FilteredScorer(Scorer scorer, DocIdSet set, int base) throws IOException {
+    super(scorer.getSimilarity());
+    this.scorer = scorer;
+    this.base = base;
+    if (ProfiledScorer.unwrap(scorer) instanceof BooleanScorer) // no skipTo()
+      bits = DocIdBitSet.bitsOf(set);
+    else
+      docs = set.iterator();
+  }
+
+  public boolean next() throws IOException {
+    if (bits != null) {
+      while (scorer.next())
+        if (bits.get(scorer.doc() + base))
+          return true;
+      return false;
+    }
+    return scorer.next() && align();
+  }
+
+  public boolean skipTo(int target) throws IOException {
+    if (bits != null)
+      return scorer.skipTo(target)
+        && (bits.get(scorer.doc() + base) || next());
+    return scorer.skipTo(target) && align();
+  }
+
+  /** Advances the scorer and the set in turn until they are on the same
+   * document. */
+  private boolean align() throws IOException {
+    int doc = scorer.doc() + base;
+    while (true) {
+      if (setDoc < doc) {
+        if (!docs.skipTo(doc))
+          return false;
+        setDoc = docs.doc();
+      }
+      if (setDoc == doc)
+        return true;
+      if (!scorer.skipTo(setDoc - base))
+        return false;
+      doc = scorer.doc() + base;
+    }
+  }
+
+  public int doc() {
+    return scorer.doc();
+  }
+
+  public float score() throws IOException {
+    return scorer.score();
+  }
+
+  float maxScore() {
+    return scorer.maxScore();
+  }
+
+  public Explanation explain(int doc) throws IOException {
+    return scorer.explain(doc);
+  }
+}
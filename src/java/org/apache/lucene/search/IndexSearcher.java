@@ -17,12 +17,13 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
-import java.util.BitSet;
+import java.util.Vector;
 
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.util.ThreadPool;
 
 /** Implements search over a single IndexReader.
  * 搜索一个单一的segment
@@ -33,6 +34,17 @@ public class IndexSearcher extends Searcher {
   IndexReader reader;
   private boolean closeReader;
 
+  /** The readers of the segments, which are searched one at a time, so
+   * that scorers use the norms of each segment instead of a copy for the
+   * whole index. */
+  private IndexReader[] subReaders;
+  private int[] starts;                           // 1st docno for each reader
+  private boolean maxScorePruning = false;
+  private ThreadPool pool = null;
+  private QueryResultCache resultCache = null;
+  private boolean earlyTermination = false;
+  private long timeout = 0;
+
   /** Creates a searcher searching the index in the named directory. */
   public IndexSearcher(String path) throws IOException {
     this(IndexReader.open(path), true);
@@ -51,6 +63,27 @@ public class IndexSearcher extends Searcher {
   private IndexSearcher(IndexReader r, boolean closeReader) {
     reader = r;
     this.closeReader = closeReader;
+
+    Vector readers = new Vector();
+    gatherSubReaders(readers, r);
+    subReaders = new IndexReader[readers.size()];
+    readers.copyInto(subReaders);
+    starts = new int[subReaders.length];
+    int maxDoc = 0;
+    for (int i = 0; i < subReaders.length; i++) {
+      starts[i] = maxDoc;
+      maxDoc += subReaders[i].maxDoc();
+    }
+  }
+
+  private static void gatherSubReaders(Vector readers, IndexReader reader) {
+    IndexReader[] subs = reader.getSubReaders();
+    if (subs == null) {
+      readers.addElement(reader);
+    } else {
+      for (int i = 0; i < subs.length; i++)
+        gatherSubReaders(readers, subs[i]);
+    }
   }
 
   /**
@@ -64,6 +97,30 @@ public class IndexSearcher extends Searcher {
       reader.close();
   }
 
+  /** Expert: Sets whether {@link #search(Query,Filter,int)} may skip
+   * documents that cannot score high enough to be among the top
+   * <code>nDocs</code> ones.  This is currently done for {@link BooleanQuery}s
+   * of optional {@link TermQuery} clauses, using upper bounds of the term
+   * scores based on {@link IndexReader#maxFreq(Term)} and {@link
+   * IndexReader#maxNorm(String)}.  It assumes that {@link Similarity#tf(int)}
+   * does not decrease with the frequency.
+   *
+   * <p>The top documents are not affected, but the total number of hits
+   * reported by {@link TopDocs#totalHits} and {@link Hits#length()} is then
+   * only a lower bound.  The default is false.
+   */
+  public void setMaxScorePruning(boolean maxScorePruning) {
+    this.maxScorePruning = maxScorePruning;
+  }
+
+  /** Expert: Returns whether documents that cannot be among the top ones
+   * may be skipped.
+   * @see #setMaxScorePruning(boolean)
+   */
+  public boolean getMaxScorePruning() {
+    return maxScorePruning;
+  }
+
   // inherit javadoc 返回该term出现在多少个doc中 
   public int docFreq(Term term) throws IOException {
     return reader.docFreq(term);
@@ -79,6 +136,113 @@ public class IndexSearcher extends Searcher {
     return reader.maxDoc();
   }
 
+  /** Expert: Sets a pool whose threads search the segments of the index
+   * in parallel in {@link #search(Query,Filter,int)} and {@link
+   * #search(Query,Filter,int,Sort)}, or null to search them one after the
+   * other in the calling thread, which is the default.  Each segment
+   * collects its own top documents, which are merged afterwards, so the
+   * results are the same as those of a serial search.  The {@link Weight}s
+   * of the queries searched must allow concurrent calls to {@link
+   * Weight#scorer(IndexReader)}, as those of Lucene's queries do.
+   */
+  public void setThreadPool(ThreadPool pool) {
+    this.pool = pool;
+  }
+
+  /** Expert: Returns the pool searching the segments in parallel, or null.
+   * @see #setThreadPool(ThreadPool)
+   */
+  public ThreadPool getThreadPool() {
+    return pool;
+  }
+
+  /** Expert: Sets a cache of the top documents of the searches made with
+   * {@link #search(Query,Filter,int)} and {@link
+   * #search(Query,Filter,int,Sort)}, or null to cache none, which is the
+   * default.
+   * @see QueryResultCache
+   */
+  public void setResultCache(QueryResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  /** Expert: Returns the cache of top documents, or null.
+   * @see #setResultCache(QueryResultCache)
+   */
+  public QueryResultCache getResultCache() {
+    return resultCache;
+  }
+
+  /** Expert: Sets whether {@link #search(Query,Filter,int,Sort)} stops
+   * collecting the documents of a segment once it has <code>nDocs</code>
+   * of them, when the segment is sorted by the field searched, as those
+   * written with {@link
+   * org.apache.lucene.index.IndexWriter#setIndexSort(SortField)} are.  The
+   * top documents are the same, but {@link TopDocs#totalHits} then only
+   * counts the documents collected, so {@link Hits#length()} is too low.
+   * The default is false.  Documents are not collected in order, and
+   * searches never stop early, while {@link
+   * BooleanQuery#setUseScorer14(boolean)} is set.
+   */
+  public void setEarlyTermination(boolean value) {
+    earlyTermination = value;
+  }
+
+  /** Expert: Returns whether sorted searches may stop collecting early.
+   * @see #setEarlyTermination(boolean)
+   */
+  public boolean getEarlyTermination() {
+    return earlyTermination;
+  }
+
+  /** Sets the time limit, in milliseconds, of each search, or 0 for none,
+   * which is the default.  A search that reaches its limit while
+   * enumerating the terms of a query such as a {@link WildcardQuery} or
+   * a {@link FuzzyQuery} goes on with the terms found so far, and one that
+   * reaches it while collecting hits stops collecting.  The top documents
+   * are then those of the hits collected, and {@link TopDocs#partial} is
+   * set.  {@link #search(Query,Filter,HitCollector)} instead throws a
+   * {@link SearchTimeoutException}, after passing the hits collected to
+   * the HitCollector.  The time is only checked every few hundred terms or
+   * hits, so a search may run somewhat over its limit.
+   */
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  /** Returns the time limit of each search, in milliseconds, or 0.
+   * @see #setTimeout(long)
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+
+  /** Returns a deadline for a search starting now, or null if there is no
+   * time limit. */
+  private SearchDeadline deadline() {
+    return timeout > 0 ? new SearchDeadline(timeout) : null;
+  }
+
+  /** Returns the weight of <code>query</code>, rewritten with term
+   * enumerations which end at <code>deadline</code>, if not null. */
+  private Weight weight(Query query, SearchDeadline deadline)
+    throws IOException {
+    if (deadline != null)
+      query = rewrite(query, deadline.reader(reader));
+    return query.weight(this);
+  }
+
+  /** Scores the hits of <code>scorer</code> into <code>results</code>,
+   * stopping at <code>deadline</code> if not null. */
+  private static void score(Scorer scorer, HitCollector results,
+                            SearchDeadline deadline)
+    throws IOException {
+    if (deadline == null)
+      scorer.score(results);
+    else
+      deadline.score(scorer, results);
+  }
+
   /**
    * @param query查询条件
    * @param filter 对命中的文档进行过滤
@@ -86,88 +250,440 @@ public class IndexSearcher extends Searcher {
    * 返回查询结果---一共命中多少个doc,以及最大得分的几个doc的id和分数
    */
   // inherit javadoc
-  public TopDocs search(Query query, Filter filter, final int nDocs)
+  public TopDocs search(Query query, Filter filter, int nDocs)
        throws IOException {
-    Scorer scorer = query.weight(this).scorer(reader);
+    if (resultCache != null)
+      return resultCache.search(this, query, filter, nDocs, null);
+    return searchTop(query, filter, nDocs);
+  }
+
+  /** Searches for the top documents, bypassing the result cache. */
+  TopDocs searchTop(Query query, Filter filter, final int nDocs)
+       throws IOException {
+    final SearchDeadline deadline = deadline();
+    final Weight weight = weight(query, deadline);
+
+    final DocIdSet docs = filter != null ? filter.getDocIdSet(reader) : null;//如果对匹配的文档进一步过滤
+    final IntKeyHitQueue hq = IntKeyHitQueue.byScore(nDocs);//排序方式
+    int totalHits = 0;
+    if (pool == null || subReaders.length < 2) {
+      for (int i = 0; i < subReaders.length; i++)
+        totalHits += collectTop(weight, i, docs, hq, deadline);
+    } else {
+      SegmentTask[] tasks = new SegmentTask[subReaders.length];
+      for (int i = 0; i < subReaders.length; i++) {
+        final int segment = i;
+        tasks[i] = new SegmentTask() {
+            final IntKeyHitQueue segmentHq = IntKeyHitQueue.byScore(nDocs);
+            protected void call() throws IOException {
+              hits = collectTop(weight, segment, docs, segmentHq, deadline);
+              queue = segmentHq;
+            }
+          };
+      }
+      totalHits = executeAll(tasks);
+      for (int i = 0; i < tasks.length; i++)
+        hq.insertAll((IntKeyHitQueue) tasks[i].queue);
+    }
+
+    TopDocs result = new TopDocs(totalHits, hq.toScoreDocs(false));
+    result.partial = deadline != null && deadline.isExpired();
+    return result;
+  }
+
+  /** Collects the top documents of a segment into <code>hq</code>, which
+   * may hold documents of other segments already, and returns the number
+   * of hits in the segment. */
+  private int collectTop(Weight weight, int segment, DocIdSet docs,
+                         final IntKeyHitQueue hq, SearchDeadline deadline)
+    throws IOException {
+    Scorer scorer = weight.scorer(subReaders[segment]);
     if (scorer == null)
-      return new TopDocs(0, new ScoreDoc[0]);
+      return 0;
+    Scorer unwrapped = ProfiledScorer.unwrap(scorer);
+    final MaxScoreScorer pruner = unwrapped instanceof MaxScoreScorer
+      ? (MaxScoreScorer) unwrapped : null;
+    if (docs != null)
+      scorer = new FilteredScorer(scorer, docs, starts[segment]);
+    if (pruner != null && hq.isFull())
+      pruner.setMinCompetitiveScore(hq.topScore());
 
-    final BitSet bits = filter != null ? filter.bits(reader) : null;//如果对匹配的文档进一步过滤
-    final HitQueue hq = new HitQueue(nDocs);//排序方式
+    final int base = starts[segment];
     final int[] totalHits = new int[1];
-    scorer.score(new HitCollector() {
-        private float minScore = 0.0f;
+    score(scorer, new HitCollector() {
 	public final void collect(int doc, float score) {//进来的都是query命中的文档
-	  if (score > 0.0f &&			  // ignore zeroed buckets
-	      (bits==null || bits.get(doc))) {	  // skip docs not in bits 说明该文档是可以使用的
+	  if (score > 0.0f) {			  // ignore zeroed buckets
 	    totalHits[0]++;//记录命中了多少个有效的文档
-            if (hq.size() < nDocs || score >= minScore) {//分数比最小的大,或者没有达到nDocs个文档,就添加
-              hq.insert(new ScoreDoc(doc, score));//添加新的对象
-              minScore = ((ScoreDoc)hq.top()).score; // maintain minScore  选择最小的分数
-            }
+            if (hq.insert(doc + base, IntKeyHitQueue.sortableFloat(score), score)
+                && pruner != null && hq.isFull())
+              pruner.setMinCompetitiveScore(hq.topScore());
 	  }
 	}
-      });
-
-    ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
-    for (int i = hq.size()-1; i >= 0; i--)	  // put docs in array
-      scoreDocs[i] = (ScoreDoc)hq.pop();
-
-    return new TopDocs(totalHits[0], scoreDocs);
+      }, deadline);
+    return totalHits[0];
   }
 
   // inherit javadoc
-  public TopFieldDocs search(Query query, Filter filter, final int nDocs,
+  public TopFieldDocs search(Query query, Filter filter, int nDocs,
                              Sort sort)
     throws IOException {
-    Scorer scorer = query.weight(this).scorer(reader);
-    if (scorer == null)
-      return new TopFieldDocs(0, new ScoreDoc[0], sort.fields);
+    if (resultCache != null)
+      return (TopFieldDocs) resultCache.search(this, query, filter, nDocs, sort);
+    return searchSorted(query, filter, nDocs, sort);
+  }
+
+  /** Searches for the top sorted documents, bypassing the result cache. */
+  TopFieldDocs searchSorted(Query query, Filter filter, final int nDocs,
+                            final Sort sort)
+    throws IOException {
+    final SearchDeadline deadline = deadline();
+    final Weight weight = weight(query, deadline);
 
-    final BitSet bits = filter != null ? filter.bits(reader) : null;
+    final DocIdSet docs = filter != null ? filter.getDocIdSet(reader) : null;
+    if (KeyedHitCollector.supports(sort.fields, sort.fields)
+        && KeyedHitCollector.perSegment(sort.fields[0])) {
+      // no comparator, which would load the values of the whole index
+      SortField[] fields = new SortField[sort.fields.length];
+      for (int i = 0; i < fields.length; i++)
+        fields[i] = new SortField(sort.fields[i].getField(),
+                                  sort.fields[i].getType(),
+                                  sort.fields[i].getReverse());
+      return searchByKey(weight, docs, nDocs, fields, null, deadline);
+    }
     final FieldSortedHitQueue hq =
       new FieldSortedHitQueue(reader, sort.fields, nDocs);
+    if (KeyedHitCollector.supports(sort.fields, hq.getFields()))
+      return searchByKey(weight, docs, nDocs, hq.getFields(), hq, deadline);
+
+    int totalHits = 0;
+    if (pool == null || subReaders.length < 2) {
+      for (int i = 0; i < subReaders.length; i++)
+        totalHits += collectSorted(weight, i, docs, hq, deadline);
+    } else {
+      SegmentTask[] tasks = new SegmentTask[subReaders.length];
+      for (int i = 0; i < subReaders.length; i++) {
+        final int segment = i;
+        // created here, so that comparators are not built concurrently
+        final FieldSortedHitQueue segmentHq =
+          new FieldSortedHitQueue(reader, sort.fields, nDocs);
+        tasks[i] = new SegmentTask() {
+            protected void call() throws IOException {
+              hits = collectSorted(weight, segment, docs, segmentHq,
+                                   deadline);
+              queue = segmentHq;
+            }
+          };
+      }
+      totalHits = executeAll(tasks);
+      for (int i = 0; i < tasks.length; i++) {
+        FieldSortedHitQueue queue = (FieldSortedHitQueue) tasks[i].queue;
+        while (queue.size() > 0)
+          hq.insert(queue.pop());
+        hq.maxscore = Math.max(hq.maxscore, queue.maxscore); // as if serial
+      }
+    }
+
+    ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
+    for (int i = hq.size()-1; i >= 0; i--)	  // put docs in array
+      scoreDocs[i] = hq.fillFields ((FieldDoc) hq.pop());
+
+    TopFieldDocs result =
+      new TopFieldDocs(totalHits, scoreDocs, hq.getFields());
+    result.partial = deadline != null && deadline.isExpired();
+    return result;
+  }
+
+  /** Collects the documents of a segment into <code>hq</code> and returns
+   * the number of hits in the segment. */
+  private int collectSorted(Weight weight, int segment, DocIdSet docs,
+                            final FieldSortedHitQueue hq,
+                            SearchDeadline deadline)
+    throws IOException {
+    Scorer scorer = scorer(weight, segment, docs);
+    if (scorer == null)
+      return 0;
+    final int base = starts[segment];
     final int[] totalHits = new int[1];
-    scorer.score(new HitCollector() {
+    score(scorer, new HitCollector() {
         public final void collect(int doc, float score) {
-          if (score > 0.0f &&			  // ignore zeroed buckets  
-              (bits==null || bits.get(doc))) {	  // skip docs not in bits 说明该文档是可以使用的
+          doc += base;
+          if (score > 0.0f) {			  // ignore zeroed buckets
             totalHits[0]++;//记录命中了多少个有效的文档
             hq.insert(new FieldDoc(doc, score));
           }
         }
-      });
+      }, deadline);
+    return totalHits[0];
+  }
 
-    ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
-    for (int i = hq.size()-1; i >= 0; i--)	  // put docs in array
-      scoreDocs[i] = hq.fillFields ((FieldDoc) hq.pop());
+  /** Searches for the top documents by a single field, whose type is
+   * resolved in <code>fields</code>, with {@link KeyedHitCollector}s.
+   * <code>hq</code>, if not null, is only used to fill in the fields of the
+   * hits returned, which are otherwise read from the segments. */
+  private TopFieldDocs searchByKey(final Weight weight, final DocIdSet docs,
+                                   final int nDocs, SortField[] fields,
+                                   FieldSortedHitQueue hq,
+                                   final SearchDeadline deadline)
+    throws IOException {
+    final SortField field = fields[0];
+    IntKeyHitQueue keyHq = KeyedHitCollector.queue(field, nDocs);
+    int totalHits;
+    float maxScore;
+    if (pool == null || subReaders.length < 2) {
+      KeyedHitCollector collector =
+        KeyedHitCollector.create(reader, field, keyHq);
+      for (int i = 0; i < subReaders.length; i++)
+        collectByKey(weight, i, docs, field, nDocs, collector, deadline);
+      totalHits = collector.totalHits;
+      maxScore = collector.maxScore;
+    } else {
+      SegmentTask[] tasks = new SegmentTask[subReaders.length];
+      for (int i = 0; i < subReaders.length; i++) {
+        final int segment = i;
+        // created here, so that string ords are not loaded concurrently
+        final KeyedHitCollector collector = KeyedHitCollector.create
+          (reader, field, KeyedHitCollector.queue(field, nDocs));
+        tasks[i] = new SegmentTask() {
+            protected void call() throws IOException {
+              collectByKey(weight, segment, docs, field, nDocs, collector,
+                           deadline);
+              hits = collector.totalHits;
+              queue = collector;
+            }
+          };
+      }
+      totalHits = executeAll(tasks);
+      maxScore = Float.NEGATIVE_INFINITY;
+      for (int i = 0; i < tasks.length; i++) {
+        KeyedHitCollector collector = (KeyedHitCollector) tasks[i].queue;
+        keyHq.insertAll(collector.hq);
+        maxScore = Math.max(maxScore, collector.maxScore);
+      }
+    }
+
+    // FieldSortedHitQueue only sees the scores of the hits it compares,
+    // which is all of them unless there is a single one
+    ScoreDoc[] scoreDocs = keyHq.toScoreDocs(true);
+    if (hq != null) {
+      if (totalHits > 1)
+        hq.maxscore = Math.max(hq.maxscore, maxScore);
+      for (int i = 0; i < scoreDocs.length; i++)
+        hq.fillFields((FieldDoc) scoreDocs[i]);
+    } else {
+      float normalize = totalHits > 1 ? Math.max(1.0f, maxScore) : 1.0f;
+      for (int i = 0; i < scoreDocs.length; i++)
+        fillFields((FieldDoc) scoreDocs[i], fields, normalize);
+    }
+
+    TopFieldDocs result =
+      new TopFieldDocs(totalHits, scoreDocs, fields);
+    result.partial = deadline != null && deadline.isExpired();
+    return result;
+  }
 
-    return new TopFieldDocs(totalHits[0], scoreDocs, hq.getFields());
+  /** Collects the documents of a segment with <code>collector</code>,
+   * stopping after <code>nDocs</code> of them if early termination is on
+   * and the segment is sorted by <code>field</code>, so that the first
+   * documents collected sort before all others. */
+  private void collectByKey(Weight weight, int segment, DocIdSet docs,
+                            SortField field, int nDocs,
+                            KeyedHitCollector collector,
+                            SearchDeadline deadline)
+    throws IOException {
+    Scorer scorer = scorer(weight, segment, docs);
+    if (scorer == null)
+      return;
+    collector.setSegment(subReaders[segment], starts[segment]);
+    if (earlyTermination && !BooleanQuery.getUseScorer14()
+        && isSortedBy(subReaders[segment], field)) {
+      int stop = collector.totalHits + nDocs;
+      while (collector.totalHits < stop
+             && (deadline == null || !deadline.check()) && scorer.next())
+        collector.collect(scorer.doc(), scorer.score());
+    } else {
+      score(scorer, collector, deadline);
+    }
   }
 
+  /** Fills in the fields of a hit sorted by <code>fields</code> as {@link
+   * FieldSortedHitQueue#fillFields(FieldDoc)} does, with the values of the
+   * segment of the hit, and divides its score by <code>maxScore</code> if
+   * it is greater than 1. */
+  private void fillFields(FieldDoc doc, SortField[] fields, float maxScore)
+    throws IOException {
+    Comparable[] values = new Comparable[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      String field = fields[i].getField();
+      switch (fields[i].getType()) {
+      case SortField.SCORE:
+        values[i] = new Float(doc.score);
+        break;
+      case SortField.DOC:
+        values[i] = new Integer(doc.doc);
+        break;
+      case SortField.INT: {
+        int segment = segment(doc.doc);
+        int[] ints = KeyedHitCollector.segmentInts(subReaders[segment], field);
+        values[i] = new Integer(ints[doc.doc - starts[segment]]);
+        break;
+      }
+      case SortField.FLOAT: {
+        int segment = segment(doc.doc);
+        float[] floats =
+          KeyedHitCollector.segmentFloats(subReaders[segment], field);
+        values[i] = new Float(floats[doc.doc - starts[segment]]);
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("no values for sort type: "
+                                           + fields[i].getType());
+      }
+    }
+    doc.fields = values;
+    if (maxScore > 1.0f)
+      doc.score /= maxScore;
+  }
+
+  /** Returns the index of the segment containing document <code>n</code>. */
+  private int segment(int n) {
+    int lo = 0;
+    int hi = subReaders.length - 1;
+    while (hi >= lo) {
+      int mid = (lo + hi) >> 1;
+      if (n < starts[mid])
+        hi = mid - 1;
+      else if (n >= starts[mid] + subReaders[mid].maxDoc())
+        lo = mid + 1;
+      else
+        return mid;
+    }
+    return hi;
+  }
+
+  /** Returns true if the documents of <code>reader</code> are numbered in
+   * the order of a sort by <code>field</code>, whose type is resolved. */
+  private static boolean isSortedBy(IndexReader reader, SortField field) {
+    if (field.getType() == SortField.DOC)
+      return !field.getReverse();
+    SortField indexSort = reader.getIndexSort();
+    return indexSort != null
+      && indexSort.getType() == field.getType()
+      && indexSort.getReverse() == field.getReverse()
+      && indexSort.getField().equals(field.getField());
+  }
+
+  /** Collects the top documents of one segment into a queue of its own. */
+  private static abstract class SegmentTask extends ThreadPool.Task {
+    int hits;
+    Object queue;
+  }
+
+  /** Runs the tasks in the pool and returns the total number of hits.
+   * Callers then merge the queues of the tasks into their own: since
+   * queues keep the greatest elements whatever the order of insertion, the
+   * result is the same as that of collecting all segments into one. */
+  private int executeAll(SegmentTask[] tasks)
+    throws IOException {
+    for (int i = 0; i < tasks.length; i++)
+      pool.execute(tasks[i]);
+    int totalHits = 0;
+    try {
+      for (int i = 0; i < tasks.length; i++) {
+        tasks[i].waitFor(0);                      // rethrows failures
+        totalHits += tasks[i].hits;
+      }
+    } finally {
+      for (int i = 0; i < tasks.length; i++)     // no-op unless failed
+        tasks[i].cancel();
+    }
+    return totalHits;
+  }
+
+
+  /** Expert: Searches like {@link #search(Query,Filter,int)}, and returns
+   * the top documents together with a {@link SearchProfile} of the
+   * search: the time spent rewriting the query, the bytes of postings read,
+   * and for the weight and scorers of the query and of each of its
+   * subqueries, the calls made and the time spent in them.  Timing each
+   * call slows the search down, so this is meant for finding out why a
+   * query is slow rather than for searching.  The segments are searched
+   * one after the other whatever the {@link #setThreadPool(ThreadPool)
+   * thread pool}, and the {@link #setResultCache(QueryResultCache) result
+   * cache} is bypassed.
+   */
+  public SearchProfile profile(Query query, Filter filter, int nDocs)
+    throws IOException {
+    return profile(query, filter, nDocs, null);
+  }
+
+  /** Expert: Searches like {@link #search(Query,Filter,int,Sort)}, or like
+   * {@link #search(Query,Filter,int)} if <code>sort</code> is null, and
+   * returns the top documents together with a profile of the search.
+   * @see #profile(Query,Filter,int)
+   */
+  public SearchProfile profile(Query query, Filter filter, int nDocs,
+                               Sort sort)
+    throws IOException {
+    ProfilingSearcher searcher = new ProfilingSearcher(this);
+    TopDocs topDocs = sort == null
+      ? searcher.searchTop(query, filter, nDocs)
+      : searcher.searchSorted(query, filter, nDocs, sort);
+    return new SearchProfile(topDocs, searcher.getRewriteTime(),
+                             searcher.getPostingsBytesRead(),
+                             searcher.getProfile());
+  }
 
   // inherit javadoc 搜集满足条件的所有docid以及得分
   public void search(Query query, Filter filter,
                      final HitCollector results) throws IOException {
-    HitCollector collector = results;
-    if (filter != null) {
-      final BitSet bits = filter.bits(reader);
-      collector = new HitCollector() {
-	  public final void collect(int doc, float score) {
-	    if (bits.get(doc)) {		  // skip docs not in bits
-	      results.collect(doc, score);
-	    }
-	  }
-	};
-    }
+    DocIdSet docs = filter != null ? filter.getDocIdSet(reader) : null;
+    SearchDeadline deadline = deadline();
+    score(weight(query, deadline), docs, results, deadline);
+    if (deadline != null && deadline.isExpired())
+      throw new SearchTimeoutException("search exceeded " + timeout + " ms");
+  }
 
-    Scorer scorer = query.weight(this).scorer(reader);
-    if (scorer == null)
-      return;
-    scorer.score(collector);
+  /** Returns a scorer of the documents of a segment that match the weight
+   * and, unless <code>docs</code> is null, are in <code>docs</code>, or null
+   * if there are none. */
+  private Scorer scorer(Weight weight, int segment, DocIdSet docs)
+    throws IOException {
+    Scorer scorer = weight.scorer(subReaders[segment]);
+    if (scorer == null || docs == null)
+      return scorer;
+    return new FilteredScorer(scorer, docs, starts[segment]);
+  }
+
+  /** Scores the documents of each segment with a scorer of its own, and
+   * passes them to <code>results</code> with document numbers of the whole
+   * index. */
+  private void score(Weight weight, DocIdSet docs, final HitCollector results,
+                     SearchDeadline deadline)
+    throws IOException {
+    for (int i = 0; i < subReaders.length; i++) {
+      Scorer scorer = scorer(weight, i, docs);
+      if (scorer == null)
+        continue;
+      if (starts[i] == 0) {
+        score(scorer, results, deadline);
+      } else {
+        final int base = starts[i];
+        score(scorer, new HitCollector() {
+            public final void collect(int doc, float score) {
+              results.collect(doc + base, score);
+            }
+          }, deadline);
+      }
+    }
   }
 
   public Query rewrite(Query original) throws IOException {
+    return rewrite(original, reader);
+  }
+
+  /** Rewrites <code>original</code> with <code>reader</code>, which is
+   * either the reader of this or one wrapping it. */
+  Query rewrite(Query original, IndexReader reader) throws IOException {
     Query query = original;
     for (Query rewrittenQuery = query.rewrite(reader); rewrittenQuery != query;
          rewrittenQuery = query.rewrite(reader)) {
@@ -0,0 +1,158 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A queue of the top hits by an int key, with ties broken by document
+ * number, that keeps its hits in parallel primitive arrays rather than in
+ * {@link ScoreDoc} objects.  The heap is filled with sentinel hits, worse
+ * than any real one, when it is created, so that collecting a hit allocates
+ * nothing: it either replaces the worst hit kept or is rejected.  Objects
+ * are only created for the hits that are returned by {@link
+ * #toScoreDocs(boolean)}.
+ *
+ * <p>Relevance order is that of {@link #sortableFloat(float)} keys of the
+ * scores, reversed; see {@link #byScore(int)}.
+ */
+final class IntKeyHitQueue {
+  private final int maxSize;
+  private final boolean reverse;
+  private final int[] keys;
+  private final int[] docs;
+  private final float[] scores;
+  private int size;                               // of the heap, sentinels included
+  private int count;                              // number of real hits kept
+
+  /** Creates a queue of the <code>maxSize</code> hits with the lowest keys,
+   * or with the highest ones if <code>reverse</code> is true. */
+  IntKeyHitQueue(int maxSize, boolean reverse) {
+    this.maxSize = maxSize;
+    this.reverse = reverse;
+    keys = new int[maxSize + 1];                  // 1-based heap
+    docs = new int[maxSize + 1];
+    scores = new float[maxSize + 1];
+    int sentinel = reverse ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+    for (int i = 1; i <= maxSize; i++) {
+      keys[i] = sentinel;
+      docs[i] = Integer.MAX_VALUE;
+      scores[i] = Float.NEGATIVE_INFINITY;
+    }
+    size = maxSize;
+  }
+
+  /** Returns a queue of the <code>maxSize</code> hits with the highest
+   * scores, in the order of {@link HitQueue}. */
+  static IntKeyHitQueue byScore(int maxSize) {
+    return new IntKeyHitQueue(maxSize, true);
+  }
+
+  /** Maps a float to an int with the same order.  -0.0f and 0.0f map to the
+   * same int. */
+  static int sortableFloat(float f) {
+    int bits = Float.floatToIntBits(f == 0.0f ? 0.0f : f);
+    return bits < 0 ? bits ^ 0x7FFFFFFF : bits;
+  }
+
+  /** Returns true if the first hit sorts after the second. */
+  private boolean worse(int keyA, int docA, int keyB, int docB) {
+    if (keyA != keyB)
+      return reverse ? keyA < keyB : keyA > keyB;
+    return docA > docB;
+  }
+
+  /** Adds a hit unless it sorts after all of the hits kept when the queue
+   * is full.  Returns true if the hit was added. */
+  boolean insert(int doc, int key, float score) {
+    if (maxSize == 0 || worse(key, doc, keys[1], docs[1]))
+      return false;
+    keys[1] = key;                                // replaces the worst hit
+    docs[1] = doc;
+    scores[1] = score;
+    downHeap();
+    if (count < maxSize)
+      count++;
+    return true;
+  }
+
+  /** Adds the hits of another queue to this one. */
+  void insertAll(IntKeyHitQueue other) {
+    for (int i = 1; i <= other.size; i++)
+      if (other.docs[i] != Integer.MAX_VALUE)     // not a sentinel
+        insert(other.docs[i], other.keys[i], other.scores[i]);
+  }
+
+  /** Returns the number of real hits in the queue. */
+  int size() {
+    return count;
+  }
+
+  /** Returns true if the queue holds <code>maxSize</code> real hits. */
+  boolean isFull() {
+    return count == maxSize;
+  }
+
+  /** Returns the score of the worst hit kept, or negative infinity if the
+   * queue is not full. */
+  float topScore() {
+    return maxSize == 0 ? Float.NEGATIVE_INFINITY : scores[1];
+  }
+
+  /** Empties the queue and returns its hits, best first, as {@link FieldDoc}s
+   * if <code>fieldDocs</code> is true, otherwise as {@link ScoreDoc}s. */
+  ScoreDoc[] toScoreDocs(boolean fieldDocs) {
+    while (size > count)                          // sentinels sort last
+      pop();
+    ScoreDoc[] result = new ScoreDoc[count];
+    for (int i = count - 1; i >= 0; i--) {
+      result[i] = fieldDocs
+        ? new FieldDoc(docs[1], scores[1]) : new ScoreDoc(docs[1], scores[1]);
+      pop();
+    }
+    count = 0;
+    return result;
+  }
+
+  private void pop() {
+    keys[1] = keys[size];
+    docs[1] = docs[size];
+    scores[1] = scores[size];
+    size--;
+    downHeap();
+  }
+
+  private void downHeap() {
+    int i = 1;
+    int key = keys[i];
+    int doc = docs[i];
+    float score = scores[i];
+    int j = i << 1;
+    while (j <= size) {
+      if (j < size && worse(keys[j+1], docs[j+1], keys[j], docs[j]))
+        j++;                                      // the worse child
+      if (!worse(keys[j], docs[j], key, doc))
+        break;
+      keys[i] = keys[j];
+      docs[i] = docs[j];
+      scores[i] = scores[j];
+      i = j;
+      j = i << 1;
+    }
+    keys[i] = key;
+    docs[i] = doc;
+    scores[i] = score;
+  }
+}
@@ -0,0 +1,236 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * Collects the hits of a search sorted by one field into an {@link
+ * IntKeyHitQueue}, keyed directly by the values that {@link FieldCache}
+ * holds for the field, with no {@link ScoreDocComparator} in between.
+ * There is a subclass for each type of field it supports, so that the
+ * key of a hit is read inline.
+ *
+ * <p>The documents passed to {@link #collect(int,float)} are numbered from
+ * {@link #base}, so that one collector may be used for several segments of
+ * the reader in turn, each set with {@link #setSegment(IndexReader,int)}.
+ * Int and float keys are read from the values of the segment, so that
+ * those of the whole index are not loaded as well.  String ords are read
+ * from the index of the whole reader, since they are compared across
+ * segments.
+ */
+abstract class KeyedHitCollector extends HitCollector {
+  final IntKeyHitQueue hq;
+  /** Added to the document numbers passed to collect(). */
+  int base;
+  /** The number of hits collected. */
+  int totalHits;
+  /** The greatest score of the hits collected. */
+  float maxScore = Float.NEGATIVE_INFINITY;
+
+  KeyedHitCollector(IntKeyHitQueue hq) {
+    this.hq = hq;
+  }
+
+  /**
+   * Returns true if the hits of a sort by <code>sortFields</code> may be
+   * collected by a KeyedHitCollector, that is when the sort is on a single
+   * field, possibly followed by document order, and the field is of a type
+   * which has a key.  <code>resolved</code> are the fields as resolved by
+   * {@link FieldSortedHitQueue}, which knows the types of {@link
+   * SortField#AUTO} fields.
+   */
+  static boolean supports(SortField[] sortFields, SortField[] resolved) {
+    if (resolved.length == 2) {                   // document order is the tie-break
+      if (resolved[1].getType() != SortField.DOC || resolved[1].getReverse())
+        return false;
+    } else if (resolved.length != 1) {
+      return false;
+    }
+    switch (resolved[0].getType()) {
+    case SortField.INT:
+    case SortField.FLOAT:
+    case SortField.DOC:
+    case SortField.SCORE:
+      return true;
+    case SortField.STRING:                        // ords are not in locale order
+      return sortFields[0].getLocale() == null;
+    default:
+      return false;
+    }
+  }
+
+  /** Returns true if the keys of a sort by <code>field</code> are read from
+   * the segments, or need no values at all, so that no {@link
+   * FieldSortedHitQueue} of the whole index is needed to resolve it. */
+  static boolean perSegment(SortField field) {
+    switch (field.getType()) {
+    case SortField.INT:
+    case SortField.FLOAT:
+    case SortField.DOC:
+    case SortField.SCORE:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /** Returns a queue of the <code>size</code> best hits for a sort by
+   * <code>field</code>, one of the fields {@link #supports} accepts. */
+  static IntKeyHitQueue queue(SortField field, int size) {
+    boolean reverse = field.getReverse();
+    if (field.getType() == SortField.SCORE)       // highest scores first
+      reverse = !reverse;
+    return new IntKeyHitQueue(size, reverse);
+  }
+
+  /** Returns a collector of the hits of <code>reader</code> for a sort by
+   * <code>field</code> into <code>hq</code>, which should come from {@link
+   * #queue}.  <code>reader</code> is only read for string ords. */
+  static KeyedHitCollector create(IndexReader reader, SortField field,
+                                  IntKeyHitQueue hq)
+    throws IOException {
+    switch (field.getType()) {
+    case SortField.INT:
+      return new Ints(hq, field.getField());
+    case SortField.FLOAT:
+      return new Floats(hq, field.getField());
+    case SortField.STRING:
+      return new Ords(hq, FieldCache.DEFAULT.getPackedStringIndex(reader, field.getField()));
+    case SortField.DOC:
+      return new Docs(hq);
+    case SortField.SCORE:
+      return new Scores(hq);
+    default:
+      throw new IllegalArgumentException("no key for sort type: " + field.getType());
+    }
+  }
+
+  /** Returns the int values of <code>field</code> in a segment, or zeros if
+   * the segment has no terms at or after the field, as when the values of
+   * segments are combined. */
+  static int[] segmentInts(IndexReader segment, String field)
+    throws IOException {
+    try {
+      return FieldCache.DEFAULT.getInts(segment, field);
+    } catch (FieldCacheImpl.NoTermsException e) {
+      return new int[segment.maxDoc()];
+    }
+  }
+
+  /** Returns the float values of <code>field</code> in a segment, or zeros
+   * if the segment has no terms at or after the field. */
+  static float[] segmentFloats(IndexReader segment, String field)
+    throws IOException {
+    try {
+      return FieldCache.DEFAULT.getFloats(segment, field);
+    } catch (FieldCacheImpl.NoTermsException e) {
+      return new float[segment.maxDoc()];
+    }
+  }
+
+  /** Sets the segment whose hits are collected next, and the number of its
+   * first document in the reader. */
+  void setSegment(IndexReader segment, int base) throws IOException {
+    this.base = base;
+  }
+
+  private static final class Ints extends KeyedHitCollector {
+    private final String field;
+    private int[] values;
+    Ints(IntKeyHitQueue hq, String field) {
+      super(hq);
+      this.field = field;
+    }
+    void setSegment(IndexReader segment, int base) throws IOException {
+      super.setSegment(segment, base);
+      values = segmentInts(segment, field);
+    }
+    public final void collect(int doc, float score) {
+      if (score > 0.0f) {                         // ignore zeroed buckets
+        totalHits++;
+        if (score > maxScore) maxScore = score;
+        hq.insert(doc + base, values[doc], score);
+      }
+    }
+  }
+
+  private static final class Floats extends KeyedHitCollector {
+    private final String field;
+    private float[] values;
+    Floats(IntKeyHitQueue hq, String field) {
+      super(hq);
+      this.field = field;
+    }
+    void setSegment(IndexReader segment, int base) throws IOException {
+      super.setSegment(segment, base);
+      values = segmentFloats(segment, field);
+    }
+    public final void collect(int doc, float score) {
+      if (score > 0.0f) {
+        totalHits++;
+        if (score > maxScore) maxScore = score;
+        hq.insert(doc + base, IntKeyHitQueue.sortableFloat(values[doc]), score);
+      }
+    }
+  }
+
+  private static final class Ords extends KeyedHitCollector {
+    private final FieldCache.PackedStringIndex index;
+    Ords(IntKeyHitQueue hq, FieldCache.PackedStringIndex index) {
+      super(hq);
+      this.index = index;
+    }
+    public final void collect(int doc, float score) {
+      if (score > 0.0f) {
+        totalHits++;
+        if (score > maxScore) maxScore = score;
+        doc += base;
+        hq.insert(doc, index.getOrd(doc), score);
+      }
+    }
+  }
+
+  private static final class Docs extends KeyedHitCollector {
+    Docs(IntKeyHitQueue hq) {
+      super(hq);
+    }
+    public final void collect(int doc, float score) {
+      if (score > 0.0f) {
+        totalHits++;
+        if (score > maxScore) maxScore = score;
+        doc += base;
+        hq.insert(doc, doc, score);
+      }
+    }
+  }
+
+  private static final class Scores extends KeyedHitCollector {
+    Scores(IntKeyHitQueue hq) {
+      super(hq);
+    }
+    public final void collect(int doc, float score) {
+      if (score > 0.0f) {
+        totalHits++;
+        if (score > maxScore) maxScore = score;
+        hq.insert(doc + base, IntKeyHitQueue.sortableFloat(score), score);
+      }
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.util.PriorityQueue;
+
+/** A Scorer for queries of optional clauses only, which skips documents
+ * that cannot score higher than a given minimum competitive score.
+ * <p>
+ * Each subscorer provides an upper bound of its scores with
+ * {@link Scorer#maxScore()}.  The subscorers are sorted by increasing bound.
+ * The longest prefix of them whose bounds, summed and multiplied by the best
+ * possible coordination factor, stay below the minimum competitive score
+ * is <i>non-essential</i>: a document matching only non-essential
+ * subscorers cannot be competitive.  Candidate documents are therefore
+ * produced by the essential subscorers only, and the non-essential ones are
+ * advanced with {@link Scorer#skipTo(int)}, most valuable first, for as long
+ * as the candidate can still become competitive.  This is known as the
+ * MaxScore algorithm.
+ * <p>
+ * The scores are the same as those of {@link BooleanScorer2}, the
+ * documents are returned in increasing document number order, but
+ * documents that cannot be competitive may be left out.
+ */
+class MaxScoreScorer extends Scorer {
+  /** A subscorer with its current document, -1 before it is started. */
+  private static class Sub {
+    Scorer scorer;
+    float maxScore;
+    int doc = -1;
+  }
+
+  /** The subscorers, ordered by increasing {@link Sub#maxScore}. */
+  private final Sub[] subs;
+
+  /** <code>sumMaxScores[i]</code> is the sum of the bounds of
+   * <code>subs[0]</code> up to and including <code>subs[i]</code>. */
+  private final float[] sumMaxScores;
+
+  /** <code>coordFactors[i]</code> is the coordination factor of
+   * <code>i</code> matching subscorers. */
+  private final float[] coordFactors;
+
+  /** <code>maxCoordFactors[i]</code> is the largest coordination factor of
+   * at most <code>i</code> matching subscorers. */
+  private final float[] maxCoordFactors;
+
+  /** Scores below this may be skipped. */
+  private float minCompetitiveScore = 0.0f;
+
+  /** <code>subs[0]</code> up to <code>subs[firstEssential-1]</code> are
+   * non-essential. */
+  private int firstEssential = 0;
+
+  /** The started, non exhausted, essential subscorers, ordered by their
+   * current document, with the minimum at the top. */
+  private SubQueue essentialQueue = null;
+
+  /** Whether <code>essentialQueue</code> still holds non-essential
+   * subscorers. */
+  private boolean queueStale = false;
+
+  private int currentDoc = -1;
+  private float currentScore = Float.NaN;
+
+  /** Construct a <code>MaxScoreScorer</code>.
+   * @param similarity Provides the coordination factors.
+   * @param scorers At least two subscorers, each with a finite
+   * {@link Scorer#maxScore()}.
+   */
+  MaxScoreScorer(Similarity similarity, Scorer[] scorers) {
+    super(similarity);
+    int n = scorers.length;
+    subs = new Sub[n];
+    for (int i = 0; i < n; i++) {
+      Sub sub = new Sub();
+      sub.scorer = scorers[i];
+      sub.maxScore = scorers[i].maxScore();
+      int j = i;                                  // insertion sort by bound
+      while (j > 0 && subs[j - 1].maxScore > sub.maxScore) {
+        subs[j] = subs[j - 1];
+        j--;
+      }
+      subs[j] = sub;
+    }
+
+    sumMaxScores = new float[n];
+    float sum = 0.0f;
+    for (int i = 0; i < n; i++) {
+      sum += subs[i].maxScore;
+      sumMaxScores[i] = sum;
+    }
+
+    coordFactors = new float[n + 1];
+    maxCoordFactors = new float[n + 1];
+    float max = 0.0f;
+    for (int i = 0; i <= n; i++) {
+      coordFactors[i] = similarity.coord(i, n);
+      max = Math.max(max, coordFactors[i]);
+      maxCoordFactors[i] = max;
+    }
+  }
+
+  /** Returns whether the scorers of <code>searcher</code> should skip
+   * documents that cannot be competitive, see
+   * {@link IndexSearcher#setMaxScorePruning(boolean)}. */
+  static boolean isEnabled(Searcher searcher) {
+    return searcher instanceof IndexSearcher
+      && ((IndexSearcher) searcher).getMaxScorePruning();
+  }
+
+  /** Returns the largest score this scorer can produce. */
+  float maxScore() {
+    int n = subs.length;
+    return sumMaxScores[n - 1] * maxCoordFactors[n];
+  }
+
+  /** Sets the score below which documents may be skipped.  Documents with
+   * a higher score than this are never skipped.  Should not decrease. */
+  void setMinCompetitiveScore(float minScore) {
+    // leave some room for the rounding of the sums of the bounds
+    minCompetitiveScore = minScore * (1.0f - 1.0e-5f);
+
+    int essential = firstEssential;
+    while (essential < subs.length
+           && sumMaxScores[essential] * maxCoordFactors[essential + 1]
+              < minCompetitiveScore) {
+      essential++;
+    }
+    if (essential != firstEssential) {
+      firstEssential = essential;
+      queueStale = true;                          // rebuilt by next()/skipTo()
+    }
+  }
+
+  private void initEssentialQueue() throws IOException {
+    essentialQueue = new SubQueue(subs.length - firstEssential);
+    queueStale = false;
+    for (int i = firstEssential; i < subs.length; i++) {
+      Sub sub = subs[i];
+      if (sub.doc == -1)                          // not yet started
+        sub.doc = sub.scorer.next() ? sub.scorer.doc() : Integer.MAX_VALUE;
+      if (sub.doc != Integer.MAX_VALUE)
+        essentialQueue.put(sub);
+    }
+  }
+
+  public boolean next() throws IOException {
+    if (essentialQueue == null || queueStale)
+      initEssentialQueue();
+    return advanceAfterCurrent();
+  }
+
+  public boolean skipTo(int target) throws IOException {
+    if (essentialQueue == null || queueStale)
+      initEssentialQueue();
+    while (essentialQueue.size() > 0) {
+      Sub top = (Sub) essentialQueue.top();
+      if (top.doc >= target)
+        break;
+      if (top.scorer.skipTo(target)) {
+        top.doc = top.scorer.doc();
+        essentialQueue.adjustTop();
+      } else {
+        top.doc = Integer.MAX_VALUE;
+        essentialQueue.pop();
+      }
+    }
+    return advanceAfterCurrent();
+  }
+
+  /** Takes the smallest document of the essential subscorers as candidate,
+   * advances the essential subscorers beyond it, and completes its score
+   * with the non-essential subscorers while it can be competitive.
+   * Returns false when the essential subscorers are exhausted.
+   */
+  private boolean advanceAfterCurrent() throws IOException {
+    while (essentialQueue.size() > 0) {
+      int candidate = ((Sub) essentialQueue.top()).doc;
+      float sum = 0.0f;
+      int nrMatchers = 0;
+      do {
+        Sub top = (Sub) essentialQueue.top();
+        sum += top.scorer.score();
+        nrMatchers++;
+        if (top.scorer.next()) {
+          top.doc = top.scorer.doc();
+          essentialQueue.adjustTop();
+        } else {
+          top.doc = Integer.MAX_VALUE;
+          essentialQueue.pop();
+        }
+      } while (essentialQueue.size() > 0
+               && ((Sub) essentialQueue.top()).doc == candidate);
+
+      boolean competitive = true;
+      for (int i = firstEssential - 1; i >= 0; i--) {
+        if ((sum + sumMaxScores[i]) * maxCoordFactors[nrMatchers + i + 1]
+            < minCompetitiveScore) {
+          competitive = false;
+          break;
+        }
+        Sub sub = subs[i];
+        if (sub.doc < candidate)
+          sub.doc = sub.scorer.skipTo(candidate)
+                    ? sub.scorer.doc() : Integer.MAX_VALUE;
+        if (sub.doc == candidate) {
+          sum += sub.scorer.score();
+          nrMatchers++;
+        }
+      }
+
+      if (competitive) {
+        currentDoc = candidate;
+        currentScore = sum * coordFactors[nrMatchers];
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int doc() { return currentDoc; }
+
+  public float score() throws IOException { return currentScore; }
+
+  /** Explains the score of a document as the sum of the explanations of
+   * the subscorers matching it, times the coordination factor. */
+  public Explanation explain(int doc) throws IOException {
+    Explanation sumExpl = new Explanation();
+    sumExpl.setDescription("sum of:");
+    float sum = 0.0f;
+    int nrMatchers = 0;
+    for (int i = 0; i < subs.length; i++) {
+      Explanation e = subs[i].scorer.explain(doc);
+      if (e.getValue() > 0.0f) {
+        sumExpl.addDetail(e);
+        sum += e.getValue();
+        nrMatchers++;
+      }
+    }
+    sumExpl.setValue(sum);
+
+    float coordFactor = coordFactors[nrMatchers];
+    Explanation result = new Explanation(sum * coordFactor, "product of:");
+    result.addDetail(sumExpl);
+    result.addDetail(new Explanation(coordFactor, "coord(" + nrMatchers
+                                     + "/" + subs.length + ")"));
+    return result;
+  }
+
+  private static class SubQueue extends PriorityQueue {
+    SubQueue(int size) {
+      initialize(size);
+    }
+
+    protected final boolean lessThan(Object o1, Object o2) {
+      return ((Sub) o1).doc < ((Sub) o2).doc;
+    }
+  }
+}
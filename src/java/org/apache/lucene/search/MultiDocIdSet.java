@@ -0,0 +1,77 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** The documents of the sub-readers of a reader, each of which is a
+ * DocIdSet of its own numbered from the first document of the
+ * sub-reader. */
+class MultiDocIdSet extends DocIdSet {
+  private final DocIdSet[] sets;
+  private final int[] starts;                     // first doc of each set
+
+  MultiDocIdSet(DocIdSet[] sets, int[] starts) {
+    this.sets = sets;
+    this.starts = starts;
+  }
+
+  public long sizeInBytes() {
+    long bytes = 0;
+    for (int i = 0; i < sets.length; i++) {
+      long size = sets[i].sizeInBytes();
+      if (size == -1)
+        return -1;
+      bytes += size;
+    }
+    return bytes;
+  }
+
+  public DocIdSetIterator iterator() {
+    return new DocIdSetIterator() {
+        private int doc = -1;
+        private int i = 0;                        // current set
+        private DocIdSetIterator current =
+          sets.length > 0 ? sets[0].iterator() : null;
+
+        public int doc() {
+          return doc;
+        }
+
+        public boolean next() throws IOException {
+          return skipTo(doc + 1);
+        }
+
+        public boolean skipTo(int target) throws IOException {
+          if (target <= doc)
+            target = doc + 1;
+          while (i < sets.length) {
+            int end = i + 1 < starts.length ? starts[i + 1] : Integer.MAX_VALUE;
+            if (target < end
+                && current.skipTo(Math.max(target - starts[i], 0))) {
+              doc = current.doc() + starts[i];
+              if (doc < end)
+                return true;
+            }
+            if (++i < sets.length)
+              current = sets[i].iterator();
+          }
+          return false;
+        }
+      };
+  }
+}
@@ -112,10 +112,12 @@ public class MultiSearcher extends Searcher {
       throws IOException {
     HitQueue hq = new HitQueue(nDocs);
     int totalHits = 0;
+    boolean partial = false;
 
     for (int i = 0; i < searchables.length; i++) { // search each searcher
       TopDocs docs = searchables[i].search(query, filter, nDocs);
       totalHits += docs.totalHits;		  // update totalHits
+      partial |= docs.partial;
       ScoreDoc[] scoreDocs = docs.scoreDocs;
       for (int j = 0; j < scoreDocs.length; j++) { // merge scoreDocs into hq
 	ScoreDoc scoreDoc = scoreDocs[j];
@@ -129,7 +131,9 @@ public class MultiSearcher extends Searcher {
     for (int i = hq.size()-1; i >= 0; i--)	  // put docs in array
       scoreDocs[i] = (ScoreDoc)hq.pop();
 
-    return new TopDocs(totalHits, scoreDocs);
+    TopDocs result = new TopDocs(totalHits, scoreDocs);
+    result.partial = partial;
+    return result;
   }
 
 
@@ -137,11 +141,13 @@ public class MultiSearcher extends Searcher {
     throws IOException {
     FieldDocSortedHitQueue hq = null;
     int totalHits = 0;
+    boolean partial = false;
 
     for (int i = 0; i < searchables.length; i++) { // search each searcher
       TopFieldDocs docs = searchables[i].search (query, filter, n, sort);
       if (hq == null) hq = new FieldDocSortedHitQueue (docs.fields, n);
       totalHits += docs.totalHits;		  // update totalHits
+      partial |= docs.partial;
       ScoreDoc[] scoreDocs = docs.scoreDocs;
       for (int j = 0; j < scoreDocs.length; j++) { // merge scoreDocs into hq
         ScoreDoc scoreDoc = scoreDocs[j];
@@ -155,7 +161,9 @@ public class MultiSearcher extends Searcher {
     for (int i = hq.size() - 1; i >= 0; i--)	  // put docs in array
       scoreDocs[i] = (ScoreDoc) hq.pop();
 
-    return new TopFieldDocs (totalHits, scoreDocs, hq.getFields());
+    TopFieldDocs result = new TopFieldDocs (totalHits, scoreDocs, hq.getFields());
+    result.partial = partial;
+    return result;
   }
 
 
@@ -20,23 +20,72 @@ import java.io.IOException;
 
 import org.apache.lucene.index.Term;
 import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.ThreadPool;
 
 /** Implements parallel search over a set of <code>Searchables</code>.
  *
  * <p>Applications usually need only call the inherited {@link #search(Query)}
  * or {@link #search(Query,Filter)} methods.
+ *
+ * <p>The <code>Searchables</code> are searched by the threads of a {@link
+ * ThreadPool}, which is either given or owned by this searcher.  The
+ * results of each <code>Searchable</code> are kept apart and merged by the
+ * calling thread once all are done.
  * 实现多线程并发的去搜索不同的索引
  */
 public class ParallelMultiSearcher extends MultiSearcher { //继承自多搜索
 
   private Searchable[] searchables;
   private int[] starts;
+  private ThreadPool pool;
+  private boolean closePool;
+  private long timeout = 0;
 	
-  /** Creates a searcher which searches <i>searchables</i>. */
+  /** Creates a searcher which searches <i>searchables</i> with a pool of
+   * one thread per searchable, which is closed by {@link #close()}. */
   public ParallelMultiSearcher(Searchable[] searchables) throws IOException {
+    this(searchables,
+         new ThreadPool("ParallelMultiSearcher",
+                        Math.max(1, searchables.length)),
+         true);
+  }
+
+  /** Creates a searcher which searches <i>searchables</i> with the threads
+   * of <i>pool</i>.  The pool may be shared and is not closed by {@link
+   * #close()}. */
+  public ParallelMultiSearcher(Searchable[] searchables, ThreadPool pool)
+    throws IOException {
+    this(searchables, pool, false);
+  }
+
+  private ParallelMultiSearcher(Searchable[] searchables, ThreadPool pool,
+                                boolean closePool) throws IOException {
     super(searchables);
     this.searchables=searchables;
     this.starts=getStarts();
+    this.pool = pool;
+    this.closePool = closePool;
+  }
+
+  /** Sets the maximum time in milliseconds to wait for the results of the
+   * <code>Searchables</code>, or 0 to wait without limit, which is the
+   * default.  When the time is exceeded, searches which have not started
+   * yet are cancelled and a {@link SearchTimeoutException} is thrown.
+   * Searches which have started run to completion in the background. */
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  /** Returns the maximum time in milliseconds to wait for results.
+   * @see #setTimeout(long) */
+  public long getTimeout() {
+    return timeout;
+  }
+
+  public void close() throws IOException {
+    super.close();
+    if (closePool)
+      pool.close();
   }
 
   /**
@@ -50,44 +99,21 @@ public class ParallelMultiSearcher extends MultiSearcher { //继承自多搜索
   }
 
   /**
-   * A search implementation which spans a new thread for each
-   * Searchable, waits for each search to complete and merge
-   * the results back together.
+   * A search implementation which searches each Searchable in a pool
+   * thread, waits for each search to complete and merges the results back
+   * together.
    */
   public TopDocs search(Query query, Filter filter, int nDocs)
     throws IOException {
+    TopDocs[] results = searchAll(query, filter, nDocs, null);
+
     HitQueue hq = new HitQueue(nDocs);
     int totalHits = 0;
-    MultiSearcherThread[] msta =
-      new MultiSearcherThread[searchables.length];
-    for (int i = 0; i < searchables.length; i++) { // search each searcher 每一个搜索一个线程
-      // Assume not too many searchables and cost of creating a thread is by far inferior to a search
-      msta[i] =
-        new MultiSearcherThread(
-                                searchables[i],
-                                query,
-                                filter,
-                                nDocs,
-                                hq,
-                                i,
-                                starts,
-                                "MultiSearcher thread #" + (i + 1));
-      msta[i].start();
-    }
-
-    for (int i = 0; i < searchables.length; i++) {
-      try {
-        msta[i].join();
-      } catch (InterruptedException ie) {
-        ; // TODO: what should we do with this???
-      }
-      IOException ioe = msta[i].getIOException();
-      if (ioe == null) {
-        totalHits += msta[i].hits();
-      } else {
-        // if one search produced an IOException, rethrow it
-        throw ioe;
-      }
+    boolean partial = false;
+    for (int i = 0; i < results.length; i++) {
+      totalHits += results[i].totalHits;
+      partial |= results[i].partial;
+      merge(hq, results[i].scoreDocs, starts[i]);
     }
 
     //组装查询结果
@@ -95,60 +121,84 @@ public class ParallelMultiSearcher extends MultiSearcher { //继承自多搜索
     for (int i = hq.size() - 1; i >= 0; i--) // put docs in array
       scoreDocs[i] = (ScoreDoc) hq.pop();
 
-    return new TopDocs(totalHits, scoreDocs);
+    TopDocs result = new TopDocs(totalHits, scoreDocs);
+    result.partial = partial;
+    return result;
   }
 
   /**
-   * A search implementation allowing sorting which spans a new thread for each
-   * Searchable, waits for each search to complete and merges
-   * the results back together.
+   * A search implementation allowing sorting which searches each Searchable
+   * in a pool thread, waits for each search to complete and merges the
+   * results back together.
    */
   public TopFieldDocs search(Query query, Filter filter, int nDocs, Sort sort)
     throws IOException {
+    TopDocs[] results = searchAll(query, filter, nDocs, sort);
+
     // don't specify the fields - we'll wait to do this until we get results
     FieldDocSortedHitQueue hq = new FieldDocSortedHitQueue (null, nDocs);
     int totalHits = 0;
-    MultiSearcherThread[] msta = new MultiSearcherThread[searchables.length];
-    for (int i = 0; i < searchables.length; i++) { // search each searcher
-      // Assume not too many searchables and cost of creating a thread is by far inferior to a search
-      msta[i] =
-        new MultiSearcherThread(
-                                searchables[i],
-                                query,
-                                filter,
-                                nDocs,
-                                hq,
-                                sort,
-                                i,
-                                starts,
-                                "MultiSearcher thread #" + (i + 1));
-      msta[i].start();
-    }
-
-    for (int i = 0; i < searchables.length; i++) {
-      try {
-        msta[i].join();
-      } catch (InterruptedException ie) {
-        ; // TODO: what should we do with this???
-      }
-      IOException ioe = msta[i].getIOException();
-      if (ioe == null) {
-        totalHits += msta[i].hits();
-      } else {
-        // if one search produced an IOException, rethrow it
-        throw ioe;
-      }
+    boolean partial = false;
+    for (int i = 0; i < results.length; i++) {
+      partial |= results[i].partial;
+      // tell the queue the actual type of fields, in case the original
+      // list contained AUTO.
+      hq.setFields(((TopFieldDocs) results[i]).fields);
+      totalHits += results[i].totalHits;
+      merge(hq, results[i].scoreDocs, starts[i]);
     }
 
     ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
     for (int i = hq.size() - 1; i >= 0; i--) // put docs in array
       scoreDocs[i] = (ScoreDoc) hq.pop();
 
-    return new TopFieldDocs(totalHits, scoreDocs, hq.getFields());
+    TopFieldDocs result = new TopFieldDocs(totalHits, scoreDocs, hq.getFields());
+    result.partial = partial;
+    return result;
+  }
+
+  private static void merge(PriorityQueue hq, ScoreDoc[] scoreDocs,
+                            int start) {
+    for (int j = 0; j < scoreDocs.length; j++) { // merge scoreDocs into hq
+      ScoreDoc scoreDoc = scoreDocs[j];
+      scoreDoc.doc += start;                      // convert doc
+      if (!hq.insert(scoreDoc))
+        break;                                    // no more scores > minScore
+    }
+  }
+
+  /** Searches all Searchables in the pool and waits for their results. */
+  private TopDocs[] searchAll(Query query, Filter filter, int nDocs,
+                              Sort sort) throws IOException {
+    // with a deadline, searches are queued rather than run by this thread
+    // when the pool is busy, so that the time limit holds under load
+    long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+    SearchTask[] tasks = new SearchTask[searchables.length];
+    for (int i = 0; i < searchables.length; i++) { // search each searcher 每一个搜索一个线程
+      tasks[i] = new SearchTask(searchables[i], query, filter, nDocs, sort);
+      if (deadline == 0)
+        pool.execute(tasks[i]);
+      else
+        pool.enqueue(tasks[i]);
+    }
+
+    TopDocs[] results = new TopDocs[tasks.length];
+    try {
+      for (int i = 0; i < tasks.length; i++) {
+        // if one search produced an exception, it is rethrown
+        if (!tasks[i].waitFor(deadline))
+          throw new SearchTimeoutException("search exceeded " + timeout
+                                           + " ms");
+        results[i] = tasks[i].docs;
+      }
+    } finally {
+      for (int i = 0; i < tasks.length; i++)     // no-op unless failed
+        tasks[i].cancel();
+    }
+    return results;
   }
 
   /** Lower-level search API.
-   *
    * <p>{@link HitCollector#collect(int,float)} is called for every non-zero
    * scoring document.
    *
@@ -193,99 +243,28 @@ public class ParallelMultiSearcher extends MultiSearcher { //继承自多搜索
 }
 
 /**
- * A thread subclass for searching a single searchable 
+ * A task searching a single searchable 
  * 搜索线程
  */
-class MultiSearcherThread extends Thread {
-
+class SearchTask extends ThreadPool.Task {
   private Searchable searchable;
   private Query query;
   private Filter filter;
   private int nDocs;
-  private TopDocs docs;
-  private int i;
-  private PriorityQueue hq;
-  private int[] starts;
-  private IOException ioe;
   private Sort sort;
+  TopDocs docs;
 
-  public MultiSearcherThread(
-                             Searchable searchable,
-                             Query query,
-                             Filter filter,
-                             int nDocs,
-                             HitQueue hq,
-                             int i,
-                             int[] starts,
-                             String name) {
-    super(name);
-    this.searchable = searchable;
-    this.query = query;
-    this.filter = filter;
-    this.nDocs = nDocs;
-    this.hq = hq;
-    this.i = i;
-    this.starts = starts;
-  }
-
-  public MultiSearcherThread(
-                             Searchable searchable,
-                             Query query,
-                             Filter filter,
-                             int nDocs,
-                             FieldDocSortedHitQueue hq,
-                             Sort sort,
-                             int i,
-                             int[] starts,
-                             String name) {
-    super(name);
+  SearchTask(Searchable searchable, Query query, Filter filter, int nDocs,
+             Sort sort) {
     this.searchable = searchable;
     this.query = query;
     this.filter = filter;
     this.nDocs = nDocs;
-    this.hq = hq;
-    this.i = i;
-    this.starts = starts;
     this.sort = sort;
   }
 
-  public void run() {
-    try {
-      docs = (sort == null) ? searchable.search (query, filter, nDocs)
-        : searchable.search (query, filter, nDocs, sort);
-    }
-    // Store the IOException for later use by the caller of this thread
-    catch (IOException ioe) {
-      this.ioe = ioe;
-    }
-    if (ioe == null) {
-      // if we are sorting by fields, we need to tell the field sorted hit queue
-      // the actual type of fields, in case the original list contained AUTO.
-      // if the searchable returns null for fields, we'll have problems.
-      if (sort != null) {
-        ((FieldDocSortedHitQueue)hq).setFields (((TopFieldDocs)docs).fields);
-      }
-      ScoreDoc[] scoreDocs = docs.scoreDocs;
-      for (int j = 0;
-           j < scoreDocs.length;
-           j++) { // merge scoreDocs into hq
-        ScoreDoc scoreDoc = scoreDocs[j];
-        scoreDoc.doc += starts[i]; // convert doc 
-        //it would be so nice if we had a thread-safe insert 
-        synchronized (hq) {
-          if (!hq.insert(scoreDoc))
-            break;
-        } // no more scores > minScore
-      }
-    }
-  }
-
-  public int hits() {
-    return docs.totalHits;
+  protected void call() throws IOException {
+    docs = (sort == null) ? searchable.search (query, filter, nDocs)
+      : searchable.search (query, filter, nDocs, sort);
   }
-
-  public IOException getIOException() {
-    return ioe;
-  }
-
 }
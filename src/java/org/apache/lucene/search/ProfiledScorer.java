@@ -0,0 +1,78 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** Delegates to the scorer of a query, recording the calls made to it and
+ * the time spent in them into a {@link QueryProfile}.  The time of a call
+ * is measured with {@link System#currentTimeMillis()}, so most calls
+ * count for nothing and a few for a whole millisecond: only the sums over
+ * many calls are meaningful.
+ */
+final class ProfiledScorer extends Scorer {
+  private final Scorer scorer;
+  private final QueryProfile profile;
+
+  ProfiledScorer(Scorer scorer, QueryProfile profile) {
+    super(scorer.getSimilarity());
+    this.scorer = scorer;
+    this.profile = profile;
+  }
+
+  /** Returns the scorer wrapped by <code>scorer</code>, if it is a
+   * ProfiledScorer, or <code>scorer</code> itself otherwise. */
+  static Scorer unwrap(Scorer scorer) {
+    return scorer instanceof ProfiledScorer
+      ? ((ProfiledScorer) scorer).scorer : scorer;
+  }
+
+  public boolean next() throws IOException {
+    long start = System.currentTimeMillis();
+    try {
+      return scorer.next();
+    } finally {
+      profile.add(QueryProfile.NEXT, System.currentTimeMillis() - start);
+    }
+  }
+
+  public int doc() { return scorer.doc(); }
+
+  public float score() throws IOException {
+    long start = System.currentTimeMillis();
+    try {
+      return scorer.score();
+    } finally {
+      profile.add(QueryProfile.SCORE, System.currentTimeMillis() - start);
+    }
+  }
+
+  public boolean skipTo(int target) throws IOException {
+    long start = System.currentTimeMillis();
+    try {
+      return scorer.skipTo(target);
+    } finally {
+      profile.add(QueryProfile.SKIP_TO, System.currentTimeMillis() - start);
+    }
+  }
+
+  float maxScore() { return scorer.maxScore(); }
+
+  public Explanation explain(int doc) throws IOException {
+    return scorer.explain(doc);
+  }
+}
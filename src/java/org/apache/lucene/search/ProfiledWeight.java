@@ -0,0 +1,68 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+
+/** Delegates to the weight of a query, recording the calls made to it and
+ * the time spent in them into a {@link QueryProfile}, and wraps its
+ * scorers into {@link ProfiledScorer}s.
+ */
+final class ProfiledWeight implements Weight {
+  private final Weight weight;
+  private final QueryProfile profile;
+
+  ProfiledWeight(Weight weight, QueryProfile profile) {
+    this.weight = weight;
+    this.profile = profile;
+  }
+
+  public Query getQuery() { return weight.getQuery(); }
+  public float getValue() { return weight.getValue(); }
+
+  public float sumOfSquaredWeights() throws IOException {
+    long start = System.currentTimeMillis();
+    try {
+      return weight.sumOfSquaredWeights();
+    } finally {
+      profile.add(QueryProfile.SUM_OF_SQUARED_WEIGHTS,
+                  System.currentTimeMillis() - start);
+    }
+  }
+
+  public void normalize(float norm) {
+    long start = System.currentTimeMillis();
+    weight.normalize(norm);
+    profile.add(QueryProfile.NORMALIZE, System.currentTimeMillis() - start);
+  }
+
+  public Scorer scorer(IndexReader reader) throws IOException {
+    long start = System.currentTimeMillis();
+    try {
+      Scorer scorer = weight.scorer(reader);
+      return scorer == null ? null : new ProfiledScorer(scorer, profile);
+    } finally {
+      profile.add(QueryProfile.SCORER, System.currentTimeMillis() - start);
+    }
+  }
+
+  public Explanation explain(IndexReader reader, int doc) throws IOException {
+    return weight.explain(reader, doc);
+  }
+}
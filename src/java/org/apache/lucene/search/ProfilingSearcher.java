@@ -0,0 +1,106 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.PostingsCounter;
+
+/** Searches like the IndexSearcher it is made from, wrapping the weight of
+ * each query and subquery into a {@link ProfiledWeight}, for {@link
+ * IndexSearcher#profile(Query,Filter,int,Sort)}.  A new one is made for
+ * each search, which it serves alone, counting the postings read with a
+ * {@link PostingsCounter} of its own.
+ */
+final class ProfilingSearcher extends IndexSearcher {
+  private QueryProfile profile;                   // of the top-level query
+  private QueryProfile parent;                    // whose weight is created
+  private long rewriteTime;
+  private final PostingsCounter postings = new PostingsCounter();
+
+  ProfilingSearcher(IndexSearcher searcher) {
+    super(searcher.reader);
+    setSimilarity(searcher.getSimilarity());
+    setMaxScorePruning(searcher.getMaxScorePruning());
+    setEarlyTermination(searcher.getEarlyTermination());
+    setTimeout(searcher.getTimeout());
+  }
+
+  /** Returns the profile of the top-level query searched. */
+  QueryProfile getProfile() {
+    return profile;
+  }
+
+  /** Returns the milliseconds spent rewriting queries. */
+  long getRewriteTime() {
+    return rewriteTime;
+  }
+
+  /** Returns the bytes of postings read by the search. */
+  long getPostingsBytesRead() {
+    return postings.getBytesRead();
+  }
+
+  // segments are searched in this thread, having no thread pool
+  TopDocs searchTop(Query query, Filter filter, int nDocs)
+    throws IOException {
+    postings.install();
+    try {
+      return super.searchTop(query, filter, nDocs);
+    } finally {
+      postings.uninstall();
+    }
+  }
+
+  TopFieldDocs searchSorted(Query query, Filter filter, int nDocs, Sort sort)
+    throws IOException {
+    postings.install();
+    try {
+      return super.searchSorted(query, filter, nDocs, sort);
+    } finally {
+      postings.uninstall();
+    }
+  }
+
+  Weight createWeight(Query query) {
+    QueryProfile node = new QueryProfile(query);
+    if (parent == null)
+      profile = node;
+    else
+      parent.addChild(node);
+
+    QueryProfile outer = parent;
+    parent = node;
+    long start = System.currentTimeMillis();
+    try {
+      return new ProfiledWeight(query.createWeight(this), node);
+    } finally {
+      node.add(QueryProfile.CREATE_WEIGHT, System.currentTimeMillis() - start);
+      parent = outer;
+    }
+  }
+
+  Query rewrite(Query original, IndexReader reader) throws IOException {
+    long start = System.currentTimeMillis();
+    try {
+      return super.rewrite(original, reader);
+    } finally {
+      rewriteTime += System.currentTimeMillis() - start;
+    }
+  }
+}
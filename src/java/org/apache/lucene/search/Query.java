@@ -89,7 +89,7 @@ public abstract class Query implements java.io.Serializable, Cloneable {
   public Weight weight(Searcher searcher)
     throws IOException {
     Query query = searcher.rewrite(this);
-    Weight weight = query.createWeight(searcher);
+    Weight weight = searcher.createWeight(query);
     float sum = weight.sumOfSquaredWeights();
     float norm = getSimilarity(searcher).queryNorm(sum);
     weight.normalize(norm);
@@ -36,6 +36,7 @@ import org.apache.lucene.index.IndexReader;
 public class QueryFilter extends Filter {
   private Query query;
   private transient WeakHashMap cache = null;//缓存对该query在某一个固定的index所以上的查询结果
+  private transient FilterCache filterCache;
 
   /** Constructs a filter which only matches documents matching
    * <code>query</code>.
@@ -44,35 +45,88 @@ public class QueryFilter extends Filter {
     this.query = query;
   }
 
+  /** Constructs a filter which only matches documents matching
+   * <code>query</code>, whose results are cached per segment in a shared,
+   * bounded cache instead of one of this filter's own.
+   */
+  public QueryFilter(Query query, FilterCache filterCache) {
+    this.query = query;
+    this.filterCache = filterCache;
+  }
+
   public BitSet bits(IndexReader reader) throws IOException {
+    return DocIdBitSet.bitsOf(getDocIdSet(reader));
+  }
+
+  /** Returns the documents matching the query, which are cached in
+   * whichever form takes the least memory.
+   * @see DocIdSet#compact(DocIdSet)
+   */
+  public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+    if (filterCache != null) {
+      return filterCache.getDocIdSet(new Matches(query), reader);
+    }
 
     if (cache == null) {
       cache = new WeakHashMap();
     }
 
     synchronized (cache) {  // check cache
-      BitSet cached = (BitSet) cache.get(reader);
+      DocIdSet cached = (DocIdSet) cache.get(reader);
       if (cached != null) {
         return cached;
       }
     }
 
-    final BitSet bits = new BitSet(reader.maxDoc());
-
-    new IndexSearcher(reader).search(query, new HitCollector() {
-      public final void collect(int doc, float score) {
-        bits.set(doc);  // set bit for hit
-      }
-    });
+    DocIdSet docs = DocIdSet.compact(new Matches(query).getDocIdSet(reader));
 
     synchronized (cache) {  // update cache
-      cache.put(reader, bits);
+      cache.put(reader, docs);
     }
 
-    return bits;
+    return docs;
+  }
+
+  /** The uncached documents matching a query. */
+  private static class Matches extends Filter {
+    private final Query query;
+
+    Matches(Query query) {
+      this.query = query;
+    }
+
+    public BitSet bits(IndexReader reader) throws IOException {
+      final BitSet bits = new BitSet(reader.maxDoc());
+
+      new IndexSearcher(reader).search(query, new HitCollector() {
+        public final void collect(int doc, float score) {
+          bits.set(doc);  // set bit for hit
+        }
+      });
+
+      return bits;
+    }
+
+    public boolean equals(Object o) {
+      return o instanceof Matches && query.equals(((Matches)o).query);
+    }
+
+    public int hashCode() {
+      return query.hashCode();
+    }
   }
 
   public String toString() {
     return "QueryFilter("+query+")";
   }
+
+  /** Returns true iff <code>o</code> is a QueryFilter of an equal query. */
+  public boolean equals(Object o) {
+    if (!(o instanceof QueryFilter)) return false;
+    return query.equals(((QueryFilter)o).query);
+  }
+
+  public int hashCode() {
+    return query.hashCode() ^ 0x923F64B9;
+  }
 }
@@ -0,0 +1,124 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Vector;
+
+/** The calls made to the weight and the scorers of a query during a search
+ * profiled with {@link IndexSearcher#profile(Query,Filter,int)}, and the
+ * milliseconds spent in them, with the profiles of its subqueries as
+ * children.  The time of a call includes that of the calls it makes to
+ * the subqueries.  Times are the sums of many short calls, each measured
+ * with {@link System#currentTimeMillis()}, so they are only estimates,
+ * and meaningful when large.
+ */
+public class QueryProfile implements java.io.Serializable {
+  /** {@link Query#createWeight(Searcher)}. */
+  public static final int CREATE_WEIGHT = 0;
+  /** {@link Weight#sumOfSquaredWeights()}. */
+  public static final int SUM_OF_SQUARED_WEIGHTS = 1;
+  /** {@link Weight#normalize(float)}. */
+  public static final int NORMALIZE = 2;
+  /** {@link Weight#scorer(org.apache.lucene.index.IndexReader)}, called
+   * once for each segment. */
+  public static final int SCORER = 3;
+  /** {@link Scorer#next()}. */
+  public static final int NEXT = 4;
+  /** {@link Scorer#skipTo(int)}. */
+  public static final int SKIP_TO = 5;
+  /** {@link Scorer#score()}. */
+  public static final int SCORE = 6;
+
+  private static final String[] NAMES = {
+    "createWeight", "sumOfSquaredWeights", "normalize", "scorer",
+    "next", "skipTo", "score"
+  };
+
+  private Query query;
+  private Vector children = new Vector();
+  private long[] counts = new long[NAMES.length];
+  private long[] times = new long[NAMES.length];
+
+  QueryProfile(Query query) {
+    this.query = query;
+  }
+
+  /** Returns the query profiled. */
+  public Query getQuery() {
+    return query;
+  }
+
+  /** Returns the profiles of the subqueries, in the order of their weights
+   * being created. */
+  public QueryProfile[] getChildren() {
+    QueryProfile[] result = new QueryProfile[children.size()];
+    children.copyInto(result);
+    return result;
+  }
+
+  /** Returns the number of calls made to an operation, one of {@link
+   * #CREATE_WEIGHT}, {@link #SUM_OF_SQUARED_WEIGHTS}, {@link #NORMALIZE},
+   * {@link #SCORER}, {@link #NEXT}, {@link #SKIP_TO} and {@link #SCORE}. */
+  public long getCount(int operation) {
+    return counts[operation];
+  }
+
+  /** Returns the milliseconds spent in an operation.
+   * @see #getCount(int)
+   */
+  public long getTime(int operation) {
+    return times[operation];
+  }
+
+  void addChild(QueryProfile child) {
+    children.addElement(child);
+  }
+
+  void add(int operation, long time) {
+    counts[operation]++;
+    times[operation] += time;
+  }
+
+  /** Prints the profile and those of the subqueries, indented, one query
+   * per line. */
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    toString(buffer, "");
+    return buffer.toString();
+  }
+
+  private void toString(StringBuffer buffer, String indent) {
+    buffer.append(indent);
+    buffer.append(query.toString());
+    String separator = " [";
+    for (int i = 0; i < NAMES.length; i++) {
+      if (counts[i] == 0)
+        continue;
+      buffer.append(separator);
+      separator = ", ";
+      buffer.append(NAMES[i]);
+      buffer.append('=');
+      buffer.append(counts[i]);
+      buffer.append('/');
+      buffer.append(times[i]);
+      buffer.append("ms");
+    }
+    buffer.append(separator.equals(", ") ? "]\n" : "\n");
+    for (int i = 0; i < children.size(); i++)
+      ((QueryProfile) children.elementAt(i)).toString(buffer, indent + "  ");
+  }
+}
@@ -0,0 +1,290 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+
+/** A cache of the top documents of searches, for applications whose
+ * searches often repeat.  See {@link
+ * IndexSearcher#setResultCache(QueryResultCache)}.
+ *
+ * <p>Results are keyed on the query, the filter and the sort, all compared
+ * with <code>equals()</code>, so queries and filters must not be changed
+ * after they are searched.  A search for <code>n</code> documents caches
+ * the top documents up to the next multiple of the {@link
+ * #setWindowSize(int) window size}, so that a following search for the
+ * next page of the same results is found in the cache too.
+ *
+ * <p>Results are kept apart for each reader, so that searchers of several
+ * readers may share a cache.  The results of a reader are dropped after
+ * documents have been deleted or norms set, as told by {@link
+ * IndexReader#getModificationCount()}.  When an application replaces its
+ * searcher, {@link #warm(IndexSearcher,int)} searches the most recently used
+ * queries again with the new searcher before it is put to use, while the
+ * old searcher goes on using its own results.  The maximum number of
+ * results is shared by all readers: when there are more, the least
+ * recently used are dropped, so the results of a reader that is no longer
+ * searched are dropped in time.
+ */
+public class QueryResultCache {
+
+  /** A reader, a query, a filter, a sort and a number of documents. */
+  private static final class Key {
+    final WeakReference reader;                   // don't keep closed readers
+    final int readerHash;
+    final Query query;
+    final Filter filter;
+    final SortField[] sort;
+    final int window;
+
+    Key(IndexReader reader, Query query, Filter filter, Sort sort, int window) {
+      this.reader = new WeakReference(reader);
+      this.readerHash = System.identityHashCode(reader);
+      this.query = query;
+      this.filter = filter;
+      this.sort = sort == null ? null : (SortField[]) sort.fields.clone();
+      this.window = window;
+    }
+
+    public boolean equals(Object o) {
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      Object reader = this.reader.get();
+      return reader != null && reader == other.reader.get()
+        && window == other.window
+        && query.equals(other.query)
+        && (filter == null ? other.filter == null : filter.equals(other.filter))
+        && Arrays.equals(sort, other.sort);
+    }
+
+    public int hashCode() {
+      int hash = (readerHash * 31 + query.hashCode()) * 31 + window;
+      if (filter != null)
+        hash = hash * 31 + filter.hashCode();
+      if (sort != null)
+        for (int i = 0; i < sort.length; i++)
+          hash = hash * 31 + sort[i].hashCode();
+      return hash;
+    }
+  }
+
+  private final Map entries = new LinkedHashMap(16, 0.75f, true);
+  private int maxEntries;
+  private int windowSize = 20;
+  private final Map readers = new WeakHashMap();  // modification counts
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  /** Constructs a cache of the results of at most <code>maxEntries</code>
+   * searches. */
+  public QueryResultCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /** Returns the top documents of a search, from the cache if possible.
+   * The sort is null for results sorted by relevance. */
+  TopDocs search(IndexSearcher searcher, Query query, Filter filter,
+                 int nDocs, Sort sort) throws IOException {
+    int window;
+    Key key;
+    long count;
+    synchronized (this) {
+      window = Math.max(windowSize, (nDocs + windowSize - 1) / windowSize * windowSize);
+      key = new Key(searcher.reader, query, filter, sort, window);
+      count = checkReader(searcher.reader);
+      TopDocs cached = (TopDocs) entries.get(key);
+      if (cached != null) {
+        hits++;
+        return copy(cached, nDocs);
+      }
+      misses++;
+    }
+
+    TopDocs docs = sort == null
+      ? searcher.searchTop(query, filter, window)
+      : searcher.searchSorted(query, filter, window, sort);
+
+    synchronized (this) {
+      Long current = (Long) readers.get(searcher.reader);
+      if (current != null && current.longValue() == count
+          && !docs.partial) {                     // may complete next time
+        entries.put(key, docs);
+        evict();
+      }
+    }
+    return copy(docs, nDocs);
+  }
+
+  /** Drops the results of <code>reader</code> if it has been modified since
+   * they were cached, and returns its modification count. */
+  private long checkReader(IndexReader reader) {
+    long count = reader.getModificationCount();
+    Long seen = (Long) readers.get(reader);
+    if (seen == null || seen.longValue() != count) {
+      if (seen != null) {
+        Iterator i = entries.keySet().iterator();
+        while (i.hasNext()) {
+          if (((Key) i.next()).reader.get() == reader) {
+            i.remove();
+            invalidations++;
+          }
+        }
+      }
+      readers.put(reader, new Long(count));
+    }
+    return count;
+  }
+
+  /** Drops the least recently used results while there are too many. */
+  private void evict() {
+    Iterator i = entries.values().iterator();
+    while (entries.size() > maxEntries && i.hasNext()) {
+      i.next();
+      i.remove();
+      evictions++;
+    }
+  }
+
+  /** Returns the first <code>nDocs</code> documents of cached results, with
+   * documents of their own, since callers such as {@link MultiSearcher}
+   * renumber them. */
+  private static TopDocs copy(TopDocs docs, int nDocs) {
+    ScoreDoc[] scoreDocs = new ScoreDoc[Math.min(nDocs, docs.scoreDocs.length)];
+    for (int i = 0; i < scoreDocs.length; i++) {
+      ScoreDoc doc = docs.scoreDocs[i];
+      if (doc instanceof FieldDoc)
+        scoreDocs[i] = new FieldDoc(doc.doc, doc.score, ((FieldDoc) doc).fields);
+      else
+        scoreDocs[i] = new ScoreDoc(doc.doc, doc.score);
+    }
+    TopDocs result = docs instanceof TopFieldDocs
+      ? new TopFieldDocs(docs.totalHits, scoreDocs, ((TopFieldDocs) docs).fields)
+      : new TopDocs(docs.totalHits, scoreDocs);
+    result.partial = docs.partial;
+    return result;
+  }
+
+  /** Searches the most recently used queries of the cache again with
+   * <code>searcher</code>, most recent first, so that the cache is filled
+   * with their results before the searcher is put to use.  Queries already
+   * cached for the reader of <code>searcher</code> are skipped.  Returns the
+   * number of queries searched.
+   * @param searcher A searcher with a new reader, using this cache.
+   * @param count    The maximum number of queries to search.
+   */
+  public int warm(IndexSearcher searcher, int count) throws IOException {
+    Key[] keys;
+    synchronized (this) {
+      keys = (Key[]) entries.keySet().toArray(new Key[entries.size()]);
+    }
+    int searched = 0;
+    for (int i = keys.length - 1; i >= 0 && searched < count; i--) {
+      Key key = keys[i];
+      Key warmed = new Key(searcher.reader, key.query, key.filter,
+                           key.sort == null ? null : new Sort(key.sort), key.window);
+      synchronized (this) {
+        if (entries.containsKey(warmed))          // warmed or searched already
+          continue;
+      }
+      search(searcher, key.query, key.filter, key.window,
+             key.sort == null ? null : new Sort(key.sort));
+      searched++;
+    }
+    return searched;
+  }
+
+  /** Sets the number of documents up to a multiple of which results are
+   * cached.  The default is 20.  Changing it drops all results. */
+  public synchronized void setWindowSize(int windowSize) {
+    if (windowSize < 1)
+      throw new IllegalArgumentException("windowSize must be positive");
+    this.windowSize = windowSize;
+    entries.clear();
+  }
+
+  /** Returns the number of documents up to a multiple of which results are
+   * cached.
+   * @see #setWindowSize(int)
+   */
+  public synchronized int getWindowSize() {
+    return windowSize;
+  }
+
+  /** Sets the maximum number of results cached, dropping the least
+   * recently used if there are more. */
+  public synchronized void setMaxEntries(int maxEntries) {
+    this.maxEntries = maxEntries;
+    evict();
+  }
+
+  /** Returns the maximum number of results cached.
+   * @see #setMaxEntries(int)
+   */
+  public synchronized int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /** Returns the number of results cached. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** Returns the number of searches found in the cache. */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /** Returns the number of searches not found in the cache. */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /** Returns the fraction of searches found in the cache, or 0 if there
+   * were none. */
+  public synchronized float getHitRate() {
+    long searches = hits + misses;
+    return searches == 0 ? 0.0f : (float)hits / searches;
+  }
+
+  /** Returns the number of results dropped to stay within the maximum
+   * number of results. */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /** Returns the number of results dropped because documents of their
+   * reader were deleted or norms set. */
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  /** Drops all results. */
+  public synchronized void clear() {
+    entries.clear();
+  }
+}
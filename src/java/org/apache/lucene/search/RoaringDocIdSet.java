@@ -0,0 +1,196 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** A {@link DocIdSet} split into chunks of 65536 documents, after the
+ * Roaring bitmaps of Chambi, Lemire et al.  A chunk of up to 4096 documents
+ * keeps the low 16 bits of each in a sorted char array; a denser one keeps
+ * a bitmap of 1024 longs.  Chunks without documents take no space, so
+ * this suits sets which are dense in some parts of the index and sparse or
+ * empty in others.
+ */
+public class RoaringDocIdSet extends DocIdSet {
+  private static final int ARRAY_MAX = 4096;      // beyond this, a bitmap
+  private static final int BITMAP_LONGS = 1024;
+
+  private int[] keys = new int[4];                // high 16 bits of a chunk
+  private Object[] chunks = new Object[4];        // char[] or long[]
+  private int numChunks;
+  private int size;
+
+  /** Constructs a set of the documents of an iterator. */
+  public RoaringDocIdSet(DocIdSetIterator docs) throws IOException {
+    char[] buffer = new char[ARRAY_MAX];
+    long[] bitmap = null;
+    int key = -1;
+    int count = 0;
+    while (docs.next()) {
+      int doc = docs.doc();
+      if ((doc >>> 16) != key) {
+        if (key != -1)
+          addChunk(key, buffer, bitmap, count);
+        key = doc >>> 16;
+        bitmap = null;
+        count = 0;
+      }
+      int low = doc & 0xFFFF;
+      if (bitmap != null) {
+        bitmap[low >>> 6] |= 1L << (low & 63);
+      } else if (count < ARRAY_MAX) {
+        buffer[count] = (char)low;
+      } else {                                    // too many for an array
+        bitmap = new long[BITMAP_LONGS];
+        for (int i = 0; i < count; i++)
+          bitmap[buffer[i] >>> 6] |= 1L << (buffer[i] & 63);
+        bitmap[low >>> 6] |= 1L << (low & 63);
+      }
+      count++;
+    }
+    if (key != -1)
+      addChunk(key, buffer, bitmap, count);
+
+    if (numChunks < keys.length) {
+      int[] newKeys = new int[numChunks];
+      System.arraycopy(keys, 0, newKeys, 0, numChunks);
+      keys = newKeys;
+      Object[] newChunks = new Object[numChunks];
+      System.arraycopy(chunks, 0, newChunks, 0, numChunks);
+      chunks = newChunks;
+    }
+  }
+
+  private void addChunk(int key, char[] buffer, long[] bitmap, int count) {
+    if (numChunks == keys.length) {
+      int[] newKeys = new int[numChunks * 2];
+      System.arraycopy(keys, 0, newKeys, 0, numChunks);
+      keys = newKeys;
+      Object[] newChunks = new Object[numChunks * 2];
+      System.arraycopy(chunks, 0, newChunks, 0, numChunks);
+      chunks = newChunks;
+    }
+    keys[numChunks] = key;
+    if (bitmap != null) {
+      chunks[numChunks] = bitmap;
+    } else {
+      char[] array = new char[count];
+      System.arraycopy(buffer, 0, array, 0, count);
+      chunks[numChunks] = array;
+    }
+    numChunks++;
+    size += count;
+  }
+
+  /** Returns the number of bytes taken by a chunk of <code>count</code>
+   * documents, including its key and reference. */
+  static long chunkSize(int count) {
+    return 8 + (count <= ARRAY_MAX ? count << 1 : BITMAP_LONGS << 3);
+  }
+
+  /** Returns the number of documents in this set. */
+  public int size() {
+    return size;
+  }
+
+  public long sizeInBytes() {
+    long bytes = 0;
+    for (int i = 0; i < numChunks; i++) {
+      bytes += 8;
+      if (chunks[i] instanceof long[])
+        bytes += BITMAP_LONGS << 3;
+      else
+        bytes += ((char[]) chunks[i]).length << 1;
+    }
+    return bytes;
+  }
+
+  public DocIdSetIterator iterator() {
+    return new DocIdSetIterator() {
+        private int doc = -1;
+        private int chunk = 0;                    // current chunk
+        private int pos = 0;                      // in an array chunk
+
+        public int doc() {
+          return doc;
+        }
+
+        public boolean next() {
+          return skipTo(doc + 1);
+        }
+
+        public boolean skipTo(int target) {
+          if (target <= doc)
+            target = doc + 1;
+          int key = target >>> 16;
+          while (chunk < numChunks && keys[chunk] < key) {
+            chunk++;
+            pos = 0;
+          }
+          for (; chunk < numChunks; chunk++, pos = 0) {
+            int low = keys[chunk] == key ? target & 0xFFFF : 0;
+            int found;
+            if (chunks[chunk] instanceof long[]) {
+              found = nextSetBit((long[]) chunks[chunk], low);
+            } else {
+              char[] array = (char[]) chunks[chunk];
+              if (pos < array.length && array[pos] < low) {
+                int lo = pos + 1, hi = array.length;  // binary search
+                while (lo < hi) {
+                  int mid = (lo + hi) >>> 1;
+                  if (array[mid] < low)
+                    lo = mid + 1;
+                  else
+                    hi = mid;
+                }
+                pos = lo;
+              }
+              found = pos < array.length ? array[pos] : -1;
+            }
+            if (found != -1) {
+              doc = (keys[chunk] << 16) | found;
+              return true;
+            }
+          }
+          return false;
+        }
+      };
+  }
+
+  /** Returns the first bit set at or after <code>from</code>, or -1. */
+  private static int nextSetBit(long[] bitmap, int from) {
+    int i = from >>> 6;
+    long word = bitmap[i] >>> (from & 63);
+    if (word != 0)
+      return from + numberOfTrailingZeros(word);
+    while (++i < bitmap.length)
+      if (bitmap[i] != 0)
+        return (i << 6) + numberOfTrailingZeros(bitmap[i]);
+    return -1;
+  }
+
+  private static int numberOfTrailingZeros(long word) {
+    int n = 0;
+    if ((word & 0xFFFFFFFFL) == 0) { n += 32; word >>>= 32; }
+    if ((word & 0xFFFFL) == 0) { n += 16; word >>>= 16; }
+    if ((word & 0xFFL) == 0) { n += 8; word >>>= 8; }
+    if ((word & 0xFL) == 0) { n += 4; word >>>= 4; }
+    if ((word & 0x3L) == 0) { n += 2; word >>>= 2; }
+    if ((word & 0x1L) == 0) { n += 1; }
+    return n;
+  }
+}
@@ -0,0 +1,95 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** A {@link DocIdSet} of runs of consecutive documents, each stored as two
+ * VInts: its distance from the end of the previous run, and its length
+ * less one.  This suits sets made of long ranges of documents, such as
+ * those of a filter on a field indexed in document order.
+ */
+public class RunLengthDocIdSet extends VIntDocIdSet {
+  private int size;
+  private int numRuns;
+
+  /** Constructs a set of the documents of an iterator. */
+  public RunLengthDocIdSet(DocIdSetIterator docs) throws IOException {
+    int runStart = -1, runEnd = 0, prevEnd = 0;   // current run [start, end)
+    while (docs.next()) {
+      int doc = docs.doc();
+      size++;
+      if (doc == runEnd && runStart != -1) {
+        runEnd++;
+        continue;
+      }
+      if (runStart != -1) {
+        writeRun(runStart - prevEnd, runEnd - runStart);
+        prevEnd = runEnd;
+      }
+      runStart = doc;
+      runEnd = doc + 1;
+    }
+    if (runStart != -1)
+      writeRun(runStart - prevEnd, runEnd - runStart);
+    trim();
+  }
+
+  private void writeRun(int gap, int length) {
+    writeVInt(gap);
+    writeVInt(length - 1);
+    numRuns++;
+  }
+
+  /** Returns the number of documents in this set. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the number of runs of consecutive documents in this set. */
+  public int numRuns() {
+    return numRuns;
+  }
+
+  public DocIdSetIterator iterator() {
+    return new VIntIterator(this) {
+        private int doc = -1;
+        private int runStart = 0, runEnd = 0;
+
+        public int doc() {
+          return doc;
+        }
+
+        public boolean next() {
+          return skipTo(doc + 1);
+        }
+
+        public boolean skipTo(int target) {
+          if (target <= doc)
+            target = doc + 1;
+          while (runEnd <= target) {              // skip whole runs
+            if (!hasMoreVInts())
+              return false;
+            runStart = runEnd + readVInt();
+            runEnd = runStart + readVInt() + 1;
+          }
+          doc = Math.max(target, runStart);
+          return true;
+        }
+      };
+  }
+}
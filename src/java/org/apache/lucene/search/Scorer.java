@@ -73,6 +73,14 @@ public abstract class Scorer {
    */
   public abstract boolean skipTo(int target) throws IOException;
 
+  /** Returns an upper bound of the scores of this scorer, or
+   * <code>Float.POSITIVE_INFINITY</code> if no bound is known.
+   * @see MaxScoreScorer
+   */
+  float maxScore() {
+    return Float.POSITIVE_INFINITY;
+  }
+
   /** Returns an explanation of the score for <code>doc</code>. */
   public abstract Explanation explain(int doc) throws IOException;
 
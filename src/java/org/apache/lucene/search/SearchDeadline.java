@@ -0,0 +1,122 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.FilterIndexReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+/**
+ * The time by which a search should end.  Term enumerations and hit
+ * collection call {@link #check()} as they go, which only reads the clock
+ * once every {@link #CHECK_INTERVAL} calls, so that checking costs little
+ * more than a counter in the inner loops.  Once the time has passed,
+ * enumerations end and hit collection stops, leaving partial results.
+ *
+ * <p>A deadline may be checked by several threads, as in a search of the
+ * segments of an index in parallel.
+ *
+ * @see IndexSearcher#setTimeout(long)
+ */
+final class SearchDeadline {
+  /** The number of calls to {@link #check()} per reading of the clock. */
+  static final int CHECK_INTERVAL = 256;
+
+  private final long deadline;
+  private int calls;                              // races only delay a check
+  private volatile boolean expired;
+
+  /** Constructs a deadline <code>timeout</code> milliseconds from now. */
+  SearchDeadline(long timeout) {
+    deadline = System.currentTimeMillis() + timeout;
+  }
+
+  /** Returns true if the deadline has passed, reading the clock only once
+   * every {@link #CHECK_INTERVAL} calls. */
+  boolean check() {
+    if (expired)
+      return true;
+    if (++calls % CHECK_INTERVAL != 0)
+      return false;
+    if (System.currentTimeMillis() >= deadline)
+      expired = true;
+    return expired;
+  }
+
+  /** Returns true if a call to {@link #check()} found that the deadline
+   * has passed, so that some work was skipped. */
+  boolean isExpired() {
+    return expired;
+  }
+
+  /** Thrown by {@link #collector(HitCollector)} to stop a scorer. */
+  static final class Expired extends RuntimeException {
+    Expired() {
+      super("search deadline passed");
+    }
+  }
+
+  private static final Expired EXPIRED = new Expired();
+
+  /** Returns a collector passing hits on to <code>results</code> which
+   * throws {@link Expired} once the deadline has passed. */
+  HitCollector collector(final HitCollector results) {
+    return new HitCollector() {
+        public void collect(int doc, float score) {
+          if (check())
+            throw EXPIRED;
+          results.collect(doc, score);
+        }
+      };
+  }
+
+  /** Scores the hits of <code>scorer</code> into <code>results</code>
+   * until they are all collected or the deadline passes. */
+  void score(Scorer scorer, HitCollector results) throws IOException {
+    if (expired)
+      return;
+    try {
+      scorer.score(collector(results));
+    } catch (Expired e) {                         // partial results
+    }
+  }
+
+  /** Returns a reader whose term enumerations end once the deadline has
+   * passed, for the rewriting of queries which enumerate terms, such as
+   * {@link WildcardQuery} and {@link FuzzyQuery}. */
+  IndexReader reader(IndexReader reader) {
+    return new FilterIndexReader(reader) {
+        public TermEnum terms() throws IOException {
+          return termEnum(in.terms());
+        }
+        public TermEnum terms(Term t) throws IOException {
+          return termEnum(in.terms(t));
+        }
+      };
+  }
+
+  private TermEnum termEnum(TermEnum terms) {
+    return new FilterIndexReader.FilterTermEnum(terms) {
+        public boolean next() throws IOException {
+          return !check() && in.next();
+        }
+      };
+  }
+}
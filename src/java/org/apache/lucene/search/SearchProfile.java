@@ -0,0 +1,66 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/** The result of a search profiled with {@link
+ * IndexSearcher#profile(Query,Filter,int)}: the top documents found, and
+ * where the search spent its time. */
+public class SearchProfile implements java.io.Serializable {
+  private TopDocs topDocs;
+  private long rewriteTime;
+  private long postingsBytesRead;
+  private QueryProfile queryProfile;
+
+  SearchProfile(TopDocs topDocs, long rewriteTime, long postingsBytesRead,
+                QueryProfile queryProfile) {
+    this.topDocs = topDocs;
+    this.rewriteTime = rewriteTime;
+    this.postingsBytesRead = postingsBytesRead;
+    this.queryProfile = queryProfile;
+  }
+
+  /** Returns the top documents, as {@link
+   * IndexSearcher#search(Query,Filter,int)} or {@link
+   * IndexSearcher#search(Query,Filter,int,Sort)} returns them. */
+  public TopDocs getTopDocs() {
+    return topDocs;
+  }
+
+  /** Returns the milliseconds spent rewriting the query into primitive
+   * queries. */
+  public long getRewriteTime() {
+    return rewriteTime;
+  }
+
+  /** Returns the bytes of postings read by the search.
+   * @see org.apache.lucene.index.PostingsCounter
+   */
+  public long getPostingsBytesRead() {
+    return postingsBytesRead;
+  }
+
+  /** Returns the profile of the rewritten query, whose children are those
+   * of its subqueries. */
+  public QueryProfile getQueryProfile() {
+    return queryProfile;
+  }
+
+  public String toString() {
+    return "rewrite=" + rewriteTime + "ms, postings=" + postingsBytesRead
+      + " bytes\n" + queryProfile;
+  }
+}
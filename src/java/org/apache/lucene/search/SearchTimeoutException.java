@@ -0,0 +1,30 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** Thrown when a search does not complete within its time limit.
+ *
+ * @see ParallelMultiSearcher#setTimeout(long)
+ */
+public class SearchTimeoutException extends IOException {
+  /** Constructs an exception with the given message. */
+  public SearchTimeoutException(String message) {
+    super(message);
+  }
+}
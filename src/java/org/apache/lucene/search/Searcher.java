@@ -68,6 +68,14 @@ public abstract class Searcher implements Searchable {
     search(query, (Filter)null, results);
   }    
 
+  /** Constructs the weight of <code>query</code>, which is rewritten, for
+   * this searcher.  Queries construct the weights of their subqueries with
+   * this too, so that {@link IndexSearcher#profile(Query,Filter,int)} may
+   * wrap each of them. */
+  Weight createWeight(Query query) {
+    return query.createWeight(this);
+  }
+
   /** The Similarity implementation used by this searcher. */
   private Similarity similarity = Similarity.getDefault();
 
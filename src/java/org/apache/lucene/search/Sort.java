@@ -17,6 +17,7 @@ package org.apache.lucene.search;
  */
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 
 /**
@@ -220,4 +221,18 @@ implements Serializable {
 
     return buffer.toString();
   }
+
+  /** Returns true iff <code>o</code> sorts by equal criteria in the same
+   * succession. */
+  public boolean equals(Object o) {
+    if (!(o instanceof Sort)) return false;
+    return Arrays.equals(fields, ((Sort) o).fields);
+  }
+
+  public int hashCode() {
+    int hash = 0x45AA1E3;
+    for (int i = 0; i < fields.length; i++)
+      hash = hash * 31 + fields[i].hashCode();
+    return hash;
+  }
 }
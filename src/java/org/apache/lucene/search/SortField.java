@@ -234,4 +234,24 @@ implements Serializable {
 
     return buffer.toString();
   }
+
+  /** Returns true iff <code>o</code> sorts by the same field, type, locale,
+   * comparator factory and direction. */
+  public boolean equals (Object o) {
+    if (this == o) return true;
+    if (!(o instanceof SortField)) return false;
+    SortField other = (SortField) o;
+    return type == other.type && reverse == other.reverse
+      && (field == null ? other.field == null : field.equals (other.field))
+      && (locale == null ? other.locale == null : locale.equals (other.locale))
+      && (factory == null ? other.factory == null : factory.equals (other.factory));
+  }
+
+  public int hashCode() {
+    int hash = type ^ (reverse ? 0x2E7 : 0);
+    if (field != null) hash ^= field.hashCode();
+    if (locale != null) hash ^= locale.hashCode();
+    if (factory != null) hash ^= factory.hashCode();
+    return hash;
+  }
 }
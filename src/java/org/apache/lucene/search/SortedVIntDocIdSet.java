@@ -0,0 +1,72 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** A {@link DocIdSet} of documents stored as the VInt differences between
+ * successive document numbers.  This takes little more than a byte per
+ * document for sets denser than one document in a hundred, and suits
+ * sparse sets.
+ */
+public class SortedVIntDocIdSet extends VIntDocIdSet {
+  private int size;
+
+  /** Constructs a set of the documents of an iterator. */
+  public SortedVIntDocIdSet(DocIdSetIterator docs) throws IOException {
+    int last = 0;
+    while (docs.next()) {
+      int doc = docs.doc();
+      writeVInt(doc - last);
+      last = doc;
+      size++;
+    }
+    trim();
+  }
+
+  /** Returns the number of documents in this set. */
+  public int size() {
+    return size;
+  }
+
+  public DocIdSetIterator iterator() {
+    return new VIntIterator(this) {
+        private int doc = -1;
+        private int last = 0;
+
+        public int doc() {
+          return doc;
+        }
+
+        public boolean next() {
+          if (!hasMoreVInts())
+            return false;
+          last += readVInt();
+          doc = last;
+          return true;
+        }
+
+        public boolean skipTo(int target) {
+          do {
+            if (!next())
+              return false;
+          } while (doc < target);
+          return true;
+        }
+      };
+  }
+}
@@ -63,8 +63,15 @@ public class TermQuery extends Query {
       if (termDocs == null)
         return null;
       
-      return new TermScorer(this, termDocs, getSimilarity(searcher),
-                            reader.norms(term.field()));
+      TermScorer scorer = new TermScorer(this, termDocs,
+                                         getSimilarity(searcher),
+                                         reader.norms(term.field()));
+      if (MaxScoreScorer.isEnabled(searcher)) {
+        int maxFreq = reader.maxFreq(term, termDocs);
+        if (maxFreq >= 0)
+          scorer.setMaxScore(maxFreq, reader.maxNorm(term.field()));
+      }
+      return scorer;
     }
 
     public Explanation explain(IndexReader reader, int doc)
@@ -35,6 +35,8 @@ final class TermScorer extends Scorer {
   private static final int SCORE_CACHE_SIZE = 32;
   private float[] scoreCache = new float[SCORE_CACHE_SIZE];//缓存一部分分数
 
+  private float maxScore = Float.POSITIVE_INFINITY;
+
   TermScorer(Weight weight, TermDocs td, Similarity similarity,
              byte[] norms) throws IOException {
     super(similarity);
@@ -47,6 +49,16 @@ final class TermScorer extends Scorer {
       scoreCache[i] = getSimilarity().tf(i) * weightValue;
   }
 
+  /** Sets the score bound of this scorer from the largest frequency and the
+   * largest norm of the term.  This assumes that {@link Similarity#tf(int)}
+   * does not decrease with the frequency. */
+  void setMaxScore(int maxFreq, byte maxNorm) {
+    maxScore = getSimilarity().tf(maxFreq) * weightValue
+      * Similarity.decodeNorm(maxNorm);
+  }
+
+  float maxScore() { return maxScore; }
+
   public int doc() { return doc; }
 
   //初始化下一个doc文档id
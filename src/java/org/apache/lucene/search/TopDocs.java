@@ -27,6 +27,11 @@ public class TopDocs implements java.io.Serializable {
   public int totalHits;//总命中多少个doc文档---该文档是命中的所有docid集合,而下面的scoreDocs是在所有的docid中进行过滤,选择最大的若干个文档
   /** Expert: The top hits for the query. */
   public ScoreDoc[] scoreDocs;//每一个doc的分数以及文档的id
+  /** Expert: True if the search reached its time limit before all hits
+   * were collected, so that these are the top hits of those collected.
+   * @see IndexSearcher#setTimeout(long)
+   */
+  public boolean partial;
 
   /** Expert: Constructs a TopDocs.*/
   TopDocs(int totalHits, ScoreDoc[] scoreDocs) {
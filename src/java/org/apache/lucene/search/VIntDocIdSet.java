@@ -0,0 +1,77 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/** Base of the DocIdSets which keep their documents as VInts in a byte
+ * array, written once when the set is built. */
+abstract class VIntDocIdSet extends DocIdSet {
+  private byte[] bytes = new byte[16];
+  private int length;
+
+  /** Appends a VInt while the set is built. */
+  final void writeVInt(int i) {
+    if (length + 5 > bytes.length) {
+      byte[] newBytes = new byte[Math.max(length + 5, bytes.length * 2)];
+      System.arraycopy(bytes, 0, newBytes, 0, length);
+      bytes = newBytes;
+    }
+    while ((i & ~0x7F) != 0) {
+      bytes[length++] = (byte)((i & 0x7f) | 0x80);
+      i >>>= 7;
+    }
+    bytes[length++] = (byte)i;
+  }
+
+  /** Frees the unused end of the array once the set is built. */
+  final void trim() {
+    if (length < bytes.length) {
+      byte[] newBytes = new byte[length];
+      System.arraycopy(bytes, 0, newBytes, 0, length);
+      bytes = newBytes;
+    }
+  }
+
+  public long sizeInBytes() {
+    return bytes.length;
+  }
+
+  /** Reads the VInts of a set in order. */
+  abstract static class VIntIterator extends DocIdSetIterator {
+    private final byte[] bytes;
+    private final int length;
+    private int pos;
+
+    VIntIterator(VIntDocIdSet set) {
+      this.bytes = set.bytes;
+      this.length = set.length;
+    }
+
+    final boolean hasMoreVInts() {
+      return pos < length;
+    }
+
+    final int readVInt() {
+      byte b = bytes[pos++];
+      int i = b & 0x7F;
+      for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+        b = bytes[pos++];
+        i |= (b & 0x7F) << shift;
+      }
+      return i;
+    }
+  }
+}
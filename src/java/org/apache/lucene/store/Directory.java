@@ -32,6 +32,9 @@ import java.io.IOException;
  * @author Doug Cutting
  */
 public abstract class Directory {
+  /** The factory that makes the locks of this directory, if it uses one. */
+  protected LockFactory lockFactory;
+
   /** Returns an array of strings, one for each file in the directory. */
   public abstract String[] list()
        throws IOException;
@@ -76,6 +79,18 @@ public abstract class Directory {
    */
   public abstract Lock makeLock(String name);
 
+  /** Sets the {@link LockFactory} that makes the locks of this directory.
+   * Directories that do not use a factory ignore it. */
+  public void setLockFactory(LockFactory lockFactory) {
+    this.lockFactory = lockFactory;
+  }
+
+  /** Returns the {@link LockFactory} that makes the locks of this directory,
+   * or null if it does not use one. */
+  public LockFactory getLockFactory() {
+    return lockFactory;
+  }
+
   /** Closes the store. */
   public abstract void close()
        throws IOException;
@@ -21,6 +21,8 @@ import java.io.File;
 import java.io.RandomAccessFile;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Hashtable;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -32,6 +34,16 @@ import org.apache.lucene.util.Constants;
  * <p>If the system property 'disableLuceneLocks' has the String value of
  * "true", lock creation will be disabled.
  *
+ * <p>Locks are made by a {@link LockFactory}, by default a {@link
+ * SimpleFSLockFactory} keeping its lock files in {@link #LOCK_DIR}.  If the
+ * system property <code>org.apache.lucene.lockFactory</code> has the value
+ * "native", a {@link NativeFSLockFactory} is used instead.
+ *
+ * <p>Files are read with positional reads of a {@link FileChannel}, so
+ * that threads may read clones of the same stream concurrently without
+ * locking.  Note that interrupting a thread blocked in such a read closes
+ * the channel, and thus the file, for all its users.
+ *
  * @see Directory
  * @author Doug Cutting
  */
@@ -56,6 +68,11 @@ public final class FSDirectory extends Directory {
     System.getProperty("org.apache.lucene.lockdir",
       System.getProperty("java.io.tmpdir"));
 
+  /** Whether operating system locks are used by default, as specified by
+   * the <code>org.apache.lucene.lockFactory</code> system property. */
+  private static final boolean NATIVE_LOCKS =
+    "native".equals(System.getProperty("org.apache.lucene.lockFactory"));
+
   private static MessageDigest DIGESTER;
 
   static {
@@ -124,6 +141,11 @@ public final class FSDirectory extends Directory {
     else {
       lockDir = new File(LOCK_DIR);
     }
+    if (NATIVE_LOCKS)
+      setLockFactory(new NativeFSLockFactory(lockDir));
+    else
+      setLockFactory(new SimpleFSLockFactory(lockDir));
+
     if (create) {
       create();
     }
@@ -274,8 +296,8 @@ public final class FSDirectory extends Directory {
   private static final char[] HEX_DIGITS =
   {'0','1','2','3','4','5','6','7','8','9','a','b','c','d','e','f'};
 
-  /** Constructs a {@link Lock} with the specified name.  Locks are implemented
-   * with {@link File#createNewFile() }.
+  /** Constructs a {@link Lock} with the specified name.  Locks are made by
+   * the directory's {@link LockFactory}.
    *
    * <p>In JDK 1.1 or if system property <I>disableLuceneLocks</I> is the
    * string "true", locks are disabled.  Assigning this property any other
@@ -286,42 +308,31 @@ public final class FSDirectory extends Directory {
    * @return an instance of <code>Lock</code> holding the lock
    */
   public final Lock makeLock(String name) {
-    StringBuffer buf = getLockPrefix();
-    buf.append("-");
-    buf.append(name);
-
-    // create a lock file
-    final File lockFile = new File(lockDir, buf.toString());
-
-    return new Lock() {
-      public boolean obtain() throws IOException {
-        if (DISABLE_LOCKS)
-          return true;
+    if (DISABLE_LOCKS)
+      return NO_LOCK;
+    return lockFactory.makeLock(name);
+  }
 
-        if (!lockDir.exists()) {
-          if (!lockDir.mkdirs()) {
-            throw new IOException("Cannot create lock directory: " + lockDir);
-          }
-        }
+  /** Sets the {@link LockFactory} that makes the locks of this directory.
+   * Since a directory instance is shared by all users of its path, this
+   * affects all of them; it should be done before any lock is made.  The
+   * factory's lock prefix is set so that lock files of different directories
+   * may share a lock directory. */
+  public void setLockFactory(LockFactory lockFactory) {
+    lockFactory.setLockPrefix(getLockPrefix().toString());
+    super.setLockFactory(lockFactory);
+  }
 
-        return lockFile.createNewFile();
+  private static final Lock NO_LOCK = new Lock() {
+      public boolean obtain() {
+        return true;
       }
       public void release() {
-        if (DISABLE_LOCKS)
-          return;
-        lockFile.delete();
       }
       public boolean isLocked() {
-        if (DISABLE_LOCKS)
-          return false;
-        return lockFile.exists();
-      }
-
-      public String toString() {
-        return "Lock@" + lockFile;
+        return false;
       }
     };
-  }
 
   private StringBuffer getLockPrefix() {
     String dirName;                               // name to be hashed
@@ -371,9 +382,10 @@ final class FSInputStream extends InputStream {
     /* DEBUG */
     //private String name;
     /* DEBUG */
-    public long position;
+    public final FileChannel channel;
     public Descriptor(File file, String mode) throws IOException {
       super(file, mode);
+      channel = getChannel();
       /* DEBUG */
       //name = file.toString();
       //debug_printInfo("OPEN");
@@ -407,22 +419,18 @@ final class FSInputStream extends InputStream {
   }
 
   /** InputStream methods */
+  /** Reads at the position of this stream with {@link
+   * FileChannel#read(ByteBuffer,long)}, which does not move the file pointer
+   * of the shared file, so clones read concurrently without locking. */
   protected final void readInternal(byte[] b, int offset, int len)
        throws IOException {
-    synchronized (file) {
-      long position = getFilePointer();
-      if (position != file.position) {
-        file.seek(position);
-        file.position = position;
-      }
-      int total = 0;
-      do {
-        int i = file.read(b, offset+total, len-total);
-        if (i == -1)
-          throw new IOException("read past EOF");
-        file.position += i;
-        total += i;
-      } while (total < len);
+    ByteBuffer buffer = ByteBuffer.wrap(b, offset, len);
+    long position = getFilePointer();
+    while (buffer.hasRemaining()) {
+      int i = file.channel.read(buffer, position);
+      if (i == -1)
+        throw new IOException("read past EOF");
+      position += i;
     }
   }
 
@@ -0,0 +1,138 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Counts the I/O made on the files of a {@link StatsDirectory} with one
+ * extension.  Reads and writes are counted when the buffers of streams
+ * are refilled or flushed, so they are the calls reaching the wrapped
+ * directory.  Seeks are the reads which do not start where the previous
+ * read of the stream ended, and the explicit seeks of the streams
+ * writing.
+ */
+public class FileStats {
+  private long bytesRead;
+  private long reads;
+  private long seeks;
+  private long inputsOpened;
+  private long inputsOpen;
+  private long clones;
+  private long bytesWritten;
+  private long writes;
+  private long outputsCreated;
+  private long outputsOpen;
+
+  FileStats() {}
+
+  /** Makes a copy of <code>stats</code>, taken atomically. */
+  FileStats(FileStats stats) {
+    add(stats);
+  }
+
+  synchronized void read(int length) {
+    bytesRead += length;
+    reads++;
+  }
+
+  synchronized void seek() { seeks++; }
+
+  synchronized void inputOpened() {
+    inputsOpened++;
+    inputsOpen++;
+  }
+
+  synchronized void inputClosed() { inputsOpen--; }
+
+  synchronized void cloned() { clones++; }
+
+  synchronized void write(int length) {
+    bytesWritten += length;
+    writes++;
+  }
+
+  synchronized void outputCreated() {
+    outputsCreated++;
+    outputsOpen++;
+  }
+
+  synchronized void outputClosed() { outputsOpen--; }
+
+  /** Adds the counts of <code>stats</code> to these. */
+  synchronized void add(FileStats stats) {
+    synchronized (stats) {
+      bytesRead += stats.bytesRead;
+      reads += stats.reads;
+      seeks += stats.seeks;
+      inputsOpened += stats.inputsOpened;
+      inputsOpen += stats.inputsOpen;
+      clones += stats.clones;
+      bytesWritten += stats.bytesWritten;
+      writes += stats.writes;
+      outputsCreated += stats.outputsCreated;
+      outputsOpen += stats.outputsOpen;
+    }
+  }
+
+  /** Sets all counts to zero, except those of the open streams. */
+  synchronized void reset() {
+    bytesRead = reads = seeks = inputsOpened = clones = 0;
+    bytesWritten = writes = outputsCreated = 0;
+  }
+
+  /** Returns the number of bytes read. */
+  public synchronized long getBytesRead() { return bytesRead; }
+
+  /** Returns the number of reads, each of at most a buffer, unless a large
+   * array of bytes is read at once. */
+  public synchronized long getReads() { return reads; }
+
+  /** Returns the number of reads which did not continue the previous one,
+   * and of seeks while writing. */
+  public synchronized long getSeeks() { return seeks; }
+
+  /** Returns the number of files opened for reading. */
+  public synchronized long getInputsOpened() { return inputsOpened; }
+
+  /** Returns the number of files open for reading, not counting clones. */
+  public synchronized long getInputsOpen() { return inputsOpen; }
+
+  /** Returns the number of clones made of the streams reading files. */
+  public synchronized long getClones() { return clones; }
+
+  /** Returns the number of bytes written. */
+  public synchronized long getBytesWritten() { return bytesWritten; }
+
+  /** Returns the number of writes, each of at most a buffer. */
+  public synchronized long getWrites() { return writes; }
+
+  /** Returns the number of files created. */
+  public synchronized long getOutputsCreated() { return outputsCreated; }
+
+  /** Returns the number of files open for writing. */
+  public synchronized long getOutputsOpen() { return outputsOpen; }
+
+  public synchronized String toString() {
+    return "read=" + bytesRead + " bytes/" + reads + " calls"
+      + ", seeks=" + seeks
+      + ", opened=" + inputsOpened
+      + ", open=" + inputsOpen
+      + ", clones=" + clones
+      + ", written=" + bytesWritten + " bytes/" + writes + " calls"
+      + ", created=" + outputsCreated
+      + ", openForWrite=" + outputsOpen;
+  }
+}
@@ -32,6 +32,7 @@ import java.io.IOException;
  * @author Doug Cutting
  * @version $Id: Lock.java,v 1.12 2004/05/11 17:43:28 cutting Exp $
  * @see Directory#makeLock(String)
+ * @see LockFactory
  */
 public abstract class Lock {
   public static long LOCK_POLL_INTERVAL = 1000;
@@ -43,22 +44,24 @@ public abstract class Lock {
   public abstract boolean obtain() throws IOException;
 
   /** Attempts to obtain an exclusive lock within amount
-   *  of time given. Currently polls once per second until
-   *  lockWaitTimeout is passed.
+   *  of time given. This implementation polls {@link #obtain()} every
+   *  {@link #LOCK_POLL_INTERVAL} milliseconds until lockWaitTimeout is
+   *  passed; subclasses that are told when a lock is released override it
+   *  to wake up as soon as that happens.
    * @param lockWaitTimeout length of time to wait in ms
    * @return true if lock was obtained
    * @throws IOException if lock wait times out or obtain() throws an IOException
    */
   public boolean obtain(long lockWaitTimeout) throws IOException {
     boolean locked = obtain();
-    int maxSleepCount = (int)(lockWaitTimeout / LOCK_POLL_INTERVAL);
-    int sleepCount = 0;
+    long deadline = System.currentTimeMillis() + lockWaitTimeout;
     while (!locked) {
-      if (++sleepCount == maxSleepCount) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
         throw new IOException("Lock obtain timed out: " + this.toString());
       }
       try {
-        Thread.sleep(LOCK_POLL_INTERVAL);
+        Thread.sleep(Math.min(remaining, LOCK_POLL_INTERVAL));
       } catch (InterruptedException e) {
         throw new IOException(e.toString());
       }
@@ -99,8 +102,9 @@ public abstract class Lock {
     protected abstract Object doBody() throws IOException;
 
     /** Calls {@link #doBody} while <i>lock</i> is obtained.  Blocks if lock
-     * cannot be obtained immediately.  Retries to obtain lock once per second
-     * until it is obtained, or until it has tried ten times. Lock is released when
+     * cannot be obtained immediately.  Waits for the lock with
+     * {@link Lock#obtain(long)} until it is obtained, or until
+     * <i>lockWaitTimeout</i> has passed. Lock is released when
      * {@link #doBody} exits. */
     public Object run() throws IOException {
       boolean locked = false;
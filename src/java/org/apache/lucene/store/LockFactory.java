@@ -0,0 +1,54 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Creates the {@link Lock}s handed out by a {@link Directory}.  A
+ * directory delegates {@link Directory#makeLock(String)} to its factory, so
+ * that the locking implementation can be chosen independently of where the
+ * files are stored.
+ *
+ * <p>Lock names are qualified by the factory's lock prefix, which a directory
+ * sets when its locks share a namespace with other directories, e.g. when
+ * lock files of several {@link FSDirectory}s are kept in one lock directory.
+ *
+ * @see SimpleFSLockFactory
+ * @see NativeFSLockFactory
+ * @see SingleInstanceLockFactory
+ */
+public abstract class LockFactory {
+  private String lockPrefix = null;
+
+  /** Sets the prefix prepended to the names of all locks made by this
+   * factory, or null for none. */
+  public void setLockPrefix(String lockPrefix) {
+    this.lockPrefix = lockPrefix;
+  }
+
+  /** Returns the prefix prepended to lock names, or null for none. */
+  public String getLockPrefix() {
+    return lockPrefix;
+  }
+
+  /** Returns a new Lock for the named resource. */
+  public abstract Lock makeLock(String lockName);
+
+  /** Returns the name under which the named lock is actually kept. */
+  protected String qualify(String lockName) {
+    return lockPrefix == null ? lockName : lockPrefix + "-" + lockName;
+  }
+}
@@ -0,0 +1,191 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Hashtable;
+
+/**
+ * A {@link LockFactory} whose locks are operating system locks, obtained with
+ * {@link FileChannel#tryLock()} on a file in the lock directory.  The
+ * operating system drops such a lock when the process holding it exits, so
+ * locks never go stale after a crash.  The lock files themselves are left in
+ * place when a lock is released; their existence means nothing.
+ *
+ * <p>Java file locks are held on behalf of the whole virtual machine, so this
+ * class also keeps track of the locks held in this process.  A thread waiting
+ * in {@link Lock#obtain(long)} for a lock held in this process is woken as
+ * soon as the lock is released; a lock held by another process is polled
+ * every {@link Lock#LOCK_POLL_INTERVAL} milliseconds.
+ *
+ * <p>Some file systems, notably many NFS setups, do not support operating
+ * system locks; {@link Lock#obtain()} then throws an IOException and {@link
+ * SimpleFSLockFactory} should be used instead.
+ */
+public class NativeFSLockFactory extends LockFactory {
+  private File lockDir;
+
+  /** Constructs a factory that keeps its lock files in <code>lockDir</code>.
+   * The directory is created when the first lock is obtained. */
+  public NativeFSLockFactory(File lockDir) {
+    this.lockDir = lockDir;
+  }
+
+  public Lock makeLock(String lockName) {
+    return new NativeFSLock(lockDir, new File(lockDir, qualify(lockName)));
+  }
+}
+
+class NativeFSLock extends Lock {
+  /** The locks held in this process, keyed by the canonical path of the lock
+   * file.  Also used to wait for and signal their release. */
+  private static final Hashtable HELD = new Hashtable();
+
+  private File lockDir;
+  private File lockFile;
+  private String path;
+
+  private RandomAccessFile file;
+  private FileChannel channel;
+  private FileLock lock;
+
+  NativeFSLock(File lockDir, File lockFile) {
+    this.lockDir = lockDir;
+    this.lockFile = lockFile;
+  }
+
+  private String path() throws IOException {
+    if (path == null)
+      path = lockFile.getCanonicalPath();
+    return path;
+  }
+
+  public boolean obtain() throws IOException {
+    synchronized (HELD) {
+      return tryObtain();
+    }
+  }
+
+  /** Waits on the table of held locks, so that a release in this process
+   * wakes this thread at once. */
+  public boolean obtain(long lockWaitTimeout) throws IOException {
+    long deadline = System.currentTimeMillis() + lockWaitTimeout;
+    synchronized (HELD) {
+      while (!tryObtain()) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          throw new IOException("Lock obtain timed out: " + this.toString());
+        }
+        if (!HELD.containsKey(path()))            // held by another process
+          remaining = Math.min(remaining, LOCK_POLL_INTERVAL);
+        try {
+          HELD.wait(remaining);
+        } catch (InterruptedException e) {
+          throw new IOException(e.toString());
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Must be called while synchronized on HELD. */
+  private boolean tryObtain() throws IOException {
+    if (HELD.containsKey(path()))
+      return false;
+
+    if (!lockDir.exists()) {
+      if (!lockDir.mkdirs()) {
+        throw new IOException("Cannot create lock directory: " + lockDir);
+      }
+    }
+
+    file = new RandomAccessFile(lockFile, "rw");
+    try {
+      channel = file.getChannel();
+      lock = channel.tryLock();
+    } catch (IOException e) {
+      IOException ioe = new IOException("Cannot obtain native lock on "
+                                        + lockFile + ": " + e);
+      closeFile();
+      throw ioe;
+    }
+    if (lock == null) {                           // held by another process
+      closeFile();
+      return false;
+    }
+    HELD.put(path(), this);
+    return true;
+  }
+
+  /** Releases the lock on this resource held in this process, whether or not
+   * it was obtained through this instance. */
+  public void release() {
+    synchronized (HELD) {
+      String key;
+      try {
+        key = path();
+      } catch (IOException e) {
+        return;
+      }
+      NativeFSLock holder = (NativeFSLock)HELD.remove(key);
+      if (holder != null) {
+        try {
+          holder.lock.release();
+        } catch (IOException e) {
+          // the lock is dropped when the channel is closed anyway
+        }
+        holder.closeFile();
+        HELD.notifyAll();
+      }
+    }
+  }
+
+  /** Returns true if the lock is held in this process, or if it cannot be
+   * obtained because another process holds it. */
+  public boolean isLocked() {
+    synchronized (HELD) {
+      try {
+        if (!tryObtain())
+          return true;
+      } catch (IOException e) {
+        return false;
+      }
+      release();
+      return false;
+    }
+  }
+
+  private void closeFile() {
+    lock = null;
+    channel = null;
+    try {
+      file.close();
+    } catch (IOException e) {
+      // nothing more can be done
+    } finally {
+      file = null;
+    }
+  }
+
+  public String toString() {
+    return "NativeFSLock@" + lockFile;
+  }
+}
@@ -33,8 +33,10 @@ import org.apache.lucene.store.OutputStream;
 public final class RAMDirectory extends Directory {
   Hashtable files = new Hashtable();
 
-  /** Constructs an empty {@link Directory}. */
+  /** Constructs an empty {@link Directory}.  Its locks are made by a
+   * {@link SingleInstanceLockFactory}. */
   public RAMDirectory() {
+    setLockFactory(new SingleInstanceLockFactory());
   }
 
   /**
@@ -52,6 +54,7 @@ public final class RAMDirectory extends Directory {
   }
   
   private RAMDirectory(Directory dir, boolean closeDir) throws IOException {
+    this();
     final String[] files = dir.list();
     for (int i = 0; i < files.length; i++) {
       // make place on ram disk
@@ -168,24 +171,8 @@ public final class RAMDirectory extends Directory {
   /** Construct a {@link Lock}.
    * @param name the name of the lock file
    */
-  public final Lock makeLock(final String name) {
-    return new Lock() {
-      public boolean obtain() throws IOException {
-        synchronized (files) {
-          if (!fileExists(name)) {
-            createFile(name).close();
-            return true;
-          }
-          return false;
-        }
-      }
-      public void release() {
-        deleteFile(name);
-      }
-      public boolean isLocked() {
-        return fileExists(name);
-      }
-    };
+  public final Lock makeLock(String name) {
+    return lockFactory.makeLock(name);
   }
 
   /** Closes the store to future operations. */
@@ -0,0 +1,78 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A {@link LockFactory} whose locks are files created with {@link
+ * File#createNewFile()}: a lock is held while its file exists.  This works on
+ * every file system, but a lock file left behind by a process that died
+ * while holding it must be removed by hand (see {@link
+ * org.apache.lucene.index.IndexReader#unlock(Directory)}), and waiting for a
+ * lock is done by polling.
+ *
+ * <p>This is the default factory of {@link FSDirectory}.
+ *
+ * @see NativeFSLockFactory
+ */
+public class SimpleFSLockFactory extends LockFactory {
+  private File lockDir;
+
+  /** Constructs a factory that keeps its lock files in <code>lockDir</code>.
+   * The directory is created when the first lock is obtained. */
+  public SimpleFSLockFactory(File lockDir) {
+    this.lockDir = lockDir;
+  }
+
+  public Lock makeLock(String lockName) {
+    return new SimpleFSLock(lockDir, new File(lockDir, qualify(lockName)));
+  }
+}
+
+class SimpleFSLock extends Lock {
+  private File lockDir;
+  private File lockFile;
+
+  SimpleFSLock(File lockDir, File lockFile) {
+    this.lockDir = lockDir;
+    this.lockFile = lockFile;
+  }
+
+  public boolean obtain() throws IOException {
+    if (!lockDir.exists()) {
+      if (!lockDir.mkdirs()) {
+        throw new IOException("Cannot create lock directory: " + lockDir);
+      }
+    }
+
+    return lockFile.createNewFile();
+  }
+
+  public void release() {
+    lockFile.delete();
+  }
+
+  public boolean isLocked() {
+    return lockFile.exists();
+  }
+
+  public String toString() {
+    return "Lock@" + lockFile;
+  }
+}
@@ -0,0 +1,90 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.HashSet;
+
+/**
+ * A {@link LockFactory} for locks that are only ever contended within a
+ * single process, such as those of a {@link RAMDirectory}, or those of an
+ * {@link FSDirectory} that no other process opens.  Locks are entries in a
+ * set kept by the factory, and a thread waiting in {@link Lock#obtain(long)}
+ * is woken as soon as the lock it waits for is released instead of polling.
+ *
+ * <p>Locks made by different factories never conflict, so all users of a
+ * resource must share one factory.  This is the default factory of {@link
+ * RAMDirectory}.
+ */
+public class SingleInstanceLockFactory extends LockFactory {
+  private HashSet locks = new HashSet();
+
+  public Lock makeLock(String lockName) {
+    return new SingleInstanceLock(locks, qualify(lockName));
+  }
+}
+
+class SingleInstanceLock extends Lock {
+  private HashSet locks;
+  private String lockName;
+
+  SingleInstanceLock(HashSet locks, String lockName) {
+    this.locks = locks;
+    this.lockName = lockName;
+  }
+
+  public boolean obtain() throws IOException {
+    synchronized (locks) {
+      return locks.add(lockName);
+    }
+  }
+
+  public boolean obtain(long lockWaitTimeout) throws IOException {
+    long deadline = System.currentTimeMillis() + lockWaitTimeout;
+    synchronized (locks) {
+      while (!locks.add(lockName)) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          throw new IOException("Lock obtain timed out: " + this.toString());
+        }
+        try {
+          locks.wait(remaining);
+        } catch (InterruptedException e) {
+          throw new IOException(e.toString());
+        }
+      }
+      return true;
+    }
+  }
+
+  public void release() {
+    synchronized (locks) {
+      if (locks.remove(lockName))
+        locks.notifyAll();
+    }
+  }
+
+  public boolean isLocked() {
+    synchronized (locks) {
+      return locks.contains(lockName);
+    }
+  }
+
+  public String toString() {
+    return "SingleInstanceLock: " + lockName;
+  }
+}
@@ -0,0 +1,299 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * A {@link Directory} which delegates to another one, counting the bytes
+ * read and written, the seeks, the open files and the clones of the
+ * streams of each kind of file, by extension.  Norms files, whose
+ * extensions are <code>f</code> followed by a field number, are counted
+ * together as <code>f*</code>.  The files inside the compound files of
+ * the segments that an {@link org.apache.lucene.index.IndexReader} opens
+ * on this directory are counted by their own extensions, through a
+ * directory {@link #wrap(Directory) wrapping} the compound file; other
+ * reads of compound files are counted as <code>cfs</code>.
+ *
+ * <p>Reads go through a buffer of this directory's streams before reaching
+ * those of the wrapped directory, which adds a copy of each buffer read.
+ * A StatsDirectory may be registered with a JMX agent as a standard MBean.
+ */
+public class StatsDirectory extends Directory implements StatsDirectoryMBean {
+  private Directory directory;
+  private Hashtable stats = new Hashtable();      // extension -> FileStats
+
+  /** Counts the I/O made on <code>directory</code> through this. */
+  public StatsDirectory(Directory directory) {
+    this.directory = directory;
+  }
+
+  /** Returns a StatsDirectory counting the I/O made on
+   * <code>directory</code> into the counts of this one, such as a compound
+   * file of this directory opened without counting its reads, whose files
+   * are then counted by their own extensions. */
+  public StatsDirectory wrap(Directory directory) {
+    StatsDirectory result = new StatsDirectory(directory);
+    result.stats = stats;
+    return result;
+  }
+
+  /** Returns the directory wrapped. */
+  public Directory getDirectory() {
+    return directory;
+  }
+
+  /** Returns the extension by which <code>name</code> is counted. */
+  static String extension(String name) {
+    int dot = name.lastIndexOf('.');
+    if (dot < 0)
+      return "";
+    String extension = name.substring(dot + 1);
+    if (extension.length() < 2 || extension.charAt(0) != 'f')
+      return extension;
+    for (int i = 1; i < extension.length(); i++)
+      if (!Character.isDigit(extension.charAt(i)))
+        return extension;
+    return "f*";                                  // norms
+  }
+
+  private FileStats statsOf(String name) {
+    String extension = extension(name);
+    synchronized (stats) {
+      FileStats result = (FileStats) stats.get(extension);
+      if (result == null) {
+        result = new FileStats();
+        stats.put(extension, result);
+      }
+      return result;
+    }
+  }
+
+  /** Returns a copy of the counts for the files with the extension
+   * <code>extension</code>, without the dot, or null if none of them has
+   * been opened or created.
+   * @see #getExtensions()
+   */
+  public FileStats getStats(String extension) {
+    FileStats result = (FileStats) stats.get(extension);
+    return result == null ? null : new FileStats(result);
+  }
+
+  /** Returns the sums of the counts for all extensions. */
+  public FileStats getTotalStats() {
+    FileStats total = new FileStats();
+    synchronized (stats) {
+      Enumeration e = stats.elements();
+      while (e.hasMoreElements())
+        total.add((FileStats) e.nextElement());
+    }
+    return total;
+  }
+
+  public String[] getExtensions() {
+    String[] result;
+    synchronized (stats) {
+      result = new String[stats.size()];
+      Enumeration e = stats.keys();
+      for (int i = 0; e.hasMoreElements(); i++)
+        result[i] = (String) e.nextElement();
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  public void resetStats() {
+    synchronized (stats) {
+      Enumeration e = stats.elements();
+      while (e.hasMoreElements())
+        ((FileStats) e.nextElement()).reset();
+    }
+  }
+
+  public String getReport() {
+    StringBuffer buffer = new StringBuffer();
+    String[] extensions = getExtensions();
+    for (int i = 0; i < extensions.length; i++) {
+      buffer.append(extensions[i].length() == 0 ? "(none)" : extensions[i]);
+      buffer.append(": ");
+      buffer.append(getStats(extensions[i]));
+      buffer.append('\n');
+    }
+    buffer.append("total: ");
+    buffer.append(getTotalStats());
+    buffer.append('\n');
+    return buffer.toString();
+  }
+
+  public long getBytesRead() { return getTotalStats().getBytesRead(); }
+  public long getReads() { return getTotalStats().getReads(); }
+  public long getSeeks() { return getTotalStats().getSeeks(); }
+  public long getInputsOpen() { return getTotalStats().getInputsOpen(); }
+  public long getClones() { return getTotalStats().getClones(); }
+  public long getBytesWritten() { return getTotalStats().getBytesWritten(); }
+  public long getWrites() { return getTotalStats().getWrites(); }
+  public long getOutputsOpen() { return getTotalStats().getOutputsOpen(); }
+
+  public String[] list() throws IOException {
+    return directory.list();
+  }
+
+  public boolean fileExists(String name) throws IOException {
+    return directory.fileExists(name);
+  }
+
+  public long fileModified(String name) throws IOException {
+    return directory.fileModified(name);
+  }
+
+  public void touchFile(String name) throws IOException {
+    directory.touchFile(name);
+  }
+
+  public void deleteFile(String name) throws IOException {
+    directory.deleteFile(name);
+  }
+
+  public void renameFile(String from, String to) throws IOException {
+    directory.renameFile(from, to);
+  }
+
+  public long fileLength(String name) throws IOException {
+    return directory.fileLength(name);
+  }
+
+  public OutputStream createFile(String name) throws IOException {
+    return new StatsOutputStream(directory.createFile(name), statsOf(name));
+  }
+
+  public InputStream openFile(String name) throws IOException {
+    return new StatsInputStream(directory.openFile(name), statsOf(name));
+  }
+
+  public Lock makeLock(String name) {
+    return directory.makeLock(name);
+  }
+
+  public void setLockFactory(LockFactory lockFactory) {
+    directory.setLockFactory(lockFactory);
+  }
+
+  public LockFactory getLockFactory() {
+    return directory.getLockFactory();
+  }
+
+  public void close() throws IOException {
+    directory.close();
+  }
+
+  public String toString() {
+    return "StatsDirectory@" + directory;
+  }
+}
+
+
+/** Reads through a stream of the wrapped directory, counting the reads,
+ * and as seeks those which do not start where the previous one ended.
+ * Each clone reads through a clone of that stream of its own, as
+ * CompoundFileReader's streams do. */
+final class StatsInputStream extends InputStream {
+  private InputStream in;
+  private FileStats stats;
+  private boolean isClone;
+  private long next;                              // end of the last read
+
+  StatsInputStream(InputStream in, FileStats stats) {
+    this.in = in;
+    this.stats = stats;
+    this.length = in.length();
+    stats.inputOpened();
+  }
+
+  protected void readInternal(byte[] b, int offset, int len)
+    throws IOException {
+    long start = getFilePointer();
+    if (start != next)
+      stats.seek();
+    in.seek(start);
+    in.readBytes(b, offset, len);
+    stats.read(len);
+    next = start + len;
+  }
+
+  protected void seekInternal(long pos) {}
+
+  public void close() throws IOException {
+    in.close();
+    if (!isClone) {
+      isClone = true;                             // count a close only once
+      stats.inputClosed();
+    }
+  }
+
+  public Object clone() {
+    StatsInputStream clone = (StatsInputStream) super.clone();
+    clone.in = (InputStream) in.clone();
+    clone.isClone = true;
+    stats.cloned();
+    return clone;
+  }
+}
+
+
+/** Writes through a stream of the wrapped directory, counting the writes
+ * and seeks. */
+final class StatsOutputStream extends OutputStream {
+  private OutputStream out;
+  private FileStats stats;
+  private boolean closed;
+
+  StatsOutputStream(OutputStream out, FileStats stats) {
+    this.out = out;
+    this.stats = stats;
+    stats.outputCreated();
+  }
+
+  protected void flushBuffer(byte[] b, int len) throws IOException {
+    out.writeBytes(b, len);
+    if (len > 0)                                  // not an empty flush
+      stats.write(len);
+  }
+
+  public void seek(long pos) throws IOException {
+    super.seek(pos);
+    out.seek(pos);
+    stats.seek();
+  }
+
+  public long length() throws IOException {
+    flush();
+    out.flush();
+    return out.length();
+  }
+
+  public void close() throws IOException {
+    super.close();
+    out.close();
+    if (!closed) {
+      closed = true;
+      stats.outputClosed();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The management interface of a {@link StatsDirectory}, following the
+ * naming pattern of a standard MBean, so that a StatsDirectory may be
+ * registered as such with a JMX agent.  The counts are totals over all
+ * files; {@link #getReport()} has them for each extension.
+ */
+public interface StatsDirectoryMBean {
+  /** @see FileStats#getBytesRead() */
+  long getBytesRead();
+
+  /** @see FileStats#getReads() */
+  long getReads();
+
+  /** @see FileStats#getSeeks() */
+  long getSeeks();
+
+  /** @see FileStats#getInputsOpen() */
+  long getInputsOpen();
+
+  /** @see FileStats#getClones() */
+  long getClones();
+
+  /** @see FileStats#getBytesWritten() */
+  long getBytesWritten();
+
+  /** @see FileStats#getWrites() */
+  long getWrites();
+
+  /** @see FileStats#getOutputsOpen() */
+  long getOutputsOpen();
+
+  /** Returns the extensions of the files accessed, sorted. */
+  String[] getExtensions();
+
+  /** Returns the counts for each extension, one per line. */
+  String getReport();
+
+  /** Sets all counts to zero, except those of the open streams. */
+  void resetStats();
+}
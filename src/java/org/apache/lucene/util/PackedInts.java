@@ -0,0 +1,94 @@
+package org.apache.lucene.util;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/** A fixed size array of non-negative ints, each stored in just as many
+  bits as the largest value needs.  Values are packed into longs and may
+  straddle two of them.
+
+  @see #bitsRequired(long)
+  */
+public final class PackedInts {
+
+  private final long[] blocks;
+  private final int size;
+  private final int bitsPerValue;
+  private final long mask;
+
+  /** Constructs an array of <code>size</code> zeros, each of which can be
+   * set to any value up to <code>2^bitsPerValue - 1</code>. */
+  public PackedInts(int size, int bitsPerValue) {
+    if (bitsPerValue < 1 || bitsPerValue > 32)
+      throw new IllegalArgumentException("bitsPerValue must be in 1..32: "
+                                         + bitsPerValue);
+    this.size = size;
+    this.bitsPerValue = bitsPerValue;
+    this.mask = (1L << bitsPerValue) - 1;
+    this.blocks = new long[(int)(((long)size * bitsPerValue + 63) >>> 6)];
+  }
+
+  /** Returns the number of bits needed to store values from 0 up to
+   * <code>maxValue</code>, at least one. */
+  public static int bitsRequired(long maxValue) {
+    if (maxValue < 0)
+      throw new IllegalArgumentException("negative value: " + maxValue);
+    int bits = 1;
+    while ((maxValue >>>= 1) != 0)
+      bits++;
+    return bits;
+  }
+
+  /** Returns the value at <code>index</code>. */
+  public final int get(int index) {
+    long bitPos = (long)index * bitsPerValue;
+    int block = (int)(bitPos >>> 6);
+    int shift = (int)(bitPos & 63);
+    long value = blocks[block] >>> shift;
+    if (shift + bitsPerValue > 64)                // straddles two longs
+      value |= blocks[block + 1] << (64 - shift);
+    return (int)(value & mask);
+  }
+
+  /** Sets the value at <code>index</code>, which must fit in the number of
+   * bits this was constructed with. */
+  public final void set(int index, int value) {
+    long v = value & mask;
+    long bitPos = (long)index * bitsPerValue;
+    int block = (int)(bitPos >>> 6);
+    int shift = (int)(bitPos & 63);
+    blocks[block] = (blocks[block] & ~(mask << shift)) | (v << shift);
+    if (shift + bitsPerValue > 64) {
+      int done = 64 - shift;
+      blocks[block + 1] = (blocks[block + 1] & ~(mask >>> done)) | (v >>> done);
+    }
+  }
+
+  /** Returns the number of values in this array. */
+  public final int size() {
+    return size;
+  }
+
+  /** Returns the number of bits used by each value. */
+  public final int getBitsPerValue() {
+    return bitsPerValue;
+  }
+
+  /** Returns the number of bytes of memory taken by the values. */
+  public final long sizeInBytes() {
+    return (long)blocks.length << 3;
+  }
+}
@@ -0,0 +1,211 @@
+package org.apache.lucene.util;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+
+/** A fixed number of daemon threads which execute {@link Task}s from a
+ * bounded queue.  A task which does not fit in the queue is executed by the
+ * submitting thread, and a thread waiting without deadline for a task which
+ * has not been started yet executes it itself.  Hence tasks may submit
+ * further tasks to the same pool and wait for them without risk of
+ * deadlock.  Callers which wait with a deadline instead {@link
+ * #enqueue(Task) enqueue} their tasks, so that they are never held up by
+ * executing one.
+ */
+public class ThreadPool {
+  private final LinkedList queue = new LinkedList();
+  private final int maxQueued;
+  private boolean closed = false;
+
+  /** Creates a pool of <code>numThreads</code> threads, with room for
+   * <code>maxQueued</code> tasks waiting for a thread.
+   * @param name Prefix of the names of the threads.
+   */
+  public ThreadPool(String name, int numThreads, int maxQueued) {
+    if (numThreads < 1)
+      throw new IllegalArgumentException("numThreads must be positive");
+    this.maxQueued = maxQueued;
+    for (int i = 0; i < numThreads; i++) {
+      Thread thread = new Thread(new Worker(), name + " #" + (i + 1));
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /** Creates a pool of <code>numThreads</code> threads, with room for as
+   * many waiting tasks. */
+  public ThreadPool(String name, int numThreads) {
+    this(name, numThreads, numThreads);
+  }
+
+  /** Schedules a task for execution.  The task is executed by the calling
+   * thread when the queue is full or the pool is closed. */
+  public void execute(Task task) {
+    synchronized (queue) {
+      if (!closed && queue.size() < maxQueued) {
+        queue.addLast(task);
+        queue.notify();
+        return;
+      }
+    }
+    task.run();
+  }
+
+  /** Schedules a task for execution by a pool thread, queueing it even
+   * when the queue is full, so that the calling thread never executes it
+   * and may give up waiting for it at a deadline.  Tasks which are not
+   * started by then should be {@link Task#cancel() cancelled}, so that the
+   * threads drop them.  The task is executed by the calling thread only
+   * when the pool is closed. */
+  public void enqueue(Task task) {
+    synchronized (queue) {
+      if (!closed) {
+        queue.addLast(task);
+        queue.notify();
+        return;
+      }
+    }
+    task.run();
+  }
+
+  /** Stops the threads once the queued tasks are executed. */
+  public void close() {
+    synchronized (queue) {
+      closed = true;
+      queue.notifyAll();
+    }
+  }
+
+  private class Worker implements Runnable {
+    public void run() {
+      while (true) {
+        Task task;
+        synchronized (queue) {
+          while (queue.isEmpty() && !closed) {
+            try {
+              queue.wait();
+            } catch (InterruptedException e) {
+              // keep serving the pool
+            }
+          }
+          if (queue.isEmpty())
+            return;                               // closed
+          task = (Task) queue.removeFirst();
+        }
+        task.run();
+      }
+    }
+  }
+
+  /** A unit of work executed by a {@link ThreadPool}, whose completion can
+   * be waited for, and which can be cancelled before it starts. */
+  public static abstract class Task implements Runnable {
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private int state = WAITING;
+    private IOException ioe;
+    private RuntimeException runtimeException;
+    private Error error;
+
+    /** Does the work of this task. */
+    protected abstract void call() throws IOException;
+
+    /** Executes the task, unless it was started or cancelled before. */
+    public final void run() {
+      synchronized (this) {
+        if (state != WAITING)
+          return;
+        state = RUNNING;
+      }
+      try {
+        call();
+      } catch (IOException e) {
+        ioe = e;
+      } catch (RuntimeException e) {
+        runtimeException = e;
+      } catch (Error e) {
+        error = e;
+      } finally {
+        synchronized (this) {
+          state = DONE;
+          notifyAll();
+        }
+      }
+    }
+
+    /** Prevents the task from starting.  Returns false if it has started
+     * already. */
+    public final synchronized boolean cancel() {
+      if (state == WAITING)
+        state = CANCELLED;
+      return state == CANCELLED;
+    }
+
+    /** Returns true if the task is executed. */
+    public final synchronized boolean isDone() {
+      return state == DONE;
+    }
+
+    /** Waits until the task is executed, and rethrows what the task threw.
+     * Without a deadline, a task which no pool thread started yet is
+     * executed by the calling thread.  With a deadline the calling thread
+     * only waits, so that it can give up in time; the deadline then also
+     * ends the wait for tasks queued behind busy threads.
+     * @param deadline The time, in milliseconds as of {@link
+     * System#currentTimeMillis()}, after which to give up waiting, or 0 to
+     * wait for as long as it takes.
+     * @return false when the deadline passed before the task was done, or
+     * when the task was cancelled before it started.
+     * @throws InterruptedIOException when the calling thread is interrupted
+     */
+    public final boolean waitFor(long deadline) throws IOException {
+      if (deadline == 0)
+        run();                                    // if not started yet
+      synchronized (this) {
+        while (state != DONE) {
+          if (state == CANCELLED)
+            return false;                         // never to be done
+          long wait = 0;
+          if (deadline != 0) {
+            wait = deadline - System.currentTimeMillis();
+            if (wait <= 0)
+              return false;
+          }
+          try {
+            wait(wait);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();   // keep the status
+            throw new InterruptedIOException("interrupted while waiting");
+          }
+        }
+      }
+      if (ioe != null)
+        throw ioe;
+      if (runtimeException != null)
+        throw runtimeException;
+      if (error != null)
+        throw error;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.store.InputStream;
+import org.apache.lucene.store.OutputStream;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares an index with PFor block postings against the same index with
+ * VInt postings.
+ */
+public class TestBlockPostings extends TestCase {
+  private static final int NUM_DOCS = 3000;
+  private static final String[] TERMS = {"all", "odd", "rare", "burst", "none"};
+
+  private RAMDirectory vintDir;
+  private RAMDirectory blockDir;
+
+  public TestBlockPostings(String s) {
+    super(s);
+  }
+
+  protected void setUp() throws IOException {
+    vintDir = createIndex(false);
+    blockDir = createIndex(true);
+  }
+
+  private RAMDirectory createIndex(boolean useBlockPostings) throws IOException {
+    RAMDirectory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    writer.setUseBlockPostings(useBlockPostings);
+    Random random = new Random(42);
+    for (int i = 0; i < NUM_DOCS; i++) {
+      StringBuffer text = new StringBuffer("all");
+      for (int j = random.nextInt(5); j > 0; j--)
+        text.append(" all");
+      if (i % 2 == 1)
+        text.append(" odd");
+      if (random.nextInt(100) == 0)
+        text.append(" rare");
+      if (i > 1000 && i < 1300)                   // dense run, then large gap
+        for (int j = (i % 70 == 0) ? 300 : 1; j > 0; j--)
+          text.append(" burst");
+      Document doc = new Document();
+      doc.add(Field.Text("field", text.toString()));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+    return dir;
+  }
+
+  public void testCodec() throws IOException {
+    Random random = new Random(17);
+    int[] values = new int[TermInfosWriter.POSTINGS_BLOCK_SIZE];
+    int[] decoded = new int[values.length];
+    byte[] scratch = new byte[PForCodec.scratchSize(values.length)];
+    for (int round = 0; round < 200; round++) {
+      int bits = random.nextInt(31);
+      for (int i = 0; i < values.length; i++) {
+        values[i] = random.nextInt(1 << bits);
+        if (random.nextInt(20) == 0)              // exceptions
+          values[i] = random.nextInt(Integer.MAX_VALUE);
+      }
+      RAMDirectory dir = new RAMDirectory();
+      OutputStream out = dir.createFile("block");
+      PForCodec.encode(values, values.length, out, scratch);
+      out.close();
+      InputStream in = dir.openFile("block");
+      PForCodec.decode(in, decoded, decoded.length, scratch);
+      assertEquals(in.length(), in.getFilePointer());
+      in.close();
+      for (int i = 0; i < values.length; i++)
+        assertEquals(values[i], decoded[i]);
+    }
+  }
+
+  public void testNext() throws IOException {
+    IndexReader vint = IndexReader.open(vintDir);
+    IndexReader block = IndexReader.open(blockDir);
+    for (int t = 0; t < TERMS.length; t++) {
+      Term term = new Term("field", TERMS[t]);
+      assertEquals(vint.docFreq(term), block.docFreq(term));
+      TermPositions expected = vint.termPositions(term);
+      TermPositions actual = block.termPositions(term);
+      while (expected.next()) {
+        assertTrue(actual.next());
+        assertEquals(expected.doc(), actual.doc());
+        assertEquals(expected.freq(), actual.freq());
+        for (int i = 0; i < expected.freq(); i++)
+          assertEquals(expected.nextPosition(), actual.nextPosition());
+      }
+      assertFalse(actual.next());
+      expected.close();
+      actual.close();
+    }
+    vint.close();
+    block.close();
+  }
+
+  public void testReadAndSkipTo() throws IOException {
+    checkReadAndSkipTo();
+  }
+
+  public void testWithDeletions() throws IOException {
+    IndexReader vint = IndexReader.open(vintDir);
+    IndexReader block = IndexReader.open(blockDir);
+    for (int i = 0; i < NUM_DOCS; i += 5) {
+      vint.delete(i);
+      block.delete(i);
+    }
+    vint.close();
+    block.close();
+    checkReadAndSkipTo();
+  }
+
+  private void checkReadAndSkipTo() throws IOException {
+    IndexReader vint = IndexReader.open(vintDir);
+    IndexReader block = IndexReader.open(blockDir);
+    int[] expectedDocs = new int[50], expectedFreqs = new int[50];
+    int[] actualDocs = new int[50], actualFreqs = new int[50];
+    for (int t = 0; t < TERMS.length; t++) {
+      Term term = new Term("field", TERMS[t]);
+
+      // bulk reads, interleaved with skips
+      TermDocs expected = vint.termDocs(term);
+      TermDocs actual = block.termDocs(term);
+      int target = 0;
+      while (true) {
+        int n = expected.read(expectedDocs, expectedFreqs);
+        assertEquals(n, actual.read(actualDocs, actualFreqs));
+        if (n == 0)
+          break;
+        for (int i = 0; i < n; i++) {
+          assertEquals(expectedDocs[i], actualDocs[i]);
+          assertEquals(expectedFreqs[i], actualFreqs[i]);
+        }
+        target = expectedDocs[n - 1] + 1 + n * 7;
+        boolean more = expected.skipTo(target);
+        assertEquals(more, actual.skipTo(target));
+        if (!more)
+          break;
+        assertEquals(expected.doc(), actual.doc());
+        assertEquals(expected.freq(), actual.freq());
+      }
+      expected.close();
+      actual.close();
+
+      // long skips
+      for (int step = 1; step < NUM_DOCS; step *= 3) {
+        expected = vint.termDocs(term);
+        actual = block.termDocs(term);
+        for (target = 0; ; target += step) {
+          boolean more = expected.skipTo(target);
+          assertEquals(more, actual.skipTo(target));
+          if (!more)
+            break;
+          assertEquals(expected.doc(), actual.doc());
+          assertEquals(expected.freq(), actual.freq());
+          target = expected.doc();
+        }
+        expected.close();
+        actual.close();
+      }
+    }
+    vint.close();
+    block.close();
+  }
+}
@@ -490,6 +490,49 @@ public class TestCompoundFile extends TestCase
         cr.close();
     }
 
+    /** This test reads clones of the files of a compound stream from
+     *  several threads at once, which no longer synchronize on the stream
+     *  of the compound file.
+     */
+    public void testConcurrentClones() throws Exception {
+        setUp_2();
+        final CompoundFileReader cr = new CompoundFileReader(dir, "f.comp");
+        final InputStream[] streams = new InputStream[20];
+        for (int i = 0; i < streams.length; i++)
+            streams[i] = cr.openFile("f" + i);
+
+        final String[] failure = new String[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final java.util.Random random = new java.util.Random(t);
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            InputStream in = (InputStream)
+                                streams[random.nextInt(streams.length)].clone();
+                            int pos = random.nextInt(2000);
+                            in.seek(pos);
+                            if (in.readByte() != (byte) pos)
+                                failure[0] = "wrong byte at " + pos;
+                        }
+                    } catch (IOException e) {
+                        failure[0] = e.toString();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++)
+            threads[t].join();
+        assertNull(failure[0], failure[0]);
+
+        for (int i = 0; i < streams.length; i++)
+            streams[i].close();
+        cr.close();
+    }
+
+
     /** This test opens two files from a compound stream and verifies that
      *  their file positions are independent of each other.
      */
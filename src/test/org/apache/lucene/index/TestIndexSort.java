@@ -0,0 +1,204 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Tests that segments merged with {@link IndexWriter#setIndexSort(SortField)}
+ * have their documents, postings, norms and term vectors in sorted order.
+ */
+public class TestIndexSort extends TestCase {
+  private static final int NUM_DOCS = 300;
+
+  private Random random = new Random(7);
+
+  private IndexWriter writer(Directory dir, boolean create, SortField sort)
+    throws Exception {
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), create);
+    writer.mergeFactor = 3;
+    writer.setIndexSort(sort);
+    return writer;
+  }
+
+  /** Adds docs numbered in the order added, with a random value n. */
+  private Directory index(SortField sort) throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true, sort);
+    for (int i = 0; i < NUM_DOCS; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", Integer.toString(i)));
+      if (i % 10 != 0)                            // some have no value
+        doc.add(Field.Keyword("n", Integer.toString(random.nextInt(50))));
+      StringBuffer body = new StringBuffer();
+      int length = 1 + random.nextInt(8);
+      for (int j = 0; j < length; j++)
+        body.append("t" + random.nextInt(30) + " ");
+      doc.add(Field.Text("body", body.toString(), true));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    return dir;
+  }
+
+  private static int id(IndexReader reader, int doc) throws Exception {
+    return Integer.parseInt(reader.document(doc).get("id"));
+  }
+
+  private static String value(IndexReader reader, int doc) throws Exception {
+    return reader.document(doc).get("n");
+  }
+
+  public void testSortedMerge() throws Exception {
+    SortField sort = new SortField("n", SortField.INT, true);
+    Directory dir = index(sort);
+
+    IndexReader reader = IndexReader.open(dir);   // delete a few
+    for (int i = 0; i < NUM_DOCS; i += 7)
+      reader.delete(new Term("id", Integer.toString(i)));
+    reader.close();
+
+    IndexWriter writer = writer(dir, false, sort);
+    writer.optimize();
+    writer.close();
+
+    reader = IndexReader.open(dir);
+    assertEquals(sort, reader.getIndexSort());
+    assertEquals(NUM_DOCS - (NUM_DOCS + 6) / 7, reader.numDocs());
+    for (int doc = 1; doc < reader.maxDoc(); doc++) {
+      String prev = value(reader, doc - 1);
+      String cur = value(reader, doc);
+      int a = prev == null ? 0 : Integer.parseInt(prev);
+      int b = cur == null ? 0 : Integer.parseInt(cur);
+      assertTrue(a >= b);                         // reversed
+      if (a == b)                                 // ties in the order added
+        assertTrue(id(reader, doc - 1) < id(reader, doc));
+    }
+    checkPostings(reader);
+    reader.close();
+  }
+
+  public void testStringSort() throws Exception {
+    SortField sort = new SortField("n", SortField.STRING);
+    Directory dir = index(null);
+    IndexWriter writer = writer(dir, false, sort);
+    writer.optimize();                            // sorts the unsorted index
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(sort, reader.getIndexSort());
+    assertNull(value(reader, 0));                 // missing values first
+    for (int doc = 1; doc < reader.maxDoc(); doc++) {
+      String prev = value(reader, doc - 1);
+      String cur = value(reader, doc);
+      assertTrue(prev == null || (cur != null && prev.compareTo(cur) <= 0));
+    }
+    checkPostings(reader);
+    reader.close();
+  }
+
+  public void testValueNotANumber() throws Exception {
+    SortField sort = new SortField("ts", SortField.INT);
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true, sort);
+    writer.minMergeDocs = 10;
+    for (int i = 0; i < 40; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", Integer.toString(i)));
+      doc.add(Field.Keyword("ts", i == 5 ? "n/a" : Integer.toString(40 - i)));
+      writer.addDocument(doc);                    // merges go on
+    }
+    writer.optimize();
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(40, reader.numDocs());
+    assertEquals(5, id(reader, 0));               // sorts as if missing
+    for (int doc = 1; doc < reader.maxDoc(); doc++)
+      assertEquals(doc <= 34 ? 40 - doc : 39 - doc, id(reader, doc));
+    reader.close();
+  }
+
+  public void testUnsorted() throws Exception {
+    Directory dir = index(null);
+    IndexReader reader = IndexReader.open(dir);
+    assertNull(reader.getIndexSort());
+    for (int doc = 0; doc < reader.maxDoc(); doc++)
+      assertEquals(doc, id(reader, doc));
+    reader.close();
+  }
+
+  public void testIllegalSort() throws Exception {
+    IndexWriter writer = writer(new RAMDirectory(), true, null);
+    try {
+      writer.setIndexSort(new SortField("n", SortField.AUTO));
+      fail();
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      writer.setIndexSort(SortField.FIELD_DOC);
+      fail();
+    } catch (IllegalArgumentException e) {
+    }
+    writer.close();
+  }
+
+  /** Checks that the postings, positions, norms and term vectors of each
+   * doc are those of its stored fields. */
+  private void checkPostings(IndexReader reader) throws Exception {
+    byte[] norms = reader.norms("body");
+    TermPositions positions = reader.termPositions();
+    for (int doc = 0; doc < reader.maxDoc(); doc++) {
+      Document document = reader.document(doc);
+      TermDocs termDocs = reader.termDocs(new Term("id", document.get("id")));
+      assertTrue(termDocs.next());
+      assertEquals(doc, termDocs.doc());
+      termDocs.close();
+
+      String[] tokens = document.get("body").split(" ");
+      for (int p = 0; p < tokens.length; p++) {
+        positions.seek(new Term("body", tokens[p]));
+        assertTrue(positions.skipTo(doc));
+        assertEquals(doc, positions.doc());
+        boolean found = false;
+        for (int j = 0; j < positions.freq(); j++)
+          if (positions.nextPosition() == p)
+            found = true;
+        assertTrue(found);
+      }
+      assertEquals(Similarity.encodeNorm
+                   (Similarity.getDefault().lengthNorm("body", tokens.length)),
+                   norms[doc]);
+
+      String[] terms = reader.getTermFreqVector(doc, "body").getTerms();
+      for (int p = 0; p < tokens.length; p++)
+        assertTrue(Arrays.asList(terms).contains(tokens[p]));
+    }
+    positions.close();
+  }
+}
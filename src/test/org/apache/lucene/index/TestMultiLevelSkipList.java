@@ -0,0 +1,153 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+
+/**
+ * Tests skipTo() on postings long enough to have several skip levels.
+ */
+public class TestMultiLevelSkipList extends TestCase {
+  private static final int NUM_DOCS = 5000;
+
+  private RAMDirectory dir;
+
+  public TestMultiLevelSkipList(String s) {
+    super(s);
+  }
+
+  protected void setUp() throws IOException {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < NUM_DOCS; i++) {
+      Document doc = new Document();
+      // "all" is in every doc, "odd" and "rare" in a subset, with a
+      // number of positions depending on the doc
+      StringBuffer text = new StringBuffer("all");
+      if (i % 2 == 1)
+        text.append(" odd");
+      if (i % 7 == 3)
+        text.append(" rare rare");
+      for (int j = 0; j < i % 4; j++)
+        text.append(" all");
+      doc.add(Field.Text("field", text.toString()));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+  }
+
+  public void testLevels() {
+    assertEquals(0, MultiLevelSkipListWriter.numberOfSkipLevels(15, 16, 10));
+    assertEquals(1, MultiLevelSkipListWriter.numberOfSkipLevels(16, 16, 10));
+    assertEquals(1, MultiLevelSkipListWriter.numberOfSkipLevels(255, 16, 10));
+    assertEquals(2, MultiLevelSkipListWriter.numberOfSkipLevels(256, 16, 10));
+    assertEquals(3, MultiLevelSkipListWriter.numberOfSkipLevels(5000, 16, 10));
+    assertEquals(2, MultiLevelSkipListWriter.numberOfSkipLevels(5000, 16, 2));
+    assertEquals(10, MultiLevelSkipListWriter.numberOfSkipLevels(Integer.MAX_VALUE, 2, 10));
+  }
+
+  public void testSkipTo() throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    checkSkipTo(reader, "all", 1);
+    checkSkipTo(reader, "odd", 2);
+    checkSkipTo(reader, "rare", 7);
+    reader.close();
+  }
+
+  public void testSkipToWithDeletions() throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    for (int i = 0; i < NUM_DOCS; i += 3)
+      reader.delete(i);
+    reader.close();
+
+    reader = IndexReader.open(dir);
+    TermDocs termDocs = reader.termDocs(new Term("field", "all"));
+    assertTrue(termDocs.skipTo(1000));
+    assertEquals(1000, termDocs.doc());
+    assertTrue(termDocs.skipTo(1002));
+    assertEquals(1003, termDocs.doc());
+    assertTrue(termDocs.skipTo(4997));
+    assertEquals(4997, termDocs.doc());
+    assertTrue(termDocs.next());
+    assertEquals(4999, termDocs.doc());
+    assertFalse(termDocs.next());
+    termDocs.close();
+    reader.close();
+  }
+
+  /** Skips along increasing targets with both termDocs() and
+   * termPositions() and checks docs, freqs and positions. */
+  private void checkSkipTo(IndexReader reader, String text, int step)
+    throws IOException {
+    Term term = new Term("field", text);
+    int[] targets = {0, 5, 17, 18, 300, 301, 1024, 4095, 4096, 4097, 4500, 4999};
+    TermDocs termDocs = reader.termDocs(term);
+    TermPositions termPositions = reader.termPositions(term);
+    int current = -1;
+    for (int i = 0; i < targets.length; i++) {
+      // skipTo() always moves beyond the current document
+      int expected = firstDocAtOrAfter(text, Math.max(targets[i], current + 1));
+      current = expected;
+      if (expected == -1) {
+        assertFalse(termDocs.skipTo(targets[i]));
+        assertFalse(termPositions.skipTo(targets[i]));
+        break;
+      }
+      assertTrue(text + " " + targets[i], termDocs.skipTo(targets[i]));
+      assertEquals(text + " " + targets[i], expected, termDocs.doc());
+      assertEquals(expectedFreq(text, expected), termDocs.freq());
+
+      assertTrue(termPositions.skipTo(targets[i]));
+      assertEquals(expected, termPositions.doc());
+      int freq = termPositions.freq();
+      assertEquals(expectedFreq(text, expected), freq);
+      int lastPosition = -1;
+      for (int j = 0; j < freq; j++) {
+        int position = termPositions.nextPosition();
+        assertTrue(position > lastPosition);
+        lastPosition = position;
+      }
+    }
+    assertFalse(termDocs.skipTo(NUM_DOCS));
+    termDocs.close();
+    termPositions.close();
+  }
+
+  private int firstDocAtOrAfter(String text, int target) {
+    for (int doc = target; doc < NUM_DOCS; doc++) {
+      if (expectedFreq(text, doc) > 0)
+        return doc;
+    }
+    return -1;
+  }
+
+  private int expectedFreq(String text, int doc) {
+    if (text.equals("all"))
+      return 1 + doc % 4;
+    if (text.equals("odd"))
+      return doc % 2 == 1 ? 1 : 0;
+    return doc % 7 == 3 ? 2 : 0;
+  }
+}
@@ -0,0 +1,100 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.store.RAMDirectory;
+
+public class TestOmitNorms extends TestCase {
+  private static final byte ONE = Similarity.encodeNorm(1.0f);
+
+  private RAMDirectory directory = new RAMDirectory();
+
+  private void addDocs(IndexWriter writer, int n, boolean omitNorms)
+    throws Exception {
+    for (int i = 0; i < n; i++) {
+      Document doc = new Document();
+      Field omitted = Field.Text("omitted", "a b c");
+      omitted.setOmitNorms(true);
+      doc.add(omitted);
+      Field mixed = Field.Text("mixed", "a b c");
+      mixed.setOmitNorms(omitNorms);
+      doc.add(mixed);
+      doc.add(Field.Keyword("id", Integer.toString(i)));
+      writer.addDocument(doc);
+    }
+  }
+
+  public void testOmitNorms() throws Exception {
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    writer.setUseCompoundFile(false);
+    addDocs(writer, 10, true);
+    writer.optimize();
+    writer.close();
+
+    SegmentInfos infos = new SegmentInfos();
+    infos.read(directory);
+    String segment = infos.info(0).name;
+    FieldInfos fieldInfos = new FieldInfos(directory, segment + ".fnm");
+    assertTrue(fieldInfos.fieldInfo("omitted").omitNorms);
+    assertFalse(fieldInfos.fieldInfo("id").omitNorms);
+    assertFalse(directory.fileExists(
+        segment + ".f" + fieldInfos.fieldNumber("omitted")));
+    assertTrue(directory.fileExists(
+        segment + ".f" + fieldInfos.fieldNumber("id")));
+
+    IndexReader reader = IndexReader.open(directory);
+    assertFalse(reader.hasNorms("omitted"));
+    assertTrue(reader.hasNorms("id"));
+    byte[] norms = reader.norms("omitted");
+    assertEquals(10, norms.length);
+    for (int i = 0; i < norms.length; i++)
+      assertEquals(ONE, norms[i]);
+    assertEquals(ONE, reader.maxNorm("omitted"));
+    assertNull(reader.norms("nonexistent"));
+    assertTrue(reader.document(0).getField("omitted").getOmitNorms());
+    reader.close();
+  }
+
+  /** Norms are kept when a segment that stores them is merged with one
+   * that omits them. */
+  public void testMerge() throws Exception {
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    writer.mergeFactor = 2;
+    addDocs(writer, 3, false);
+    addDocs(writer, 3, true);
+    writer.optimize();
+    writer.close();
+
+    IndexReader reader = IndexReader.open(directory);
+    assertTrue(reader.hasNorms("mixed"));
+    assertFalse(reader.hasNorms("omitted"));
+    byte[] norms = reader.norms("mixed");
+    for (int i = 0; i < 3; i++)
+      assertTrue(norms[i] != ONE);              // length normalized
+    for (int i = 3; i < 6; i++)
+      assertEquals(ONE, norms[i]);
+    reader.close();
+  }
+}
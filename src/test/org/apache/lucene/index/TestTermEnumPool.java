@@ -0,0 +1,108 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.store.RAMDirectory;
+
+public class TestTermEnumPool extends TestCase {
+  private static final int NUM_TERMS = 1000;
+
+  private RAMDirectory dir;
+
+  public void setUp() throws IOException {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < NUM_TERMS; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", Integer.toString(i)));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+  }
+
+  public void testReuse() throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    for (int i = 0; i < 100; i++)
+      assertEquals(1, reader.docFreq(new Term("id", Integer.toString(i * 7))));
+    TermInfosStats stats = reader.getTermInfosStats();
+    assertEquals(1, stats.getEnumsCreated());
+    assertEquals(99, stats.getEnumsReused());
+    assertEquals(0, stats.getEnumsDropped());
+
+    TermEnum terms = reader.terms(new Term("id", "5"));  // takes the enum
+    assertEquals(new Term("id", "5"), terms.term());
+    assertEquals(1, reader.docFreq(new Term("id", "6")));
+    assertEquals(new Term("id", "5"), terms.term());
+    assertTrue(terms.next());
+    assertEquals(new Term("id", "50"), terms.term());
+    terms.close();
+    assertEquals(2, reader.getTermInfosStats().getEnumsCreated());
+
+    reader.setTermEnumPoolSize(0);
+    assertEquals(1, reader.docFreq(new Term("id", "7")));
+    stats = reader.getTermInfosStats();
+    assertEquals(3, stats.getEnumsCreated());
+    assertEquals(2, stats.getEnumsDropped());     // the idle one and the new one
+    reader.close();
+  }
+
+  public void testConcurrentLookups() throws Exception {
+    final IndexReader reader = IndexReader.open(dir);
+    reader.setTermEnumPoolSize(2);
+    final int numThreads = 8;
+    final int lookups = 2000;
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int seed = t;
+      threads[t] = new Thread() {
+          public void run() {
+            try {
+              for (int i = 0; i < lookups; i++) {
+                String id = Integer.toString((i * 31 + seed) % NUM_TERMS);
+                if (reader.docFreq(new Term("id", id)) != 1)
+                  throw new RuntimeException("wrong docFreq for " + id);
+                if (reader.docFreq(new Term("id", id + "x")) != 0)
+                  throw new RuntimeException("wrong docFreq for " + id + "x");
+              }
+            } catch (Throwable e) {
+              failure[0] = e;
+            }
+          }
+        };
+      threads[t].start();
+    }
+    for (int t = 0; t < numThreads; t++)
+      threads[t].join();
+    assertNull(String.valueOf(failure[0]), failure[0]);
+
+    TermInfosStats stats = reader.getTermInfosStats();
+    assertEquals(numThreads * lookups * 2,
+                 stats.getEnumsCreated() + stats.getEnumsReused());
+    int idle = stats.getEnumsCreated() - stats.getEnumsDropped();
+    assertTrue(idle >= 1 && idle <= 2);
+    reader.close();
+  }
+}
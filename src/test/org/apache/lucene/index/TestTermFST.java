@@ -0,0 +1,152 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.store.RAMDirectory;
+
+public class TestTermFST extends TestCase {
+
+  public void testFST() {
+    Random random = new Random(42);
+    TreeMap[] maps = new TreeMap[3];              // one transducer per map
+    FSTBuilder builder = new FSTBuilder();
+    int[] roots = new int[maps.length];
+    for (int m = 0; m < maps.length; m++) {
+      maps[m] = new TreeMap();
+      for (int i = 0; i < 500; i++)
+        maps[m].put(randomString(random), null);
+      if (m == 0)
+        maps[m].put("", null);
+      long output = random.nextInt(10);
+      for (Iterator it = maps[m].entrySet().iterator(); it.hasNext();) {
+        Map.Entry entry = (Map.Entry)it.next();
+        output += random.nextInt(m == 2 ? 3 : 1000); // m == 2: equal outputs
+        entry.setValue(new Long(output));
+        builder.add((String)entry.getKey(), output);
+      }
+      roots[m] = builder.finish();
+    }
+    assertEquals(-1, builder.finish());
+
+    FST fst = builder.getFST();
+    for (int m = 0; m < maps.length; m++) {
+      for (Iterator it = maps[m].entrySet().iterator(); it.hasNext();) {
+        Map.Entry entry = (Map.Entry)it.next();
+        assertEquals(entry.getKey().toString(),
+                     ((Long)entry.getValue()).longValue(),
+                     fst.get(roots[m], (String)entry.getKey()));
+      }
+      for (int i = 0; i < 500; i++) {
+        String s = randomString(random);
+        if (!maps[m].containsKey(s))
+          assertEquals(-1, fst.get(roots[m], s));
+      }
+    }
+  }
+
+  public void testOutOfOrder() {
+    FSTBuilder builder = new FSTBuilder();
+    builder.add("b", 1);
+    try {
+      builder.add("a", 2);
+      fail("inputs must be sorted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /** Short strings over a small alphabet, so that many share prefixes and
+   * suffixes. */
+  private static String randomString(Random random) {
+    char[] chars = new char[random.nextInt(8)];
+    for (int i = 0; i < chars.length; i++)
+      chars[i] = (char)('a' + random.nextInt(5));
+    if (random.nextInt(50) == 0 && chars.length > 0)
+      chars[0] = '\u00e9';
+    return new String(chars);
+  }
+
+  public void testIndex() throws IOException {
+    RAMDirectory plainDir = createIndex(false);
+    RAMDirectory fstDir = createIndex(true);
+    assertFalse(plainDir.fileExists("_a.fst"));
+
+    IndexReader plain = IndexReader.open(plainDir);
+    IndexReader fst = IndexReader.open(fstDir);
+    TermEnum terms = plain.terms();
+    int count = 0;
+    while (terms.next()) {
+      Term term = terms.term();
+      assertEquals(term.toString(), plain.docFreq(term), fst.docFreq(term));
+      assertEquals(plain.maxFreq(term), fst.maxFreq(term));
+      Term missing = new Term(term.field(), term.text() + "q");
+      assertEquals(0, fst.docFreq(missing));
+
+      TermDocs plainDocs = plain.termDocs(term);
+      TermDocs fstDocs = fst.termDocs(term);
+      while (plainDocs.next()) {
+        assertTrue(fstDocs.next());
+        assertEquals(plainDocs.doc(), fstDocs.doc());
+        assertEquals(plainDocs.freq(), fstDocs.freq());
+      }
+      assertFalse(fstDocs.next());
+
+      TermEnum fstTerms = fst.terms(missing);      // enumeration still works
+      TermEnum plainTerms = plain.terms(missing);
+      assertEquals(plainTerms.term(), fstTerms.term());
+      fstTerms.close();
+      plainTerms.close();
+      count++;
+    }
+    terms.close();
+    assertTrue(count > 1000);
+    assertEquals(0, fst.docFreq(new Term("nofield", "a")));
+    assertEquals(0, fst.docFreq(new Term("id", "")));
+    plain.close();
+    fst.close();
+  }
+
+  private RAMDirectory createIndex(boolean useTermFST) throws IOException {
+    RAMDirectory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    writer.setUseTermFST(useTermFST);
+    Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", Integer.toString(i)));
+      StringBuffer text = new StringBuffer();
+      for (int j = random.nextInt(20); j >= 0; j--)
+        text.append(' ').append(randomString(random)).append(random.nextInt(50));
+      doc.add(Field.Text("text", text.toString()));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+    return dir;
+  }
+}
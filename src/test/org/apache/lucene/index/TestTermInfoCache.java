@@ -0,0 +1,110 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.store.RAMDirectory;
+
+public class TestTermInfoCache extends TestCase {
+  private static final int NUM_TERMS = 1000;
+
+  private RAMDirectory dir;
+
+  public void setUp() throws IOException {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < NUM_TERMS; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", Integer.toString(i)));
+      doc.add(Field.Keyword("parity", Integer.toString(i % 2)));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+  }
+
+  public void testCache() throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(0, reader.getTermInfosStats().getCacheMisses());
+    reader.setTermInfoCacheSize(100);
+
+    for (int round = 0; round < 3; round++) {
+      assertEquals(500, reader.docFreq(new Term("parity", "0")));
+      assertEquals(0, reader.docFreq(new Term("parity", "2")));
+      TermDocs docs = reader.termDocs(new Term("parity", "1"));
+      assertTrue(docs.next());
+      assertEquals(1, docs.doc());
+      docs.close();
+    }
+    TermInfosStats stats = reader.getTermInfosStats();
+    assertEquals(3, stats.getCacheMisses());
+    assertEquals(6, stats.getCacheHits());
+    assertEquals(6.0f / 9.0f, stats.getCacheHitRate(), 0.0001f);
+
+    for (int i = 0; i < NUM_TERMS; i++)           // evicts the parity terms
+      assertEquals(1, reader.docFreq(new Term("id", Integer.toString(i))));
+    assertEquals(500, reader.docFreq(new Term("parity", "0")));
+    stats = reader.getTermInfosStats();
+    assertEquals(3 + NUM_TERMS + 1, stats.getCacheMisses());
+
+    reader.setTermInfoCacheSize(0);
+    assertEquals(500, reader.docFreq(new Term("parity", "0")));
+    assertEquals(0, reader.getTermInfosStats().getCacheHits());
+    reader.close();
+  }
+
+  public void testConcurrentLookups() throws Exception {
+    final IndexReader reader = IndexReader.open(dir);
+    reader.setTermInfoCacheSize(64);
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int seed = t;
+      threads[t] = new Thread() {
+          public void run() {
+            try {
+              for (int i = 0; i < 5000; i++) {
+                // mostly popular terms, some of them missing
+                int n = (i % 10 == 0) ? (i * 7 + seed) % NUM_TERMS : i % 50;
+                int expected = (n % 3 == 0) ? 0 : 1;
+                String id = (n % 3 == 0) ? n + "x" : Integer.toString(n);
+                if (reader.docFreq(new Term("id", id)) != expected)
+                  throw new RuntimeException("wrong docFreq for " + id);
+              }
+            } catch (Throwable e) {
+              failure[0] = e;
+            }
+          }
+        };
+      threads[t].start();
+    }
+    for (int t = 0; t < threads.length; t++)
+      threads[t].join();
+    assertNull(String.valueOf(failure[0]), failure[0]);
+
+    TermInfosStats stats = reader.getTermInfosStats();
+    assertEquals(4 * 5000, stats.getCacheHits() + stats.getCacheMisses());
+    assertTrue(stats.getCacheHitRate() > 0.5f);
+    reader.close();
+  }
+}
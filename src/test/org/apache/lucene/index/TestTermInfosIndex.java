@@ -0,0 +1,107 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.store.RAMDirectory;
+
+public class TestTermInfosIndex extends TestCase {
+  private static final int NUM_TERMS = 1000;
+
+  private RAMDirectory dir;
+
+  public void setUp() throws IOException {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < NUM_TERMS; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("b", text(i)));
+      doc.add(Field.Keyword("d", text(i)));
+      if (i % 2 == 0)
+        doc.add(Field.Keyword("d", text(i) + "x"));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+  }
+
+  private static String text(int i) {
+    return "t" + (10000 + i * 3);
+  }
+
+  public void testDivisors() throws IOException {
+    int[] divisors = new int[] {1, 2, 3, 7, 100, 5000};
+    for (int i = 0; i < divisors.length; i++) {
+      IndexReader reader = IndexReader.open(dir);
+      reader.setTermInfosIndexDivisor(divisors[i]);
+      assertEquals(divisors[i], reader.getTermInfosIndexDivisor());
+      checkTerms(reader);
+      reader.close();
+    }
+  }
+
+  private void checkTerms(IndexReader reader) throws IOException {
+    // every other term, in descending order, so that each lookup seeks
+    for (int i = NUM_TERMS - 1; i >= 0; i -= 2) {
+      assertEquals(1, reader.docFreq(new Term("b", text(i))));
+      assertEquals(1, reader.docFreq(new Term("d", text(i))));
+      assertEquals(0, reader.docFreq(new Term("b", text(i) + "x")));
+      assertEquals(i % 2 == 0 ? 1 : 0,
+                   reader.docFreq(new Term("d", text(i) + "x")));
+    }
+    assertEquals(0, reader.docFreq(new Term("a", text(0))));
+    assertEquals(0, reader.docFreq(new Term("c", text(0))));
+    assertEquals(0, reader.docFreq(new Term("e", text(0))));
+
+    // enumerations starting before, within and between fields
+    TermEnum terms = reader.terms(new Term("a", ""));
+    assertEquals(new Term("b", text(0)), terms.term());
+    terms.close();
+    terms = reader.terms(new Term("b", text(500).substring(0, 4)));
+    assertEquals(new Term("b", text(500)), terms.term());
+    terms.close();
+    terms = reader.terms(new Term("c", "zzz"));
+    assertEquals(new Term("d", text(0)), terms.term());
+    int count = 0;
+    do {
+      count++;
+    } while (terms.next());
+    assertEquals(NUM_TERMS + NUM_TERMS / 2, count);
+    terms.close();
+    terms = reader.terms(new Term("e", ""));
+    assertNull(terms.term());
+    terms.close();
+  }
+
+  public void testDivisorAfterLookup() throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    reader.docFreq(new Term("b", text(0)));
+    try {
+      reader.setTermInfosIndexDivisor(2);
+      fail("divisor must be set before the term index is loaded");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    reader.close();
+  }
+}
@@ -0,0 +1,111 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Times sorted searches collected by {@link KeyedHitCollector}s against the
+ * same searches collected into a {@link FieldSortedHitQueue}, and against
+ * relevance-ranked searches, on a generated index.
+ *
+ * <p>Usage: <code>java org.apache.lucene.search.SortBenchmark [docs]
+ * [rounds]</code>
+ */
+class SortBenchmark {
+  private static final int N_DOCS = 10;
+
+  public static void main(String[] args) throws Exception {
+    int numDocs = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    Random random = new Random(42);
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(Field.Text("body", "t" + random.nextInt(3) + " t" + random.nextInt(10)));
+      doc.add(Field.Keyword("int", Integer.toString(random.nextInt(100000))));
+      doc.add(Field.Keyword("float", Float.toString(random.nextFloat())));
+      doc.add(Field.Keyword("string", "s" + random.nextInt(100000)));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+    IndexSearcher searcher = new IndexSearcher(directory);
+
+    Query[] queries = new Query[60];
+    for (int q = 0; q < queries.length; q++)
+      queries[q] = new TermQuery(new Term("body", "t" + (q % 3 == 2 ? 5 : q % 3)));
+    Sort[] sorts = new Sort[] {
+      new Sort(new SortField("int", SortField.INT)),
+      new Sort(new SortField("float", SortField.FLOAT)),
+      new Sort(new SortField("string", SortField.STRING)),
+      Sort.RELEVANCE
+    };
+
+    for (int round = 0; round < rounds; round++) {   // the first ones warm up
+      System.out.println("round " + round);
+      long start = System.currentTimeMillis();
+      for (int q = 0; q < queries.length; q++)
+        searcher.search(queries[q], null, N_DOCS);
+      report("relevance", start, queries.length);
+      for (int s = 0; s < sorts.length; s++) {
+        start = System.currentTimeMillis();
+        for (int q = 0; q < queries.length; q++)
+          searchGeneric(searcher, queries[q], sorts[s]);
+        report(sorts[s] + " generic", start, queries.length);
+        start = System.currentTimeMillis();
+        for (int q = 0; q < queries.length; q++)
+          searcher.search(queries[q], null, N_DOCS, sorts[s]);
+        report(sorts[s] + " keyed", start, queries.length);
+      }
+    }
+    searcher.close();
+  }
+
+  /** Collects the hits of a search into a FieldSortedHitQueue, as
+   * IndexSearcher does for sorts that have no KeyedHitCollector. */
+  private static void searchGeneric(IndexSearcher searcher, Query query,
+                                    Sort sort)
+    throws Exception {
+    final FieldSortedHitQueue hq =
+      new FieldSortedHitQueue(searcher.reader, sort.fields, N_DOCS);
+    searcher.search(query, new HitCollector() {
+        public void collect(int doc, float score) {
+          if (score > 0.0f)
+            hq.insert(new FieldDoc(doc, score));
+        }
+      });
+    while (hq.size() > 0)
+      hq.fillFields((FieldDoc) hq.pop());
+  }
+
+  private static void report(String name, long start, int queries) {
+    long time = System.currentTimeMillis() - start;
+    System.out.println("  " + name + ": " + (time * 1000 / queries)
+                       + " us/query");
+  }
+}
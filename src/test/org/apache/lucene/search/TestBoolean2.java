@@ -0,0 +1,166 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+
+/** Test BooleanScorer2 against the 1.4 BooleanScorer.
+ */
+public class TestBoolean2 extends TestCase {
+  private IndexSearcher searcher;
+
+  public static final String field = "field";
+
+  private String[] docFields = {
+    "w1 w2 w3 w4 w5",
+    "w1 w3 w2 w3",
+    "w1 xx w2 yy w3",
+    "w1 w3 xx w2 yy w3",
+    "w2 xx w4 w5",
+    "xx yy zz",
+    "w1 w1 w1 w3 zz"
+  };
+
+  public void setUp() throws Exception {
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer= new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < docFields.length; i++) {
+      Document doc = new Document();
+      doc.add(Field.Text(field, docFields[i]));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    searcher = new IndexSearcher(directory);
+  }
+
+  public void tearDown() throws Exception {
+    BooleanQuery.setUseScorer14(false);
+    searcher.close();
+  }
+
+  private void queriesTest(String queryText, int[] expDocNrs) throws Exception {
+    Query query = QueryParser.parse(queryText, field, new WhitespaceAnalyzer());
+
+    BooleanQuery.setUseScorer14(false);
+    Hits hits2 = searcher.search(query);
+    CheckHits.checkHits(query, field, searcher, expDocNrs, this);
+
+    BooleanQuery.setUseScorer14(true);
+    Hits hits1 = searcher.search(query);
+    CheckHits.checkHits(query, field, searcher, expDocNrs, this);
+
+    assertEquals(queryText, hits1.length(), hits2.length());
+    for (int i = 0; i < hits1.length(); i++) {
+      assertEquals(queryText, hits1.score(i), hits2.score(i), 1.0e-6f);
+    }
+  }
+
+  public void testQueries01() throws Exception {
+    queriesTest("+w3 +xx", new int[] {2, 3});
+  }
+
+  public void testQueries02() throws Exception {
+    queriesTest("+w3 xx", new int[] {2, 3, 1, 0, 6});
+  }
+
+  public void testQueries03() throws Exception {
+    queriesTest("w3 xx", new int[] {2, 3, 1, 0, 6, 4, 5});
+  }
+
+  public void testQueries04() throws Exception {
+    queriesTest("w3 -xx", new int[] {1, 0, 6});
+  }
+
+  public void testQueries05() throws Exception {
+    queriesTest("+w3 -xx", new int[] {1, 0, 6});
+  }
+
+  public void testQueries06() throws Exception {
+    queriesTest("+w3 -xx -w5", new int[] {1, 6});
+  }
+
+  public void testQueries07() throws Exception {
+    queriesTest("-w3 -xx -w5", new int[] {});
+  }
+
+  public void testQueries08() throws Exception {
+    queriesTest("+w3 xx -w5", new int[] {2, 3, 1, 6});
+  }
+
+  public void testQueries09() throws Exception {
+    queriesTest("+w3 +xx +w2 zz", new int[] {2, 3});
+  }
+
+  public void testQueries10() throws Exception {
+    queriesTest("+w1 +(w2 zz) -(xx yy) w4", new int[] {0, 1, 6});
+  }
+
+  public void testSkipToAndNested() throws Exception {
+    BooleanQuery.setUseScorer14(false);
+    BooleanQuery nested = new BooleanQuery();
+    nested.add(new TermQuery(new Term(field, "w2")), false, false);
+    nested.add(new TermQuery(new Term(field, "zz")), false, false);
+    BooleanQuery query = new BooleanQuery();
+    query.add(new TermQuery(new Term(field, "w1")), true, false);
+    query.add(nested, true, false);
+
+    Scorer scorer = query.weight(searcher).scorer(searcher.reader);
+    assertTrue(scorer.skipTo(2));
+    assertEquals(2, scorer.doc());
+    assertTrue(scorer.skipTo(4));
+    assertEquals(6, scorer.doc());
+    assertFalse(scorer.next());
+  }
+
+  public void testScorerExplain() throws Exception {
+    BooleanQuery.setUseScorer14(false);
+    BooleanQuery query = new BooleanQuery();
+    query.add(new TermQuery(new Term(field, "w1")), true, false);
+    query.add(new TermQuery(new Term(field, "xx")), false, false);
+    query.add(new TermQuery(new Term(field, "zz")), false, false);
+    query.add(new TermQuery(new Term(field, "w5")), false, true);
+    Weight weight = query.weight(searcher);
+
+    Explanation expl = weight.scorer(searcher.reader).explain(3);
+    Similarity sim = searcher.getSimilarity();
+    assertEquals(2.0f * sim.coord(2, 3), expl.getValue(), 1.0e-6f);
+    assertEquals("coord(2/3)", expl.getDetails()[1].getDescription());
+    assertEquals(0.0f, weight.scorer(searcher.reader).explain(0).getValue(),
+                 0.0f);                           // prohibited
+    assertEquals(0.0f, weight.scorer(searcher.reader).explain(4).getValue(),
+                 0.0f);                           // required missing
+  }
+
+  public void testManyRequiredClauses() throws Exception {
+    BooleanQuery.setUseScorer14(false);
+    BooleanQuery query = new BooleanQuery();
+    for (int i = 0; i < 40; i++) {
+      query.add(new TermQuery(new Term(field, i % 2 == 0 ? "w1" : "w3")),
+                true, false);
+      query.add(new TermQuery(new Term(field, "nothere" + i)), false, true);
+    }
+    CheckHits.checkHits(query, field, searcher, new int[] {0, 1, 2, 3, 6}, this);
+  }
+}
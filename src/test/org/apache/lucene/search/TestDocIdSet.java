@@ -0,0 +1,115 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+public class TestDocIdSet extends TestCase {
+  private Random random = new Random(17);
+
+  private BitSet randomBits(int maxDoc, double density, boolean runs) {
+    BitSet bits = new BitSet(maxDoc);
+    for (int i = 0; i < maxDoc; i++) {
+      if (random.nextDouble() < density) {
+        int length = runs ? 1 + random.nextInt(500) : 1;
+        for (int j = i; j < Math.min(maxDoc, i + length); j++)
+          bits.set(j);
+        i += length;
+      }
+    }
+    return bits;
+  }
+
+  private void checkSame(BitSet expected, DocIdSet set) throws IOException {
+    DocIdSetIterator iterator = set.iterator();
+    for (int doc = expected.nextSetBit(0); doc != -1; doc = expected.nextSetBit(doc + 1)) {
+      assertTrue(iterator.next());
+      assertEquals(doc, iterator.doc());
+    }
+    assertFalse(iterator.next());
+
+    for (int k = 0; k < 50; k++) {               // skipTo from random points
+      iterator = set.iterator();
+      int target = 0;
+      while (true) {
+        target += random.nextInt(5000);
+        int doc = expected.nextSetBit(target);
+        if (doc == -1) {
+          assertFalse(iterator.skipTo(target));
+          break;
+        }
+        assertTrue(iterator.skipTo(target));
+        assertEquals(doc, iterator.doc());
+        target = doc + 1;
+      }
+    }
+    assertEquals(expected, DocIdBitSet.bitsOf(set));
+  }
+
+  public void testImplementations() throws Exception {
+    double[] densities = new double[] { 0.0, 0.0001, 0.01, 0.3, 0.9 };
+    for (int i = 0; i < densities.length; i++) {
+      for (int r = 0; r < 2; r++) {
+        BitSet bits = randomBits(300000, densities[i], r == 1);
+        DocIdSet set = new DocIdBitSet(bits);
+        SortedVIntDocIdSet vInts = new SortedVIntDocIdSet(set.iterator());
+        RunLengthDocIdSet runs = new RunLengthDocIdSet(set.iterator());
+        RoaringDocIdSet roaring = new RoaringDocIdSet(set.iterator());
+        checkSame(bits, vInts);
+        checkSame(bits, runs);
+        checkSame(bits, roaring);
+        assertEquals(bits.cardinality(), vInts.size());
+        assertEquals(bits.cardinality(), runs.size());
+        assertEquals(bits.cardinality(), roaring.size());
+
+        DocIdSet compact = DocIdSet.compact(set);
+        checkSame(bits, compact);
+        long size = compact.sizeInBytes();
+        assertTrue(size <= vInts.sizeInBytes());
+        assertTrue(size <= runs.sizeInBytes());
+        assertTrue(size <= roaring.sizeInBytes());
+      }
+    }
+  }
+
+  public void testCompactChoice() throws Exception {
+    BitSet sparse = new BitSet();
+    for (int i = 0; i < 1000000; i += 1000)
+      sparse.set(i);
+    assertTrue(DocIdSet.compact(new DocIdBitSet(sparse)) instanceof SortedVIntDocIdSet);
+
+    BitSet ranges = new BitSet();
+    ranges.set(1000, 400000);
+    ranges.set(500000, 900000);
+    assertTrue(DocIdSet.compact(new DocIdBitSet(ranges)) instanceof RunLengthDocIdSet);
+
+    BitSet clustered = new BitSet();
+    for (int i = 0; i < 65536; i += 2)
+      clustered.set(700000 + i);
+    assertTrue(DocIdSet.compact(new DocIdBitSet(clustered)) instanceof RoaringDocIdSet);
+
+    BitSet dense = new BitSet();
+    for (int i = 0; i < 100000; i += 2)
+      dense.set(i);
+    DocIdSet set = new DocIdBitSet(dense);
+    assertSame(set, DocIdSet.compact(set));
+  }
+}
@@ -0,0 +1,127 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.util.ThreadPool;
+
+/** Test that sorted searches which stop early on segments sorted at index
+ * time find the same top documents as complete searches.
+ */
+public class TestEarlyTermination extends TestCase {
+  private static final String FIELD = "field";
+
+  private static final SortField TIME =
+    new SortField("time", SortField.INT, true);
+
+  private IndexSearcher searcher;
+  private Random random = new Random(3);
+
+  public void setUp() throws Exception {
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    writer.mergeFactor = 3;
+    writer.setIndexSort(TIME);
+    for (int i = 0; i < 600; i++) {
+      StringBuffer text = new StringBuffer();
+      int length = 1 + random.nextInt(10);
+      for (int j = 0; j < length; j++)
+        text.append("t" + random.nextInt(20) + " ");
+      Document doc = new Document();
+      doc.add(Field.Text(FIELD, text.toString()));
+      doc.add(Field.Keyword("time", Integer.toString(random.nextInt(200))));
+      writer.addDocument(doc);
+    }
+    writer.close();                               // several segments
+    searcher = new IndexSearcher(directory);
+  }
+
+  public void tearDown() throws Exception {
+    searcher.close();
+  }
+
+  private Query randomQuery() {
+    BooleanQuery query = new BooleanQuery();
+    int nrClauses = 1 + random.nextInt(4);
+    for (int i = 0; i < nrClauses; i++) {
+      query.add(new TermQuery(new Term(FIELD, "t" + random.nextInt(22))),
+                i == 0 && random.nextBoolean(), false);
+    }
+    return query;
+  }
+
+  private static void assertSame(TopFieldDocs expected, TopFieldDocs actual) {
+    assertTrue(actual.totalHits <= expected.totalHits);
+    assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+      assertEquals(((FieldDoc) expected.scoreDocs[i]).fields[0],
+                   ((FieldDoc) actual.scoreDocs[i]).fields[0]);
+    }
+  }
+
+  public void testSorted() throws Exception {
+    Sort[] sorts = new Sort[] {
+      new Sort(TIME),
+      new Sort(new SortField("time", SortField.AUTO, true)),
+      new Sort(new SortField[] { TIME, SortField.FIELD_DOC }),
+      Sort.INDEXORDER,
+      new Sort(new SortField("time", SortField.INT)) // not the index order
+    };
+    ThreadPool pool = new ThreadPool("test", 3);
+    try {
+      for (int q = 0; q < 100; q++) {
+        Query query = randomQuery();
+        Sort sort = sorts[q % sorts.length];
+        int nDocs = 1 + random.nextInt(20);
+        searcher.setEarlyTermination(false);
+        searcher.setThreadPool(null);
+        TopFieldDocs expected = searcher.search(query, null, nDocs, sort);
+        searcher.setEarlyTermination(true);
+        assertSame(expected, searcher.search(query, null, nDocs, sort));
+        searcher.setThreadPool(pool);
+        assertSame(expected, searcher.search(query, null, nDocs, sort));
+      }
+    } finally {
+      pool.close();
+    }
+  }
+
+  public void testStopsEarly() throws Exception {
+    Query query = new TermQuery(new Term(FIELD, "t1"));
+    TopFieldDocs all = searcher.search(query, null, 5, new Sort(TIME));
+    searcher.setEarlyTermination(true);
+    TopFieldDocs some = searcher.search(query, null, 5, new Sort(TIME));
+    assertSame(all, some);
+    assertTrue(some.totalHits < all.totalHits);
+
+    // not a sort by the index order
+    some = searcher.search(query, null, 5,
+                           new Sort(new SortField("time", SortField.INT)));
+    assertEquals(all.totalHits, some.totalHits);
+  }
+}
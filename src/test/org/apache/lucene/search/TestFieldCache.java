@@ -0,0 +1,242 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+
+/**
+ * Tests that {@link FieldCacheImpl} caches values per segment and loads
+ * them only once.
+ */
+public class TestFieldCache extends TestCase {
+
+  /** Counts the terms it is asked to compare. */
+  static class CountingComparator extends SortComparator {
+    int count;
+    protected synchronized Comparable getComparable (String termtext) {
+      count++;
+      return termtext;
+    }
+  }
+
+  private FieldCache cache;
+
+  protected void setUp() {
+    cache = new FieldCacheImpl();
+  }
+
+  /** Makes a segment of count docs numbered from start.  Docs whose number
+   * is a multiple of 3 have no "s" field. */
+  private IndexReader segment (int start, int count) throws IOException {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter (dir, new SimpleAnalyzer(), true);
+    for (int i = start; i < start + count; i++) {
+      Document doc = new Document();
+      doc.add (Field.Keyword ("n", Integer.toString (i)));
+      if (i % 3 != 0)
+        doc.add (Field.Keyword ("s", word (i)));
+      writer.addDocument (doc);
+    }
+    writer.optimize();
+    writer.close();
+    return IndexReader.open (dir);
+  }
+
+  private static String word (int i) {
+    return "w" + (char) ('a' + (i * 7) % 26);
+  }
+
+  public void testCombinedValues() throws Exception {
+    IndexReader reader = new MultiReader (new IndexReader[] {
+      segment (0, 10), segment (10, 15), segment (25, 5) });
+
+    int[] ints = cache.getInts (reader, "n");
+    float[] floats = cache.getFloats (reader, "n");
+    String[] strings = cache.getStrings (reader, "s");
+    FieldCache.StringIndex index = cache.getStringIndex (reader, "s");
+    assertEquals (30, ints.length);
+    assertEquals (30, index.order.length);
+    for (int i = 0; i < 30; i++) {
+      assertEquals (i, ints[i]);
+      assertEquals (i, floats[i], 0.0f);
+      String expected = i % 3 == 0 ? null : word (i);
+      assertEquals (expected, strings[i]);
+      assertEquals (expected, index.lookup[index.order[i]]);
+    }
+    assertNull (index.lookup[0]);
+    for (int i = 2; i < index.lookup.length; i++)
+      assertTrue (index.lookup[i-1] == null
+                  || index.lookup[i-1].compareTo (index.lookup[i]) < 0);
+
+    assertSame (ints, cache.getInts (reader, "n"));
+    assertSame (ints, cache.getAuto (reader, "n"));
+    assertSame (index, cache.getAuto (reader, "s"));
+    reader.close();
+  }
+
+  public void testPackedStringIndex() throws Exception {
+    IndexReader single = segment (0, 40);
+    IndexReader multi = new MultiReader (new IndexReader[] {
+      segment (0, 10), segment (10, 25), segment (35, 5) });
+    IndexReader[] readers = new IndexReader[] { single, multi };
+    for (int r = 0; r < readers.length; r++) {
+      FieldCache.StringIndex index = cache.getStringIndex (readers[r], "s");
+      FieldCache.PackedStringIndex packed = cache.getPackedStringIndex (readers[r], "s");
+      assertEquals (index.lookup.length, packed.numOrds());
+      for (int ord = 0; ord < index.lookup.length; ord++)
+        assertEquals (index.lookup[ord], packed.lookup (ord));
+      for (int doc = 0; doc < 40; doc++)
+        assertEquals (index.order[doc], packed.getOrd (doc));
+      assertTrue (packed.sizeInBytes() < 4 * 40);
+    }
+  }
+
+  public void testSegmentsReused() throws Exception {
+    IndexReader a = segment (0, 10);
+    IndexReader b = segment (10, 10);
+    IndexReader c = segment (20, 10);
+    CountingComparator comparator = new CountingComparator();
+
+    Comparable[] first = cache.getCustom (new MultiReader (new IndexReader[] { a, b }), "n", comparator);
+    assertEquals (20, comparator.count);
+    int[] ints = cache.getInts (a, "n");
+
+    // a new reader sharing segments only loads the new one
+    Comparable[] second = cache.getCustom (new MultiReader (new IndexReader[] { a, b, c }), "n", comparator);
+    assertEquals (30, comparator.count);
+    assertEquals (30, second.length);
+    for (int i = 0; i < 20; i++)
+      assertEquals (first[i], second[i]);
+    assertEquals ("29", second[29]);
+    assertSame (ints, cache.getInts (a, "n"));
+  }
+
+  private static void addDocs (Directory dir, boolean create, int start,
+                               int count) throws IOException {
+    IndexWriter writer = new IndexWriter (dir, new SimpleAnalyzer(), create);
+    for (int i = start; i < start + count; i++) {
+      Document doc = new Document();
+      doc.add (Field.Keyword ("n", Integer.toString (i)));
+      writer.addDocument (doc);
+    }
+    writer.close();
+  }
+
+  public void testReopen() throws Exception {
+    Directory dir = new RAMDirectory();
+    addDocs (dir, true, 0, 20);                   // two segments
+    IndexReader first = IndexReader.open (dir);
+    assertEquals (2, first.getSubReaders().length);
+    CountingComparator comparator = new CountingComparator();
+    cache.getCustom (first, "n", comparator);
+    assertEquals (20, comparator.count);
+
+    addDocs (dir, false, 20, 5);
+    IndexReader second = first.reopen();
+    assertEquals (25, second.numDocs());
+    assertSame (first.getSubReaders()[1].getFieldCacheKey(),
+                second.getSubReaders()[1].getFieldCacheKey());
+    Comparable[] values = cache.getCustom (second, "n", comparator);
+    assertEquals (25, comparator.count);          // only the new segment
+    for (int i = 0; i < 25; i++)
+      assertEquals (Integer.toString (i), values[i]);
+
+    // a segment with deletions the new reader lacks is loaded again
+    second.delete (new Term ("n", "3"));
+    IndexReader third = second.reopen();
+    cache.getCustom (third, "n", comparator);
+    assertEquals (35, comparator.count);
+    second.close();                               // commits the deletion
+    IndexReader fourth = third.reopen();
+    assertEquals (24, fourth.numDocs());
+    cache.getCustom (fourth, "n", comparator);
+    assertEquals (35, comparator.count);
+
+    try {
+      new MultiReader (first.getSubReaders()).reopen();
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    first.close();
+    third.close();
+    fourth.close();
+  }
+
+  public void testSegmentWithoutTerms() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter (dir, new SimpleAnalyzer(), true);
+    Document doc = new Document();
+    doc.add (Field.Keyword ("a", "x"));
+    writer.addDocument (doc);
+    writer.close();
+    IndexReader empty = IndexReader.open (dir);
+
+    int[] ints = cache.getInts (new MultiReader (new IndexReader[] { empty, segment (5, 3) }), "n");
+    assertEquals (4, ints.length);
+    assertEquals (0, ints[0]);
+    assertEquals (7, ints[3]);
+
+    try {
+      cache.getInts (new MultiReader (new IndexReader[] { empty }), "n");
+      fail ("expected no terms in field");
+    } catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  public void testConcurrentLoadOnce() throws Exception {
+    final IndexReader reader = new MultiReader (new IndexReader[] {
+      segment (0, 50), segment (50, 50) });
+    final CountingComparator comparator = new CountingComparator();
+    final Comparable[][] results = new Comparable[8][];
+    final Throwable[] errors = new Throwable[1];
+    Thread[] threads = new Thread[results.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int n = i;
+      threads[i] = new Thread() {
+          public void run() {
+            try {
+              results[n] = cache.getCustom (reader, "n", comparator);
+            } catch (Throwable t) {
+              errors[0] = t;
+            }
+          }
+        };
+    }
+    for (int i = 0; i < threads.length; i++)
+      threads[i].start();
+    for (int i = 0; i < threads.length; i++)
+      threads[i].join();
+
+    assertNull (errors[0]);
+    assertEquals (100, comparator.count);
+    for (int i = 1; i < results.length; i++)
+      assertSame (results[0], results[i]);
+  }
+}
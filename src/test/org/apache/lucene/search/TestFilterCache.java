@@ -0,0 +1,118 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+public class TestFilterCache extends TestCase {
+
+  /** Makes a segment of count docs numbered from start. */
+  private IndexReader segment(int start, int count) throws IOException {
+    RAMDirectory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    for (int i = start; i < start + count; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("mod3", Integer.toString(i % 3)));
+      doc.add(Field.Keyword("mod7", Integer.toString(i % 7)));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+    return IndexReader.open(dir);
+  }
+
+  private static BitSet expected(int maxDoc, int mod, int value) {
+    BitSet bits = new BitSet();
+    for (int i = 0; i < maxDoc; i++)
+      if (i % mod == value)
+        bits.set(i);
+    return bits;
+  }
+
+  public void testSharedAcrossFiltersAndReaders() throws Exception {
+    IndexReader a = segment(0, 100);
+    IndexReader b = segment(100, 50);
+    IndexReader c = segment(150, 30);
+    FilterCache cache = new FilterCache(1 << 20);
+
+    Query mod3 = new TermQuery(new Term("mod3", "1"));
+    IndexReader reader = new MultiReader(new IndexReader[] { a, b });
+    Filter filter = new QueryFilter(mod3, cache);
+    assertEquals(expected(150, 3, 1), filter.bits(reader));
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(2, cache.size());
+
+    // an equal filter of another search finds the entries
+    Filter other = new QueryFilter(new TermQuery(new Term("mod3", "1")), cache);
+    assertEquals(other, filter);
+    assertEquals(expected(150, 3, 1), other.bits(reader));
+    assertEquals(2, cache.getHits());
+
+    // a reader sharing segments only loads the new one
+    reader = new MultiReader(new IndexReader[] { a, b, c });
+    IndexSearcher searcher = new IndexSearcher(reader);
+    Hits hits = searcher.search(new TermQuery(new Term("mod7", "0")), other);
+    assertEquals(expected(180, 21, 7).cardinality(), hits.length());
+    assertEquals(4, cache.getHits());
+    assertEquals(3, cache.getMisses());
+    assertEquals(4.0f / 7.0f, cache.getHitRate(), 0.0001f);
+
+    // a wrapped filter is cached under the wrapped one
+    Filter wrapped = new CachingWrapperFilter(new QueryFilter(mod3), cache);
+    assertEquals(expected(180, 3, 1), wrapped.bits(reader));
+    assertEquals(6, cache.size());
+    assertTrue(cache.sizeInBytes() > 0);
+  }
+
+  public void testEviction() throws Exception {
+    IndexReader reader = segment(0, 1000);
+    FilterCache cache = new FilterCache(Long.MAX_VALUE);
+    for (int i = 0; i < 7; i++)
+      new QueryFilter(new TermQuery(new Term("mod7", Integer.toString(i))), cache)
+        .getDocIdSet(reader);
+    assertEquals(7, cache.size());
+    long perEntry = cache.sizeInBytes() / 7;
+
+    cache.setMaxBytes(perEntry * 3 + perEntry / 2);
+    assertEquals(3, cache.size());
+    assertEquals(4, cache.getEvictions());
+    assertTrue(cache.sizeInBytes() <= cache.getMaxBytes());
+
+    // the most recently used entries are kept
+    new QueryFilter(new TermQuery(new Term("mod7", "6")), cache).getDocIdSet(reader);
+    assertEquals(1, cache.getHits());
+    new QueryFilter(new TermQuery(new Term("mod7", "0")), cache).getDocIdSet(reader);
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.size());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.sizeInBytes());
+  }
+}
@@ -0,0 +1,128 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Tests that filtered searches only score the documents the filter
+ * permits.
+ */
+public class TestFilteredScorer extends TestCase {
+
+  /** Counts the documents scored by another scorer. */
+  static class CountingScorer extends Scorer {
+    final Scorer scorer;
+    int scored;
+    CountingScorer (Scorer scorer) {
+      super (scorer.getSimilarity());
+      this.scorer = scorer;
+    }
+    public boolean next() throws IOException { return scorer.next(); }
+    public boolean skipTo (int target) throws IOException { return scorer.skipTo (target); }
+    public int doc() { return scorer.doc(); }
+    public float score() throws IOException { scored++; return scorer.score(); }
+    public Explanation explain (int doc) throws IOException { return scorer.explain (doc); }
+  }
+
+  /** Permits every 100th document. */
+  static class SparseFilter extends Filter {
+    public BitSet bits (IndexReader reader) {
+      BitSet bits = new BitSet (reader.maxDoc());
+      for (int i = 0; i < reader.maxDoc(); i += 100)
+        bits.set (i);
+      return bits;
+    }
+  }
+
+  private RAMDirectory directory;
+  private IndexSearcher searcher;
+
+  public void setUp() throws Exception {
+    directory = new RAMDirectory();
+    IndexWriter writer = new IndexWriter (directory, new WhitespaceAnalyzer(), true);
+    writer.minMergeDocs = 300;                    // several segments
+    for (int i = 0; i < 1000; i++) {
+      Document doc = new Document();
+      doc.add (Field.Text ("field", i % 2 == 0 ? "all even" : "all odd"));
+      writer.addDocument (doc);
+    }
+    writer.close();
+    searcher = new IndexSearcher (directory);
+  }
+
+  public void tearDown() throws Exception {
+    searcher.close();
+    directory.close();
+  }
+
+  public void testLeapfrog() throws Exception {
+    IndexReader reader = searcher.reader;
+    Weight weight = new TermQuery (new Term ("field", "all")).weight (searcher);
+    CountingScorer counter = new CountingScorer (weight.scorer (reader));
+    Scorer scorer = new FilteredScorer (counter, new SparseFilter().getDocIdSet (reader), 0);
+    int expected = 0;
+    while (scorer.next()) {
+      assertEquals (expected, scorer.doc());
+      scorer.score();
+      expected += 100;
+    }
+    assertEquals (1000, expected);
+    assertEquals (10, counter.scored);
+
+    scorer = new FilteredScorer (weight.scorer (reader), new SparseFilter().getDocIdSet (reader), 0);
+    assertTrue (scorer.skipTo (101));
+    assertEquals (200, scorer.doc());
+    assertFalse (scorer.skipTo (901));
+  }
+
+  public void testSearch() throws Exception {
+    Filter filter = new SparseFilter();
+    Query odd = new TermQuery (new Term ("field", "odd"));
+    assertEquals (0, searcher.search (odd, filter).length());
+
+    Query even = new TermQuery (new Term ("field", "even"));
+    Hits hits = searcher.search (even, filter);
+    assertEquals (10, hits.length());
+    hits = searcher.search (even, filter, new Sort (SortField.FIELD_DOC));
+    assertEquals (10, hits.length());
+    for (int i = 0; i < hits.length(); i++)
+      assertEquals (i * 100, hits.id (i));
+
+    final BitSet collected = new BitSet();
+    searcher.search (new TermQuery (new Term ("field", "all")), filter, new HitCollector() {
+        public void collect (int doc, float score) {
+          collected.set (doc);
+        }
+      });
+    assertEquals (filter.bits (searcher.reader), collected);
+
+    hits = searcher.search (new FilteredQuery (even, filter));
+    assertEquals (10, hits.length());
+    assertEquals (0, searcher.search (new FilteredQuery (odd, filter)).length());
+  }
+}
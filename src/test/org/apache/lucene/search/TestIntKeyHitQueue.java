@@ -0,0 +1,123 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Tests that {@link IntKeyHitQueue} keeps the same hits, in the same order,
+ * as {@link HitQueue} and {@link FieldSortedHitQueue}.
+ */
+public class TestIntKeyHitQueue extends TestCase {
+
+  private Random random = new Random(42);
+
+  /** Checks random scores, with many ties, against a HitQueue. */
+  public void testByScore() {
+    int[] sizes = { 1, 2, 10, 100 };
+    for (int s = 0; s < sizes.length; s++) {
+      int size = sizes[s];
+      HitQueue hq = new HitQueue(size);
+      IntKeyHitQueue keyHq = IntKeyHitQueue.byScore(size);
+      for (int doc = 0; doc < 500; doc++) {
+        float score = random.nextInt(50) / 8.0f;
+        hq.insert(new ScoreDoc(doc, score));
+        keyHq.insert(doc, IntKeyHitQueue.sortableFloat(score), score);
+      }
+      assertEquals(size, keyHq.size());
+      assertTrue(keyHq.isFull());
+      assertEquals(((ScoreDoc) hq.top()).score, keyHq.topScore(), 0.0f);
+      assertSame(hq, keyHq.toScoreDocs(false));
+    }
+  }
+
+  /** Checks a queue that is not filled. */
+  public void testPartial() {
+    HitQueue hq = new HitQueue(10);
+    IntKeyHitQueue keyHq = IntKeyHitQueue.byScore(10);
+    for (int doc = 0; doc < 4; doc++) {
+      hq.insert(new ScoreDoc(doc, 1.0f));
+      keyHq.insert(doc, IntKeyHitQueue.sortableFloat(1.0f), 1.0f);
+    }
+    assertFalse(keyHq.isFull());
+    assertEquals(4, keyHq.size());
+    assertSame(hq, keyHq.toScoreDocs(false));
+    assertEquals(0, IntKeyHitQueue.byScore(0).toScoreDocs(false).length);
+    assertFalse(IntKeyHitQueue.byScore(0).insert(0, 0, 1.0f));
+  }
+
+  /** Checks that merging queues, in any order, keeps the same hits. */
+  public void testInsertAll() {
+    HitQueue hq = new HitQueue(20);
+    IntKeyHitQueue[] parts = new IntKeyHitQueue[3];
+    for (int i = 0; i < parts.length; i++)
+      parts[i] = IntKeyHitQueue.byScore(20);
+    for (int doc = 0; doc < 300; doc++) {
+      float score = random.nextInt(30);
+      hq.insert(new ScoreDoc(doc, score));
+      parts[doc % 3].insert(doc, IntKeyHitQueue.sortableFloat(score), score);
+    }
+    IntKeyHitQueue merged = IntKeyHitQueue.byScore(20);
+    for (int i = parts.length - 1; i >= 0; i--)
+      merged.insertAll(parts[i]);
+    assertSame(hq, merged.toScoreDocs(false));
+  }
+
+  /** Checks that float keys keep the order of the floats. */
+  public void testSortableFloat() {
+    float[] floats = { Float.NEGATIVE_INFINITY, -Float.MAX_VALUE, -1.5f,
+                       -Float.MIN_VALUE, 0.0f, Float.MIN_VALUE, 1.0f,
+                       1.5f, Float.MAX_VALUE, Float.POSITIVE_INFINITY };
+    for (int i = 1; i < floats.length; i++)
+      assertTrue(IntKeyHitQueue.sortableFloat(floats[i-1])
+                 < IntKeyHitQueue.sortableFloat(floats[i]));
+    assertEquals(IntKeyHitQueue.sortableFloat(0.0f),
+                 IntKeyHitQueue.sortableFloat(-0.0f));
+  }
+
+  /** Checks int keys, both ways, with extreme values. */
+  public void testIntKeys() {
+    int[] values = { Integer.MIN_VALUE, -5, 0, 3, 3, 7, Integer.MAX_VALUE };
+    for (int r = 0; r < 2; r++) {
+      boolean reverse = r == 1;
+      IntKeyHitQueue keyHq = new IntKeyHitQueue(4, reverse);
+      for (int doc = 0; doc < 40; doc++)
+        keyHq.insert(doc, values[doc % values.length], 1.0f);
+      ScoreDoc[] hits = keyHq.toScoreDocs(true);
+      assertEquals(4, hits.length);
+      assertTrue(hits[0] instanceof FieldDoc);
+      if (reverse) {                              // MAX_VALUE at 6, 13, 20, 27
+        assertEquals(6, hits[0].doc);
+        assertEquals(27, hits[3].doc);
+      } else {                                    // MIN_VALUE at 0, 7, 14, 21
+        assertEquals(0, hits[0].doc);
+        assertEquals(21, hits[3].doc);
+      }
+    }
+  }
+
+  private void assertSame(HitQueue hq, ScoreDoc[] hits) {
+    assertEquals(hq.size(), hits.length);
+    for (int i = hits.length - 1; i >= 0; i--) {
+      ScoreDoc expected = (ScoreDoc) hq.pop();
+      assertEquals(expected.doc, hits[i].doc);
+      assertEquals(expected.score, hits[i].score, 0.0f);
+    }
+  }
+}
@@ -0,0 +1,205 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Locale;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.util.ThreadPool;
+
+/** Test that sorts collected by {@link KeyedHitCollector}s give the same
+ * results as collecting hits into a {@link FieldSortedHitQueue}.
+ */
+public class TestKeyedHitCollector extends TestCase {
+  private static final String FIELD = "field";
+
+  private IndexSearcher searcher;
+  private Random random = new Random(17);
+
+  public void setUp() throws Exception {
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    writer.mergeFactor = 3;
+    for (int i = 0; i < 400; i++) {
+      StringBuffer text = new StringBuffer();
+      int length = 1 + random.nextInt(10);
+      for (int j = 0; j < length; j++)
+        text.append("t" + random.nextInt(20) + " ");
+      Document doc = new Document();
+      doc.add(Field.Text(FIELD, text.toString()));
+      doc.add(Field.Keyword("int", Integer.toString(random.nextInt(40) - 20)));
+      doc.add(Field.Keyword("float", Float.toString(random.nextInt(40) / 4.0f - 5.0f)));
+      if (i % 7 != 0)                             // some docs have no name
+        doc.add(Field.Keyword("name", "n" + random.nextInt(50)));
+      writer.addDocument(doc);
+    }
+    writer.close();                               // several segments
+    searcher = new IndexSearcher(directory);
+  }
+
+  public void tearDown() throws Exception {
+    searcher.close();
+  }
+
+  private Query randomQuery() {
+    BooleanQuery query = new BooleanQuery();
+    int nrClauses = 1 + random.nextInt(4);
+    for (int i = 0; i < nrClauses; i++) {
+      query.add(new TermQuery(new Term(FIELD, "t" + random.nextInt(22))),
+                i == 0 && random.nextBoolean(), false);
+    }
+    return query;
+  }
+
+  /** Collects the hits of a search into a FieldSortedHitQueue. */
+  private TopFieldDocs searchGeneric(Query query, int nDocs, Sort sort)
+    throws Exception {
+    final FieldSortedHitQueue hq =
+      new FieldSortedHitQueue(searcher.reader, sort.fields, nDocs);
+    final int[] totalHits = new int[1];
+    searcher.search(query, new HitCollector() {
+        public void collect(int doc, float score) {
+          if (score > 0.0f) {
+            totalHits[0]++;
+            hq.insert(new FieldDoc(doc, score));
+          }
+        }
+      });
+    ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
+    for (int i = hq.size()-1; i >= 0; i--)
+      scoreDocs[i] = hq.fillFields((FieldDoc) hq.pop());
+    return new TopFieldDocs(totalHits[0], scoreDocs, hq.getFields());
+  }
+
+  private static void assertSame(TopFieldDocs expected, TopFieldDocs actual) {
+    assertEquals(expected.totalHits, actual.totalHits);
+    assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      FieldDoc e = (FieldDoc) expected.scoreDocs[i];
+      FieldDoc a = (FieldDoc) actual.scoreDocs[i];
+      assertEquals(e.doc, a.doc);
+      assertEquals(e.score, a.score, 0.0f);
+      assertEquals(e.fields.length, a.fields.length);
+      for (int j = 0; j < e.fields.length; j++)
+        assertEquals(e.fields[j], a.fields[j]);
+    }
+  }
+
+  public void testSupports() {
+    SortField[] fields = new SortField[] {
+      new SortField("int", SortField.INT), SortField.FIELD_DOC };
+    assertTrue(KeyedHitCollector.supports(fields, fields));
+    fields = new SortField[] {
+      new SortField("int", SortField.INT), SortField.FIELD_SCORE };
+    assertFalse(KeyedHitCollector.supports(fields, fields));
+    fields = new SortField[] { new SortField("name", Locale.US) };
+    assertFalse(KeyedHitCollector.supports(fields, fields));
+  }
+
+  public void testSegmentValues() throws Exception {
+    FieldCacheImpl cache = (FieldCacheImpl) FieldCache.DEFAULT;
+    Query query = new TermQuery(new Term(FIELD, "t1"));
+    TopFieldDocs ints = searcher.search
+      (query, null, 10, new Sort(new SortField("int", SortField.INT)));
+    TopFieldDocs floats = searcher.search
+      (query, null, 10, new Sort(new SortField("float", SortField.FLOAT, true)));
+    assertTrue(ints.scoreDocs.length > 0);
+    for (int i = 0; i < ints.scoreDocs.length; i++) {
+      FieldDoc doc = (FieldDoc) ints.scoreDocs[i];
+      assertEquals(searcher.doc(doc.doc).get("int"), doc.fields[0].toString());
+      doc = (FieldDoc) floats.scoreDocs[i];
+      assertEquals(Float.parseFloat(searcher.doc(doc.doc).get("float")),
+                   ((Float) doc.fields[0]).floatValue(), 0.0f);
+    }
+    // the values of the whole index are not loaded
+    assertNull(cache.intsCache.readerCache.get(searcher.reader));
+    assertNull(cache.floatsCache.readerCache.get(searcher.reader));
+  }
+
+  public void testSegmentWithoutField() throws Exception {
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < 15; i++) {
+      if (i == 10) {                              // a segment of its own
+        writer.close();
+        writer = new IndexWriter(directory, new WhitespaceAnalyzer(), false);
+      }
+      Document doc = new Document();
+      doc.add(Field.Text(FIELD, "t1"));
+      if (i < 10)
+        doc.add(Field.Keyword("zprice", Integer.toString(i + 1)));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    searcher.close();
+    searcher = new IndexSearcher(directory);
+
+    Query query = new TermQuery(new Term(FIELD, "t1"));
+    Sort[] sorts = new Sort[] {
+      new Sort(new SortField("zprice", SortField.INT)),
+      new Sort(new SortField("zprice", SortField.FLOAT, true)) };
+    for (int i = 0; i < sorts.length; i++) {
+      TopFieldDocs docs = searcher.search(query, null, 20, sorts[i]);
+      assertEquals(15, docs.totalHits);
+      assertSame(searchGeneric(query, 20, sorts[i]), docs);
+    }
+  }
+
+  public void testSorted() throws Exception {
+    Sort[] sorts = new Sort[] {
+      new Sort(new SortField("int", SortField.INT)),
+      new Sort(new SortField("int", SortField.INT, true)),
+      new Sort(new SortField("float", SortField.FLOAT)),
+      new Sort(new SortField("float", SortField.FLOAT, true)),
+      new Sort(new SortField("name", SortField.STRING)),
+      new Sort(new SortField("name", SortField.STRING, true)),
+      new Sort("int"),
+      new Sort(new SortField[] { new SortField("name", SortField.STRING),
+                                 SortField.FIELD_DOC }),
+      new Sort(new SortField("name", Locale.US)),
+      new Sort(new SortField(null, SortField.SCORE, true)),
+      new Sort(new SortField(null, SortField.DOC, true)),
+      Sort.RELEVANCE,
+      Sort.INDEXORDER
+    };
+    ThreadPool pool = new ThreadPool("test", 3);
+    try {
+      for (int q = 0; q < 130; q++) {
+        Query query = randomQuery();
+        Sort sort = sorts[q % sorts.length];
+        int nDocs = 1 + random.nextInt(30);
+        TopFieldDocs expected = searchGeneric(query, nDocs, sort);
+        searcher.setThreadPool(null);
+        assertSame(expected, searcher.search(query, null, nDocs, sort));
+        searcher.setThreadPool(pool);
+        assertSame(expected, searcher.search(query, null, nDocs, sort));
+      }
+    } finally {
+      pool.close();
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+
+/** Test that pruning with {@link MaxScoreScorer} does not change the top
+ * documents of disjunctive queries.
+ */
+public class TestMaxScorePruning extends TestCase {
+  private static final String FIELD = "field";
+  private static final int NUM_TERMS = 50;
+
+  private RAMDirectory directory;
+  private Random random = new Random(1971);
+
+  public void setUp() throws Exception {
+    directory = new RAMDirectory();
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    writer.mergeFactor = 5;
+    for (int i = 0; i < 3000; i++) {
+      StringBuffer text = new StringBuffer();
+      int length = 1 + random.nextInt(40);
+      for (int j = 0; j < length; j++) {
+        // skewed, so that low numbered terms are frequent
+        int t = (int) (NUM_TERMS * random.nextFloat() * random.nextFloat());
+        text.append("t" + t + " ");
+      }
+      Document doc = new Document();
+      doc.add(Field.Text(FIELD, text.toString()));
+      writer.addDocument(doc);
+    }
+    writer.close();
+  }
+
+  public void testMaxFreq() throws Exception {
+    IndexReader reader = IndexReader.open(directory);
+    for (int t = 0; t < NUM_TERMS; t++) {
+      Term term = new Term(FIELD, "t" + t);
+      int maxFreq = reader.maxFreq(term);
+      assertTrue(maxFreq >= 0);
+      org.apache.lucene.index.TermDocs termDocs = reader.termDocs(term);
+      int expected = 0;
+      while (termDocs.next())
+        expected = Math.max(expected, termDocs.freq());
+      termDocs.close();
+      assertEquals(expected, maxFreq);
+    }
+    assertEquals(0, reader.maxFreq(new Term(FIELD, "none")));
+
+    IndexReader[] segments = reader.getSubReaders();
+    for (int i = 0; i < segments.length; i++) {
+      for (int t = 0; t < NUM_TERMS; t++) {
+        Term term = new Term(FIELD, "t" + t);
+        org.apache.lucene.index.TermDocs termDocs = segments[i].termDocs(term);
+        assertEquals(segments[i].maxFreq(term),
+                     segments[i].maxFreq(term, termDocs));
+        termDocs.close();
+      }
+    }
+    reader.close();
+  }
+
+  public void testTopDocs() throws Exception {
+    checkTopDocs();
+  }
+
+  public void testTopDocsOptimized() throws Exception {
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), false);
+    writer.optimize();
+    writer.close();
+    checkTopDocs();
+  }
+
+  public void testSetNorm() throws Exception {
+    IndexReader reader = IndexReader.open(directory);
+    reader.setNorm(7, FIELD, 10.0f);              // larger than any norm
+    reader.close();
+    checkTopDocs();
+  }
+
+  private void checkTopDocs() throws Exception {
+    IndexSearcher searcher = new IndexSearcher(directory);
+    for (int q = 0; q < 50; q++) {
+      BooleanQuery query = new BooleanQuery();
+      int nrClauses = 2 + random.nextInt(10);
+      for (int i = 0; i < nrClauses; i++) {
+        TermQuery clause =
+          new TermQuery(new Term(FIELD, "t" + random.nextInt(NUM_TERMS)));
+        clause.setBoost(1 + random.nextInt(3));
+        query.add(clause, false, false);
+      }
+      if (q % 5 == 0) {                           // nested
+        BooleanQuery nested = new BooleanQuery();
+        nested.add(new TermQuery(new Term(FIELD, "t" + q)), false, false);
+        nested.add(new TermQuery(new Term(FIELD, "t" + (q+1))), false, false);
+        query.add(nested, false, false);
+      }
+      int nDocs = 1 + random.nextInt(20);
+
+      searcher.setMaxScorePruning(false);
+      TopDocs expected = searcher.search(query, null, nDocs);
+      searcher.setMaxScorePruning(true);
+      TopDocs actual = searcher.search(query, null, nDocs);
+
+      assertEquals(query.toString(), expected.scoreDocs.length,
+                   actual.scoreDocs.length);
+      assertTrue(actual.totalHits <= expected.totalHits);
+      for (int i = 0; i < expected.scoreDocs.length; i++) {
+        assertEquals(query.toString(), expected.scoreDocs[i].score,
+                     actual.scoreDocs[i].score, 1.0e-5f);
+      }
+    }
+    searcher.close();
+  }
+
+  public void testSkipTo() throws Exception {
+    IndexSearcher searcher = new IndexSearcher(directory);
+    searcher.setMaxScorePruning(true);
+    BooleanQuery query = new BooleanQuery();
+    query.add(new TermQuery(new Term(FIELD, "t1")), false, false);
+    query.add(new TermQuery(new Term(FIELD, "t30")), false, false);
+    query.add(new TermQuery(new Term(FIELD, "t45")), false, false);
+
+    Scorer pruned = query.weight(searcher).scorer(searcher.reader);
+    assertTrue(pruned instanceof MaxScoreScorer);
+    searcher.setMaxScorePruning(false);
+    Scorer plain = query.weight(searcher).scorer(searcher.reader);
+
+    for (int target = 0; plain.skipTo(target); target = plain.doc() + 7) {
+      assertTrue(pruned.skipTo(target));
+      assertEquals(plain.doc(), pruned.doc());
+      assertEquals(plain.score(), pruned.score(), 1.0e-5f);
+    }
+    assertFalse(pruned.skipTo(plain.doc() + 7));
+    searcher.close();
+  }
+
+  public void testExplain() throws Exception {
+    IndexSearcher searcher = new IndexSearcher(directory);
+    BooleanQuery query = new BooleanQuery();
+    query.add(new TermQuery(new Term(FIELD, "t1")), false, false);
+    query.add(new TermQuery(new Term(FIELD, "t30")), false, false);
+    query.add(new TermQuery(new Term(FIELD, "t45")), false, false);
+
+    for (int doc = 0; doc < 100; doc += 7) {
+      searcher.setMaxScorePruning(true);
+      Scorer pruned = query.weight(searcher).scorer(searcher.reader);
+      assertTrue(pruned instanceof MaxScoreScorer);
+      searcher.setMaxScorePruning(false);
+      Scorer plain = query.weight(searcher).scorer(searcher.reader);
+      assertEquals(plain.explain(doc).getValue(),
+                   pruned.explain(doc).getValue(), 1.0e-6f);
+    }
+    searcher.close();
+  }
+}
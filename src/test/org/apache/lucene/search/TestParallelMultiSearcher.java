@@ -18,6 +18,15 @@ package org.apache.lucene.search;
  
 import java.io.IOException;
 
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.ThreadPool;
+
 /**
  * Unit tests for the ParallelMultiSearcher 
  */
@@ -32,4 +41,72 @@ public class TestParallelMultiSearcher extends TestMultiSearcher {
 		return new ParallelMultiSearcher(searchers);
 	}
 
+	private static class SlowSearcher extends IndexSearcher {
+		SlowSearcher(Directory directory) throws IOException {
+			super(directory);
+		}
+
+		public TopDocs search(Query query, Filter filter, int nDocs)
+			throws IOException {
+			try {
+				Thread.sleep(500);
+			} catch (InterruptedException e) {
+			}
+			return super.search(query, filter, nDocs);
+		}
+	}
+
+	public void testTimeout() throws Exception {
+		Directory directory = new RAMDirectory();
+		IndexWriter writer =
+			new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+		Document doc = new Document();
+		doc.add(Field.Keyword("f", "x"));
+		writer.addDocument(doc);
+		writer.close();
+
+		Query query = new TermQuery(new Term("f", "x"));
+		ThreadPool pool = new ThreadPool("test", 2);
+		ParallelMultiSearcher searcher = new ParallelMultiSearcher(
+			new Searchable[] { new IndexSearcher(directory),
+					   new SlowSearcher(directory) }, pool);
+		assertEquals(2, searcher.search(query).length());
+
+		searcher.setTimeout(50);
+		try {
+			searcher.search(query);
+			fail();
+		} catch (SearchTimeoutException e) {
+			// expected
+		}
+		searcher.close();
+		pool.close();
+	}
+
+	/** The time limit holds when the pool has no room for the searches. */
+	public void testTimeoutWithBusyPool() throws Exception {
+		Directory directory = new RAMDirectory();
+		IndexWriter writer =
+			new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+		Document doc = new Document();
+		doc.add(Field.Keyword("f", "x"));
+		writer.addDocument(doc);
+		writer.close();
+
+		ThreadPool pool = new ThreadPool("test", 1, 0);
+		ParallelMultiSearcher searcher = new ParallelMultiSearcher(
+			new Searchable[] { new SlowSearcher(directory),
+					   new SlowSearcher(directory) }, pool);
+		searcher.setTimeout(50);
+		long start = System.currentTimeMillis();
+		try {
+			searcher.search(new TermQuery(new Term("f", "x")));
+			fail();
+		} catch (SearchTimeoutException e) {
+			// expected
+		}
+		assertTrue(System.currentTimeMillis() - start < 400);
+		searcher.close();
+		pool.close();
+	}
 }
@@ -0,0 +1,116 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.util.ThreadPool;
+
+/** Test that searching the segments of an index in parallel gives the same
+ * results as searching them serially.
+ */
+public class TestParallelSegmentSearch extends TestCase {
+  private static final String FIELD = "field";
+
+  private IndexSearcher searcher;
+  private ThreadPool pool;
+  private Random random = new Random(42);
+
+  public void setUp() throws Exception {
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    writer.mergeFactor = 3;
+    for (int i = 0; i < 500; i++) {
+      StringBuffer text = new StringBuffer();
+      int length = 1 + random.nextInt(10);
+      for (int j = 0; j < length; j++)
+        text.append("t" + random.nextInt(20) + " ");
+      Document doc = new Document();
+      doc.add(Field.Text(FIELD, text.toString()));
+      doc.add(Field.Keyword("group", Integer.toString(random.nextInt(5))));
+      doc.add(Field.Keyword("name", "n" + random.nextInt(50)));
+      writer.addDocument(doc);
+    }
+    writer.close();                               // several segments
+    searcher = new IndexSearcher(directory);
+    pool = new ThreadPool("test", 3);
+  }
+
+  public void tearDown() throws Exception {
+    searcher.close();
+    pool.close();
+  }
+
+  private Query randomQuery() {
+    BooleanQuery query = new BooleanQuery();
+    int nrClauses = 1 + random.nextInt(4);
+    for (int i = 0; i < nrClauses; i++) {
+      query.add(new TermQuery(new Term(FIELD, "t" + random.nextInt(22))),
+                i == 0 && random.nextBoolean(), false);
+    }
+    return query;
+  }
+
+  private static void assertSame(TopDocs expected, TopDocs actual) {
+    assertEquals(expected.totalHits, actual.totalHits);
+    assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+      assertEquals(expected.scoreDocs[i].score, actual.scoreDocs[i].score,
+                   0.0f);
+    }
+  }
+
+  public void testTopDocs() throws Exception {
+    for (int q = 0; q < 50; q++) {
+      Query query = randomQuery();
+      int nDocs = 1 + random.nextInt(30);
+      searcher.setThreadPool(null);
+      TopDocs expected = searcher.search(query, null, nDocs);
+      searcher.setThreadPool(pool);
+      assertSame(expected, searcher.search(query, null, nDocs));
+    }
+  }
+
+  public void testSorted() throws Exception {
+    Sort[] sorts = new Sort[] {
+      new Sort(new SortField[] { new SortField("group", SortField.INT),
+                                 SortField.FIELD_SCORE }),
+      new Sort(new SortField("name", SortField.STRING, true)),
+      new Sort("group"),
+      Sort.INDEXORDER
+    };
+    for (int q = 0; q < 50; q++) {
+      Query query = randomQuery();
+      Sort sort = sorts[q % sorts.length];
+      int nDocs = 1 + random.nextInt(30);
+      searcher.setThreadPool(null);
+      TopFieldDocs expected = searcher.search(query, null, nDocs, sort);
+      searcher.setThreadPool(pool);
+      assertSame(expected, searcher.search(query, null, nDocs, sort));
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.PostingsCounter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermPositions;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Tests that profiled searches find the same documents as unprofiled ones,
+ * and count the calls made to the weights and scorers of each query and the
+ * bytes of postings read.
+ */
+public class TestQueryProfile extends TestCase {
+  private static final int NUM_DOCS = 500;
+
+  private IndexSearcher searcher;
+  private int segments;
+
+  public void setUp() throws Exception {
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    writer.mergeFactor = 3;
+    for (int i = 0; i < NUM_DOCS; i++) {
+      Document doc = new Document();
+      doc.add(Field.Text("body", "all " + (i % 2 == 0 ? "even" : "odd")
+                         + " m" + (i % 7) + " w" + i));
+      doc.add(Field.Keyword("n", Integer.toString(i % 13)));
+      writer.addDocument(doc);
+    }
+    writer.close();                               // several segments
+    searcher = new IndexSearcher(directory);
+    segments = searcher.reader.getSubReaders().length;
+  }
+
+  public void tearDown() throws Exception {
+    searcher.close();
+  }
+
+  private static Query term(String text) {
+    return new TermQuery(new Term("body", text));
+  }
+
+  private static void assertSame(TopDocs expected, TopDocs actual) {
+    assertEquals(expected.totalHits, actual.totalHits);
+    assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+      assertEquals(expected.scoreDocs[i].score, actual.scoreDocs[i].score,
+                   0.0f);
+    }
+  }
+
+  public void testSameResults() throws Exception {
+    BooleanQuery bool = new BooleanQuery();
+    bool.add(term("even"), true, false);
+    bool.add(term("m3"), false, false);
+    bool.add(term("m4"), false, true);
+    Query[] queries = {
+      term("odd"), bool, new PrefixQuery(new Term("body", "w1")),
+      new FilteredQuery(term("all"), new QueryFilter(term("m2")))
+    };
+    Sort sort = new Sort(new SortField[] {
+      new SortField("n", SortField.INT), SortField.FIELD_DOC });
+    for (int i = 0; i < queries.length; i++) {
+      assertSame(searcher.search(queries[i], null, 10),
+                 searcher.profile(queries[i], null, 10).getTopDocs());
+      assertSame(searcher.search(queries[i], null, 10, Sort.RELEVANCE),
+                 searcher.profile(queries[i], null, 10, Sort.RELEVANCE)
+                 .getTopDocs());
+      assertSame(searcher.search(queries[i], null, 10, sort),
+                 searcher.profile(queries[i], null, 10, sort).getTopDocs());
+    }
+  }
+
+  public void testMaxScorePruning() throws Exception {
+    BooleanQuery query = new BooleanQuery();
+    query.add(term("m1"), false, false);
+    query.add(term("m5"), false, false);
+    query.add(term("w42"), false, false);
+    searcher.setMaxScorePruning(true);
+    assertSame(searcher.search(query, null, 5),
+               searcher.profile(query, null, 5).getTopDocs());
+    assertTrue(searcher.profile(query, null, 5).getTopDocs().totalHits
+               < NUM_DOCS * 2 / 7);               // documents were skipped
+  }
+
+  public void testTree() throws Exception {
+    BooleanQuery query = new BooleanQuery();
+    query.add(term("even"), true, false);
+    query.add(term("m3"), true, false);
+    SearchProfile profile = searcher.profile(query, null, 10);
+    int hits = profile.getTopDocs().totalHits;
+    assertEquals(35, hits);
+
+    QueryProfile root = profile.getQueryProfile();
+    assertEquals(query, root.getQuery());
+    assertEquals(1, root.getCount(QueryProfile.CREATE_WEIGHT));
+    assertEquals(1, root.getCount(QueryProfile.SUM_OF_SQUARED_WEIGHTS));
+    assertEquals(1, root.getCount(QueryProfile.NORMALIZE));
+    assertEquals(segments, root.getCount(QueryProfile.SCORER));
+    assertEquals(hits + segments, root.getCount(QueryProfile.NEXT));
+    assertEquals(hits, root.getCount(QueryProfile.SCORE));
+    assertEquals(0, root.getCount(QueryProfile.SKIP_TO));
+
+    QueryProfile[] children = root.getChildren();
+    assertEquals(2, children.length);
+    assertEquals(term("even"), children[0].getQuery());
+    assertEquals(term("m3"), children[1].getQuery());
+    for (int i = 0; i < children.length; i++) {
+      assertEquals(0, children[i].getChildren().length);
+      assertEquals(1, children[i].getCount(QueryProfile.CREATE_WEIGHT));
+      assertEquals(segments, children[i].getCount(QueryProfile.SCORER));
+      assertEquals(hits, children[i].getCount(QueryProfile.SCORE));
+    }
+    // the conjunction leapfrogs its clauses
+    assertTrue(children[0].getCount(QueryProfile.SKIP_TO)
+               + children[1].getCount(QueryProfile.SKIP_TO) > 0);
+
+    String string = profile.toString();
+    assertTrue(string, string.indexOf("+body:even +body:m3 [") > 0);
+    assertTrue(string, string.indexOf("\n  body:m3 [createWeight=1/") > 0);
+  }
+
+  public void testRewrite() throws Exception {
+    SearchProfile profile =
+      searcher.profile(new PrefixQuery(new Term("body", "w1")), null, 10);
+    assertEquals(111, profile.getTopDocs().totalHits);
+    QueryProfile root = profile.getQueryProfile();
+    assertTrue(root.getQuery() instanceof BooleanQuery);
+    assertEquals(111, root.getChildren().length);
+    assertTrue(profile.getRewriteTime() >= 0);
+  }
+
+  public void testPostingsBytesRead() throws Exception {
+    SearchProfile all = searcher.profile(term("all"), null, 10);
+    assertTrue(all.getPostingsBytesRead() >= NUM_DOCS);
+
+    SearchProfile rare = searcher.profile(term("w42"), null, 10);
+    assertTrue(rare.getPostingsBytesRead() > 0);
+    assertTrue(rare.getPostingsBytesRead() < all.getPostingsBytesRead());
+
+    SearchProfile none = searcher.profile(term("none"), null, 10);
+    assertEquals(0, none.getPostingsBytesRead());
+
+    // positions are counted too, once read
+    final Term term = new Term("body", "all");
+    long docs = bytesRead(term, false);
+    assertEquals(all.getPostingsBytesRead(), docs);
+    assertTrue(bytesRead(term, true) > docs);
+
+    // other threads are not counted
+    final int[] count = new int[1];
+    PostingsCounter counter = new PostingsCounter();
+    counter.install();
+    try {
+      Thread thread = new Thread() {
+          public void run() {
+            try {
+              TermDocs docs = searcher.reader.termDocs(term);
+              while (docs.next())
+                count[0]++;
+              docs.close();
+            } catch (IOException e) {
+              throw new RuntimeException(e.toString());
+            }
+          }
+        };
+      thread.start();
+      thread.join();
+    } finally {
+      counter.uninstall();
+    }
+    assertEquals(NUM_DOCS, count[0]);
+    assertEquals(0, counter.getBytesRead());
+  }
+
+  /** Returns the postings bytes read enumerating all the documents of
+   * <code>term</code>, and their positions if <code>positions</code>. */
+  private long bytesRead(Term term, boolean positions) throws Exception {
+    PostingsCounter counter = new PostingsCounter();
+    counter.install();
+    try {
+      TermDocs docs = positions
+        ? searcher.reader.termPositions(term) : searcher.reader.termDocs(term);
+      while (docs.next()) {
+        if (positions) {
+          for (int i = 0; i < docs.freq(); i++)
+            ((TermPositions) docs).nextPosition();
+        }
+      }
+    } finally {
+      counter.uninstall();
+    }
+    return counter.getBytesRead();
+  }
+}
@@ -0,0 +1,154 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+
+public class TestQueryResultCache extends TestCase {
+  private RAMDirectory directory;
+  private IndexSearcher searcher;
+  private QueryResultCache cache;
+
+  public void setUp() throws Exception {
+    directory = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < 100; i++) {
+      Document doc = new Document();
+      doc.add(Field.Text("body", i % 2 == 0 ? "even number" : "odd number"));
+      doc.add(Field.Keyword("id", Integer.toString(1000 + i)));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    searcher = new IndexSearcher(directory);
+    cache = new QueryResultCache(100);
+    searcher.setResultCache(cache);
+  }
+
+  public void tearDown() throws Exception {
+    searcher.close();
+  }
+
+  private static void assertSameDocs(TopDocs expected, TopDocs actual) {
+    assertEquals(expected.totalHits, actual.totalHits);
+    assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+      assertEquals(expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0.0f);
+    }
+  }
+
+  public void testHitsAndWindows() throws Exception {
+    Query query = new TermQuery(new Term("body", "even"));
+    TopDocs uncached = searcher.searchTop(query, null, 15);
+
+    assertSameDocs(uncached, searcher.search(query, null, 15));
+    assertEquals(1, cache.getMisses());
+    TopDocs second = searcher.search(new TermQuery(new Term("body", "even")), null, 15);
+    assertSameDocs(uncached, second);
+    assertEquals(1, cache.getHits());
+
+    // the next page is within the same window
+    assertSameDocs(searcher.searchTop(query, null, 20), searcher.search(query, null, 20));
+    assertEquals(2, cache.getHits());
+    searcher.search(query, null, 21);
+    assertEquals(2, cache.getMisses());
+
+    // callers may change the documents they get
+    second.scoreDocs[0].doc = -1;
+    assertSameDocs(uncached, searcher.search(query, null, 15));
+
+    // sorts and filters are part of the key
+    Sort sort = new Sort(new SortField("id", SortField.STRING, true));
+    TopFieldDocs sorted = searcher.search(query, null, 5, sort);
+    assertEquals(1098, Integer.parseInt(searcher.doc(sorted.scoreDocs[0].doc).get("id")));
+    searcher.search(query, null, 5, new Sort(new SortField("id", SortField.STRING, true)));
+    assertEquals(4, cache.getHits());
+    Filter filter = new QueryFilter(new TermQuery(new Term("id", "1004")));
+    assertEquals(1, searcher.search(query, filter, 5).totalHits);
+    assertEquals(1, searcher.search(query, new QueryFilter(new TermQuery(new Term("id", "1004"))), 5).totalHits);
+    assertEquals(5, cache.getHits());
+  }
+
+  public void testInvalidation() throws Exception {
+    Query query = new TermQuery(new Term("body", "odd"));
+    assertEquals(50, searcher.search(query).length());
+    assertEquals(1, cache.size());
+
+    searcher.reader.delete(new Term("id", "1001"));
+    assertEquals(49, searcher.search(query).length());
+    assertEquals(1, cache.getInvalidations());
+    assertEquals(0, cache.getHits());
+  }
+
+  public void testEvictionAndWarming() throws Exception {
+    cache.setMaxEntries(2);
+    for (int i = 0; i < 5; i++)
+      searcher.search(new TermQuery(new Term("id", Integer.toString(1000 + i))), null, 10);
+    assertEquals(2, cache.size());
+    assertEquals(3, cache.getEvictions());
+
+    IndexSearcher newSearcher = new IndexSearcher(IndexReader.open(directory));
+    newSearcher.setResultCache(cache);
+    assertEquals(2, cache.warm(newSearcher, 10));
+    assertEquals(0, cache.getInvalidations());
+    assertEquals(5, cache.getEvictions());        // those of the old reader
+    assertEquals(2, cache.size());
+    long hits = cache.getHits();
+    newSearcher.search(new TermQuery(new Term("id", "1004")), null, 10);
+    newSearcher.search(new TermQuery(new Term("id", "1003")), null, 10);
+    assertEquals(hits + 2, cache.getHits());
+    newSearcher.close();
+  }
+
+  public void testWarmingWhileSearching() throws Exception {
+    Query odd = new TermQuery(new Term("body", "odd"));
+    Query even = new TermQuery(new Term("body", "even"));
+    searcher.search(odd, null, 10);
+    searcher.search(even, null, 10);
+
+    IndexSearcher newSearcher = new IndexSearcher(IndexReader.open(directory));
+    newSearcher.setResultCache(cache);
+    assertEquals(1, cache.warm(newSearcher, 1));  // the most recent, even
+    searcher.search(odd, null, 10);               // the old searcher goes on
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.warm(newSearcher, 10)); // even is warmed already
+    assertEquals(4, cache.size());
+
+    long hits = cache.getHits();
+    searcher.search(even, null, 10);
+    newSearcher.search(odd, null, 10);
+    newSearcher.search(even, null, 10);
+    assertEquals(hits + 3, cache.getHits());
+
+    // deletions only drop the results of the modified reader
+    newSearcher.reader.delete(new Term("id", "1001"));
+    assertEquals(49, newSearcher.searchTop(odd, null, 10).totalHits);
+    assertEquals(49, newSearcher.search(odd, null, 10).totalHits);
+    assertEquals(2, cache.getInvalidations());
+    assertEquals(3, cache.size());
+    assertEquals(50, searcher.search(odd, null, 10).totalHits);
+    assertEquals(hits + 4, cache.getHits());
+    newSearcher.close();
+  }
+}
@@ -0,0 +1,148 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Tests that searches with a time limit stop enumerating terms and
+ * collecting hits once it has passed, and flag their results as partial.
+ */
+public class TestSearchTimeout extends TestCase {
+  private static final int NUM_DOCS = 2000;
+
+  private IndexSearcher searcher;
+
+  public void setUp() throws Exception {
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer =
+      new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < NUM_DOCS; i++) {
+      Document doc = new Document();
+      doc.add(Field.Text("body", "all w" + i));
+      doc.add(Field.Keyword("n", Integer.toString(i)));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+    searcher = new IndexSearcher(directory);
+  }
+
+  public void tearDown() throws Exception {
+    searcher.close();
+  }
+
+  /** A filter of all documents which takes longer than any time limit
+   * used here, so that the limit has passed when scoring starts. */
+  private static class SlowFilter extends Filter {
+    public BitSet bits(IndexReader reader) {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+      }
+      BitSet bits = new BitSet(reader.maxDoc());
+      bits.set(0, reader.maxDoc());
+      return bits;
+    }
+  }
+
+  public void testCheckInterval() {
+    SearchDeadline deadline = new SearchDeadline(0);
+    for (int i = 1; i < SearchDeadline.CHECK_INTERVAL; i++)
+      assertFalse(deadline.check());              // clock not read yet
+    assertFalse(deadline.isExpired());
+    assertTrue(deadline.check());
+    assertTrue(deadline.isExpired());
+    assertTrue(deadline.check());
+
+    deadline = new SearchDeadline(60000);
+    for (int i = 0; i < 10 * SearchDeadline.CHECK_INTERVAL; i++)
+      assertFalse(deadline.check());
+  }
+
+  public void testTermEnum() throws Exception {
+    SearchDeadline deadline = new SearchDeadline(0);
+    TermEnum terms = deadline.reader(searcher.reader).terms(new Term("body", "w"));
+    int count = 0;
+    while (terms.next())
+      count++;
+    terms.close();
+    assertEquals(SearchDeadline.CHECK_INTERVAL - 1, count);
+    assertTrue(deadline.isExpired());
+  }
+
+  public void testTopDocs() throws Exception {
+    Query query = new TermQuery(new Term("body", "all"));
+    TopDocs all = searcher.search(query, new SlowFilter(), 10);
+    assertFalse(all.partial);
+    assertEquals(NUM_DOCS, all.totalHits);
+
+    searcher.setTimeout(1);
+    TopDocs some = searcher.search(query, new SlowFilter(), 10);
+    assertTrue(some.partial);
+    assertEquals(SearchDeadline.CHECK_INTERVAL - 1, some.totalHits);
+    assertEquals(10, some.scoreDocs.length);
+
+    Sort sort = new Sort(new SortField("n", SortField.INT, true));
+    TopFieldDocs sorted = searcher.search(query, new SlowFilter(), 10, sort);
+    assertTrue(sorted.partial);
+    assertEquals(SearchDeadline.CHECK_INTERVAL - 1, sorted.totalHits);
+    assertEquals("254", ((FieldDoc) sorted.scoreDocs[0]).fields[0].toString());
+
+    searcher.setTimeout(60000);                   // well within the limit
+    some = searcher.search(query, new SlowFilter(), 10);
+    assertFalse(some.partial);
+    assertEquals(NUM_DOCS, some.totalHits);
+  }
+
+  public void testHitCollector() throws Exception {
+    searcher.setTimeout(1);
+    final int[] count = new int[1];
+    try {
+      searcher.search(new TermQuery(new Term("body", "all")), new HitCollector() {
+          public void collect(int doc, float score) {
+            if (count[0]++ == 0) {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+              }
+            }
+          }
+        });
+      fail();
+    } catch (SearchTimeoutException e) {
+    }
+    assertEquals(SearchDeadline.CHECK_INTERVAL - 1, count[0]);
+  }
+
+  public void testRewrite() throws Exception {
+    searcher.setTimeout(60000);
+    Hits hits = searcher.search(new WildcardQuery(new Term("body", "w19*")));
+    assertEquals(111, hits.length());
+  }
+}
@@ -0,0 +1,150 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+
+public class TestLockFactory extends TestCase {
+
+  private File lockDir;
+
+  public void setUp() {
+    lockDir = new File(System.getProperty("tempDir"), "testLockFactory");
+  }
+
+  public void testSingleInstance() throws IOException {
+    checkLocking(new SingleInstanceLockFactory());
+  }
+
+  public void testNative() throws IOException {
+    checkLocking(new NativeFSLockFactory(lockDir));
+  }
+
+  public void testSimple() throws IOException {
+    LockFactory factory = new SimpleFSLockFactory(lockDir);
+    factory.setLockPrefix("test");
+    Lock lock = factory.makeLock("a.lock");
+    assertTrue(lock.obtain());
+    assertTrue(new File(lockDir, "test-a.lock").exists());
+    assertFalse(factory.makeLock("a.lock").obtain());
+    lock.release();
+    assertFalse(lock.isLocked());
+  }
+
+  private void checkLocking(LockFactory factory) throws IOException {
+    Lock lock = factory.makeLock("a.lock");
+    Lock other = factory.makeLock("a.lock");
+    assertFalse(lock.isLocked());
+    assertTrue(lock.obtain());
+    assertTrue(other.isLocked());
+    assertFalse(other.obtain());
+    assertTrue(factory.makeLock("b.lock").obtain());
+
+    try {
+      other.obtain(50);
+      fail("lock obtain should time out");
+    } catch (IOException e) {
+      // expected
+    }
+
+    lock.release();
+    assertFalse(lock.isLocked());
+    assertTrue(other.obtain());
+    other.release();                              // as IndexReader.unlock
+    assertTrue(lock.obtain());
+    factory.makeLock("a.lock").release();
+    assertFalse(lock.isLocked());
+  }
+
+  public void testSingleInstanceWakeup() throws Exception {
+    checkWakeup(new SingleInstanceLockFactory());
+  }
+
+  public void testNativeWakeup() throws Exception {
+    checkWakeup(new NativeFSLockFactory(lockDir));
+  }
+
+  /** A waiting thread must obtain the lock well before the next poll. */
+  private void checkWakeup(LockFactory factory) throws Exception {
+    final Lock lock = factory.makeLock("wakeup.lock");
+    final Lock waiting = factory.makeLock("wakeup.lock");
+    final long[] obtained = new long[1];
+    final IOException[] error = new IOException[1];
+    assertTrue(lock.obtain());
+
+    Thread waiter = new Thread() {
+        public void run() {
+          try {
+            waiting.obtain(10000);
+            obtained[0] = System.currentTimeMillis();
+            waiting.release();
+          } catch (IOException e) {
+            error[0] = e;
+          }
+        }
+      };
+    waiter.start();
+    Thread.sleep(100);
+    long released = System.currentTimeMillis();
+    lock.release();
+    waiter.join();
+
+    assertNull(error[0]);
+    assertTrue(obtained[0] - released < Lock.LOCK_POLL_INTERVAL / 2);
+  }
+
+  public void testIndexWithLockFactories() throws IOException {
+    checkIndex(new RAMDirectory());
+
+    File path = new File(System.getProperty("tempDir"), "testLockFactoryIndex");
+    FSDirectory dir = FSDirectory.getDirectory(path, true);
+    try {
+      dir.setLockFactory(new NativeFSLockFactory(lockDir));
+      checkIndex(dir);
+    } finally {
+      dir.close();
+    }
+  }
+
+  private void checkIndex(Directory dir) throws IOException {
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    try {
+      new IndexWriter(dir, new SimpleAnalyzer(), false);
+      fail("write lock should be held");
+    } catch (IOException e) {
+      // expected
+    }
+    Document doc = new Document();
+    doc.add(Field.Text("content", "aaa"));
+    writer.addDocument(doc);
+    writer.close();
+
+    assertFalse(IndexReader.isLocked(dir));
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(1, reader.numDocs());
+    reader.close();
+  }
+}
@@ -0,0 +1,146 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Tests that a StatsDirectory passes data through unchanged and counts the
+ * I/O made on each kind of file.
+ */
+public class TestStatsDirectory extends TestCase {
+
+  public void testExtension() {
+    assertEquals("frq", StatsDirectory.extension("_1.frq"));
+    assertEquals("fnm", StatsDirectory.extension("_1.fnm"));
+    assertEquals("f*", StatsDirectory.extension("_a.f0"));
+    assertEquals("f*", StatsDirectory.extension("_a.f12"));
+    assertEquals("", StatsDirectory.extension("segments"));
+  }
+
+  public void testStreams() throws IOException {
+    StatsDirectory dir = new StatsDirectory(new RAMDirectory());
+    int size = 3 * OutputStream.BUFFER_SIZE + 10;
+    OutputStream out = dir.createFile("a.bin");
+    assertEquals(1, dir.getOutputsOpen());
+    for (int i = 0; i < size; i++)
+      out.writeByte((byte) i);
+    out.close();
+    assertEquals(0, dir.getOutputsOpen());
+    FileStats stats = dir.getStats("bin");
+    assertEquals(size, stats.getBytesWritten());
+    assertEquals(4, stats.getWrites());
+    assertEquals(1, stats.getOutputsCreated());
+    assertEquals(size, dir.fileLength("a.bin"));
+
+    InputStream in = dir.openFile("a.bin");
+    assertEquals(size, in.length());
+    for (int i = 0; i < size; i++)
+      assertEquals((byte) i, in.readByte());
+    stats = dir.getStats("bin");
+    assertEquals(size, stats.getBytesRead());
+    assertEquals(4, stats.getReads());
+    assertEquals(0, stats.getSeeks());            // read sequentially
+
+    InputStream clone = (InputStream) in.clone();
+    clone.seek(5);
+    assertEquals((byte) 5, clone.readByte());
+    in.seek(size - 1);                            // still in the buffer
+    assertEquals((byte) (size - 1), in.readByte());
+    in.seek(1000);
+    assertEquals((byte) 1000, in.readByte());
+    clone.close();
+    stats = dir.getStats("bin");
+    assertEquals(1, stats.getClones());
+    assertEquals(2, stats.getSeeks());
+    assertEquals(1, stats.getInputsOpen());       // clones are not counted
+    in.close();
+    assertEquals(0, dir.getInputsOpen());
+
+    dir.resetStats();
+    stats = dir.getStats("bin");
+    assertEquals(0, stats.getBytesRead());
+    assertEquals(0, stats.getBytesWritten());
+    assertNull(dir.getStats("none"));
+  }
+
+  public void testIndex() throws IOException {
+    StatsDirectory dir = new StatsDirectory(new RAMDirectory());
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    writer.setUseCompoundFile(false);
+    for (int i = 0; i < 100; i++) {
+      Document doc = new Document();
+      doc.add(Field.Text("body", "all w" + i));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+    assertTrue(dir.getStats("prx").getBytesWritten() > 0);
+    assertTrue(dir.getStats("f*").getBytesWritten() >= 100);
+    assertEquals(0, dir.getOutputsOpen());
+
+    dir.resetStats();
+    IndexSearcher searcher = new IndexSearcher(dir);
+    assertTrue(dir.getInputsOpen() > 0);
+    long before = dir.getStats("frq").getBytesRead();
+    assertEquals(100, searcher.search
+                 (new TermQuery(new Term("body", "all"))).length());
+    assertTrue(dir.getStats("frq").getBytesRead() > before);
+    assertTrue(dir.getStats("frq").getClones() > 0);
+    searcher.close();
+    assertEquals(0, dir.getInputsOpen());
+    assertEquals(0, dir.getBytesWritten());
+
+    String report = dir.getReport();
+    assertTrue(report, report.indexOf("\nfrq: read=") >= 0);
+    assertTrue(report, report.indexOf("\ntotal: ") >= 0);
+  }
+
+  public void testCompoundIndex() throws IOException {
+    StatsDirectory dir = new StatsDirectory(new RAMDirectory());
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < 100; i++) {
+      Document doc = new Document();
+      doc.add(Field.Text("body", "all w" + i));
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+    assertTrue(dir.getStats("cfs").getBytesWritten() > 0);
+
+    dir.resetStats();
+    IndexSearcher searcher = new IndexSearcher(dir);
+    assertEquals(100, searcher.search
+                 (new TermQuery(new Term("body", "all"))).length());
+    searcher.close();
+    assertTrue(dir.getStats("tis").getBytesRead() > 0);
+    assertTrue(dir.getStats("frq").getBytesRead() > 0);
+    assertTrue(dir.getStats("f*").getBytesRead() >= 100);
+    assertEquals(0, dir.getStats("cfs").getBytesRead());
+    assertEquals(0, dir.getInputsOpen());
+  }
+}
@@ -0,0 +1,59 @@
+package org.apache.lucene.util;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestPackedInts extends TestCase {
+
+  public void testBitsRequired() {
+    assertEquals(1, PackedInts.bitsRequired(0));
+    assertEquals(1, PackedInts.bitsRequired(1));
+    assertEquals(2, PackedInts.bitsRequired(2));
+    assertEquals(8, PackedInts.bitsRequired(255));
+    assertEquals(9, PackedInts.bitsRequired(256));
+    assertEquals(31, PackedInts.bitsRequired(Integer.MAX_VALUE));
+    assertEquals(32, PackedInts.bitsRequired(0xFFFFFFFFL));
+  }
+
+  public void testRandomValues() {
+    Random random = new Random(42);
+    for (int bits = 1; bits <= 32; bits++) {
+      int size = 1 + random.nextInt(300);
+      PackedInts packed = new PackedInts(size, bits);
+      int[] expected = new int[size];
+      long max = (1L << bits) - 1;
+      for (int i = 0; i < size; i++) {
+        expected[i] = (int)(random.nextLong() & max);
+        packed.set(i, expected[i]);
+      }
+      // overwrite some values, to check neighbours are left alone
+      for (int i = 0; i < size; i += 3) {
+        expected[i] = (int)(random.nextLong() & max);
+        packed.set(i, expected[i]);
+      }
+      for (int i = 0; i < size; i++)
+        assertEquals("bits=" + bits + " index=" + i, expected[i], packed.get(i));
+      assertEquals(size, packed.size());
+      assertEquals(bits, packed.getBitsPerValue());
+      assertTrue(packed.sizeInBytes() * 8 >= (long)size * bits);
+      assertTrue(packed.sizeInBytes() * 8 < (long)size * bits + 64);
+    }
+  }
+}
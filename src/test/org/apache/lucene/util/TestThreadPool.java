@@ -0,0 +1,149 @@
+package org.apache.lucene.util;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class TestThreadPool extends TestCase {
+
+  private static class CountTask extends ThreadPool.Task {
+    int count;
+    protected void call() {
+      count++;
+    }
+  }
+
+  public void testExecute() throws Exception {
+    ThreadPool pool = new ThreadPool("test", 2);
+    CountTask[] tasks = new CountTask[100];
+    for (int i = 0; i < tasks.length; i++) {
+      tasks[i] = new CountTask();
+      pool.execute(tasks[i]);                     // some run in this thread
+    }
+    for (int i = 0; i < tasks.length; i++) {
+      assertTrue(tasks[i].waitFor(0));
+      assertTrue(tasks[i].isDone());
+      assertEquals(1, tasks[i].count);            // ran exactly once
+    }
+    pool.close();
+  }
+
+  /** Tasks waiting for tasks they submitted to the same single thread. */
+  public void testNested() throws Exception {
+    final ThreadPool pool = new ThreadPool("test", 1, 10);
+    ThreadPool.Task[] outer = new ThreadPool.Task[5];
+    for (int i = 0; i < outer.length; i++) {
+      outer[i] = new ThreadPool.Task() {
+          protected void call() throws IOException {
+            CountTask inner = new CountTask();
+            pool.execute(inner);
+            inner.waitFor(0);
+            assertEquals(1, inner.count);
+          }
+        };
+      pool.execute(outer[i]);
+    }
+    for (int i = 0; i < outer.length; i++)
+      assertTrue(outer[i].waitFor(0));
+    pool.close();
+  }
+
+  public void testException() throws Exception {
+    ThreadPool pool = new ThreadPool("test", 1);
+    ThreadPool.Task task = new ThreadPool.Task() {
+        protected void call() throws IOException {
+          throw new IOException("expected");
+        }
+      };
+    pool.execute(task);
+    try {
+      task.waitFor(0);
+      fail();
+    } catch (IOException e) {
+      assertEquals("expected", e.getMessage());
+    }
+    pool.close();
+  }
+
+  public void testTimeoutAndCancel() throws Exception {
+    ThreadPool pool = new ThreadPool("test", 1);
+    final Object lock = new Object();
+    final boolean[] started = new boolean[1];
+    final boolean[] release = new boolean[1];
+    ThreadPool.Task blocking = new ThreadPool.Task() {
+        protected void call() {
+          synchronized (lock) {
+            started[0] = true;
+            lock.notifyAll();
+            while (!release[0]) {
+              try {
+                lock.wait();
+              } catch (InterruptedException e) {
+              }
+            }
+          }
+        }
+      };
+    pool.execute(blocking);
+    synchronized (lock) {
+      while (!started[0])                         // in the pool thread
+        lock.wait();
+    }
+    assertFalse(blocking.cancel());
+
+    CountTask queued = new CountTask();
+    pool.execute(queued);
+    assertFalse(blocking.waitFor(System.currentTimeMillis() + 50));
+    assertTrue(queued.cancel());
+    assertFalse(queued.waitFor(System.currentTimeMillis() + 50));
+
+    synchronized (lock) {
+      release[0] = true;
+      lock.notifyAll();
+    }
+    assertTrue(blocking.waitFor(0));
+    assertEquals(0, queued.count);
+    pool.close();
+  }
+
+  public void testWaitForCancelled() throws Exception {
+    CountTask task = new CountTask();
+    assertTrue(task.cancel());
+    assertFalse(task.waitFor(0));                 // does not wait forever
+    assertEquals(0, task.count);
+  }
+
+  public void testEnqueue() throws Exception {
+    ThreadPool pool = new ThreadPool("test", 1, 0);
+    CountTask executed = new CountTask();
+    pool.execute(executed);                       // no room: runs here
+    assertTrue(executed.isDone());
+
+    CountTask[] tasks = new CountTask[10];
+    for (int i = 0; i < tasks.length; i++) {
+      tasks[i] = new CountTask();
+      pool.enqueue(tasks[i]);
+    }
+    for (int i = 0; i < tasks.length; i++) {
+      assertTrue(tasks[i].waitFor(System.currentTimeMillis() + 5000));
+      assertEquals(1, tasks[i].count);
+    }
+    pool.close();
+  }
+}